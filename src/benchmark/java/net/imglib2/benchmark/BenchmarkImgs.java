@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.Random;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.paged.PagedArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Creates the {@link Img Imgs} used by the benchmarks from the string
+ * parameters of the JMH states.
+ * 
+ * <p>
+ * Containers are named {@code "array"}, {@code "paged"}, {@code "planar"},
+ * {@code "cell"}, {@code "ntree"} and {@code "list"}. Types are named by their simple class
+ * name. Dimensions are given as {@code "512x512"}.
+ * </p>
+ * 
+ * <p>
+ * Note that {@code "ntree"} does not support {@code long}-backed types (
+ * {@code BitType}, {@code Unsigned12BitType}). JMH reports these parameter
+ * combinations as failed and continues with the next one.
+ * </p>
+ * 
+ * @author agent
+ */
+public class BenchmarkImgs
+{
+	/**
+	 * Cell size used for {@link CellImgFactory}.
+	 */
+	public static final int CELL_SIZE = 32;
+
+	public static long[] dimensions( final String dimensions )
+	{
+		final String[] parts = dimensions.split( "x" );
+		final long[] dims = new long[ parts.length ];
+		for ( int d = 0; d < dims.length; ++d )
+			dims[ d ] = Long.parseLong( parts[ d ].trim() );
+		return dims;
+	}
+
+	public static RealType< ? > type( final String type )
+	{
+		if ( type.equals( "UnsignedByteType" ) )
+			return new UnsignedByteType();
+		if ( type.equals( "FloatType" ) )
+			return new FloatType();
+		if ( type.equals( "BitType" ) )
+			return new BitType();
+		if ( type.equals( "Unsigned12BitType" ) )
+			return new Unsigned12BitType();
+		throw new IllegalArgumentException( "unknown type " + type );
+	}
+
+	public static < T extends NativeType< T > > ImgFactory< T > factory( final String container )
+	{
+		if ( container.equals( "array" ) )
+			return new ArrayImgFactory< T >();
+		if ( container.equals( "paged" ) )
+			return new PagedArrayImgFactory< T >();
+		if ( container.equals( "planar" ) )
+			return new PlanarImgFactory< T >();
+		if ( container.equals( "cell" ) )
+			return new CellImgFactory< T >( CELL_SIZE );
+		if ( container.equals( "ntree" ) )
+			return new NtreeImgFactory< T >();
+		if ( container.equals( "list" ) )
+			return new ListImgFactory< T >();
+		throw new IllegalArgumentException( "unknown container " + container );
+	}
+
+	/**
+	 * Create an image and fill it with reproducible pseudo-random values that
+	 * fit the range of the type.
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public static Img< ? extends RealType< ? > > create( final String container, final String type, final String dimensions )
+	{
+		return create( ( ImgFactory ) factory( container ), ( RealType ) type( type ), dimensions( dimensions ) );
+	}
+
+	private static < T extends RealType< T > > Img< T > create( final ImgFactory< T > factory, final T type, final long[] dimensions )
+	{
+		final Img< T > img = factory.create( dimensions, type );
+		final double min = Math.max( type.getMinValue(), 0 );
+		final int range = ( int ) Math.min( type.getMaxValue() - min + 1, 4096 );
+		final Random random = new Random( 42 );
+		for ( final T t : img )
+			t.setReal( min + random.nextInt( range ) );
+		return img;
+	}
+
+	/**
+	 * Create {@code count} random positions inside an interval of the given
+	 * dimensions, with minimum at the origin.
+	 */
+	public static long[][] positions( final long[] dimensions, final int count )
+	{
+		final Random random = new Random( 42 );
+		final long[][] positions = new long[ count ][ dimensions.length ];
+		for ( int i = 0; i < count; ++i )
+			for ( int d = 0; d < dimensions.length; ++d )
+				positions[ i ][ d ] = ( long ) ( random.nextDouble() * dimensions[ d ] );
+		return positions;
+	}
+}
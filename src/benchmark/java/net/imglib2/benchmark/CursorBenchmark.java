@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Iteration throughput of the {@link Cursor Cursors} of all {@link Img}
+ * containers. The score is the time for one pass over all pixels.
+ * 
+ * @author agent
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class CursorBenchmark
+{
+	@Param( { "array", "paged", "planar", "cell", "ntree", "list" } )
+	public String container;
+
+	@Param( { "UnsignedByteType", "FloatType", "BitType", "Unsigned12BitType" } )
+	public String type;
+
+	@Param( { "1000x1000", "100x100x100" } )
+	public String dimensions;
+
+	private Img< ? extends RealType< ? > > img;
+
+	@Setup
+	public void setup()
+	{
+		img = BenchmarkImgs.create( container, type, dimensions );
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		double sum = 0;
+		final Cursor< ? extends RealType< ? > > c = img.cursor();
+		while ( c.hasNext() )
+			sum += c.next().getRealDouble();
+		return sum;
+	}
+
+	@Benchmark
+	public long localizingCursor()
+	{
+		long sum = 0;
+		final Cursor< ? extends RealType< ? > > c = img.localizingCursor();
+		final long[] position = new long[ img.numDimensions() ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			sum += position[ 0 ] + ( long ) c.get().getRealDouble();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double cursorFwdGet()
+	{
+		double sum = 0;
+		final Cursor< ? extends RealType< ? > > c = img.cursor();
+		final long size = img.size();
+		for ( long i = 0; i < size; ++i )
+		{
+			c.fwd();
+			sum += c.get().getRealDouble();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.projector.IterableIntervalProjector2D;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering throughput of {@link IterableIntervalProjector2D} into an ARGB
+ * screen image, in the calling thread and in stripes on a thread pool. The
+ * score is the time for one {@link IterableIntervalProjector2D#map()}.
+ * 
+ * @author agent
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class ProjectorBenchmark
+{
+	@Param( { "array", "planar", "cell" } )
+	public String container;
+
+	@Param( { "UnsignedByteType", "FloatType" } )
+	public String type;
+
+	/**
+	 * <ul>
+	 * <li>{@code bulk}: a {@link RealARGBConverter}, converting runs of
+	 * pixels</li>
+	 * <li>{@code generic}: a converter that is applied pixel by pixel</li>
+	 * </ul>
+	 */
+	@Param( { "bulk", "generic" } )
+	public String converter;
+
+	@Param( { "1", "4", "16" } )
+	public int numTasks;
+
+	private ExecutorService executorService;
+
+	private IterableIntervalProjector2D< ?, ARGBType > projector;
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	@Setup
+	public void setup()
+	{
+		final Img img = BenchmarkImgs.create( container, type, "1920x1080x4" );
+		final Converter c = converter.equals( "bulk" ) ? new RealARGBConverter( 0, 255 ) : new GreyConverter();
+		executorService = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		projector = new IterableIntervalProjector2D( 0, 1, img, ArrayImgs.argbs( 1920, 1080 ), c, executorService, numTasks );
+		projector.setPosition( 2, 2 );
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		executorService.shutdown();
+	}
+
+	@Benchmark
+	public void map()
+	{
+		projector.map();
+	}
+
+	private static class GreyConverter implements Converter< RealType< ? >, ARGBType >
+	{
+		@Override
+		public void convert( final RealType< ? > input, final ARGBType output )
+		{
+			final int v = Math.min( 255, Math.max( 0, ( int ) input.getRealDouble() ) );
+			output.set( ARGBType.rgba( v, v, v, 255 ) );
+		}
+	}
+}
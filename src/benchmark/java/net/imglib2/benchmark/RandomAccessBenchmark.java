@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the {@link RandomAccess RandomAccesses} of all {@link Img}
+ * containers, for random jumps ({@link RandomAccess#setPosition(long[])}) and
+ * for relative moves along the first and last dimension.
+ * 
+ * @author agent
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class RandomAccessBenchmark
+{
+	private static final int NUM_POSITIONS = 10000;
+
+	@Param( { "array", "paged", "planar", "cell", "ntree", "list" } )
+	public String container;
+
+	@Param( { "UnsignedByteType", "FloatType", "BitType", "Unsigned12BitType" } )
+	public String type;
+
+	@Param( { "1000x1000", "100x100x100" } )
+	public String dimensions;
+
+	private Img< ? extends RealType< ? > > img;
+
+	private RandomAccess< ? extends RealType< ? > > access;
+
+	private long[][] positions;
+
+	@Setup
+	public void setup()
+	{
+		img = BenchmarkImgs.create( container, type, dimensions );
+		access = img.randomAccess();
+		positions = BenchmarkImgs.positions( BenchmarkImgs.dimensions( dimensions ), NUM_POSITIONS );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( NUM_POSITIONS )
+	public double setPosition()
+	{
+		double sum = 0;
+		for ( final long[] position : positions )
+		{
+			access.setPosition( position );
+			sum += access.get().getRealDouble();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( NUM_POSITIONS )
+	public double fwdFirstDimension()
+	{
+		return walk( 0 );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( NUM_POSITIONS )
+	public double fwdLastDimension()
+	{
+		return walk( img.numDimensions() - 1 );
+	}
+
+	/**
+	 * Move {@link #NUM_POSITIONS} steps along dimension {@code d}, wrapping
+	 * back to the start of the line at the border.
+	 */
+	private double walk( final int d )
+	{
+		double sum = 0;
+		final long size = img.dimension( d );
+		access.setPosition( positions[ 0 ] );
+		access.setPosition( 0, d );
+		long x = 0;
+		for ( int i = 0; i < NUM_POSITIONS; ++i )
+		{
+			sum += access.get().getRealDouble();
+			if ( ++x == size )
+			{
+				access.setPosition( 0, d );
+				x = 0;
+			}
+			else
+				access.fwd( d );
+		}
+		return sum;
+	}
+}
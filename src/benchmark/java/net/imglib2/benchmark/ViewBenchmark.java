@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Iteration throughput of view stacks built with {@link Views} on top of the
+ * {@link Img} containers. The score is the time for one pass over the view.
+ * 
+ * @author agent
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class ViewBenchmark
+{
+	@Param( { "array", "planar", "cell" } )
+	public String container;
+
+	@Param( { "UnsignedByteType", "FloatType" } )
+	public String type;
+
+	@Param( { "1000x1000", "100x100x100" } )
+	public String dimensions;
+
+	/**
+	 * <ul>
+	 * <li>{@code interval}: an interval shrunk by 10 pixels on every side</li>
+	 * <li>{@code hyperSlice}: the central slice along the last dimension</li>
+	 * <li>{@code extendMirror}: a mirror-extended interval grown by 10 pixels
+	 * on every side</li>
+	 * <li>{@code extendZero}: like {@code extendMirror}, with zero boundary</li>
+	 * <li>{@code extendBorder}: like {@code extendMirror}, with border boundary</li>
+	 * <li>{@code subsample}: every second pixel</li>
+	 * <li>{@code stacked}: subsample of a hyperSlice of an interval</li>
+	 * </ul>
+	 */
+	@Param( { "interval", "hyperSlice", "extendMirror", "extendZero", "extendBorder", "subsample", "stacked" } )
+	public String view;
+
+	private RandomAccessibleInterval< ? extends RealType< ? > > rai;
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	@Setup
+	public void setup()
+	{
+		rai = createView( ( Img ) BenchmarkImgs.create( container, type, dimensions ), view );
+	}
+
+	private static < T extends NativeType< T > & RealType< T > > RandomAccessibleInterval< T > createView( final Img< T > img, final String view )
+	{
+		final int n = img.numDimensions();
+		if ( view.equals( "interval" ) )
+			return Views.interval( img, Intervals.expand( img, -10 ) );
+		if ( view.equals( "hyperSlice" ) )
+			return Views.hyperSlice( img, n - 1, img.dimension( n - 1 ) / 2 );
+		if ( view.equals( "extendMirror" ) )
+			return Views.interval( Views.extendMirrorSingle( img ), Intervals.expand( img, 10 ) );
+		if ( view.equals( "extendZero" ) )
+			return Views.interval( Views.extendZero( img ), Intervals.expand( img, 10 ) );
+		if ( view.equals( "extendBorder" ) )
+			return Views.interval( Views.extendBorder( img ), Intervals.expand( img, 10 ) );
+		if ( view.equals( "subsample" ) )
+			return Views.subsample( img, 2 );
+		if ( view.equals( "stacked" ) )
+			return Views.subsample( Views.hyperSlice( Views.interval( img, Intervals.expand( img, -10 ) ), n - 1, img.dimension( n - 1 ) / 2 ), 2 );
+		throw new IllegalArgumentException( "unknown view " + view );
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		double sum = 0;
+		final Cursor< ? extends RealType< ? > > c = Views.iterable( rai ).cursor();
+		while ( c.hasNext() )
+			sum += c.next().getRealDouble();
+		return sum;
+	}
+
+	@Benchmark
+	public double flatIterableCursor()
+	{
+		double sum = 0;
+		final Cursor< ? extends RealType< ? > > c = Views.flatIterable( rai ).cursor();
+		while ( c.hasNext() )
+			sum += c.next().getRealDouble();
+		return sum;
+	}
+}
@@ -0,0 +1,832 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * KDTree to access values at RealLocalizable positions, that can be modified
+ * after construction.
+ * 
+ * <p>
+ * Points are inserted with {@link #insert(Object, RealLocalizable)} which
+ * returns an integer handle. The handle identifies the point for subsequent
+ * {@link #move(int, RealLocalizable)} and {@link #remove(int)} calls. Handles
+ * of removed points are reused by later insertions.
+ * </p>
+ * 
+ * <p>
+ * The tree is a bucketed kd-tree: points are stored in leaves holding up to
+ * <em>bucketSize</em> points, inner nodes split the space at the median of the
+ * dimension with the largest extent. A leaf that overflows is split. Each node
+ * knows the number of points in its subtree. When an insertion makes a subtree
+ * unbalanced (one child holding more than {@value #ALPHA} of the points), the
+ * subtree is rebuilt. When more than half of the points have been removed
+ * since the last full rebuild, the whole tree is rebuilt. This gives amortized
+ * logarithmic cost per update. Moving a point such that it stays in the same
+ * leaf only updates its coordinates.
+ * </p>
+ * 
+ * <p>
+ * Use {@link net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree}, and
+ * {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree} to
+ * search the tree. Search results refer to points by handle, they become
+ * invalid when the tree is modified.
+ * </p>
+ * 
+ * <p>
+ * The tree is not thread-safe. It must not be modified while searches are
+ * running.
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the tree.
+ * 
+ * @author agent
+ */
+public class DynamicKDTree< T > implements EuclideanSpace
+{
+	/**
+	 * A subtree is rebuilt if one of its children holds more than this
+	 * fraction of its points.
+	 */
+	public static final double ALPHA = 0.75;
+
+	/**
+	 * default maximum number of points in a leaf.
+	 */
+	public static final int DEFAULT_BUCKET_SIZE = 16;
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * maximum number of points in a leaf (unless the points are identical).
+	 */
+	final protected int bucketSize;
+
+	/**
+	 * coordinates of the points, <code>n</code> consecutive values per
+	 * handle.
+	 */
+	protected double[] positions;
+
+	/**
+	 * the values, indexed by handle.
+	 */
+	protected final ArrayList< T > values;
+
+	/**
+	 * the leaf containing each point, indexed by handle. <code>null</code>
+	 * for unused handles.
+	 */
+	protected Node[] leafOf;
+
+	/**
+	 * the index of each point in the leaf containing it, indexed by handle.
+	 */
+	protected int[] slotOf;
+
+	/**
+	 * stack of unused handles.
+	 */
+	protected int[] freeHandles;
+
+	protected int numFreeHandles;
+
+	/**
+	 * the number of points in the tree.
+	 */
+	protected int size;
+
+	/**
+	 * the maximum number of points since the last full rebuild.
+	 */
+	protected int maxSize;
+
+	protected final Node root;
+
+	/**
+	 * nodes on the path to the most recently modified leaf.
+	 */
+	private Node[] path;
+
+	private final double[] tmp;
+
+	/**
+	 * Construct an empty tree.
+	 * 
+	 * @param numDimensions
+	 *            number of dimensions of the space.
+	 * @param bucketSize
+	 *            maximum number of points in a leaf.
+	 */
+	public DynamicKDTree( final int numDimensions, final int bucketSize )
+	{
+		assert bucketSize > 0;
+		this.n = numDimensions;
+		this.bucketSize = bucketSize;
+		this.positions = new double[ 16 * n ];
+		this.values = new ArrayList< T >();
+		this.leafOf = new Node[ 16 ];
+		this.slotOf = new int[ 16 ];
+		this.freeHandles = new int[ 16 ];
+		this.root = new Node();
+		root.makeLeaf( new int[ bucketSize + 1 ], 0 );
+		this.path = new Node[ 32 ];
+		this.tmp = new double[ n ];
+	}
+
+	/**
+	 * Construct an empty tree with {@link #DEFAULT_BUCKET_SIZE}.
+	 * 
+	 * @param numDimensions
+	 *            number of dimensions of the space.
+	 */
+	public DynamicKDTree( final int numDimensions )
+	{
+		this( numDimensions, DEFAULT_BUCKET_SIZE );
+	}
+
+	/**
+	 * Construct a tree from the elements of the given
+	 * {@link IterableRealInterval}. The <em>i</em>th element in iteration
+	 * order gets handle <em>i</em>.
+	 * 
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 * @param bucketSize
+	 *            maximum number of points in a leaf.
+	 */
+	public DynamicKDTree( final IterableRealInterval< T > interval, final int bucketSize )
+	{
+		this( interval.numDimensions(), bucketSize );
+		final int numPoints = ( int ) interval.size();
+		ensureCapacity( numPoints );
+		final RealCursor< T > cursor = interval.localizingCursor();
+		final int[] handles = new int[ numPoints ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursor.localize( tmp );
+			final int handle = values.size();
+			values.add( cursor.get() );
+			System.arraycopy( tmp, 0, positions, handle * n, n );
+			handles[ handle ] = handle;
+		}
+		size = numPoints;
+		build( root, handles, 0, size );
+		maxSize = size;
+	}
+
+	/**
+	 * Construct a tree from the elements of the given
+	 * {@link IterableRealInterval}, with {@link #DEFAULT_BUCKET_SIZE}. The
+	 * <em>i</em>th element in iteration order gets handle <em>i</em>.
+	 * 
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 */
+	public DynamicKDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval, DEFAULT_BUCKET_SIZE );
+	}
+
+	/**
+	 * Insert a point.
+	 * 
+	 * @return the handle of the inserted point.
+	 */
+	public int insert( final T value, final RealLocalizable position )
+	{
+		final int handle = newHandle( value );
+		for ( int d = 0; d < n; ++d )
+			positions[ handle * n + d ] = position.getDoublePosition( d );
+		insertIntoTree( handle );
+		return handle;
+	}
+
+	/**
+	 * Insert a point.
+	 * 
+	 * @return the handle of the inserted point.
+	 */
+	public int insert( final T value, final double[] position )
+	{
+		final int handle = newHandle( value );
+		System.arraycopy( position, 0, positions, handle * n, n );
+		insertIntoTree( handle );
+		return handle;
+	}
+
+	/**
+	 * Remove the point with the given handle.
+	 */
+	public void remove( final int handle )
+	{
+		if ( !contains( handle ) )
+			throw new IllegalArgumentException( "no point with handle " + handle );
+		removeFromTree( handle );
+		values.set( handle, null );
+		if ( numFreeHandles == freeHandles.length )
+			freeHandles = Arrays.copyOf( freeHandles, 2 * numFreeHandles );
+		freeHandles[ numFreeHandles++ ] = handle;
+		--size;
+		if ( size < maxSize / 2 )
+			rebuild();
+	}
+
+	/**
+	 * Move the point with the given handle.
+	 */
+	public void move( final int handle, final RealLocalizable position )
+	{
+		position.localize( tmp );
+		move( handle, tmp );
+	}
+
+	/**
+	 * Move the point with the given handle.
+	 */
+	public void move( final int handle, final double[] position )
+	{
+		if ( !contains( handle ) )
+			throw new IllegalArgumentException( "no point with handle " + handle );
+		if ( findLeaf( position ) == leafOf[ handle ] )
+			System.arraycopy( position, 0, positions, handle * n, n );
+		else
+		{
+			removeFromTree( handle );
+			System.arraycopy( position, 0, positions, handle * n, n );
+			insertIntoTree( handle );
+		}
+	}
+
+	/**
+	 * Rebuild the whole tree, balancing it.
+	 */
+	public void rebuild()
+	{
+		final int[] handles = new int[ size ];
+		collect( root, handles, 0 );
+		build( root, handles, 0, size );
+		maxSize = size;
+	}
+
+	/**
+	 * @return whether the given handle refers to a point in the tree.
+	 */
+	public boolean contains( final int handle )
+	{
+		return handle >= 0 && handle < values.size() && leafOf[ handle ] != null;
+	}
+
+	/**
+	 * @return the value of the point with the given handle.
+	 */
+	public T getValue( final int handle )
+	{
+		return values.get( handle );
+	}
+
+	/**
+	 * @return coordinate d of the point with the given handle.
+	 */
+	public double getDoublePosition( final int handle, final int d )
+	{
+		return positions[ handle * n + d ];
+	}
+
+	/**
+	 * Get the coordinates of all points, <code>n</code> consecutive values
+	 * per handle. The array is replaced when the tree grows, so it should not
+	 * be held on to across modifications.
+	 */
+	public double[] getFlatPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * Compute the squared distance from the point with the given handle to p.
+	 */
+	public double squDistance( final int handle, final double[] p )
+	{
+		final int o = handle * n;
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double diff = positions[ o + d ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Get a {@link Entry} referring to the point with the given handle.
+	 */
+	public Entry< T > entry( final int handle )
+	{
+		final Entry< T > entry = new Entry< T >( this );
+		entry.setHandle( handle );
+		return entry;
+	}
+
+	/**
+	 * Get the root node.
+	 */
+	public Node getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * @return the maximum number of points in a leaf.
+	 */
+	public int getBucketSize()
+	{
+		return bucketSize;
+	}
+
+	/**
+	 * @return the number of points in the tree.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	private int newHandle( final T value )
+	{
+		final int handle;
+		if ( numFreeHandles > 0 )
+		{
+			handle = freeHandles[ --numFreeHandles ];
+			values.set( handle, value );
+		}
+		else
+		{
+			handle = values.size();
+			ensureCapacity( handle + 1 );
+			values.add( value );
+		}
+		if ( ++size > maxSize )
+			maxSize = size;
+		return handle;
+	}
+
+	private void ensureCapacity( final int numHandles )
+	{
+		if ( numHandles > leafOf.length )
+		{
+			final int capacity = Math.max( numHandles, 2 * leafOf.length );
+			positions = Arrays.copyOf( positions, capacity * n );
+			leafOf = Arrays.copyOf( leafOf, capacity );
+			slotOf = Arrays.copyOf( slotOf, capacity );
+		}
+	}
+
+	private Node findLeaf( final double[] position )
+	{
+		Node node = root;
+		while ( !node.isLeaf() )
+			node = position[ node.splitDimension ] < node.splitCoordinate ? node.left : node.right;
+		return node;
+	}
+
+	/**
+	 * Add the point to the leaf containing its position, split the leaf if it
+	 * overflows, and rebuild the topmost unbalanced subtree on the path.
+	 */
+	private void insertIntoTree( final int handle )
+	{
+		final int o = handle * n;
+		int depth = 0;
+		Node node = root;
+		while ( true )
+		{
+			++node.size;
+			if ( depth == path.length )
+				path = Arrays.copyOf( path, 2 * depth );
+			path[ depth++ ] = node;
+			if ( node.isLeaf() )
+				break;
+			node = positions[ o + node.splitDimension ] < node.splitCoordinate ? node.left : node.right;
+		}
+		if ( node.count == node.handles.length )
+			node.handles = Arrays.copyOf( node.handles, 2 * node.count );
+		leafOf[ handle ] = node;
+		slotOf[ handle ] = node.count;
+		node.handles[ node.count++ ] = handle;
+		if ( node.count > bucketSize )
+			build( node, Arrays.copyOf( node.handles, node.count ), 0, node.count );
+		for ( int i = 0; i < depth - 1; ++i )
+		{
+			final Node p = path[ i ];
+			final int largerChild = Math.max( p.left.size, p.right.size );
+			if ( largerChild > ALPHA * p.size && p.size > 2 * bucketSize )
+			{
+				final int[] handles = new int[ p.size ];
+				collect( p, handles, 0 );
+				build( p, handles, 0, p.size );
+				break;
+			}
+		}
+		Arrays.fill( path, 0, depth, null );
+	}
+
+	private void removeFromTree( final int handle )
+	{
+		final int o = handle * n;
+		Node node = root;
+		while ( true )
+		{
+			--node.size;
+			if ( node.isLeaf() )
+				break;
+			node = positions[ o + node.splitDimension ] < node.splitCoordinate ? node.left : node.right;
+		}
+		assert node == leafOf[ handle ];
+		final int last = node.handles[ --node.count ];
+		node.handles[ slotOf[ handle ] ] = last;
+		slotOf[ last ] = slotOf[ handle ];
+		leafOf[ handle ] = null;
+	}
+
+	/**
+	 * Collect handles of all points in the subtree into
+	 * <code>handles</code>, starting at index <code>i</code>.
+	 * 
+	 * @return index after the last collected handle.
+	 */
+	private static int collect( final Node node, final int[] handles, final int i )
+	{
+		if ( node.isLeaf() )
+		{
+			System.arraycopy( node.handles, 0, handles, i, node.count );
+			return i + node.count;
+		}
+		return collect( node.right, handles, collect( node.left, handles, i ) );
+	}
+
+	/**
+	 * Turn <code>node</code> into a balanced subtree containing the points
+	 * <code>handles[from]</code>...<code>handles[to-1]</code>. The handles
+	 * array is reordered.
+	 */
+	private void build( final Node node, final int[] handles, final int from, final int to )
+	{
+		final int count = to - from;
+		if ( count > bucketSize )
+		{
+			// find dimension of largest extent
+			int splitDimension = 0;
+			double maxExtent = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for ( int i = from; i < to; ++i )
+				{
+					final double x = positions[ handles[ i ] * n + d ];
+					if ( x < min )
+						min = x;
+					if ( x > max )
+						max = x;
+				}
+				if ( max - min > maxExtent )
+				{
+					maxExtent = max - min;
+					splitDimension = d;
+				}
+			}
+
+			// if all points are identical, make an oversized leaf
+			if ( maxExtent > 0 )
+			{
+				final int d = splitDimension;
+				final int k = from + count / 2;
+				select( positions, handles, from, to - 1, k, d, n );
+				double splitCoordinate = positions[ handles[ k ] * n + d ];
+				boolean smaller = false;
+				for ( int i = from; i < k && !smaller; ++i )
+					smaller = positions[ handles[ i ] * n + d ] < splitCoordinate;
+				if ( !smaller )
+				{
+					// the median is the minimum: split at the next larger coordinate
+					double next = Double.POSITIVE_INFINITY;
+					for ( int i = k + 1; i < to; ++i )
+					{
+						final double x = positions[ handles[ i ] * n + d ];
+						if ( x > splitCoordinate && x < next )
+							next = x;
+					}
+					splitCoordinate = next;
+				}
+				final int m = partition( positions, handles, from, to, d, n, splitCoordinate );
+				final Node left = new Node();
+				final Node right = new Node();
+				build( left, handles, from, m );
+				build( right, handles, m, to );
+				node.makeInner( d, splitCoordinate, left, right );
+				return;
+			}
+		}
+		final int[] leafHandles = new int[ Math.max( count, bucketSize ) + 1 ];
+		System.arraycopy( handles, from, leafHandles, 0, count );
+		node.makeLeaf( leafHandles, count );
+		for ( int i = 0; i < count; ++i )
+		{
+			leafOf[ leafHandles[ i ] ] = node;
+			slotOf[ leafHandles[ i ] ] = i;
+		}
+	}
+
+	/**
+	 * Reorder <code>order[from]</code>...<code>order[to-1]</code> such that
+	 * points with coordinate smaller than <code>split</code> in dimension d
+	 * come first.
+	 * 
+	 * @return the index of the first point not smaller than split.
+	 */
+	private static int partition( final double[] coordinates, final int[] order, final int from, final int to, final int d, final int n, final double split )
+	{
+		int i = from;
+		for ( int j = from; j < to; ++j )
+			if ( coordinates[ order[ j ] * n + d ] < split )
+				swap( order, i++, j );
+		return i;
+	}
+
+	/**
+	 * Partially sort <code>order[i]</code>...<code>order[j]</code> such that
+	 * the point at index k has the k-th smallest coordinate in dimension d,
+	 * points before it are smaller or equal, and points after it are greater
+	 * or equal.
+	 */
+	private static void select( final double[] coordinates, final int[] order, int i, int j, final int k, final int d, final int n )
+	{
+		while ( j > i )
+		{
+			// median of three pivot, moved to j
+			final int m = ( i + j ) >>> 1;
+			if ( coordinates[ order[ m ] * n + d ] < coordinates[ order[ i ] * n + d ] )
+				swap( order, m, i );
+			if ( coordinates[ order[ j ] * n + d ] < coordinates[ order[ i ] * n + d ] )
+				swap( order, j, i );
+			if ( coordinates[ order[ m ] * n + d ] < coordinates[ order[ j ] * n + d ] )
+				swap( order, m, j );
+			final double pivot = coordinates[ order[ j ] * n + d ];
+
+			// Hoare partition of i..j-1 around pivot
+			int p = i - 1;
+			int q = j;
+			while ( true )
+			{
+				while ( coordinates[ order[ ++p ] * n + d ] < pivot )
+					;
+				while ( q > i && coordinates[ order[ --q ] * n + d ] > pivot )
+					;
+				if ( p >= q )
+					break;
+				swap( order, p, q );
+			}
+			swap( order, p, j );
+
+			if ( p == k )
+				return;
+			else if ( k < p )
+				j = p - 1;
+			else
+				i = p + 1;
+		}
+	}
+
+	private static void swap( final int[] order, final int i, final int j )
+	{
+		final int tmp = order[ i ];
+		order[ i ] = order[ j ];
+		order[ j ] = tmp;
+	}
+
+	/**
+	 * A node of a {@link DynamicKDTree}. Inner nodes split the space at
+	 * {@link #getSplitCoordinate()} in dimension {@link #getSplitDimension()}:
+	 * points with smaller coordinates are in the {@link #left()} subtree, the
+	 * others in the {@link #right()} subtree. Leaves hold the handles of up to
+	 * {@link DynamicKDTree#getBucketSize()} points.
+	 */
+	public static final class Node
+	{
+		private int splitDimension;
+
+		private double splitCoordinate;
+
+		private Node left;
+
+		private Node right;
+
+		private int[] handles;
+
+		private int count;
+
+		private int size;
+
+		void makeLeaf( final int[] leafHandles, final int leafCount )
+		{
+			left = null;
+			right = null;
+			handles = leafHandles;
+			count = leafCount;
+			size = leafCount;
+		}
+
+		void makeInner( final int d, final double split, final Node l, final Node r )
+		{
+			splitDimension = d;
+			splitCoordinate = split;
+			left = l;
+			right = r;
+			handles = null;
+			count = 0;
+			size = l.size + r.size;
+		}
+
+		public boolean isLeaf()
+		{
+			return handles != null;
+		}
+
+		public int getSplitDimension()
+		{
+			return splitDimension;
+		}
+
+		public double getSplitCoordinate()
+		{
+			return splitCoordinate;
+		}
+
+		public Node left()
+		{
+			return left;
+		}
+
+		public Node right()
+		{
+			return right;
+		}
+
+		/**
+		 * @return the number of points in a leaf.
+		 */
+		public int numHandles()
+		{
+			return count;
+		}
+
+		/**
+		 * @return the handle of the i-th point in a leaf.
+		 */
+		public int getHandle( final int i )
+		{
+			return handles[ i ];
+		}
+
+		/**
+		 * @return the number of points in the subtree.
+		 */
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	/**
+	 * A reference to a point of a {@link DynamicKDTree}, providing its
+	 * coordinates via the {@link RealLocalizable} interface and its value via
+	 * {@link Sampler#get()}. The referenced point can be changed, so that
+	 * searches can reuse Entry objects.
+	 */
+	public static class Entry< T > implements RealLocalizable, Sampler< T >
+	{
+		protected final DynamicKDTree< T > tree;
+
+		protected final int n;
+
+		protected int handle;
+
+		public Entry( final DynamicKDTree< T > tree )
+		{
+			this.tree = tree;
+			this.n = tree.n;
+		}
+
+		/**
+		 * Refer to the point with the given handle.
+		 */
+		public void setHandle( final int handle )
+		{
+			this.handle = handle;
+		}
+
+		/**
+		 * @return the handle of the referenced point.
+		 */
+		public int getHandle()
+		{
+			return handle;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) tree.positions[ handle * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( tree.positions, handle * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) tree.positions[ handle * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return tree.positions[ handle * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return tree.getValue( handle );
+		}
+
+		@Override
+		public Entry< T > copy()
+		{
+			return tree.entry( handle );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "point " + handle + " | " + get();
+		}
+	}
+}
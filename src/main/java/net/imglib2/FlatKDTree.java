@@ -0,0 +1,693 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.parallel.Parallel;
+
+/**
+ * KDTree to access values at RealLocalizable positions, with all coordinates
+ * stored in one flat <code>double[]</code>.
+ * 
+ * <p>
+ * Unlike {@link KDTree}, nodes are not objects. The tree is a left-balanced
+ * (complete) binary tree in implicit layout: the root is node 0 and the
+ * children of node <em>i</em> are nodes <em>2i+1</em> and <em>2i+2</em>. Node
+ * <em>i</em> has coordinates
+ * <code>positions[i*n]</code>...<code>positions[i*n+n-1]</code> and splits the
+ * space along dimension <code>depth % n</code>. Values are referenced by
+ * their index in the list the tree was constructed from.
+ * </p>
+ * 
+ * <p>
+ * The tree is constructed in parallel, splitting at the median in each
+ * subtree, on the {@link Parallel#defaultPool() default pool}.
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the tree.
+ * 
+ * @author agent
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	/**
+	 * Subtrees with at most that many nodes are constructed sequentially.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of the nodes, <code>n</code> consecutive values per node.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * the value of node <em>i</em> is at index <code>valueIndex[i]</code> in
+	 * the list of values.
+	 */
+	final protected int[] valueIndex;
+
+	/**
+	 * the values, if the tree was constructed from a list of values.
+	 */
+	final protected List< T > values;
+
+	/**
+	 * samplers providing the values, if the tree was constructed from an
+	 * {@link IterableRealInterval}.
+	 */
+	final protected List< ? extends Sampler< T > > samplers;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 * 
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, flatten( positions, positions.get( 0 ).numDimensions() ), positions.get( 0 ).numDimensions() );
+	}
+
+	/**
+	 * Construct a FlatKDTree from values and their coordinates given as a flat
+	 * array. The coordinates of value <em>i</em> are
+	 * <code>positions[i*numDimensions]</code>...
+	 * <code>positions[i*numDimensions+numDimensions-1]</code>. The array is
+	 * not modified.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            coordinates of the values
+	 * @param numDimensions
+	 *            the number of dimensions
+	 */
+	public FlatKDTree( final List< T > values, final double[] positions, final int numDimensions )
+	{
+		this( values instanceof java.util.RandomAccess ? values : new ArrayList< T >( values ), null, positions, numDimensions );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements of the given
+	 * {@link IterableRealInterval}.
+	 * 
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 */
+	public FlatKDTree( final IterableRealInterval< T > interval )
+	{
+		this( null, cursors( interval ), null, interval.numDimensions() );
+	}
+
+	private FlatKDTree( final List< T > values, final List< RealCursor< T > > samplers, final double[] positions, final int numDimensions )
+	{
+		this.n = numDimensions;
+		this.values = values;
+		this.samplers = samplers;
+		final double[] coordinates = positions != null ? positions : flatten( samplers, n );
+		if ( coordinates.length % n != 0 )
+			throw new IllegalArgumentException( "number of coordinates is not a multiple of " + n );
+		this.size = coordinates.length / n;
+		if ( values != null && values.size() != size )
+			throw new IllegalArgumentException( "expected " + size + " values but got " + values.size() );
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0; i < coordinates.length; )
+			for ( int d = 0; d < n; ++d, ++i )
+			{
+				final double x = coordinates[ i ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+
+		this.positions = new double[ coordinates.length ];
+		this.valueIndex = new int[ size ];
+		final int[] order = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+			order[ i ] = i;
+		if ( size > 0 )
+		{
+			final BuildTask task = new BuildTask( coordinates, order, 0, size, 0, 0 );
+			if ( size > PARALLEL_THRESHOLD )
+				Parallel.defaultPool().invoke( task );
+			else
+				task.compute();
+		}
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions, final int n )
+	{
+		final long length = ( long ) positions.size() * n;
+		if ( length > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many coordinates for a flat array: " + length );
+		final double[] coordinates = new double[ ( int ) length ];
+		int i = 0;
+		for ( final L position : positions )
+		{
+			assert position.numDimensions() == n;
+			for ( int d = 0; d < n; ++d )
+				coordinates[ i++ ] = position.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	private static < T > List< RealCursor< T > > cursors( final IterableRealInterval< T > interval )
+	{
+		final ArrayList< RealCursor< T > > cursors = new ArrayList< RealCursor< T > >( ( int ) interval.size() );
+		final RealCursor< T > cursor = interval.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursors.add( cursor.copyCursor() );
+		}
+		return cursors;
+	}
+
+	/**
+	 * Number of nodes in the left subtree of a left-balanced tree with
+	 * <em>m</em> nodes.
+	 */
+	static int leftSubtreeSize( final int m )
+	{
+		if ( m < 2 )
+			return 0;
+		// height of the tree, not counting the last (incomplete) level
+		final int h = 31 - Integer.numberOfLeadingZeros( m );
+		final int lastLevelMax = 1 << ( h - 1 );
+		final int lastLevel = m - ( ( 1 << h ) - 1 );
+		return lastLevelMax - 1 + Math.min( lastLevel, lastLevelMax );
+	}
+
+	/**
+	 * Construct the subtree rooted at <em>node</em> from the points
+	 * <code>order[from]</code>...<code>order[to-1]</code>. The points are
+	 * split at the median with respect to coordinates in dimension
+	 * <code>depth % n</code>; the median becomes the node. The left and right
+	 * partitions are processed recursively, in parallel if they are large.
+	 */
+	private final class BuildTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] coordinates;
+
+		private final int[] order;
+
+		private final int from;
+
+		private final int to;
+
+		private final int node;
+
+		private final int d;
+
+		BuildTask( final double[] coordinates, final int[] order, final int from, final int to, final int node, final int d )
+		{
+			this.coordinates = coordinates;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.node = node;
+			this.d = d;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from <= PARALLEL_THRESHOLD )
+				build( coordinates, order, from, to, node, d );
+			else
+			{
+				final int k = split( coordinates, order, from, to, node, d );
+				final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+				invokeAll(
+						new BuildTask( coordinates, order, from, k, 2 * node + 1, dChild ),
+						new BuildTask( coordinates, order, k + 1, to, 2 * node + 2, dChild ) );
+			}
+		}
+	}
+
+	private void build( final double[] coordinates, final int[] order, final int from, final int to, final int node, final int d )
+	{
+		if ( to <= from )
+			return;
+		final int k = split( coordinates, order, from, to, node, d );
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		build( coordinates, order, from, k, 2 * node + 1, dChild );
+		build( coordinates, order, k + 1, to, 2 * node + 2, dChild );
+	}
+
+	/**
+	 * Select the median of <code>order[from]</code>...<code>order[to-1]</code>
+	 * in dimension d and store it as <em>node</em>.
+	 * 
+	 * @return the index of the median in <code>order</code>.
+	 */
+	private int split( final double[] coordinates, final int[] order, final int from, final int to, final int node, final int d )
+	{
+		final int k = from + leftSubtreeSize( to - from );
+		select( coordinates, order, from, to - 1, k, d, n );
+		final int point = order[ k ];
+		System.arraycopy( coordinates, point * n, positions, node * n, n );
+		valueIndex[ node ] = point;
+		return k;
+	}
+
+	/**
+	 * Partially sort <code>order[i]</code>...<code>order[j]</code> such that
+	 * the point at index k has the k-th smallest coordinate in dimension d,
+	 * points before it are smaller or equal, and points after it are greater
+	 * or equal.
+	 */
+	private static void select( final double[] coordinates, final int[] order, int i, int j, final int k, final int d, final int n )
+	{
+		while ( j > i )
+		{
+			// median of three pivot, moved to j
+			final int m = ( i + j ) >>> 1;
+			if ( coordinates[ order[ m ] * n + d ] < coordinates[ order[ i ] * n + d ] )
+				swap( order, m, i );
+			if ( coordinates[ order[ j ] * n + d ] < coordinates[ order[ i ] * n + d ] )
+				swap( order, j, i );
+			if ( coordinates[ order[ m ] * n + d ] < coordinates[ order[ j ] * n + d ] )
+				swap( order, m, j );
+			final double pivot = coordinates[ order[ j ] * n + d ];
+
+			// Hoare partition of i..j-1 around pivot
+			int p = i - 1;
+			int q = j;
+			while ( true )
+			{
+				while ( coordinates[ order[ ++p ] * n + d ] < pivot )
+					;
+				while ( q > i && coordinates[ order[ --q ] * n + d ] > pivot )
+					;
+				if ( p >= q )
+					break;
+				swap( order, p, q );
+			}
+			swap( order, p, j );
+
+			if ( p == k )
+				return;
+			else if ( k < p )
+				j = p - 1;
+			else
+				i = p + 1;
+		}
+	}
+
+	private static void swap( final int[] order, final int i, final int j )
+	{
+		final int tmp = order[ i ];
+		order[ i ] = order[ j ];
+		order[ j ] = tmp;
+	}
+
+	/**
+	 * Get the root node.
+	 * 
+	 * @return the index of the root node.
+	 */
+	public int getRoot()
+	{
+		return 0;
+	}
+
+	/**
+	 * @return the index of the left child of <em>node</em>. The child exists
+	 *         iff the index is less than {@link #size()}.
+	 */
+	public static int left( final int node )
+	{
+		return 2 * node + 1;
+	}
+
+	/**
+	 * @return the index of the right child of <em>node</em>. The child exists
+	 *         iff the index is less than {@link #size()}.
+	 */
+	public static int right( final int node )
+	{
+		return 2 * node + 2;
+	}
+
+	/**
+	 * Get the coordinates of all nodes, <code>n</code> consecutive values per
+	 * node. The array must not be modified.
+	 */
+	public double[] getFlatPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return the coordinate of <em>node</em> in dimension d.
+	 */
+	public double getDoublePosition( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	/**
+	 * @return the index of the value of <em>node</em> in the list the tree
+	 *         was constructed from.
+	 */
+	public int getValueIndex( final int node )
+	{
+		return valueIndex[ node ];
+	}
+
+	/**
+	 * @return the value of <em>node</em>.
+	 */
+	public T getValue( final int node )
+	{
+		return values != null ? values.get( valueIndex[ node ] ) : samplers.get( valueIndex[ node ] ).get();
+	}
+
+	/**
+	 * Compute the squared distance from p to <em>node</em>.
+	 */
+	public double squDistance( final int node, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, i = node * n; d < n; ++d, ++i )
+		{
+			final double diff = positions[ i ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Create a {@link Node} referring to the given node of this tree.
+	 */
+	public Node< T > node( final int node )
+	{
+		final Node< T > ref = new Node< T >( this );
+		ref.setNode( node );
+		return ref;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	/**
+	 * A reference to a node of a {@link FlatKDTree}, providing its coordinates
+	 * via the {@link RealLocalizable} interface and its value via
+	 * {@link Sampler#get()}. The referenced node can be changed, so that
+	 * searches can reuse Node objects.
+	 */
+	public static class Node< T > implements RealLocalizable, Sampler< T >
+	{
+		protected final FlatKDTree< T > tree;
+
+		protected final int n;
+
+		protected int node;
+
+		protected int offset;
+
+		public Node( final FlatKDTree< T > tree )
+		{
+			this.tree = tree;
+			this.n = tree.n;
+		}
+
+		/**
+		 * Refer to the given node.
+		 */
+		public void setNode( final int node )
+		{
+			this.node = node;
+			this.offset = node * n;
+		}
+
+		/**
+		 * @return the index of the referenced node.
+		 */
+		public int getNode()
+		{
+			return node;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) tree.positions[ offset + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( tree.positions, offset, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) tree.positions[ offset + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return tree.positions[ offset + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return tree.getValue( node );
+		}
+
+		@Override
+		public Node< T > copy()
+		{
+			return tree.node( node );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + node + " | " + get();
+		}
+	}
+
+	public final class FlatKDTreeCursor extends Node< T > implements RealCursor< T >
+	{
+		public FlatKDTreeCursor()
+		{
+			super( FlatKDTree.this );
+			reset();
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			setNode( ( int ) ( node + steps ) );
+		}
+
+		@Override
+		public void fwd()
+		{
+			setNode( node + 1 );
+		}
+
+		@Override
+		public void reset()
+		{
+			setNode( -1 );
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return node < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			final FlatKDTreeCursor copy = new FlatKDTreeCursor();
+			copy.setNode( node );
+			return copy;
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return getValue( 0 );
+	}
+}
@@ -0,0 +1,764 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.parallel.Parallel;
+
+/**
+ * Points bucketed into a uniform grid of cubic cells, to access values at
+ * RealLocalizable positions. For fairly uniformly distributed points, radius
+ * and nearest-neighbor queries only look at a few cells around the query,
+ * which is cheaper than descending a {@link KDTree}.
+ * 
+ * <p>
+ * The grid covers the bounding box of the points. Points are sorted by cell
+ * (cells in flattened order, dimension 0 fastest) and their coordinates are
+ * stored in one flat <code>double[]</code>. Because cells that are
+ * consecutive in dimension 0 are consecutive in memory, a range of cells
+ * along dimension 0 is a contiguous range of points, see
+ * {@link #cellRange(long, long, int[])}.
+ * </p>
+ * 
+ * <p>
+ * If the grid has not many more cells than points, the start of every cell
+ * is stored in a dense table. Otherwise (e.g., for a few outliers far from
+ * the other points, or a small cell size on a large extent) only the
+ * occupied cells are stored, sorted by cell index, and ranges of cells are
+ * found by binary search. Memory is then proportional to the number of
+ * points rather than the number of cells.
+ * </p>
+ * 
+ * <p>
+ * Cell indices are computed and coordinates are sorted in parallel on the
+ * {@link Parallel#defaultPool() default pool}.
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the grid.
+ * 
+ * @author agent
+ */
+public class UniformGrid< T > implements EuclideanSpace, RealInterval
+{
+	/**
+	 * Ranges of at most that many points are processed sequentially.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	/**
+	 * Average number of points per cell if the cell size is chosen
+	 * automatically.
+	 */
+	private static final double DEFAULT_POINTS_PER_CELL = 2;
+
+	/**
+	 * The start of every cell is stored if there are at most that many cells
+	 * per point. Otherwise, only occupied cells are stored.
+	 */
+	private static final int MAX_DENSE_CELLS_PER_POINT = 4;
+
+	/**
+	 * Maximum number of cells in the grid.
+	 */
+	private static final double MAX_CELLS = Long.MAX_VALUE / 2;
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of points.
+	 */
+	final protected int size;
+
+	/**
+	 * side length of the cells.
+	 */
+	final protected double cellSize;
+
+	/**
+	 * number of cells in each dimension.
+	 */
+	final protected int[] gridDimensions;
+
+	/**
+	 * offset between cells neighboring in each dimension.
+	 */
+	final protected long[] cellSteps;
+
+	/**
+	 * indices of the occupied cells in increasing order, or {@code null} if
+	 * all cells are stored.
+	 */
+	final protected long[] occupiedCells;
+
+	/**
+	 * the points in the <em>k</em>th stored cell are
+	 * <code>cellStart[k]</code>... <code>cellStart[k+1]-1</code>. If
+	 * {@link #occupiedCells} is {@code null}, the <em>k</em>th stored cell is
+	 * cell <em>k</em>, otherwise it is cell <code>occupiedCells[k]</code>.
+	 */
+	final protected int[] cellStart;
+
+	/**
+	 * coordinates of the points, sorted by cell, <code>n</code> consecutive
+	 * values per point.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * the value of point <em>i</em> is at index <code>valueIndex[i]</code> in
+	 * the list of values.
+	 */
+	final protected int[] valueIndex;
+
+	/**
+	 * the values, if the grid was constructed from a list of values.
+	 */
+	final protected List< T > values;
+
+	/**
+	 * samplers providing the values, if the grid was constructed from an
+	 * {@link IterableRealInterval}.
+	 */
+	final protected List< ? extends Sampler< T > > samplers;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a UniformGrid from the elements of the given
+	 * {@link IterableRealInterval}.
+	 * 
+	 * @param interval
+	 *            elements in the grid are obtained by iterating this
+	 * @param cellSize
+	 *            side length of the cells. For radius search, the search
+	 *            radius is a good choice.
+	 */
+	public UniformGrid( final IterableRealInterval< T > interval, final double cellSize )
+	{
+		this( null, cursors( interval ), interval.numDimensions(), cellSize );
+	}
+
+	/**
+	 * Construct a UniformGrid from the elements of the given
+	 * {@link IterableRealInterval}. The cell size is chosen such that there
+	 * are about two points per cell on average.
+	 * 
+	 * @param interval
+	 *            elements in the grid are obtained by iterating this
+	 */
+	public UniformGrid( final IterableRealInterval< T > interval )
+	{
+		this( interval, Double.NaN );
+	}
+
+	/**
+	 * Construct a UniformGrid from the elements in the given list.
+	 * 
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param cellSize
+	 *            side length of the cells. For radius search, the search
+	 *            radius is a good choice.
+	 */
+	public < L extends RealLocalizable > UniformGrid( final List< T > values, final List< L > positions, final double cellSize )
+	{
+		this( checkedValues( values, positions ), positions, positions.get( 0 ).numDimensions(), cellSize );
+	}
+
+	/**
+	 * Check the arguments of the list constructor before anything is built,
+	 * and copy the values into a random access list if necessary.
+	 */
+	private static < T, L extends RealLocalizable > List< T > checkedValues( final List< T > values, final List< L > positions )
+	{
+		if ( positions.isEmpty() )
+			throw new IllegalArgumentException( "cannot determine the number of dimensions of an empty list of positions" );
+		if ( values.size() != positions.size() )
+			throw new IllegalArgumentException( "expected " + positions.size() + " values but got " + values.size() );
+		return values instanceof java.util.RandomAccess ? values : new ArrayList< T >( values );
+	}
+
+	private < L extends RealLocalizable > UniformGrid( final List< T > values, final List< L > positionList, final int numDimensions, final double cellSize )
+	{
+		this.n = numDimensions;
+		this.values = values;
+		@SuppressWarnings( "unchecked" )
+		final List< ? extends Sampler< T > > s = values == null ? ( List< ? extends Sampler< T > > ) positionList : null;
+		this.samplers = s;
+		final double[] coordinates = flatten( positionList, n );
+		this.size = coordinates.length / n;
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = size > 0 ? Double.MAX_VALUE : 0;
+			max[ d ] = size > 0 ? -Double.MAX_VALUE : 0;
+		}
+		for ( int i = 0; i < coordinates.length; )
+			for ( int d = 0; d < n; ++d, ++i )
+			{
+				final double x = coordinates[ i ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+
+		this.cellSize = Double.isNaN( cellSize ) ? defaultCellSize( min, max, size ) : cellSize;
+		if ( !( this.cellSize > 0 ) || Double.isInfinite( this.cellSize ) )
+			throw new IllegalArgumentException( "cell size must be positive: " + this.cellSize );
+		this.gridDimensions = new int[ n ];
+		this.cellSteps = new long[ n ];
+		long numCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double cells = Math.floor( ( max[ d ] - min[ d ] ) / this.cellSize ) + 1;
+			if ( cells > Integer.MAX_VALUE - 1 || cells * numCells > MAX_CELLS )
+				throw new IllegalArgumentException( "cell size " + this.cellSize + " is too small for the extent of the points" );
+			gridDimensions[ d ] = ( int ) cells;
+			cellSteps[ d ] = numCells;
+			numCells *= gridDimensions[ d ];
+		}
+
+		// compute the cell of each point
+		final long[] cellOf = new long[ size ];
+		run( new CellIndexTask( coordinates, cellOf, 0, size ) );
+
+		// find the stored cell of each point
+		final int[] storedCellOf = new int[ size ];
+		final int numStoredCells;
+		if ( numCells <= ( long ) MAX_DENSE_CELLS_PER_POINT * size + 1 )
+		{
+			this.occupiedCells = null;
+			numStoredCells = ( int ) numCells;
+			for ( int i = 0; i < size; ++i )
+				storedCellOf[ i ] = ( int ) cellOf[ i ];
+		}
+		else
+		{
+			this.occupiedCells = occupied( cellOf );
+			numStoredCells = occupiedCells.length;
+			run( new StoredCellTask( cellOf, storedCellOf, 0, size ) );
+		}
+
+		// counting sort by cell
+		this.cellStart = new int[ numStoredCells + 1 ];
+		for ( int i = 0; i < size; ++i )
+			++cellStart[ storedCellOf[ i ] + 1 ];
+		for ( int c = 0; c < numStoredCells; ++c )
+			cellStart[ c + 1 ] += cellStart[ c ];
+		this.valueIndex = new int[ size ];
+		final int[] next = new int[ numStoredCells ];
+		System.arraycopy( cellStart, 0, next, 0, next.length );
+		for ( int i = 0; i < size; ++i )
+			valueIndex[ next[ storedCellOf[ i ] ]++ ] = i;
+
+		this.positions = new double[ coordinates.length ];
+		run( new GatherTask( coordinates, 0, size ) );
+	}
+
+	/**
+	 * Returns the distinct cell indices in increasing order.
+	 */
+	private static long[] occupied( final long[] cellOf )
+	{
+		final long[] sorted = cellOf.clone();
+		Arrays.sort( sorted );
+		int m = 0;
+		for ( int i = 0; i < sorted.length; ++i )
+			if ( m == 0 || sorted[ i ] != sorted[ m - 1 ] )
+				sorted[ m++ ] = sorted[ i ];
+		return Arrays.copyOf( sorted, m );
+	}
+
+	private static double defaultCellSize( final double[] min, final double[] max, final int size )
+	{
+		double volume = 1;
+		int m = 0;
+		for ( int d = 0; d < min.length; ++d )
+		{
+			final double extent = max[ d ] - min[ d ];
+			if ( extent > 0 )
+			{
+				volume *= extent;
+				++m;
+			}
+		}
+		if ( m == 0 )
+			return 1;
+		final double numCells = Math.max( 1, size / DEFAULT_POINTS_PER_CELL );
+		return Math.pow( volume / numCells, 1.0 / m );
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions, final int n )
+	{
+		final long length = ( long ) positions.size() * n;
+		if ( length > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many coordinates for a flat array: " + length );
+		final double[] coordinates = new double[ ( int ) length ];
+		int i = 0;
+		for ( final L position : positions )
+		{
+			assert position.numDimensions() == n;
+			for ( int d = 0; d < n; ++d )
+				coordinates[ i++ ] = position.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	private static < T > List< RealCursor< T > > cursors( final IterableRealInterval< T > interval )
+	{
+		final ArrayList< RealCursor< T > > cursors = new ArrayList< RealCursor< T > >( ( int ) interval.size() );
+		final RealCursor< T > cursor = interval.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursors.add( cursor.copyCursor() );
+		}
+		return cursors;
+	}
+
+	private void run( final RangeTask task )
+	{
+		if ( size > PARALLEL_THRESHOLD )
+			Parallel.defaultPool().invoke( task );
+		else
+			task.compute();
+	}
+
+	/**
+	 * Process points <code>from</code>...<code>to-1</code>, splitting the
+	 * range in halves and processing them in parallel if it is large.
+	 */
+	private abstract class RangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected final int from;
+
+		protected final int to;
+
+		RangeTask( final int from, final int to )
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		protected abstract RangeTask create( int from, int to );
+
+		protected abstract void process( int from, int to );
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from <= PARALLEL_THRESHOLD )
+				process( from, to );
+			else
+			{
+				final int m = ( from + to ) >>> 1;
+				invokeAll( create( from, m ), create( m, to ) );
+			}
+		}
+	}
+
+	private final class CellIndexTask extends RangeTask
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] coordinates;
+
+		private final long[] cellOf;
+
+		CellIndexTask( final double[] coordinates, final long[] cellOf, final int from, final int to )
+		{
+			super( from, to );
+			this.coordinates = coordinates;
+			this.cellOf = cellOf;
+		}
+
+		@Override
+		protected RangeTask create( final int from, final int to )
+		{
+			return new CellIndexTask( coordinates, cellOf, from, to );
+		}
+
+		@Override
+		protected void process( final int from, final int to )
+		{
+			for ( int i = from; i < to; ++i )
+			{
+				long cell = 0;
+				for ( int d = 0; d < n; ++d )
+					cell += cellSteps[ d ] * cellCoordinate( coordinates[ i * n + d ], d );
+				cellOf[ i ] = cell;
+			}
+		}
+	}
+
+	private final class StoredCellTask extends RangeTask
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final long[] cellOf;
+
+		private final int[] storedCellOf;
+
+		StoredCellTask( final long[] cellOf, final int[] storedCellOf, final int from, final int to )
+		{
+			super( from, to );
+			this.cellOf = cellOf;
+			this.storedCellOf = storedCellOf;
+		}
+
+		@Override
+		protected RangeTask create( final int from, final int to )
+		{
+			return new StoredCellTask( cellOf, storedCellOf, from, to );
+		}
+
+		@Override
+		protected void process( final int from, final int to )
+		{
+			for ( int i = from; i < to; ++i )
+				storedCellOf[ i ] = Arrays.binarySearch( occupiedCells, cellOf[ i ] );
+		}
+	}
+
+	private final class GatherTask extends RangeTask
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] coordinates;
+
+		GatherTask( final double[] coordinates, final int from, final int to )
+		{
+			super( from, to );
+			this.coordinates = coordinates;
+		}
+
+		@Override
+		protected RangeTask create( final int from, final int to )
+		{
+			return new GatherTask( coordinates, from, to );
+		}
+
+		@Override
+		protected void process( final int from, final int to )
+		{
+			for ( int i = from; i < to; ++i )
+				System.arraycopy( coordinates, valueIndex[ i ] * n, positions, i * n, n );
+		}
+	}
+
+	/**
+	 * Get the cell coordinate in dimension d of position x. Positions outside
+	 * the grid are clamped to the nearest cell.
+	 */
+	public int cellCoordinate( final double x, final int d )
+	{
+		final double c = Math.floor( ( x - min[ d ] ) / cellSize );
+		return c < 0 ? 0 : c >= gridDimensions[ d ] ? gridDimensions[ d ] - 1 : ( int ) c;
+	}
+
+	/**
+	 * @return the side length of the cells.
+	 */
+	public double getCellSize()
+	{
+		return cellSize;
+	}
+
+	/**
+	 * @return the number of cells in dimension d.
+	 */
+	public int getGridDimension( final int d )
+	{
+		return gridDimensions[ d ];
+	}
+
+	/**
+	 * @return the offset between the indices of cells neighboring in
+	 *         dimension d.
+	 */
+	public long getCellStep( final int d )
+	{
+		return cellSteps[ d ];
+	}
+
+	/**
+	 * Find the points in cells <code>firstCell</code>...<code>lastCell</code>,
+	 * which must be in the same row of cells along dimension 0. The points
+	 * are <code>range[0]</code>...<code>range[1]-1</code>.
+	 * 
+	 * @param firstCell
+	 *            flattened index of the first cell.
+	 * @param lastCell
+	 *            flattened index of the last cell.
+	 * @param range
+	 *            receives the first point and one past the last point.
+	 */
+	public void cellRange( final long firstCell, final long lastCell, final int[] range )
+	{
+		if ( occupiedCells == null )
+		{
+			range[ 0 ] = cellStart[ ( int ) firstCell ];
+			range[ 1 ] = cellStart[ ( int ) lastCell + 1 ];
+		}
+		else
+		{
+			range[ 0 ] = cellStart[ lowerBound( firstCell ) ];
+			range[ 1 ] = cellStart[ lowerBound( lastCell + 1 ) ];
+		}
+	}
+
+	/**
+	 * @return the number of stored occupied cells before the given cell.
+	 */
+	private int lowerBound( final long cell )
+	{
+		final int i = Arrays.binarySearch( occupiedCells, cell );
+		return i >= 0 ? i : -i - 1;
+	}
+
+	/**
+	 * @return whether only occupied cells are stored, because the grid has
+	 *         many more cells than points.
+	 */
+	public boolean isSparse()
+	{
+		return occupiedCells != null;
+	}
+
+	/**
+	 * Get the coordinates of all points, sorted by cell, <code>n</code>
+	 * consecutive values per point.
+	 */
+	public double[] getFlatPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return the index of the value of point i in the list of values.
+	 */
+	public int getValueIndex( final int i )
+	{
+		return valueIndex[ i ];
+	}
+
+	/**
+	 * @return the value of point i.
+	 */
+	public T getValue( final int i )
+	{
+		final int j = valueIndex[ i ];
+		return values != null ? values.get( j ) : samplers.get( j ).get();
+	}
+
+	/**
+	 * Get a {@link Entry} referring to point i.
+	 */
+	public Entry< T > entry( final int i )
+	{
+		final Entry< T > entry = new Entry< T >( this );
+		entry.setIndex( i );
+		return entry;
+	}
+
+	/**
+	 * @return the number of points in the grid.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	/**
+	 * A reference to a point of a {@link UniformGrid}, providing its
+	 * coordinates via the {@link RealLocalizable} interface and its value via
+	 * {@link Sampler#get()}. The referenced point can be changed, so that
+	 * searches can reuse Entry objects.
+	 */
+	public static class Entry< T > implements RealLocalizable, Sampler< T >
+	{
+		protected final UniformGrid< T > grid;
+
+		protected final int n;
+
+		protected int index;
+
+		protected int offset;
+
+		public Entry( final UniformGrid< T > grid )
+		{
+			this.grid = grid;
+			this.n = grid.n;
+		}
+
+		/**
+		 * Refer to point i.
+		 */
+		public void setIndex( final int i )
+		{
+			this.index = i;
+			this.offset = i * n;
+		}
+
+		/**
+		 * @return the index of the referenced point.
+		 */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) grid.positions[ offset + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( grid.positions, offset, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) grid.positions[ offset + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return grid.positions[ offset + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return grid.getValue( index );
+		}
+
+		@Override
+		public Entry< T > copy()
+		{
+			return grid.entry( index );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "point " + index + " | " + get();
+		}
+	}
+}
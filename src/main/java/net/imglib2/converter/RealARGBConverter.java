@@ -42,7 +42,7 @@ import net.imglib2.type.numeric.RealType;
  * 
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class RealARGBConverter< R extends RealType< ? > > extends AbstractLinearRange implements Converter< R, ARGBType >
+public class RealARGBConverter< R extends RealType< ? > > extends AbstractLinearRange implements Converter< R, ARGBType >, RealBulkConverter
 {
 	public RealARGBConverter()
 	{
@@ -62,4 +62,21 @@ public class RealARGBConverter< R extends RealType< ? > > extends AbstractLinear
 		final int argb = 0xff000000 | ( ( ( b << 8 ) | b ) << 8 ) | b;
 		output.set( argb );
 	}
+
+	@Override
+	public Class< ? > getOutputTypeClass()
+	{
+		return ARGBType.class;
+	}
+
+	@Override
+	public void convert( final double[] input, final Object output, final int outputIndex, final int length )
+	{
+		final int[] out = ( int[] ) output;
+		for ( int i = 0; i < length; ++i )
+		{
+			final int b = Math.min( 255, roundPositive( Math.max( 0, ( ( input[ i ] - min ) / scale * 255.0 ) ) ) );
+			out[ outputIndex + i ] = 0xff000000 | ( ( ( b << 8 ) | b ) << 8 ) | b;
+		}
+	}
 }
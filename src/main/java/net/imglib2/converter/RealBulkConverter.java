@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.converter;
+
+/**
+ * A {@link Converter} from {@link net.imglib2.type.numeric.RealType} that can
+ * also convert runs of pixels at once. The input is given as real values, the
+ * output is written directly into the storage array of a
+ * {@link net.imglib2.type.NativeType} with one entity per pixel.
+ * 
+ * <p>
+ * {@link net.imglib2.util.ImgUtil#copy(net.imglib2.RandomAccessibleInterval, net.imglib2.RandomAccessibleInterval, Converter)}
+ * and the 2D projectors use this kernel instead of calling
+ * {@link Converter#convert(Object, Object)} for every pixel. Its result must
+ * be identical to {@link Converter#convert(Object, Object)}. A subclass that
+ * overrides only {@link Converter#convert(Object, Object)} is detected and
+ * converted pixel by pixel.
+ * </p>
+ * 
+ * @author agent
+ */
+public interface RealBulkConverter
+{
+	/**
+	 * @return the class of the output type. Its storage array is passed to
+	 *         {@link #convert(double[], Object, int, int)}.
+	 */
+	public Class< ? > getOutputTypeClass();
+
+	/**
+	 * Convert {@code length} values.
+	 * 
+	 * @param input
+	 *            real input values, starting at index 0.
+	 * @param output
+	 *            storage array of the output type, for example a
+	 *            {@code float[]} for {@link net.imglib2.type.numeric.real.FloatType}.
+	 * @param outputIndex
+	 *            index of the first output value in {@code output}.
+	 * @param length
+	 *            number of values to convert.
+	 */
+	public void convert( double[] input, Object output, int outputIndex, int length );
+}
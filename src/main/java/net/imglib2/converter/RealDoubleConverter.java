@@ -45,11 +45,23 @@ import net.imglib2.type.numeric.real.DoubleType;
  * 
  * @author Johannes Schindelin
  */
-public class RealDoubleConverter< R extends RealType< R > > implements Converter< R, DoubleType >
+public class RealDoubleConverter< R extends RealType< R > > implements Converter< R, DoubleType >, RealBulkConverter
 {
 	@Override
 	public void convert( final R input, final DoubleType output )
 	{
 		output.set( input.getRealDouble() );
 	}
+
+	@Override
+	public Class< ? > getOutputTypeClass()
+	{
+		return DoubleType.class;
+	}
+
+	@Override
+	public void convert( final double[] input, final Object output, final int outputIndex, final int length )
+	{
+		System.arraycopy( input, 0, output, outputIndex, length );
+	}
 }
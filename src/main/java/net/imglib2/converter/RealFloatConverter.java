@@ -43,11 +43,37 @@ import net.imglib2.type.numeric.real.FloatType;
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  * @author Stephan Preibisch
  */
-public class RealFloatConverter< R extends RealType< R > > implements Converter< R, FloatType >
+public final class RealFloatConverter< R extends RealType< R > > implements Converter< R, FloatType >, RealBulkConverter
 {
 	@Override
 	public void convert( final R input, final FloatType output )
 	{
 		output.set( input.getRealFloat() );
 	}
+
+	@Override
+	public Class< ? > getOutputTypeClass()
+	{
+		return FloatType.class;
+	}
+
+	@Override
+	public void convert( final double[] input, final Object output, final int outputIndex, final int length )
+	{
+		final float[] out = ( float[] ) output;
+		for ( int i = 0; i < length; ++i )
+			out[ outputIndex + i ] = ( float ) input[ i ];
+	}
+
+	/**
+	 * Convert {@code length} {@link net.imglib2.type.numeric.integer.LongType}
+	 * values. Converting them through
+	 * {@link #convert(double[], Object, int, int)} would round twice.
+	 */
+	public void convert( final long[] input, final Object output, final int outputIndex, final int length )
+	{
+		final float[] out = ( float[] ) output;
+		for ( int i = 0; i < length; ++i )
+			out[ outputIndex + i ] = input[ i ];
+	}
 }
@@ -53,7 +53,7 @@ import net.imglib2.type.numeric.RealType;
  * @author Curtis Rueden
  */
 public class RealLUTConverter< R extends RealType< R >> extends
-		AbstractLinearRange implements Converter< R, ARGBType >
+		AbstractLinearRange implements Converter< R, ARGBType >, RealBulkConverter
 {
 
 	private ColorTable lut = null;
@@ -88,4 +88,17 @@ public class RealLUTConverter< R extends RealType< R >> extends
 		output.set( argb );
 	}
 
+	@Override
+	public Class< ? > getOutputTypeClass()
+	{
+		return ARGBType.class;
+	}
+
+	@Override
+	public void convert( final double[] input, final Object output, final int outputIndex, final int length )
+	{
+		final int[] out = ( int[] ) output;
+		for ( int i = 0; i < length; ++i )
+			out[ outputIndex + i ] = lut.lookupARGB( min, max, input[ i ] );
+	}
 }
@@ -43,7 +43,7 @@ import net.imglib2.type.numeric.integer.UnsignedByteType;
  * 
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class RealUnsignedByteConverter< R extends RealType< R > > extends AbstractLinearRange implements Converter< R, UnsignedByteType >
+public class RealUnsignedByteConverter< R extends RealType< R > > extends AbstractLinearRange implements Converter< R, UnsignedByteType >, RealBulkConverter
 {
 	public RealUnsignedByteConverter()
 	{
@@ -61,4 +61,18 @@ public class RealUnsignedByteConverter< R extends RealType< R > > extends Abstra
 		final double a = input.getRealDouble();
 		output.set( Math.min( 255, roundPositive( Math.max( 0, ( ( a - min ) / scale * 255.0 ) ) ) ) );
 	}
+
+	@Override
+	public Class< ? > getOutputTypeClass()
+	{
+		return UnsignedByteType.class;
+	}
+
+	@Override
+	public void convert( final double[] input, final Object output, final int outputIndex, final int length )
+	{
+		final byte[] out = ( byte[] ) output;
+		for ( int i = 0; i < length; ++i )
+			out[ outputIndex + i ] = ( byte ) Math.min( 255, roundPositive( Math.max( 0, ( ( input[ i ] - min ) / scale * 255.0 ) ) ) );
+	}
 }
@@ -43,7 +43,7 @@ import net.imglib2.type.numeric.integer.UnsignedShortType;
  * 
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class RealUnsignedShortConverter< R extends RealType< R > > extends AbstractLinearRange implements Converter< R, UnsignedShortType >
+public class RealUnsignedShortConverter< R extends RealType< R > > extends AbstractLinearRange implements Converter< R, UnsignedShortType >, RealBulkConverter
 {
 	public RealUnsignedShortConverter()
 	{
@@ -61,4 +61,18 @@ public class RealUnsignedShortConverter< R extends RealType< R > > extends Abstr
 		final double a = input.getRealDouble();
 		output.set( Math.min( 65535, roundPositive( Math.max( 0, ( ( a - min ) / scale * 65535.0 ) ) ) ) );
 	}
+
+	@Override
+	public Class< ? > getOutputTypeClass()
+	{
+		return UnsignedShortType.class;
+	}
+
+	@Override
+	public void convert( final double[] input, final Object output, final int outputIndex, final int length )
+	{
+		final short[] out = ( short[] ) output;
+		for ( int i = 0; i < length; ++i )
+			out[ outputIndex + i ] = ( short ) Math.min( 65535, roundPositive( Math.max( 0, ( ( input[ i ] - min ) / scale * 65535.0 ) ) ) );
+	}
 }
@@ -78,6 +78,14 @@ public class ConvertedRandomAccessibleInterval< A, B extends Type< B > > extends
 		return converted.copy();
 	}
 
+	/**
+	 * @return the source {@link RandomAccessibleInterval}.
+	 */
+	public RandomAccessibleInterval< A > getSource()
+	{
+		return sourceInterval;
+	}
+
 	public Converter< ? super A, ? super B > getConverter()
 	{
 		return converter;
@@ -33,13 +33,19 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.FlatIterationOrder;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealBulkConverter;
+import net.imglib2.util.ImgUtil;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.RandomAccessibleIntervalCursor;
 import net.imglib2.view.Views;
 
@@ -54,6 +60,12 @@ import net.imglib2.view.Views;
  * The mapping function can be specified with a {@link Converter}. <br>
  * A basic example is cutting out a time frame from a (greyscale) video.
  * 
+ * A projector created with
+ * {@link #IterableIntervalProjector2D(int, int, RandomAccessible, IterableInterval, Converter, ExecutorService, int)}
+ * renders a {@link RandomAccessibleInterval} target in stripes of rows that
+ * can be mapped in parallel, and the rendering can be {@link #cancel()
+ * canceled}.
+ * 
  * @author Michael Zinsmaier
  * @author Martin Horn
  * @author Christian Dietz (University of Konstanz)
@@ -61,20 +73,34 @@ import net.imglib2.view.Views;
  * @param <A>
  * @param <B>
  */
-public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
+public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D implements InterruptibleProjector
 {
+	/**
+	 * Number of pixels converted by the bulk path between two checks for
+	 * cancellation.
+	 */
+	private static final long BULK_BLOCK_SIZE = 1 << 14;
+
 	final protected Converter< ? super A, B > converter;
 
 	final protected RandomAccessible< A > source;
 
 	final protected IterableInterval< B > target;
 
+	final protected StripedRenderer renderer;
+
 	final int numDimensions;
 
 	private final int dimX;
 
 	private final int dimY;
 
+	/**
+	 * Whether {@link RandomAccessibleInterval} targets are rendered by the
+	 * {@link #renderer}.
+	 */
+	private final boolean striped;
+
 	/**
 	 * creates a new 2D projector that samples a plain in the dimensions dimX,
 	 * dimY.
@@ -88,6 +114,35 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 	 *            can e.g. be used for normalization, conversions, ...
 	 */
 	public IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< ? super A, B > converter )
+	{
+		this( dimX, dimY, source, target, converter, new StripedRenderer(), false );
+	}
+
+	/**
+	 * creates a new 2D projector that samples a plain in the dimensions dimX,
+	 * dimY and renders it in <em>numTasks</em> stripes of rows on
+	 * <em>executorService</em>. The converter is shared by all tasks and must
+	 * be thread-safe.
+	 * 
+	 * @param dimX
+	 * @param dimY
+	 * @param source
+	 * @param target
+	 * @param converter
+	 *            a converter that is applied to each point in the plain. This
+	 *            can e.g. be used for normalization, conversions, ...
+	 * @param executorService
+	 *            executor on which the stripes are rendered, <code>null</code>
+	 *            to render in the calling thread.
+	 * @param numTasks
+	 *            number of stripes.
+	 */
+	public IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< ? super A, B > converter, final ExecutorService executorService, final int numTasks )
+	{
+		this( dimX, dimY, source, target, converter, new StripedRenderer( executorService, numTasks ), true );
+	}
+
+	private IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< ? super A, B > converter, final StripedRenderer renderer, final boolean striped )
 	{
 		super( source.numDimensions() );
 		this.dimX = dimX;
@@ -96,6 +151,8 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 		this.source = source;
 		this.converter = converter;
 		this.numDimensions = source.numDimensions();
+		this.renderer = renderer;
+		this.striped = striped;
 	}
 
 	/**
@@ -114,6 +171,29 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 		max[ dimX ] = target.max( 0 );
 		max[ dimY ] = target.max( 1 );
 
+		if ( striped && target instanceof RandomAccessibleInterval )
+		{
+			mapStripes();
+			return;
+		}
+
+		// the whole target is a single stripe, so that cancel() is still
+		// tracked by the renderer
+		renderer.render( 0, 0, new StripedRenderer.Stripe()
+		{
+			@Override
+			public void map( final long minRow, final long maxRow )
+			{
+				mapIterable();
+			}
+		} );
+	}
+
+	/**
+	 * Map the whole target without checking for {@link #cancel()}.
+	 */
+	private void mapIterable()
+	{
 		// TODO: this is ugly, but the only way to make sure, that iteration
 		// order fits in the case of one sized dims. Tobi?
 		final IterableInterval< A > ii = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
@@ -174,4 +254,98 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 			}
 		}
 	}
+
+	@Override
+	public void cancel()
+	{
+		renderer.cancel();
+	}
+
+	@Override
+	public boolean isCanceled()
+	{
+		return renderer.isCanceled();
+	}
+
+	/**
+	 * Render the target in stripes of rows. If the converter is a
+	 * {@link RealBulkConverter} and dimX == 0, lines of the plane are
+	 * converted in runs using its kernel, see
+	 * {@link ImgUtil#copy(RandomAccessibleInterval, RandomAccessibleInterval, Converter)}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private void mapStripes()
+	{
+		final RandomAccessibleInterval< B > rai = ( RandomAccessibleInterval< B > ) target;
+		if ( converter instanceof RealBulkConverter && dimX == 0 && numDimensions > 1 && rai.numDimensions() == 2 )
+		{
+			RandomAccessible< A > slice = source;
+			for ( int d = numDimensions - 1; d >= 0; --d )
+				if ( d != dimX && d != dimY )
+					slice = Views.hyperSlice( slice, d, position[ d ] );
+			final RandomAccessible< A > plane = slice;
+			renderer.render( min[ dimY ], max[ dimY ], new StripedRenderer.Stripe()
+			{
+				@Override
+				public void map( final long minRow, final long maxRow )
+				{
+					mapBulkRows( plane, rai, minRow, maxRow );
+				}
+			} );
+		}
+		else
+		{
+			renderer.render( min[ dimY ], max[ dimY ], new StripedRenderer.Stripe()
+			{
+				@Override
+				public void map( final long minRow, final long maxRow )
+				{
+					mapRows( rai, minRow, maxRow );
+				}
+			} );
+		}
+	}
+
+	private void mapRows( final RandomAccessibleInterval< B > rai, final long minRow, final long maxRow )
+	{
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
+		final RandomAccess< B > targetRandomAccess = rai.randomAccess();
+
+		final long width = rai.dimension( 0 );
+		final long cr = -width;
+
+		sourceRandomAccess.setPosition( min );
+		sourceRandomAccess.setPosition( minRow, dimY );
+		targetRandomAccess.setPosition( Intervals.minAsLongArray( rai ) );
+		targetRandomAccess.setPosition( minRow, 1 );
+		for ( long y = minRow; y <= maxRow; ++y )
+		{
+			if ( renderer.isCanceled() )
+				return;
+			for ( long x = 0; x < width; ++x )
+			{
+				converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
+				sourceRandomAccess.fwd( dimX );
+				targetRandomAccess.fwd( 0 );
+			}
+			sourceRandomAccess.move( cr, dimX );
+			targetRandomAccess.move( cr, 0 );
+			sourceRandomAccess.fwd( dimY );
+			targetRandomAccess.fwd( 1 );
+		}
+	}
+
+	private void mapBulkRows( final RandomAccessible< A > plane, final RandomAccessibleInterval< B > rai, final long minRow, final long maxRow )
+	{
+		final long rowsPerBlock = Math.max( 1, BULK_BLOCK_SIZE / rai.dimension( 0 ) );
+		for ( long y = minRow; y <= maxRow; y += rowsPerBlock )
+		{
+			if ( renderer.isCanceled() )
+				return;
+			final long yMax = Math.min( maxRow, y + rowsPerBlock - 1 );
+			final FinalInterval sourceRows = new FinalInterval( new long[] { min[ dimX ], y }, new long[] { max[ dimX ], yMax } );
+			final FinalInterval targetRows = new FinalInterval( new long[] { rai.min( 0 ), y }, new long[] { rai.max( 0 ), yMax } );
+			ImgUtil.copy( Views.interval( plane, sourceRows ), Views.interval( rai, targetRows ), converter );
+		}
+	}
 }
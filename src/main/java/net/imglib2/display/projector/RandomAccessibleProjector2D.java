@@ -33,6 +33,8 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.FinalInterval;
 import net.imglib2.FlatIterationOrder;
 import net.imglib2.IterableInterval;
@@ -63,7 +65,7 @@ import net.imglib2.converter.Converter;
  * @param <A>
  * @param <B>
  */
-public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
+public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D implements InterruptibleProjector
 {
 
 	final protected Converter< ? super A, B > converter;
@@ -72,6 +74,8 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 
 	final protected RandomAccessible< A > source;
 
+	final protected StripedRenderer renderer;
+
 	final int numDimensions;
 
 	private final int dimX;
@@ -95,6 +99,30 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 	 *            can e.g. be used for normalization, conversions, ...
 	 */
 	public RandomAccessibleProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter )
+	{
+		this( dimX, dimY, source, target, converter, null, 1 );
+	}
+
+	/**
+	 * creates a new 2D projector that samples a plain in the dimensions dimX,
+	 * dimY and renders it in <em>numTasks</em> stripes of rows on
+	 * <em>executorService</em>. The converter is shared by all tasks and must
+	 * be thread-safe.
+	 * 
+	 * @param dimX
+	 * @param dimY
+	 * @param source
+	 * @param target
+	 * @param converter
+	 *            a converter that is applied to each point in the plain. This
+	 *            can e.g. be used for normalization, conversions, ...
+	 * @param executorService
+	 *            executor on which the stripes are rendered, <code>null</code>
+	 *            to render in the calling thread.
+	 * @param numTasks
+	 *            number of stripes.
+	 */
+	public RandomAccessibleProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter, final ExecutorService executorService, final int numTasks )
 	{
 		super( source.numDimensions() );
 		this.dimX = dimX;
@@ -103,6 +131,7 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 		this.source = source;
 		this.converter = converter;
 		this.numDimensions = source.numDimensions();
+		this.renderer = new StripedRenderer( executorService, numTasks );
 	}
 
 	/**
@@ -119,6 +148,31 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 		min[ dimY ] = target.min( dimY );
 		max[ dimX ] = target.max( dimX );
 		max[ dimY ] = target.max( dimY );
+
+		renderer.render( min[ dimY ], max[ dimY ], new StripedRenderer.Stripe()
+		{
+			@Override
+			public void map( final long minRow, final long maxRow )
+			{
+				mapRows( minRow, maxRow );
+			}
+		} );
+	}
+
+	@Override
+	public void cancel()
+	{
+		renderer.cancel();
+	}
+
+	@Override
+	public boolean isCanceled()
+	{
+		return renderer.isCanceled();
+	}
+
+	private void mapRows( final long minRow, final long maxRow )
+	{
 		final FinalInterval sourceInterval = new FinalInterval( min, max );
 
 		final long cr = -target.dimension( dimX );
@@ -127,13 +181,15 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 		final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
 
 		final long width = target.dimension( dimX );
-		final long height = target.dimension( dimY );
 
 		sourceRandomAccess.setPosition( min );
+		sourceRandomAccess.setPosition( minRow, dimY );
 		targetRandomAccess.setPosition( min[ dimX ], dimX );
-		targetRandomAccess.setPosition( min[ dimY ], dimY );
-		for ( long y = 0; y < height; ++y )
+		targetRandomAccess.setPosition( minRow, dimY );
+		for ( long y = minRow; y <= maxRow; ++y )
 		{
+			if ( renderer.isCanceled() )
+				return;
 			for ( long x = 0; x < width; ++x )
 			{
 				converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imglib2.parallel.Parallel;
+
+/**
+ * Renders a range of rows in horizontal stripes, one task per stripe, on a
+ * shared {@link ExecutorService}. Used by the 2D projectors to implement
+ * multi-threaded, {@link InterruptibleProjector interruptible}
+ * {@link Projector#map()}.
+ * 
+ * Stripes are expected to check {@link #isCanceled()} once per row and return
+ * early if it is set. A {@link #cancel()} applies to the running render, or,
+ * if none is running, to the next one.
+ * 
+ * @author agent
+ */
+public class StripedRenderer
+{
+	/**
+	 * Renders the rows <em>minRow</em> to <em>maxRow</em> (inclusive) of one
+	 * stripe.
+	 */
+	public interface Stripe
+	{
+		public void map( long minRow, long maxRow );
+	}
+
+	private final ExecutorService executorService;
+
+	private final int numTasks;
+
+	/**
+	 * Set by {@link #cancel()}, cleared when a render finishes.
+	 */
+	private volatile boolean canceled = false;
+
+	/**
+	 * Whether the last finished render was canceled. Cleared when a render
+	 * starts.
+	 */
+	private volatile boolean lastCanceled = false;
+
+	/**
+	 * Create a renderer that runs stripes on the given executor.
+	 * 
+	 * @param executorService
+	 *            the executor on which stripes are rendered, for instance
+	 *            {@link Parallel#defaultPool()}. If <code>null</code>, all rows
+	 *            are rendered in the calling thread.
+	 * @param numTasks
+	 *            into how many stripes the rows are split.
+	 */
+	public StripedRenderer( final ExecutorService executorService, final int numTasks )
+	{
+		if ( numTasks < 1 )
+			throw new IllegalArgumentException( "numTasks must be positive: " + numTasks );
+		this.executorService = executorService;
+		this.numTasks = numTasks;
+	}
+
+	/**
+	 * Create a renderer that renders all rows in the calling thread.
+	 */
+	public StripedRenderer()
+	{
+		this( null, 1 );
+	}
+
+	/**
+	 * Render rows <em>minRow</em> to <em>maxRow</em> (inclusive) and wait for
+	 * all stripes to finish. If {@link #cancel()} was called since the last
+	 * render finished, no stripe is rendered.
+	 * 
+	 * @return false if rendering was {@link #cancel() canceled} or the calling
+	 *         thread was interrupted.
+	 */
+	public boolean render( final long minRow, final long maxRow, final Stripe stripe )
+	{
+		lastCanceled = false;
+		try
+		{
+			renderStripes( minRow, maxRow, stripe );
+		}
+		finally
+		{
+			lastCanceled = canceled;
+			canceled = false;
+		}
+		return !lastCanceled;
+	}
+
+	private void renderStripes( final long minRow, final long maxRow, final Stripe stripe )
+	{
+		if ( canceled )
+			return;
+		final long numRows = maxRow - minRow + 1;
+		final int n = ( int ) Math.min( numTasks, numRows );
+		if ( executorService == null || n <= 1 )
+		{
+			if ( numRows > 0 )
+				stripe.map( minRow, maxRow );
+			return;
+		}
+
+		final List< Callable< Void > > tasks = new ArrayList< Callable< Void > >( n );
+		for ( int i = 0; i < n; ++i )
+		{
+			final long min = minRow + numRows * i / n;
+			final long max = minRow + numRows * ( i + 1 ) / n - 1;
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					if ( !canceled )
+						stripe.map( min, max );
+					return null;
+				}
+			} );
+		}
+
+		try
+		{
+			final List< Future< Void > > futures = executorService.invokeAll( tasks );
+			for ( final Future< Void > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			canceled = true;
+			Thread.currentThread().interrupt();
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+
+	/**
+	 * Make the running {@link #render(long, long, Stripe)} return as soon as
+	 * all stripes noticed. If no render is running, the next one returns
+	 * immediately.
+	 */
+	public void cancel()
+	{
+		canceled = true;
+	}
+
+	/**
+	 * @return true if the running {@link #render(long, long, Stripe)} is
+	 *         canceled, or, if none is running, if the last one was.
+	 */
+	public boolean isCanceled()
+	{
+		return canceled || lastCanceled;
+	}
+}
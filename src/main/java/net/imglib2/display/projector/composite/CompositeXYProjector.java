@@ -35,6 +35,7 @@
 package net.imglib2.display.projector.composite;
 
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
@@ -43,7 +44,10 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.projector.InterruptibleProjector;
+import net.imglib2.display.projector.StripedRenderer;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.util.Intervals;
 
 /**
  * Creates a composite image from across multiple dimensional positions along an
@@ -53,6 +57,11 @@ import net.imglib2.type.numeric.ARGBType;
  * inclusion in the computed composite value using the {@link #setComposite}
  * methods.
  * 
+ * If the target is a {@link RandomAccessibleInterval}, it is rendered in
+ * stripes of rows that can be mapped in parallel (see
+ * {@link #CompositeXYProjector(RandomAccessibleInterval, IterableInterval, ArrayList, int, ExecutorService, int)})
+ * and the rendering can be {@link #cancel() canceled}.
+ * 
  * @see XYProjector for the code upon which this class was based.
  * 
  * @author Stephan Saalfeld
@@ -60,7 +69,7 @@ import net.imglib2.type.numeric.ARGBType;
  * @author Grant Harris
  * @author Tobias Pietzsch (tobias.pietzsch@gmail.com)
  */
-public class CompositeXYProjector< A > extends AbstractProjector2D
+public class CompositeXYProjector< A > extends AbstractProjector2D implements InterruptibleProjector
 {
 
 	private final ArrayList< Converter< A, ARGBType >> converters;
@@ -81,8 +90,26 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 
 	private final RandomAccessibleInterval< A > source;
 
-	@SuppressWarnings( "unchecked" )
+	private final StripedRenderer renderer;
+
 	public CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final int dimIndex )
+	{
+		this( source, target, converters, dimIndex, null, 1 );
+	}
+
+	/**
+	 * Create a projector that renders <em>target</em> in <em>numTasks</em>
+	 * stripes of rows on <em>executorService</em>. The converters are shared
+	 * by all tasks and must be thread-safe.
+	 * 
+	 * @param executorService
+	 *            executor on which the stripes are rendered, <code>null</code>
+	 *            to render in the calling thread.
+	 * @param numTasks
+	 *            number of stripes.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final int dimIndex, final ExecutorService executorService, final int numTasks )
 	{
 		super( source.numDimensions() );
 		this.source = source;
@@ -100,6 +127,7 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		composite[ 0 ] = true;
 		currentPositions = new long[ converterCount ];
 		currentConverters = new Converter[ converterCount ];
+		renderer = new StripedRenderer( executorService, numTasks );
 	}
 
 	// -- CompositeXYProjector methods --
@@ -157,6 +185,11 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		{
 			// there is only converter[0]
 			// use it to map the current position
+			if ( target instanceof RandomAccessibleInterval )
+			{
+				mapStripes( 1, converters.get( 0 ) );
+				return;
+			}
 			final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
 			sourceRandomAccess.setPosition( min );
 			mapSingle( sourceRandomAccess, converters.get( 0 ) );
@@ -171,6 +204,13 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 				min[ dimIndex ] = currentPositions[ i ];
 			else if ( currentPositions[ i ] > max[ dimIndex ] )
 				max[ dimIndex ] = currentPositions[ i ];
+
+		if ( target instanceof RandomAccessibleInterval )
+		{
+			mapStripes( size, currentConverters[ 0 ] );
+			return;
+		}
+
 		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
 		sourceRandomAccess.setPosition( min );
 
@@ -190,35 +230,22 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			targetCursor.fwd();
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
-			for ( int i = 0; i < size; i++ )
-			{
-				sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
-				currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
-
-				// accumulate converted result
-				final int value = bi.get();
-				final int a = ARGBType.alpha( value );
-				final int r = ARGBType.red( value );
-				final int g = ARGBType.green( value );
-				final int b = ARGBType.blue( value );
-				aSum += a;
-				rSum += r;
-				gSum += g;
-				bSum += b;
-			}
-			if ( aSum > 255 )
-				aSum = 255;
-			if ( rSum > 255 )
-				rSum = 255;
-			if ( gSum > 255 )
-				gSum = 255;
-			if ( bSum > 255 )
-				bSum = 255;
-			targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
+			targetCursor.get().set( composite( sourceRandomAccess, size, bi ) );
 		}
 	}
 
+	@Override
+	public void cancel()
+	{
+		renderer.cancel();
+	}
+
+	@Override
+	public boolean isCanceled()
+	{
+		return renderer.isCanceled();
+	}
+
 	// -- Helper methods --
 
 	/**
@@ -263,6 +290,92 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		return currentSize;
 	}
 
+	/**
+	 * Sum the converted values at the <em>size</em> current positions, clamped
+	 * to 255 per channel.
+	 */
+	private int composite( final RandomAccess< A > sourceRandomAccess, final int size, final ARGBType bi )
+	{
+		int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
+			currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
+
+			// accumulate converted result
+			final int value = bi.get();
+			final int a = ARGBType.alpha( value );
+			final int r = ARGBType.red( value );
+			final int g = ARGBType.green( value );
+			final int b = ARGBType.blue( value );
+			aSum += a;
+			rSum += r;
+			gSum += g;
+			bSum += b;
+		}
+		if ( aSum > 255 )
+			aSum = 255;
+		if ( rSum > 255 )
+			rSum = 255;
+		if ( gSum > 255 )
+			gSum = 255;
+		if ( bSum > 255 )
+			bSum = 255;
+		return ARGBType.rgba( rSum, gSum, bSum, aSum );
+	}
+
+	/**
+	 * Render the target in stripes of rows. If <em>size</em> is 1, only
+	 * <em>conv</em> is applied, otherwise the {@link #currentConverters} are
+	 * composited.
+	 */
+	private void mapStripes( final int size, final Converter< A, ARGBType > conv )
+	{
+		renderer.render( min[ 1 ], max[ 1 ], new StripedRenderer.Stripe()
+		{
+			@Override
+			public void map( final long minRow, final long maxRow )
+			{
+				mapRows( minRow, maxRow, size, conv );
+			}
+		} );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private void mapRows( final long minRow, final long maxRow, final int size, final Converter< A, ARGBType > conv )
+	{
+		final RandomAccessibleInterval< ARGBType > rai = ( RandomAccessibleInterval< ARGBType > ) target;
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
+		final RandomAccess< ARGBType > targetRandomAccess = rai.randomAccess();
+		final ARGBType bi = new ARGBType();
+
+		final long width = rai.dimension( 0 );
+		final long cr = -width;
+
+		sourceRandomAccess.setPosition( min );
+		sourceRandomAccess.setPosition( minRow, 1 );
+		targetRandomAccess.setPosition( Intervals.minAsLongArray( rai ) );
+		targetRandomAccess.setPosition( minRow, 1 );
+		for ( long y = minRow; y <= maxRow; ++y )
+		{
+			if ( renderer.isCanceled() )
+				return;
+			for ( long x = 0; x < width; ++x )
+			{
+				if ( size == 1 )
+					conv.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
+				else
+					targetRandomAccess.get().set( composite( sourceRandomAccess, size, bi ) );
+				sourceRandomAccess.fwd( 0 );
+				targetRandomAccess.fwd( 0 );
+			}
+			sourceRandomAccess.move( cr, 0 );
+			targetRandomAccess.move( cr, 0 );
+			sourceRandomAccess.fwd( 1 );
+			targetRandomAccess.fwd( 1 );
+		}
+	}
+
 	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv )
 	{
 		final Cursor< ARGBType > targetCursor = target.localizingCursor();
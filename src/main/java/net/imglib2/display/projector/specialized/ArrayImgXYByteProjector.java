@@ -33,10 +33,13 @@
  */
 package net.imglib2.display.projector.specialized;
 
+import java.nio.ByteBuffer;
+
 import net.imglib2.display.projector.AbstractProjector2D;
 import net.imglib2.display.screenimage.awt.UnsignedByteAWTScreenImage;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
 import net.imglib2.type.numeric.integer.GenericByteType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.util.IntervalIndexer;
@@ -46,6 +49,11 @@ import net.imglib2.util.IntervalIndexer;
  * plain from an ByteType ArrayImg. The map method implements a normalization
  * function. The resulting image is a ByteType ArrayImg.
  * 
+ * <p>
+ * Source and target may also be backed by {@link BufferAccess buffer
+ * accesses}. Their values are then copied through the buffers.
+ * </p>
+ * 
  * @author Michael Zinsmaier
  * @author Martin Horn
  * @author Christian Dietz (University of Konstanz)
@@ -58,8 +66,19 @@ public class ArrayImgXYByteProjector< A extends GenericByteType< A >> extends Ab
 
 	private final byte[] sourceArray;
 
+	/**
+	 * The buffer of a buffer-backed source, or {@code null}.
+	 */
+	private final ByteBuffer sourceBuffer;
+
 	private final byte[] targetArray;
 
+	/**
+	 * The buffer of a buffer-backed target, or {@code null}. {@link #map()}
+	 * computes into {@link #targetArray} and copies it to this buffer.
+	 */
+	private final ByteBuffer targetBuffer;
+
 	private final double min;
 
 	private final double normalizationFactor;
@@ -94,13 +113,33 @@ public class ArrayImgXYByteProjector< A extends GenericByteType< A >> extends Ab
 		super( source.numDimensions() );
 
 		this.isSigned = source.firstElement().getMinValue() < 0;
-		this.targetArray = target.update( null ).getCurrentStorageArray();
+		final Object targetAccess = target.update( null );
+		if ( targetAccess instanceof BufferAccess )
+		{
+			targetBuffer = ( ( BufferAccess< ? > ) targetAccess ).getBuffer().duplicate();
+			targetArray = new byte[ targetBuffer.capacity() ];
+		}
+		else
+		{
+			targetBuffer = null;
+			targetArray = ( ( ByteArray ) targetAccess ).getCurrentStorageArray();
+		}
 		this.normalizationFactor = normalizationFactor;
 		this.min = min;
 		this.dims = new long[ n ];
 		source.dimensions( dims );
 
-		sourceArray = source.update( null ).getCurrentStorageArray();
+		final Object sourceAccess = source.update( null );
+		if ( sourceAccess instanceof BufferAccess )
+		{
+			sourceBuffer = ( ( BufferAccess< ? > ) sourceAccess ).getBuffer().duplicate();
+			sourceArray = null;
+		}
+		else
+		{
+			sourceBuffer = null;
+			sourceArray = ( ( ByteArray ) sourceAccess ).getCurrentStorageArray();
+		}
 	}
 
 	@Override
@@ -116,7 +155,13 @@ public class ArrayImgXYByteProjector< A extends GenericByteType< A >> extends Ab
 
 		// copy the selected part of the source array (e.g. a xy plane at time t
 		// in a video) into the target array.
-		System.arraycopy( sourceArray, offset, targetArray, 0, targetArray.length );
+		if ( sourceBuffer == null )
+			System.arraycopy( sourceArray, offset, targetArray, 0, targetArray.length );
+		else
+		{
+			sourceBuffer.position( offset );
+			sourceBuffer.get( targetArray );
+		}
 
 		if ( isSigned )
 		{
@@ -152,6 +197,12 @@ public class ArrayImgXYByteProjector< A extends GenericByteType< A >> extends Ab
 				targetArray[ i ] = ( byte ) Math.min( 255, Math.max( 0, ( Math.round( ( ( targetArray[ i ] & 0xFF ) - minCopy ) * normalizationFactor ) ) ) );
 			}
 		}
+
+		if ( targetBuffer != null )
+		{
+			targetBuffer.clear();
+			targetBuffer.put( targetArray );
+		}
 	}
 
 }
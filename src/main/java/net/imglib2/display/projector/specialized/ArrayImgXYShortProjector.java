@@ -33,10 +33,13 @@
  */
 package net.imglib2.display.projector.specialized;
 
+import java.nio.ShortBuffer;
+
 import net.imglib2.display.projector.AbstractProjector2D;
 import net.imglib2.display.screenimage.awt.UnsignedByteAWTScreenImage;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
 import net.imglib2.type.numeric.integer.GenericShortType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.util.IntervalIndexer;
@@ -46,6 +49,11 @@ import net.imglib2.util.IntervalIndexer;
  * plain from an ShortType ArrayImg. The map method implements a normalization
  * function. The resulting image is a ShortType ArrayImg. *
  * 
+ * <p>
+ * Source and target may also be backed by {@link BufferAccess buffer
+ * accesses}. Their values are then copied through the buffers.
+ * </p>
+ * 
  * @author Michael Zinsmaier
  * @author Martin Horn
  * @author Christian Dietz (University of Konstanz)
@@ -57,8 +65,19 @@ public class ArrayImgXYShortProjector< A extends GenericShortType< A >> extends
 
 	private final short[] sourceArray;
 
+	/**
+	 * The buffer of a buffer-backed source, or {@code null}.
+	 */
+	private final ShortBuffer sourceBuffer;
+
 	private final short[] targetArray;
 
+	/**
+	 * The buffer of a buffer-backed target, or {@code null}. {@link #map()}
+	 * computes into {@link #targetArray} and copies it to this buffer.
+	 */
+	private final ShortBuffer targetBuffer;
+
 	private final double min;
 
 	private final double normalizationFactor;
@@ -93,13 +112,33 @@ public class ArrayImgXYShortProjector< A extends GenericShortType< A >> extends
 		super( source.numDimensions() );
 
 		this.isSigned = source.firstElement().getMinValue() < 0;
-		this.targetArray = target.update( null ).getCurrentStorageArray();
+		final Object targetAccess = target.update( null );
+		if ( targetAccess instanceof BufferAccess )
+		{
+			targetBuffer = ( ( BufferAccess< ? > ) targetAccess ).getBuffer().asShortBuffer();
+			targetArray = new short[ targetBuffer.capacity() ];
+		}
+		else
+		{
+			targetBuffer = null;
+			targetArray = ( ( ShortArray ) targetAccess ).getCurrentStorageArray();
+		}
 		this.normalizationFactor = normalizationFactor;
 		this.min = min;
 		this.dims = new long[ n ];
 		source.dimensions( dims );
 
-		sourceArray = source.update( null ).getCurrentStorageArray();
+		final Object sourceAccess = source.update( null );
+		if ( sourceAccess instanceof BufferAccess )
+		{
+			sourceBuffer = ( ( BufferAccess< ? > ) sourceAccess ).getBuffer().asShortBuffer();
+			sourceArray = null;
+		}
+		else
+		{
+			sourceBuffer = null;
+			sourceArray = ( ( ShortArray ) sourceAccess ).getCurrentStorageArray();
+		}
 	}
 
 	@Override
@@ -118,7 +157,13 @@ public class ArrayImgXYShortProjector< A extends GenericShortType< A >> extends
 
 		// copy the selected part of the source array (e.g. a xy plane at time t
 		// in a video) into the target array.
-		System.arraycopy( sourceArray, offset, targetArray, 0, targetArray.length );
+		if ( sourceBuffer == null )
+			System.arraycopy( sourceArray, offset, targetArray, 0, targetArray.length );
+		else
+		{
+			sourceBuffer.position( offset );
+			sourceBuffer.get( targetArray );
+		}
 
 		if ( isSigned )
 		{
@@ -140,6 +185,12 @@ public class ArrayImgXYShortProjector< A extends GenericShortType< A >> extends
 				targetArray[ i ] = ( short ) Math.min( 65535, Math.max( 0, ( Math.round( ( ( targetArray[ i ] & 0xFFFF ) - minCopy ) * normalizationFactor ) ) ) );
 			}
 		}
+
+		if ( targetBuffer != null )
+		{
+			targetBuffer.clear();
+			targetBuffer.put( targetArray );
+		}
 	}
 
 }
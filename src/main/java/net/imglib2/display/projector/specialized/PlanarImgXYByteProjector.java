@@ -33,10 +33,13 @@
  */
 package net.imglib2.display.projector.specialized;
 
+import java.nio.ByteBuffer;
+
 import net.imglib2.display.projector.AbstractProjector2D;
 import net.imglib2.display.screenimage.awt.UnsignedByteAWTScreenImage;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
 import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.type.numeric.integer.GenericByteType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
@@ -47,6 +50,11 @@ import net.imglib2.util.IntervalIndexer;
  * plain from a ByteType PlanarImg. The map method implements a normalization
  * function. The resulting image is a ByteType ArrayImg. *
  * 
+ * <p>
+ * Source and target may also be backed by {@link BufferAccess buffer
+ * accesses}. Their values are then copied through the buffers.
+ * </p>
+ * 
  * @author Michael Zinsmaier
  * @author Martin Horn
  * @author Christian Dietz (University of Konstanz)
@@ -60,6 +68,12 @@ public class PlanarImgXYByteProjector< A extends GenericByteType< A >> extends A
 
 	private final byte[] targetArray;
 
+	/**
+	 * The buffer of a buffer-backed target, or {@code null}. {@link #map()}
+	 * computes into {@link #targetArray} and copies it to this buffer.
+	 */
+	private final ByteBuffer targetBuffer;
+
 	private final double min;
 
 	private final double normalizationFactor;
@@ -94,7 +108,17 @@ public class PlanarImgXYByteProjector< A extends GenericByteType< A >> extends A
 		super( source.numDimensions() );
 
 		this.isSigned = source.firstElement().getMinValue() < 0;
-		this.targetArray = target.update( null ).getCurrentStorageArray();
+		final Object targetAccess = target.update( null );
+		if ( targetAccess instanceof BufferAccess )
+		{
+			targetBuffer = ( ( BufferAccess< ? > ) targetAccess ).getBuffer().duplicate();
+			targetArray = new byte[ targetBuffer.capacity() ];
+		}
+		else
+		{
+			targetBuffer = null;
+			targetArray = ( ( ByteArray ) targetAccess ).getCurrentStorageArray();
+		}
 		this.normalizationFactor = normalizationFactor;
 		this.min = min;
 		this.dims = new long[ n ];
@@ -131,11 +155,18 @@ public class PlanarImgXYByteProjector< A extends GenericByteType< A >> extends A
 			planeIndex = 0;
 		}
 
-		final byte[] sourceArray = source.update( new PlanarImgContainerSamplerImpl( planeIndex ) ).getCurrentStorageArray();
+		final Object plane = source.update( new PlanarImgContainerSamplerImpl( planeIndex ) );
 
 		// copy the selected part of the source array (e.g. a xy plane at time t
 		// in a video) into the target array.
-		System.arraycopy( sourceArray, offset, targetArray, 0, targetArray.length );
+		if ( plane instanceof BufferAccess )
+		{
+			final ByteBuffer sourceBuffer = ( ( BufferAccess< ? > ) plane ).getBuffer().duplicate();
+			sourceBuffer.position( offset );
+			sourceBuffer.get( targetArray );
+		}
+		else
+			System.arraycopy( ( ( ByteArray ) plane ).getCurrentStorageArray(), offset, targetArray, 0, targetArray.length );
 
 		if ( isSigned )
 		{
@@ -156,6 +187,12 @@ public class PlanarImgXYByteProjector< A extends GenericByteType< A >> extends A
 				targetArray[ i ] = ( byte ) Math.min( 255, Math.max( 0, ( Math.round( ( ( targetArray[ i ] & 0xFF ) - minCopy ) * normalizationFactor ) ) ) );
 			}
 		}
+
+		if ( targetBuffer != null )
+		{
+			targetBuffer.clear();
+			targetBuffer.put( targetArray );
+		}
 	}
 
 }
@@ -33,15 +33,18 @@
  */
 package net.imglib2.display.projector.volatiles;
 
-import net.imglib2.Cursor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import net.imglib2.FinalInterval;
-import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Volatile;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.IterableIntervalProjector2D;
+import net.imglib2.display.projector.StripedRenderer;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 /**
@@ -49,15 +52,40 @@ import net.imglib2.view.Views;
  * {@link #map()} call, the projector has a {@link #isValid() state} that
  * signalizes whether all projected pixels were valid.
  * 
+ * The target is rendered in stripes of rows that can be mapped in parallel
+ * (see
+ * {@link #Volatile2DRandomAccessibleProjector(int, int, RandomAccessible, RandomAccessibleInterval, Converter, ExecutorService, int)})
+ * and the rendering can be {@link #cancel() canceled}. A canceled
+ * {@link #map()} is never {@link #isValid() valid}.
+ * 
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
 public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B > extends IterableIntervalProjector2D< A, B >
 {
 	protected boolean valid = false;
 
+	private final RandomAccessibleInterval< B > targetInterval;
+
 	public Volatile2DRandomAccessibleProjector( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter )
 	{
-		super( dimX, dimY, source, Views.iterable( target ), converter );
+		this( dimX, dimY, source, target, converter, null, 1 );
+	}
+
+	/**
+	 * Create a projector that renders <em>target</em> in <em>numTasks</em>
+	 * stripes of rows on <em>executorService</em>. The converter is shared by
+	 * all tasks and must be thread-safe.
+	 * 
+	 * @param executorService
+	 *            executor on which the stripes are rendered, <code>null</code>
+	 *            to render in the calling thread.
+	 * @param numTasks
+	 *            number of stripes.
+	 */
+	public Volatile2DRandomAccessibleProjector( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter, final ExecutorService executorService, final int numTasks )
+	{
+		super( dimX, dimY, source, Views.iterable( target ), converter, executorService, numTasks );
+		this.targetInterval = target;
 	}
 
 	/**
@@ -84,30 +112,53 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
 
-		final IterableInterval< A > srcIterable = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
-		final Cursor< B > targetCursor = target.localizingCursor();
-
-		if ( target.iterationOrder().equals( srcIterable.iterationOrder() ) )
+		final AtomicBoolean allValid = new AtomicBoolean( true );
+		final boolean completed = renderer.render( min[ 1 ], max[ 1 ], new StripedRenderer.Stripe()
 		{
-			// use cursors
-			final Cursor< A > sourceCursor = srcIterable.cursor();
-			while ( targetCursor.hasNext() )
+			@Override
+			public void map( final long minRow, final long maxRow )
 			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
+				if ( !mapRows( minRow, maxRow ) )
+					allValid.set( false );
 			}
-		}
-		else
+		} );
+		valid = completed && allValid.get();
+	}
+
+	/**
+	 * @return true if all mapped pixels were {@link Volatile#isValid() valid}
+	 *         and no row was skipped.
+	 */
+	private boolean mapRows( final long minRow, final long maxRow )
+	{
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
+		final RandomAccess< B > targetRandomAccess = targetInterval.randomAccess();
+
+		final long width = targetInterval.dimension( 0 );
+		final long cr = -width;
+
+		boolean v = true;
+		sourceRandomAccess.setPosition( min );
+		sourceRandomAccess.setPosition( minRow, 1 );
+		targetRandomAccess.setPosition( Intervals.minAsLongArray( targetInterval ) );
+		targetRandomAccess.setPosition( minRow, 1 );
+		for ( long y = minRow; y <= maxRow; ++y )
 		{
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			while ( targetCursor.hasNext() )
+			if ( renderer.isCanceled() )
+				return false;
+			for ( long x = 0; x < width; ++x )
 			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-
-				converter.convert( sourceRandomAccess.get(), b );
+				final A a = sourceRandomAccess.get();
+				v &= a.isValid();
+				converter.convert( a, targetRandomAccess.get() );
+				sourceRandomAccess.fwd( 0 );
+				targetRandomAccess.fwd( 0 );
 			}
+			sourceRandomAccess.move( cr, 0 );
+			targetRandomAccess.move( cr, 0 );
+			sourceRandomAccess.fwd( 1 );
+			targetRandomAccess.fwd( 1 );
 		}
+		return v;
 	}
 }
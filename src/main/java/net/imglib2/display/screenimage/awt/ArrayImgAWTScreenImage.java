@@ -47,11 +47,14 @@ import java.awt.image.WritableRaster;
 
 import net.imglib2.Dimensions;
 import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 
 /**
- * An {@link AWTScreenImage} that is an {@link ArrayImg}.
+ * An {@link AWTScreenImage} that is an {@link ArrayImg}. The storage array is
+ * shared with the {@link BufferedImage}, so images backed by a
+ * {@link BufferAccess} are not supported.
  * 
  * @author Curtis Rueden
  */
@@ -87,6 +90,8 @@ public abstract class ArrayImgAWTScreenImage< T extends NativeType< T >, A > ext
 
 	private BufferedImage createBufferedImage( final T type, final A data, final int width, final int height )
 	{
+		if ( data instanceof BufferAccess )
+			throw new IllegalArgumentException( "Buffer-backed images cannot share their data with a BufferedImage." );
 		final DataBuffer buffer = createDataBuffer( data );
 		final SampleModel model = new PixelInterleavedSampleModel( buffer.getDataType(), width, height, 1, width, new int[] { 0 } );
 		final ColorModel colorModel = createColorModel( type, buffer );
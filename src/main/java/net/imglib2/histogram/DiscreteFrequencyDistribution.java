@@ -43,10 +43,16 @@ import net.imglib2.Interval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
+import net.imglib2.Sampler;
+import net.imglib2.converter.readwrite.SamplerConverter;
+import net.imglib2.converter.readwrite.WriteConvertedCursor;
+import net.imglib2.converter.readwrite.WriteConvertedRandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.LongAccess;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.view.Views;
 
 /**
  * This class represents an n-dimensional set of counters. Histogram
@@ -63,7 +69,41 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 
 	private final RandomAccess< LongType > accessor;
 
-	private long totalValues;
+	protected long totalValues;
+
+	/**
+	 * Changed whenever counts are modified, to let users detect stale cached
+	 * values.
+	 */
+	private long modCount;
+
+	/**
+	 * Sum of the bin positions of the counted values in each dimension, or
+	 * null if it must be recomputed.
+	 */
+	private double[] positionSums;
+
+	/**
+	 * Sum of the squared bin positions of the counted values in each
+	 * dimension, or null if it must be recomputed.
+	 */
+	private double[] squPositionSums;
+
+	/**
+	 * Binary indexed trees of the marginal counts in each dimension, built on
+	 * the first query of {@link #cumulativeFrequency(int, long)} or
+	 * {@link #percentileBin(int, double)} and updated by
+	 * {@link #increment(long[])}, {@link #decrement(long[])}, and
+	 * {@link #setFrequency(long[], long)}. Entries are null if they must be
+	 * rebuilt.
+	 */
+	private long[][] cumulativeTrees;
+
+	/**
+	 * Makes the {@link LongType}s returned through the {@link Img} interface
+	 * keep {@link #totalValues} and the statistics consistent when written.
+	 */
+	private final SamplerConverter< LongType, LongType > countsConverter = new CountsConverter();
 
 	// -- public api --
 
@@ -93,10 +133,22 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 * store counts.
 	 */
 	public DiscreteFrequencyDistribution( final Img< LongType > img )
+	{
+		this( img, true );
+	}
+
+	/**
+	 * Construct an n-dimensional counter using a provided Img<LongType> to
+	 * store counts, optionally without resetting them. Subclasses that keep
+	 * their counts in another structure use this to provide an Img view of
+	 * them.
+	 */
+	protected DiscreteFrequencyDistribution( final Img< LongType > img, final boolean reset )
 	{
 		counts = img;
 		accessor = counts.randomAccess();
-		resetCounters();
+		if ( reset )
+			resetCounters();
 	}
 
 	/**
@@ -110,6 +162,7 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 			cursor.next().setZero();
 		}
 		totalValues = 0;
+		countsReplaced();
 	}
 
 	/**
@@ -134,8 +187,8 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		if ( value < 0 ) { throw new IllegalArgumentException( "frequency count must be >= 0" ); }
 		accessor.setPosition( binPos );
 		final long currentValue = accessor.get().get();
-		totalValues += ( value - currentValue );
 		accessor.get().set( value );
+		countChanged( binPos, value - currentValue );
 	}
 
 	/**
@@ -143,9 +196,10 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 */
 	public double relativeFrequency( final long[] binPos )
 	{
-		if ( totalValues == 0 )
+		final long total = totalValues();
+		if ( total == 0 )
 			return 0;
-		return 1.0 * frequency( binPos ) / totalValues;
+		return 1.0 * frequency( binPos ) / total;
 	}
 
 	/**
@@ -155,7 +209,7 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	{
 		accessor.setPosition( binPos );
 		accessor.get().inc();
-		totalValues++;
+		countChanged( binPos, 1 );
 	}
 
 	/**
@@ -165,7 +219,144 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	{
 		accessor.setPosition( binPos );
 		accessor.get().dec();
-		totalValues--;
+		countChanged( binPos, -1 );
+	}
+
+	/**
+	 * Adds the frequency counts of another distribution with the same
+	 * dimensions to the counts of this distribution.
+	 */
+	public void merge( final DiscreteFrequencyDistribution other )
+	{
+		if ( numDimensions() != other.numDimensions() ) { throw new IllegalArgumentException( "distributions have different dimensions" ); }
+		for ( int d = 0; d < numDimensions(); d++ )
+		{
+			if ( dimension( d ) != other.dimension( d ) ) { throw new IllegalArgumentException( "distributions have different dimensions" ); }
+		}
+		final Cursor< LongType > cursor = Views.flatIterable( counts ).cursor();
+		final Cursor< LongType > otherCursor = Views.flatIterable( other.counts ).cursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.next().add( otherCursor.next() );
+		}
+		totalValues += other.totalValues();
+		countsReplaced();
+	}
+
+	/**
+	 * Adds frequency counts given in flat iteration order, i.e. the count of
+	 * bin (x,y,...) is at index x + y * dimension( 0 ) + ... in
+	 * <code>flatCounts</code>. Any further entries of <code>flatCounts</code>
+	 * are ignored.
+	 */
+	void addCounts( final long[] flatCounts )
+	{
+		long sum = 0;
+		final Cursor< LongType > cursor = Views.flatIterable( counts ).cursor();
+		for ( int i = 0; cursor.hasNext(); i++ )
+		{
+			final LongType t = cursor.next();
+			t.set( t.get() + flatCounts[ i ] );
+			sum += flatCounts[ i ];
+		}
+		totalValues += sum;
+		countsReplaced();
+	}
+
+	/**
+	 * Returns the number of values whose bin position in dimension
+	 * <code>d</code> is at most <code>binPos</code>. Takes
+	 * O(log(dimension(d))). The marginal counts are indexed on the first query
+	 * and kept up to date by {@link #increment(long[])},
+	 * {@link #decrement(long[])}, and {@link #setFrequency(long[], long)}.
+	 * Other modifications require indexing them again.
+	 */
+	public long cumulativeFrequency( final int d, final long binPos )
+	{
+		final long[] tree = cumulativeTree( d );
+		if ( binPos < 0 )
+			return 0;
+		long sum = 0;
+		for ( int i = ( int ) Math.min( binPos + 1, tree.length - 1 ); i > 0; i -= i & -i )
+			sum += tree[ i ];
+		return sum;
+	}
+
+	/**
+	 * Returns the bin position in dimension <code>d</code> of the value at
+	 * percentile <code>p</code>. The percentile is mapped to the rank
+	 * <code>floor(p * (n-1))</code> of the <code>n</code> counted values, such
+	 * that 0 yields the lowest occupied bin, 1 the highest occupied bin, and
+	 * 0.5 the (lower) median. Takes O(log(dimension(d))), see
+	 * {@link #cumulativeFrequency(int, long)}.
+	 * 
+	 * @param p
+	 *            percentile in [0, 1].
+	 * @return the bin position, or -1 if no values are counted.
+	 */
+	public long percentileBin( final int d, final double p )
+	{
+		if ( p < 0 || p > 1 ) { throw new IllegalArgumentException( "percentile must be in [0, 1]" ); }
+		final long[] tree = cumulativeTree( d );
+		final long n = cumulativeFrequency( d, tree.length - 2 );
+		if ( n <= 0 )
+			return -1;
+		// find the first bin whose cumulative count exceeds rank, by
+		// descending the tree
+		long rank = ( long ) ( p * ( n - 1 ) );
+		int pos = 0;
+		for ( int step = Integer.highestOneBit( tree.length - 1 ); step > 0; step >>= 1 )
+		{
+			final int next = pos + step;
+			if ( next < tree.length && tree[ next ] <= rank )
+			{
+				pos = next;
+				rank -= tree[ next ];
+			}
+		}
+		return Math.min( pos, tree.length - 2 );
+	}
+
+	/**
+	 * Returns the mean bin position in dimension <code>d</code> of the counted
+	 * values, or NaN if no values are counted. The result is in units of bin
+	 * positions, not of the binned data values.
+	 */
+	public double meanBin( final int d )
+	{
+		updatePositionSums();
+		return positionSums[ d ] / totalValues;
+	}
+
+	/**
+	 * Returns the (population) variance of the bin positions in dimension
+	 * <code>d</code> of the counted values, or NaN if no values are counted.
+	 * The result is in units of squared bin positions, not of the binned data
+	 * values.
+	 */
+	public double varianceBin( final int d )
+	{
+		updatePositionSums();
+		final double mean = positionSums[ d ] / totalValues;
+		return Math.max( 0, squPositionSums[ d ] / totalValues - mean * mean );
+	}
+
+	/**
+	 * Returns a number that changes whenever counts are modified, to let
+	 * users detect stale cached values.
+	 */
+	long modCount()
+	{
+		return modCount;
+	}
+
+	/**
+	 * Returns a localizing cursor that visits at least all bins with non-zero
+	 * counts. For a dense distribution, this visits all bins.
+	 */
+	Cursor< LongType > countedBinsCursor()
+	{
+		return counts.localizingCursor();
 	}
 
 	/**
@@ -192,7 +383,7 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	{
 		long commonValue = 0;
 		final List< long[] > modePositions = new ArrayList< long[] >();
-		final Cursor< LongType > cursor = localizingCursor();
+		final Cursor< LongType > cursor = counts.localizingCursor();
 		while ( cursor.hasNext() )
 		{
 			final long val = cursor.next().get();
@@ -219,13 +410,13 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	@Override
 	public RandomAccess< LongType > randomAccess()
 	{
-		return counts.randomAccess();
+		return new WriteConvertedRandomAccess< LongType, LongType >( counts.randomAccess(), countsConverter );
 	}
 
 	@Override
 	public RandomAccess< LongType > randomAccess( final Interval interval )
 	{
-		return counts.randomAccess( interval );
+		return new WriteConvertedRandomAccess< LongType, LongType >( counts.randomAccess( interval ), countsConverter );
 	}
 
 	@Override
@@ -321,13 +512,13 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	@Override
 	public Cursor< LongType > cursor()
 	{
-		return counts.cursor();
+		return new WriteConvertedCursor< LongType, LongType >( counts.cursor(), countsConverter );
 	}
 
 	@Override
 	public Cursor< LongType > localizingCursor()
 	{
-		return counts.localizingCursor();
+		return new WriteConvertedCursor< LongType, LongType >( counts.localizingCursor(), countsConverter );
 	}
 
 	@Override
@@ -339,7 +530,7 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	@Override
 	public LongType firstElement()
 	{
-		return counts.firstElement();
+		return cursor().next();
 	}
 
 	@Override
@@ -351,7 +542,7 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	@Override
 	public Iterator< LongType > iterator()
 	{
-		return counts.iterator();
+		return cursor();
 	}
 
 	@Override
@@ -366,4 +557,136 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		return new DiscreteFrequencyDistribution( counts.copy() );
 	}
 
+	// -- helpers --
+
+	/**
+	 * Updates {@link #totalValues} and the statistics after the count of the
+	 * bin at <code>binPos</code> changed by <code>delta</code>. Takes
+	 * O(numDimensions()), plus O(log(dimension(d))) per indexed dimension.
+	 */
+	void countChanged( final long[] binPos, final long delta )
+	{
+		totalValues += delta;
+		++modCount;
+		if ( positionSums != null )
+		{
+			for ( int d = 0; d < positionSums.length; d++ )
+			{
+				final double x = binPos[ d ];
+				positionSums[ d ] += delta * x;
+				squPositionSums[ d ] += delta * x * x;
+			}
+		}
+		if ( cumulativeTrees != null )
+		{
+			for ( int d = 0; d < cumulativeTrees.length; d++ )
+			{
+				final long[] tree = cumulativeTrees[ d ];
+				if ( tree != null )
+					for ( int i = ( int ) binPos[ d ] + 1; i < tree.length; i += i & -i )
+						tree[ i ] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Discards the statistics after counts were modified in bulk. They are
+	 * recomputed on the next query.
+	 */
+	void countsReplaced()
+	{
+		++modCount;
+		positionSums = null;
+		squPositionSums = null;
+		cumulativeTrees = null;
+	}
+
+	private void updatePositionSums()
+	{
+		if ( positionSums != null )
+			return;
+		final int n = numDimensions();
+		final double[] sums = new double[ n ];
+		final double[] squSums = new double[ n ];
+		final Cursor< LongType > cursor = countedBinsCursor();
+		while ( cursor.hasNext() )
+		{
+			final long count = cursor.next().get();
+			if ( count != 0 )
+			{
+				for ( int d = 0; d < n; d++ )
+				{
+					final double x = cursor.getLongPosition( d );
+					sums[ d ] += count * x;
+					squSums[ d ] += count * x * x;
+				}
+			}
+		}
+		positionSums = sums;
+		squPositionSums = squSums;
+	}
+
+	/**
+	 * Returns the binary indexed tree of the marginal counts in dimension
+	 * <code>d</code>: the count of bin <code>i</code> is added to elements
+	 * <code>i + 1</code>, <code>(i + 1) + lowbit(i + 1)</code>, ... of the
+	 * tree.
+	 */
+	private long[] cumulativeTree( final int d )
+	{
+		if ( cumulativeTrees == null )
+			cumulativeTrees = new long[ numDimensions() ][];
+		if ( cumulativeTrees[ d ] == null )
+		{
+			if ( dimension( d ) >= Integer.MAX_VALUE ) { throw new IllegalArgumentException( "too many bins for marginal statistics" ); }
+			final long[] tree = new long[ ( int ) dimension( d ) + 1 ];
+			final Cursor< LongType > cursor = countedBinsCursor();
+			while ( cursor.hasNext() )
+			{
+				final long count = cursor.next().get();
+				if ( count != 0 )
+					tree[ cursor.getIntPosition( d ) + 1 ] += count;
+			}
+			// build in O(dimension(d)) by pushing partial sums to parents
+			for ( int i = 1; i < tree.length; i++ )
+			{
+				final int parent = i + ( i & -i );
+				if ( parent < tree.length )
+					tree[ parent ] += tree[ i ];
+			}
+			cumulativeTrees[ d ] = tree;
+		}
+		return cumulativeTrees[ d ];
+	}
+
+	/**
+	 * Wraps the counts seen through the {@link Img} interface, such that
+	 * writing them updates {@link #totalValues} and discards the statistics.
+	 */
+	private final class CountsConverter implements SamplerConverter< LongType, LongType >
+	{
+		@Override
+		public LongType convert( final Sampler< ? extends LongType > sampler )
+		{
+			return new LongType( new LongAccess()
+			{
+				@Override
+				public long getValue( final int index )
+				{
+					return sampler.get().get();
+				}
+
+				@SuppressWarnings( "synthetic-access" )
+				@Override
+				public void setValue( final int index, final long value )
+				{
+					final LongType count = sampler.get();
+					final long delta = value - count.get();
+					count.set( value );
+					totalValues += delta;
+					countsReplaced();
+				}
+			} );
+		}
+	}
 }
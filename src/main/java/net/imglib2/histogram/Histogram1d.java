@@ -35,14 +35,18 @@
 package net.imglib2.histogram;
 
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.parallel.ChunkReducer;
+import net.imglib2.parallel.Parallel;
 import net.imglib2.type.numeric.integer.LongType;
 
 /**
@@ -271,6 +275,49 @@ public class Histogram1d< T > implements Img< LongType >
 		return numer / denom;
 	}
 
+	/**
+	 * Returns the frequency count of values in bins 0 ... binPos, including the
+	 * lower tail bin (if any).
+	 */
+	public long cumulativeFrequency( final long binPos )
+	{
+		return distrib.cumulativeFrequency( 0, binPos );
+	}
+
+	/**
+	 * Returns the bin containing the value at percentile p in [0, 1] of the
+	 * distribution (tails included), or -1 if no values are counted. See
+	 * {@link DiscreteFrequencyDistribution#percentileBin(int, double)}.
+	 * Repeated queries on an unchanged histogram take O(log(bins)).
+	 */
+	public long percentileBin( final double p )
+	{
+		return distrib.percentileBin( 0, p );
+	}
+
+	/**
+	 * Returns the mean bin position of the distribution (tails included), or
+	 * NaN if no values are counted. The result is in units of bin positions.
+	 * If all bins have the same width, the mean data value is the center value
+	 * of bin 0 plus the mean bin position times the bin width.
+	 */
+	public double meanBin()
+	{
+		return distrib.meanBin( 0 );
+	}
+
+	/**
+	 * Returns the (population) variance of the bin positions of the
+	 * distribution (tails included), or NaN if no values are counted. The
+	 * result is in units of squared bin positions. If all bins have the same
+	 * width, the variance of the data values is this times the squared bin
+	 * width.
+	 */
+	public double varianceBin()
+	{
+		return distrib.varianceBin( 0 );
+	}
+
 	/**
 	 * Returns the number of bins contained in the histogram.
 	 */
@@ -425,6 +472,44 @@ public class Histogram1d< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data source using the underlying
+	 * bin distribution. The data is split into chunks that are counted in
+	 * parallel on the {@link Parallel#defaultPool() default pool}.
+	 * <p>
+	 * ArrayImgs and PlanarImgs of UnsignedByteType and UnsignedShortType
+	 * (with any bin mapping), and of FloatType and DoubleType (with a
+	 * {@link Real1dBinMapper}), are counted directly on their primitive arrays.
+	 * Other chunks are positioned with {@link Cursor#jumpFwd(long)}, so this
+	 * is only faster than {@link #countData(Iterable)} for containers whose
+	 * cursors jump in constant time.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 */
+	public void countDataParallel( final IterableInterval< T > data )
+	{
+		countDataParallel( data, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Counts the data contained in the given data source using the underlying
+	 * bin distribution. The data is split into chunks that are counted in
+	 * parallel on the given pool.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param pool
+	 *            The pool on which chunks are counted
+	 */
+	public void countDataParallel( final IterableInterval< T > data, final ForkJoinPool pool )
+	{
+		reset();
+		if ( data.size() > 0 )
+			firstValue = data.firstElement();
+		add( data, pool );
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
@@ -437,6 +522,51 @@ public class Histogram1d< T > implements Img< LongType >
 		add( data );
 	}
 
+	/**
+	 * Counts additional data contained in a given iterable interval, in
+	 * parallel on the {@link Parallel#defaultPool() default pool}. One can use
+	 * this to update an existing histogram with a subset of values.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 */
+	public void addDataParallel( final IterableInterval< T > data )
+	{
+		add( data, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Counts additional data contained in a given iterable interval, in
+	 * parallel on the given pool. One can use this to update an existing
+	 * histogram with a subset of values.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param pool
+	 *            The pool on which chunks are counted
+	 */
+	public void addDataParallel( final IterableInterval< T > data, final ForkJoinPool pool )
+	{
+		add( data, pool );
+	}
+
+	/**
+	 * Adds the counts of another histogram to this histogram. One can use this
+	 * to combine histograms of separate blocks of data. The other histogram
+	 * must have an {@link Object#equals(Object) equal} bin mapper.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to add
+	 */
+	public void merge( final Histogram1d< T > other )
+	{
+		if ( !mapper.equals( other.mapper ) ) { throw new IllegalArgumentException( "histograms have different bin mappings" ); }
+		distrib.merge( other.distrib );
+		ignoredCount += other.ignoredCount;
+		if ( firstValue == null )
+			firstValue = other.firstValue;
+	}
+
 	/**
 	 * Uncounts some original data contained in a given iterable collection. One
 	 * can use this to update an existing histogram with a subset of values.
@@ -757,6 +887,19 @@ public class Histogram1d< T > implements Img< LongType >
 		}
 	}
 
+	private void add( final IterableInterval< T > data, final ForkJoinPool pool )
+	{
+		final int binCount = ( int ) mapper.getBinCount();
+		long[] counts = PrimitiveCounter.count( data, mapper, pool );
+		if ( counts == null )
+		{
+			final long minChunkSize = Math.max( Parallel.DEFAULT_MIN_CHUNK_SIZE, binCount );
+			counts = Parallel.reduce( data, new CountReducer< T >( mapper, binCount ), pool, minChunkSize );
+		}
+		distrib.addCounts( counts );
+		ignoredCount += counts[ binCount ];
+	}
+
 	private void subtract( final Iterable< T > data )
 	{
 		for ( final T value : data )
@@ -765,4 +908,45 @@ public class Histogram1d< T > implements Img< LongType >
 		}
 	}
 
+	/**
+	 * Counts the values of a chunk into a <code>long[]</code> with one entry
+	 * per bin, followed by the count of ignored values.
+	 */
+	private static final class CountReducer< T > implements ChunkReducer< T, long[] >
+	{
+		private final BinMapper1d< T > mapper;
+
+		private final int binCount;
+
+		CountReducer( final BinMapper1d< T > mapper, final int binCount )
+		{
+			this.mapper = mapper;
+			this.binCount = binCount;
+		}
+
+		@Override
+		public long[] reduce( final Cursor< T > cursor )
+		{
+			final BinMapper1d< T > m = mapper.copy();
+			final long[] counts = new long[ binCount + 1 ];
+			while ( cursor.hasNext() )
+			{
+				final long bin = m.map( cursor.next() );
+				if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+					counts[ binCount ]++;
+				else
+					counts[ ( int ) bin ]++;
+			}
+			return counts;
+		}
+
+		@Override
+		public long[] combine( final long[] a, final long[] b )
+		{
+			for ( int i = 0; i < a.length; i++ )
+				a[ i ] += b[ i ];
+			return a;
+		}
+	}
+
 }
@@ -37,14 +37,20 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.parallel.Chunk;
+import net.imglib2.parallel.ChunkCursor;
+import net.imglib2.parallel.Parallel;
 import net.imglib2.type.numeric.integer.LongType;
 
 // TODO - calculate lazily but should be able to count upper/lower/middle in
@@ -74,6 +80,14 @@ public class HistogramNd< T > implements Img< LongType >
 
 	private long ignoredCount;
 
+	/**
+	 * Cached result of {@link #valueCount()}, valid while the modification
+	 * count of {@link #distrib} equals {@link #valueCountModCount}.
+	 */
+	private long valueCount;
+
+	private long valueCountModCount = -1;
+
 	@SuppressWarnings( "synthetic-access" )
 	private final Incrementer incrementer = new Incrementer();
 
@@ -90,6 +104,22 @@ public class HistogramNd< T > implements Img< LongType >
 	 *            The algorithms used to map values to bins
 	 */
 	public HistogramNd( final List< BinMapper1d< T >> mappers )
+	{
+		this( mappers, false );
+	}
+
+	/**
+	 * Construct a histogram from a list of bin mapping algorithms. Use
+	 * countData() to populate it. A sparse histogram stores only the counts of
+	 * occupied bins (see {@link SparseFrequencyDistribution}), which is useful
+	 * for joint histograms with many dimensions or many bins per dimension.
+	 * 
+	 * @param mappers
+	 *            The algorithms used to map values to bins
+	 * @param sparse
+	 *            Whether to store counts sparsely
+	 */
+	public HistogramNd( final List< BinMapper1d< T >> mappers, final boolean sparse )
 	{
 		this.mappers = mappers;
 		final long[] dims = new long[ mappers.size() ];
@@ -97,7 +127,7 @@ public class HistogramNd< T > implements Img< LongType >
 		{
 			dims[ i ] = mappers.get( i ).getBinCount();
 		}
-		distrib = new DiscreteFrequencyDistribution( dims );
+		distrib = sparse ? new SparseFrequencyDistribution( dims ) : new DiscreteFrequencyDistribution( dims );
 		pos = new long[ mappers.size() ];
 		ignoredCount = 0;
 	}
@@ -112,7 +142,7 @@ public class HistogramNd< T > implements Img< LongType >
 	public HistogramNd( final HistogramNd< T > other )
 	{
 		final List< BinMapper1d< T >> mappersCopy = new ArrayList< BinMapper1d< T >>();
-		for ( final BinMapper1d< T > m : mappers )
+		for ( final BinMapper1d< T > m : other.mappers )
 		{
 			mappersCopy.add( m.copy() );
 		}
@@ -188,7 +218,7 @@ public class HistogramNd< T > implements Img< LongType >
 		if ( !hasTails( dim ) )
 			return 0;
 		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
+		final Cursor< ? > cursor = distrib.countedBinsCursor();
 		final long[] binPos = new long[ distrib.numDimensions() ];
 		while ( cursor.hasNext() )
 		{
@@ -208,7 +238,7 @@ public class HistogramNd< T > implements Img< LongType >
 		if ( !hasTails() )
 			return 0;
 		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
+		final Cursor< ? > cursor = distrib.countedBinsCursor();
 		final long[] binPos = new long[ distrib.numDimensions() ];
 		while ( cursor.hasNext() )
 		{
@@ -236,7 +266,7 @@ public class HistogramNd< T > implements Img< LongType >
 			return 0;
 		final long dimSize = mappers.get( dim ).getBinCount();
 		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
+		final Cursor< ? > cursor = distrib.countedBinsCursor();
 		final long[] binPos = new long[ distrib.numDimensions() ];
 		while ( cursor.hasNext() )
 		{
@@ -256,7 +286,7 @@ public class HistogramNd< T > implements Img< LongType >
 		if ( !hasTails() )
 			return 0;
 		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
+		final Cursor< ? > cursor = distrib.countedBinsCursor();
 		final long[] binPos = new long[ distrib.numDimensions() ];
 		while ( cursor.hasNext() )
 		{
@@ -283,7 +313,7 @@ public class HistogramNd< T > implements Img< LongType >
 		final boolean hasTails = hasTails( dim );
 		final long dimSize = mappers.get( dim ).getBinCount();
 		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
+		final Cursor< ? > cursor = distrib.countedBinsCursor();
 		final long[] binPos = new long[ distrib.numDimensions() ];
 		while ( cursor.hasNext() )
 		{
@@ -311,8 +341,10 @@ public class HistogramNd< T > implements Img< LongType >
 		// But this double counts some tail bins.
 		if ( !hasTails() )
 			return distributionCount();
+		if ( valueCountModCount == distrib.modCount() )
+			return valueCount;
 		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
+		final Cursor< ? > cursor = distrib.countedBinsCursor();
 		final long[] binPos = new long[ distrib.numDimensions() ];
 		while ( cursor.hasNext() )
 		{
@@ -330,6 +362,8 @@ public class HistogramNd< T > implements Img< LongType >
 			if ( !inTail )
 				sum += distrib.frequency( binPos );
 		}
+		valueCount = sum;
+		valueCountModCount = distrib.modCount();
 		return sum;
 	}
 
@@ -341,7 +375,7 @@ public class HistogramNd< T > implements Img< LongType >
 	public long distributionCount( final int dim, final long dimVal )
 	{
 		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
+		final Cursor< ? > cursor = distrib.countedBinsCursor();
 		final long[] binPos = new long[ distrib.numDimensions() ];
 		while ( cursor.hasNext() )
 		{
@@ -453,6 +487,16 @@ public class HistogramNd< T > implements Img< LongType >
 		return numer / denom;
 	}
 
+	/**
+	 * Returns the bin position in the given dimension of the value at
+	 * percentile p in [0, 1] (tails included), or -1 if no values are counted.
+	 * See {@link DiscreteFrequencyDistribution#percentileBin(int, double)}.
+	 */
+	public long percentileBin( final int dim, final double p )
+	{
+		return distrib.percentileBin( dim, p );
+	}
+
 	/**
 	 * Returns the number of bins contained in the histogram.
 	 */
@@ -724,6 +768,27 @@ public class HistogramNd< T > implements Img< LongType >
 		return false;
 	}
 
+	/**
+	 * Adds the counts of another histogram to this histogram. One can use this
+	 * to combine histograms of separate blocks of data. The other histogram
+	 * must have {@link Object#equals(Object) equal} bin mappers.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to add
+	 */
+	public void merge( final HistogramNd< T > other )
+	{
+		if ( other.mappers.size() != mappers.size() ) { throw new IllegalArgumentException( "histograms have different bin mappings" ); }
+		for ( int i = 0; i < mappers.size(); i++ )
+		{
+			final BinMapper1d< T > m = mappers.get( i );
+			final BinMapper1d< T > o = other.mappers.get( i );
+			if ( !m.equals( o ) ) { throw new IllegalArgumentException( "histograms have different bin mappings" ); }
+		}
+		distrib.merge( other.distrib );
+		ignoredCount += other.ignoredCount;
+	}
+
 	/**
 	 * Get the discrete frequency distribution associated with this histogram.
 	 */
@@ -756,6 +821,39 @@ public class HistogramNd< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. If all sources are {@link IterableInterval}s with the
+	 * same size and iteration order, they are split into chunks that are
+	 * counted in parallel on the {@link Parallel#defaultPool() default pool}.
+	 * Otherwise, they are counted sequentially.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 */
+	public void countDataParallel( final List< Iterable< T >> data )
+	{
+		countDataParallel( data, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. If all sources are {@link IterableInterval}s with the
+	 * same size and iteration order, they are split into chunks that are
+	 * counted in parallel on the given pool. Otherwise, they are counted
+	 * sequentially.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param pool
+	 *            The pool on which chunks are counted
+	 */
+	public void countDataParallel( final List< Iterable< T >> data, final ForkJoinPool pool )
+	{
+		reset();
+		add( data, pool );
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
@@ -780,6 +878,36 @@ public class HistogramNd< T > implements Img< LongType >
 		add( data );
 	}
 
+	/**
+	 * Counts additional data contained in the given data sources, in parallel
+	 * on the {@link Parallel#defaultPool() default pool} if possible, see
+	 * {@link #countDataParallel(List)}. One can use this to update an existing
+	 * histogram with a subset of values.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 */
+	public void addDataParallel( final List< Iterable< T >> data )
+	{
+		add( data, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Counts additional data contained in the given data sources, in parallel
+	 * on the given pool if possible, see
+	 * {@link #countDataParallel(List, ForkJoinPool)}. One can use this to
+	 * update an existing histogram with a subset of values.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param pool
+	 *            The pool on which chunks are counted
+	 */
+	public void addDataParallel( final List< Iterable< T >> data, final ForkJoinPool pool )
+	{
+		add( data, pool );
+	}
+
 	/**
 	 * Uncounts some original data contained in a given iterable collection. One
 	 * can use this to update an existing histogram with a subset of values.
@@ -1050,6 +1178,53 @@ public class HistogramNd< T > implements Img< LongType >
 		modifyCounts( data, incrementer );
 	}
 
+	private void add( final List< Iterable< T >> data, final ForkJoinPool pool )
+	{
+		final List< IterableInterval< T >> intervals = splittable( data );
+		if ( intervals != null && distrib instanceof SparseFrequencyDistribution )
+		{
+			final Chunk< T > chunk = Parallel.chunk( intervals.get( 0 ) );
+			final SparseCounts counts = pool.invoke( new SparseCountTask( intervals, chunk, Parallel.DEFAULT_MIN_CHUNK_SIZE ) );
+			( ( SparseFrequencyDistribution ) distrib ).addCounts( counts.bins );
+			ignoredCount += counts.ignored;
+		}
+		else if ( intervals != null && distrib.size() < Math.min( Integer.MAX_VALUE, intervals.get( 0 ).size() ) )
+		{
+			final Chunk< T > chunk = Parallel.chunk( intervals.get( 0 ) );
+			final long threshold = Math.max( Parallel.DEFAULT_MIN_CHUNK_SIZE, distrib.size() );
+			final long[] counts = pool.invoke( new DenseCountTask( intervals, chunk, threshold ) );
+			distrib.addCounts( counts );
+			ignoredCount += counts[ ( int ) distrib.size() ];
+		}
+		else
+			modifyCounts( data, incrementer );
+	}
+
+	/**
+	 * Returns the data sources as {@link IterableInterval}s if they can be
+	 * counted in parallel, i.e., if there is one source per dimension and all
+	 * sources have the same size and iteration order. Returns null otherwise.
+	 * For dense distributions, parallel counting uses a dense array of counts
+	 * per task, so it is only used if there are fewer bins than values.
+	 */
+	private List< IterableInterval< T >> splittable( final List< Iterable< T >> data )
+	{
+		if ( data.size() != mappers.size() || !( data.get( 0 ) instanceof IterableInterval ) )
+			return null;
+		final IterableInterval< T > first = ( IterableInterval< T > ) data.get( 0 );
+		final List< IterableInterval< T >> intervals = new ArrayList< IterableInterval< T >>();
+		for ( final Iterable< T > d : data )
+		{
+			if ( !( d instanceof IterableInterval ) )
+				return null;
+			final IterableInterval< T > interval = ( IterableInterval< T > ) d;
+			if ( interval.size() != first.size() || !first.iterationOrder().equals( interval.iterationOrder() ) )
+				return null;
+			intervals.add( interval );
+		}
+		return intervals;
+	}
+
 	private void subtract( final Iterable< List< T >> data )
 	{
 		modifyCounts( data, decrementer );
@@ -1147,4 +1322,203 @@ public class HistogramNd< T > implements Img< LongType >
 		}
 	}
 
+	/**
+	 * Counts the values of a chunk of the data sources into counts of type
+	 * <code>C</code>. Large chunks are split and counted in parallel.
+	 */
+	private abstract class CountTask< C > extends RecursiveTask< C >
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected final List< IterableInterval< T >> sources;
+
+		protected final Chunk< T > chunk;
+
+		protected final long threshold;
+
+		CountTask( final List< IterableInterval< T >> sources, final Chunk< T > chunk, final long threshold )
+		{
+			this.sources = sources;
+			this.chunk = chunk;
+			this.threshold = threshold;
+		}
+
+		/**
+		 * Create a task counting the given chunk of the same sources.
+		 */
+		abstract CountTask< C > createTask( Chunk< T > c );
+
+		abstract C createCounts();
+
+		/**
+		 * Add the counts of <code>b</code> to <code>a</code>.
+		 */
+		abstract C merge( C a, C b );
+
+		abstract void count( C counts, long index );
+
+		abstract void ignore( C counts );
+
+		@SuppressWarnings( "synthetic-access" )
+		@Override
+		protected C compute()
+		{
+			if ( chunk.size() > threshold )
+			{
+				final Chunk< T > prefix = chunk.trySplit();
+				if ( prefix != null )
+				{
+					final CountTask< C > first = createTask( prefix );
+					final CountTask< C > second = createTask( chunk );
+					first.fork();
+					final C b = second.compute();
+					final C a = first.join();
+					return merge( a, b );
+				}
+			}
+
+			final int n = mappers.size();
+			final C counts = createCounts();
+			final List< BinMapper1d< T >> m = new ArrayList< BinMapper1d< T >>();
+			final List< ChunkCursor< T >> cursors = new ArrayList< ChunkCursor< T >>();
+			final long[] steps = new long[ n ];
+			long step = 1;
+			for ( int d = 0; d < n; d++ )
+			{
+				m.add( mappers.get( d ).copy() );
+				cursors.add( new ChunkCursor< T >( sources.get( d ).cursor(), chunk.offset(), chunk.size() ) );
+				steps[ d ] = step;
+				step *= distrib.dimension( d );
+			}
+			for ( long i = 0; i < chunk.size(); i++ )
+			{
+				long index = 0;
+				boolean ignored = false;
+				for ( int d = 0; d < n; d++ )
+				{
+					final long bin = m.get( d ).map( cursors.get( d ).next() );
+					if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+						ignored = true;
+					else
+						index += bin * steps[ d ];
+				}
+				if ( ignored )
+					ignore( counts );
+				else
+					count( counts, index );
+			}
+			return counts;
+		}
+	}
+
+	/**
+	 * Counts into a <code>long[]</code> with one entry per bin in flat order,
+	 * followed by the count of ignored values.
+	 */
+	private class DenseCountTask extends CountTask< long[] >
+	{
+		private static final long serialVersionUID = 1L;
+
+		DenseCountTask( final List< IterableInterval< T >> sources, final Chunk< T > chunk, final long threshold )
+		{
+			super( sources, chunk, threshold );
+		}
+
+		@Override
+		DenseCountTask createTask( final Chunk< T > c )
+		{
+			return new DenseCountTask( sources, c, threshold );
+		}
+
+		@SuppressWarnings( "synthetic-access" )
+		@Override
+		long[] createCounts()
+		{
+			return new long[ ( int ) distrib.size() + 1 ];
+		}
+
+		@Override
+		long[] merge( final long[] a, final long[] b )
+		{
+			for ( int i = 0; i < a.length; i++ )
+				a[ i ] += b[ i ];
+			return a;
+		}
+
+		@Override
+		void count( final long[] counts, final long index )
+		{
+			counts[ ( int ) index ]++;
+		}
+
+		@Override
+		void ignore( final long[] counts )
+		{
+			counts[ counts.length - 1 ]++;
+		}
+	}
+
+	/**
+	 * Counts of the occupied bins and of ignored values, for sparse
+	 * distributions.
+	 */
+	private static final class SparseCounts
+	{
+		final LongLongHashMap bins = new LongLongHashMap();
+
+		long ignored;
+	}
+
+	/**
+	 * Counts into a hash map keyed by flat bin index, so that memory is
+	 * proportional to the number of occupied bins.
+	 */
+	private class SparseCountTask extends CountTask< SparseCounts >
+	{
+		private static final long serialVersionUID = 1L;
+
+		SparseCountTask( final List< IterableInterval< T >> sources, final Chunk< T > chunk, final long threshold )
+		{
+			super( sources, chunk, threshold );
+		}
+
+		@Override
+		SparseCountTask createTask( final Chunk< T > c )
+		{
+			return new SparseCountTask( sources, c, threshold );
+		}
+
+		@Override
+		SparseCounts createCounts()
+		{
+			return new SparseCounts();
+		}
+
+		@Override
+		SparseCounts merge( final SparseCounts a, final SparseCounts b )
+		{
+			final LongLongHashMap bins = b.bins;
+			for ( int i = 0; i < bins.capacity(); i++ )
+			{
+				final long key = bins.keyAt( i );
+				if ( key >= 0 )
+					a.bins.add( key, bins.valueAt( i ) );
+			}
+			a.ignored += b.ignored;
+			return a;
+		}
+
+		@Override
+		void count( final SparseCounts counts, final long index )
+		{
+			counts.bins.add( index, 1 );
+		}
+
+		@Override
+		void ignore( final SparseCounts counts )
+		{
+			counts.ignored++;
+		}
+	}
+
 }
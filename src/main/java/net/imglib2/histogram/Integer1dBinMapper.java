@@ -201,6 +201,23 @@ public class Integer1dBinMapper< T extends IntegerType< T >> implements
 		return new Integer1dBinMapper< T >( minVal, bins, tailBins );
 	}
 
+	@Override
+	public boolean equals( final Object obj )
+	{
+		if ( !( obj instanceof Integer1dBinMapper ) )
+			return false;
+		final Integer1dBinMapper< ? > other = ( Integer1dBinMapper< ? > ) obj;
+		return bins == other.bins && tailBins == other.tailBins && minVal == other.minVal;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = ( int ) ( bins ^ ( bins >>> 32 ) );
+		hash = 31 * hash + ( int ) ( minVal ^ ( minVal >>> 32 ) );
+		return 31 * hash + ( tailBins ? 1 : 0 );
+	}
+
 	/**
 	 * This is a convenience method for creating a {@link HistogramNd} from
 	 * inputs that describe a set of integer 1-d based bin mappers. The inputs
@@ -0,0 +1,275 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.Arrays;
+
+/**
+ * Map from non-negative <code>long</code> keys to non-zero <code>long</code>
+ * values, with open addressing and linear probing in primitive arrays. Keys
+ * that are not in the map have value 0, and entries whose value becomes 0
+ * are removed. Used for sparse frequency counts keyed by linearized bin
+ * index.
+ * 
+ * <p>
+ * Entries are iterated by slot: for {@code 0 <= i < capacity()}, slot
+ * {@code i} is occupied if {@code keyAt(i) >= 0}.
+ * </p>
+ * 
+ * @author agent
+ */
+final class LongLongHashMap
+{
+	private static final long EMPTY = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+
+	private long[] values;
+
+	private int mask;
+
+	private int size;
+
+	/**
+	 * The table is grown when {@link #size} reaches this (3/4 of capacity).
+	 */
+	private int growAt;
+
+	LongLongHashMap()
+	{
+		allocate( INITIAL_CAPACITY );
+	}
+
+	private LongLongHashMap( final LongLongHashMap map )
+	{
+		keys = map.keys.clone();
+		values = map.values.clone();
+		mask = map.mask;
+		size = map.size;
+		growAt = map.growAt;
+	}
+
+	/**
+	 * Returns an independent copy of this map.
+	 */
+	LongLongHashMap copy()
+	{
+		return new LongLongHashMap( this );
+	}
+
+	/**
+	 * Returns the number of entries.
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of slots.
+	 */
+	int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Returns the key in slot {@code i}, or a negative value if the slot is
+	 * empty.
+	 */
+	long keyAt( final int i )
+	{
+		return keys[ i ];
+	}
+
+	/**
+	 * Returns the value in slot {@code i}.
+	 */
+	long valueAt( final int i )
+	{
+		return values[ i ];
+	}
+
+	/**
+	 * Returns the value of {@code key}, or 0 if it is not in the map.
+	 */
+	long get( final long key )
+	{
+		for ( int i = slot( key );; i = ( i + 1 ) & mask )
+		{
+			final long k = keys[ i ];
+			if ( k == key )
+				return values[ i ];
+			if ( k == EMPTY )
+				return 0;
+		}
+	}
+
+	/**
+	 * Sets the value of {@code key}.
+	 * 
+	 * @return the previous value.
+	 */
+	long put( final long key, final long value )
+	{
+		final int i = find( key );
+		final long previous = values[ i ];
+		store( i, key, value );
+		return previous;
+	}
+
+	/**
+	 * Adds {@code delta} to the value of {@code key}.
+	 * 
+	 * @return the new value.
+	 */
+	long add( final long key, final long delta )
+	{
+		final int i = find( key );
+		final long value = values[ i ] + delta;
+		store( i, key, value );
+		return value;
+	}
+
+	/**
+	 * Removes all entries and releases the table.
+	 */
+	void clear()
+	{
+		allocate( INITIAL_CAPACITY );
+	}
+
+	private void allocate( final int capacity )
+	{
+		keys = new long[ capacity ];
+		Arrays.fill( keys, EMPTY );
+		values = new long[ capacity ];
+		mask = capacity - 1;
+		size = 0;
+		growAt = capacity - capacity / 4;
+	}
+
+	private int slot( final long key )
+	{
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return ( int ) ( h ^ ( h >>> 32 ) ) & mask;
+	}
+
+	/**
+	 * Returns the slot holding {@code key}, or the empty slot where it would
+	 * be inserted (with value 0).
+	 */
+	private int find( final long key )
+	{
+		for ( int i = slot( key );; i = ( i + 1 ) & mask )
+		{
+			final long k = keys[ i ];
+			if ( k == key || k == EMPTY )
+				return i;
+		}
+	}
+
+	/**
+	 * Store {@code value} for {@code key} in slot {@code i} found by
+	 * {@link #find(long)}, inserting or removing the entry as necessary.
+	 */
+	private void store( final int i, final long key, final long value )
+	{
+		if ( keys[ i ] == EMPTY )
+		{
+			if ( value != 0 )
+			{
+				keys[ i ] = key;
+				values[ i ] = value;
+				if ( ++size >= growAt )
+					grow();
+			}
+		}
+		else if ( value == 0 )
+			remove( i );
+		else
+			values[ i ] = value;
+	}
+
+	/**
+	 * Remove the entry in slot {@code i}, shifting back entries of the
+	 * following probe sequence, such that no tombstones are needed.
+	 */
+	private void remove( final int slot )
+	{
+		int i = slot;
+		int j = i;
+		while ( true )
+		{
+			j = ( j + 1 ) & mask;
+			final long k = keys[ j ];
+			if ( k == EMPTY )
+				break;
+			final int home = slot( k );
+			// entry j can stay if its home slot is cyclically in (i, j]
+			final boolean stays = i <= j ? ( i < home && home <= j ) : ( i < home || home <= j );
+			if ( !stays )
+			{
+				keys[ i ] = k;
+				values[ i ] = values[ j ];
+				i = j;
+			}
+		}
+		keys[ i ] = EMPTY;
+		values[ i ] = 0;
+		--size;
+	}
+
+	private void grow()
+	{
+		final long[] oldKeys = keys;
+		final long[] oldValues = values;
+		final int oldSize = size;
+		allocate( oldKeys.length * 2 );
+		for ( int i = 0; i < oldKeys.length; ++i )
+		{
+			final long k = oldKeys[ i ];
+			if ( k != EMPTY )
+			{
+				final int s = find( k );
+				keys[ s ] = k;
+				values[ s ] = oldValues[ i ];
+			}
+		}
+		size = oldSize;
+	}
+}
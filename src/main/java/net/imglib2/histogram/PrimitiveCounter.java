@@ -0,0 +1,356 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Counts values of {@link ArrayImg ArrayImgs} and {@link PlanarImg
+ * PlanarImgs} directly on their primitive arrays, in parallel.
+ * 
+ * <ul>
+ * <li>{@link UnsignedByteType} and {@link UnsignedShortType} values are
+ * counted into a dense <code>int[]</code> with one entry per possible value.
+ * Every value is then mapped to its bin once, so any {@link BinMapper1d} can
+ * be used.</li>
+ * <li>{@link FloatType} and {@link DoubleType} values are mapped with
+ * {@link Real1dBinMapper#map(double)}.</li>
+ * </ul>
+ * 
+ * @author agent
+ */
+final class PrimitiveCounter
+{
+	private PrimitiveCounter()
+	{}
+
+	private static final int UNSIGNED_BYTE = 0;
+
+	private static final int UNSIGNED_SHORT = 1;
+
+	private static final int FLOAT = 2;
+
+	private static final int DOUBLE = 3;
+
+	/**
+	 * Ranges are not split below this number of elements.
+	 */
+	private static final long MIN_TASK_SIZE = 1 << 16;
+
+	/**
+	 * Ranges are always split above this number of elements, so that
+	 * <code>int</code> counts cannot overflow.
+	 */
+	private static final long MAX_TASK_SIZE = 1 << 30;
+
+	/**
+	 * Number of tasks per thread of the pool.
+	 */
+	private static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * Count {@code data} into the bins of {@code mapper}.
+	 * 
+	 * @return the count of every bin, followed by the count of ignored values,
+	 *         or {@code null} if {@code data} is not supported.
+	 */
+	@SuppressWarnings( "unchecked" )
+	static < T > long[] count( final IterableInterval< T > data, final BinMapper1d< T > mapper, final ForkJoinPool pool )
+	{
+		if ( data.size() == 0 )
+			return null;
+		final Class< ? > typeClass = data.firstElement().getClass();
+		final int kind;
+		if ( typeClass == UnsignedByteType.class )
+			kind = UNSIGNED_BYTE;
+		else if ( typeClass == UnsignedShortType.class && data.size() >= 1 << 16 )
+			kind = UNSIGNED_SHORT;
+		else if ( typeClass == FloatType.class && mapper.getClass() == Real1dBinMapper.class )
+			kind = FLOAT;
+		else if ( typeClass == DoubleType.class && mapper.getClass() == Real1dBinMapper.class )
+			kind = DOUBLE;
+		else
+			return null;
+
+		final Object[] arrays = arrays( data, kind );
+		if ( arrays == null )
+			return null;
+
+		final int binCount = ( int ) mapper.getBinCount();
+		final long size = data.size();
+		final long numTasks = ( long ) pool.getParallelism() * TASKS_PER_THREAD;
+		final long threshold = Math.min( Math.max( ( size + numTasks - 1 ) / numTasks, MIN_TASK_SIZE ), MAX_TASK_SIZE );
+		final int planeSize = arrayLength( arrays[ 0 ], kind );
+		final Real1dBinMapper< ? > realMapper = kind == FLOAT || kind == DOUBLE ? ( Real1dBinMapper< ? > ) mapper : null;
+		final int resultLength = kind == UNSIGNED_BYTE ? 256 : kind == UNSIGNED_SHORT ? 65536 : binCount + 1;
+		final long[] result = pool.invoke( new CountTask( arrays, planeSize, kind, realMapper, resultLength, 0, size, threshold ) );
+
+		if ( realMapper != null )
+			return result;
+
+		// map every value to its bin
+		final long[] counts = new long[ binCount + 1 ];
+		final UnsignedByteType byteValue = new UnsignedByteType();
+		final UnsignedShortType shortValue = new UnsignedShortType();
+		for ( int v = 0; v < result.length; ++v )
+		{
+			if ( result[ v ] == 0 )
+				continue;
+			final long bin;
+			if ( kind == UNSIGNED_BYTE )
+			{
+				byteValue.set( v );
+				bin = mapper.map( ( T ) byteValue );
+			}
+			else
+			{
+				shortValue.set( v );
+				bin = mapper.map( ( T ) shortValue );
+			}
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				counts[ binCount ] += result[ v ];
+			else
+				counts[ ( int ) bin ] += result[ v ];
+		}
+		return counts;
+	}
+
+	/**
+	 * Get the primitive arrays of {@code data} in iteration order, or
+	 * {@code null} if it is not an {@link ArrayImg} or {@link PlanarImg} of
+	 * arrays matching {@code kind}.
+	 */
+	private static Object[] arrays( final IterableInterval< ? > data, final int kind )
+	{
+		final Object[] arrays;
+		if ( data.getClass() == ArrayImg.class )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) data ).update( null );
+			if ( !( access instanceof ArrayDataAccess ) )
+				return null;
+			arrays = new Object[] { ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray() };
+		}
+		else if ( data.getClass() == PlanarImg.class )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) data;
+			arrays = new Object[ img.numSlices() ];
+			for ( int i = 0; i < arrays.length; ++i )
+			{
+				final Object plane = img.getPlane( i );
+				if ( !( plane instanceof ArrayDataAccess ) )
+					return null;
+				arrays[ i ] = ( ( ArrayDataAccess< ? > ) plane ).getCurrentStorageArray();
+			}
+		}
+		else
+			return null;
+
+		for ( final Object array : arrays )
+		{
+			final boolean matches;
+			switch ( kind )
+			{
+			case UNSIGNED_BYTE:
+				matches = array instanceof byte[];
+				break;
+			case UNSIGNED_SHORT:
+				matches = array instanceof short[];
+				break;
+			case FLOAT:
+				matches = array instanceof float[];
+				break;
+			default:
+				matches = array instanceof double[];
+			}
+			if ( !matches || arrayLength( array, kind ) != arrayLength( arrays[ 0 ], kind ) )
+				return null;
+		}
+		return arrays;
+	}
+
+	private static int arrayLength( final Object array, final int kind )
+	{
+		switch ( kind )
+		{
+		case UNSIGNED_BYTE:
+			return ( ( byte[] ) array ).length;
+		case UNSIGNED_SHORT:
+			return ( ( short[] ) array ).length;
+		case FLOAT:
+			return ( ( float[] ) array ).length;
+		default:
+			return ( ( double[] ) array ).length;
+		}
+	}
+
+	/**
+	 * Counts elements <code>from</code>...<code>to-1</code> of the
+	 * concatenated arrays, splitting the range in halves and counting them in
+	 * parallel if it is large.
+	 */
+	private static final class CountTask extends RecursiveTask< long[] >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Object[] arrays;
+
+		private final int planeSize;
+
+		private final int kind;
+
+		private final Real1dBinMapper< ? > mapper;
+
+		private final int resultLength;
+
+		private final long from;
+
+		private final long to;
+
+		private final long threshold;
+
+		CountTask( final Object[] arrays, final int planeSize, final int kind, final Real1dBinMapper< ? > mapper, final int resultLength, final long from, final long to, final long threshold )
+		{
+			this.arrays = arrays;
+			this.planeSize = planeSize;
+			this.kind = kind;
+			this.mapper = mapper;
+			this.resultLength = resultLength;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected long[] compute()
+		{
+			if ( to - from > threshold )
+			{
+				final long m = ( from + to ) >>> 1;
+				final CountTask first = new CountTask( arrays, planeSize, kind, mapper, resultLength, from, m, threshold );
+				final CountTask second = new CountTask( arrays, planeSize, kind, mapper, resultLength, m, to, threshold );
+				first.fork();
+				final long[] b = second.compute();
+				final long[] a = first.join();
+				for ( int i = 0; i < a.length; ++i )
+					a[ i ] += b[ i ];
+				return a;
+			}
+
+			final long[] result = new long[ resultLength ];
+			final int[] counts = kind == UNSIGNED_BYTE || kind == UNSIGNED_SHORT ? new int[ resultLength ] : null;
+			for ( long i = from; i < to; )
+			{
+				final int plane = ( int ) ( i / planeSize );
+				final int start = ( int ) ( i - ( long ) plane * planeSize );
+				final int end = ( int ) Math.min( planeSize, start + ( to - i ) );
+				switch ( kind )
+				{
+				case UNSIGNED_BYTE:
+					count( ( byte[] ) arrays[ plane ], start, end, counts );
+					break;
+				case UNSIGNED_SHORT:
+					count( ( short[] ) arrays[ plane ], start, end, counts );
+					break;
+				case FLOAT:
+					count( ( float[] ) arrays[ plane ], start, end, mapper, result );
+					break;
+				default:
+					count( ( double[] ) arrays[ plane ], start, end, mapper, result );
+				}
+				i += end - start;
+			}
+			if ( counts != null )
+				for ( int v = 0; v < resultLength; ++v )
+					result[ v ] = counts[ v ];
+			return result;
+		}
+	}
+
+	private static void count( final byte[] a, final int start, final int end, final int[] counts )
+	{
+		for ( int j = start; j < end; ++j )
+			++counts[ a[ j ] & 0xff ];
+	}
+
+	private static void count( final short[] a, final int start, final int end, final int[] counts )
+	{
+		for ( int j = start; j < end; ++j )
+			++counts[ a[ j ] & 0xffff ];
+	}
+
+	/**
+	 * Count into the bins of {@code mapper}, with ignored values counted in
+	 * the last entry of {@code counts}.
+	 */
+	private static void count( final float[] a, final int start, final int end, final Real1dBinMapper< ? > mapper, final long[] counts )
+	{
+		final int ignored = counts.length - 1;
+		for ( int j = start; j < end; ++j )
+		{
+			final long bin = mapper.map( a[ j ] );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				++counts[ ignored ];
+			else
+				++counts[ ( int ) bin ];
+		}
+	}
+
+	/**
+	 * Count into the bins of {@code mapper}, with ignored values counted in
+	 * the last entry of {@code counts}.
+	 */
+	private static void count( final double[] a, final int start, final int end, final Real1dBinMapper< ? > mapper, final long[] counts )
+	{
+		final int ignored = counts.length - 1;
+		for ( int j = start; j < end; ++j )
+		{
+			final long bin = mapper.map( a[ j ] );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				++counts[ ignored ];
+			else
+				++counts[ ( int ) bin ];
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.Arrays;
+
+/**
+ * Counts of values in a fixed number of bins, supporting increments,
+ * decrements, and rank queries in O(log binCount). Cumulative counts are
+ * maintained in a Fenwick (binary indexed) tree.
+ * 
+ * <p>
+ * The rank of a value is its 0-based index in the sorted sequence of all
+ * counted values. For example, if <em>n</em> values are counted, rank 0 is
+ * in the lowest occupied bin, rank <em>n</em>-1 in the highest, and rank
+ * (<em>n</em>-1)/2 is the (lower) median.
+ * </p>
+ * 
+ * @author agent
+ */
+public final class RankCounter
+{
+	private final int binCount;
+
+	/**
+	 * Frequency of each bin.
+	 */
+	private final long[] counts;
+
+	/**
+	 * Fenwick tree. Element {@code i} (1-based) holds the sum of counts of
+	 * bins {@code i - (i & -i)} ... {@code i-1}.
+	 */
+	private final long[] tree;
+
+	/**
+	 * Largest power of two not exceeding {@link #binCount}, to start the
+	 * rank descent in {@link #binOfRank(long)}.
+	 */
+	private final int topStep;
+
+	private long totalCount;
+
+	/**
+	 * Create a counter for {@code binCount} bins, with all counts zero.
+	 */
+	public RankCounter( final int binCount )
+	{
+		if ( binCount <= 0 )
+			throw new IllegalArgumentException( "invalid bin count (<= 0)" );
+		this.binCount = binCount;
+		counts = new long[ binCount ];
+		tree = new long[ binCount + 1 ];
+		topStep = Integer.highestOneBit( binCount );
+		totalCount = 0;
+	}
+
+	/**
+	 * Returns the number of bins.
+	 */
+	public int getBinCount()
+	{
+		return binCount;
+	}
+
+	/**
+	 * Resets all counts to zero.
+	 */
+	public void reset()
+	{
+		Arrays.fill( counts, 0 );
+		Arrays.fill( tree, 0 );
+		totalCount = 0;
+	}
+
+	/**
+	 * Increments the count of the given bin.
+	 */
+	public void increment( final int bin )
+	{
+		add( bin, 1 );
+	}
+
+	/**
+	 * Decrements the count of the given bin.
+	 */
+	public void decrement( final int bin )
+	{
+		add( bin, -1 );
+	}
+
+	/**
+	 * Adds {@code delta} to the count of the given bin. The resulting count
+	 * must not be negative.
+	 */
+	public void add( final int bin, final long delta )
+	{
+		counts[ bin ] += delta;
+		totalCount += delta;
+		for ( int i = bin + 1; i <= binCount; i += i & -i )
+			tree[ i ] += delta;
+	}
+
+	/**
+	 * Returns the count of the given bin.
+	 */
+	public long frequency( final int bin )
+	{
+		return counts[ bin ];
+	}
+
+	/**
+	 * Returns the sum of counts of all bins.
+	 */
+	public long totalCount()
+	{
+		return totalCount;
+	}
+
+	/**
+	 * Returns the sum of counts of bins {@code 0} ... {@code bin-1}, i.e., the
+	 * number of counted values that lie in bins below {@code bin}.
+	 */
+	public long countBelow( final int bin )
+	{
+		long sum = 0;
+		for ( int i = bin; i > 0; i -= i & -i )
+			sum += tree[ i ];
+		return sum;
+	}
+
+	/**
+	 * Returns the bin containing the value with the given rank, i.e., the
+	 * smallest bin {@code b} with {@code countBelow(b+1) > rank}.
+	 * 
+	 * @param rank
+	 *            0-based rank, in the range 0 ... {@link #totalCount()}-1.
+	 * @return the bin, or -1 if {@code rank} is out of range.
+	 */
+	public int binOfRank( final long rank )
+	{
+		if ( rank < 0 || rank >= totalCount )
+			return -1;
+		int pos = 0;
+		long remaining = rank;
+		for ( int step = topStep; step > 0; step >>= 1 )
+		{
+			final int next = pos + step;
+			if ( next <= binCount && tree[ next ] <= remaining )
+			{
+				pos = next;
+				remaining -= tree[ next ];
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the bin containing the value at the given percentile. The
+	 * percentile {@code p} is mapped to rank
+	 * {@code floor(p * (totalCount()-1))}, such that 0 yields the lowest
+	 * occupied bin, 1 the highest occupied bin, and 0.5 the (lower) median.
+	 * 
+	 * @param p
+	 *            percentile in [0, 1].
+	 * @return the bin, or -1 if no values are counted.
+	 */
+	public int binOfPercentile( final double p )
+	{
+		if ( p < 0 || p > 1 )
+			throw new IllegalArgumentException( "percentile must be in [0, 1]" );
+		return binOfRank( ( long ) ( p * ( totalCount - 1 ) ) );
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.parallel.Parallel;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+
+/**
+ * Rank filters (median, minimum, maximum, percentile) over box-shaped
+ * neighborhoods, computed with a {@link SlidingWindowHistogram} that slides
+ * along every line of the target in dimension 0. Lines are filtered in
+ * parallel.
+ * 
+ * <p>
+ * Filtered values are the {@link BinMapper1d#getCenterValue(long, Object)
+ * center values} of the selected bins. For integer data mapped by an
+ * {@link Integer1dBinMapper} with one bin per value, this is the exact rank
+ * value. Target values are left unchanged where all values in the window map
+ * outside the bins.
+ * </p>
+ * 
+ * @author agent
+ */
+public class RankFilters
+{
+	/**
+	 * Lines are not split between tasks below this number of elements.
+	 */
+	private static final long PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * Median filter, using the {@link Parallel#defaultPool() default pool}.
+	 * 
+	 * @see #percentile(RandomAccessible, RandomAccessibleInterval, long[],
+	 *      BinMapper1d, double, ForkJoinPool)
+	 */
+	public static < T > void median( final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final long[] radius, final BinMapper1d< T > mapper )
+	{
+		percentile( source, target, radius, mapper, 0.5, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Minimum filter, using the {@link Parallel#defaultPool() default pool}.
+	 * 
+	 * @see #percentile(RandomAccessible, RandomAccessibleInterval, long[],
+	 *      BinMapper1d, double, ForkJoinPool)
+	 */
+	public static < T > void min( final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final long[] radius, final BinMapper1d< T > mapper )
+	{
+		percentile( source, target, radius, mapper, 0, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Maximum filter, using the {@link Parallel#defaultPool() default pool}.
+	 * 
+	 * @see #percentile(RandomAccessible, RandomAccessibleInterval, long[],
+	 *      BinMapper1d, double, ForkJoinPool)
+	 */
+	public static < T > void max( final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final long[] radius, final BinMapper1d< T > mapper )
+	{
+		percentile( source, target, radius, mapper, 1, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Percentile filter, using the {@link Parallel#defaultPool() default
+	 * pool}.
+	 * 
+	 * @see #percentile(RandomAccessible, RandomAccessibleInterval, long[],
+	 *      BinMapper1d, double, ForkJoinPool)
+	 */
+	public static < T > void percentile( final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final long[] radius, final BinMapper1d< T > mapper, final double p )
+	{
+		percentile( source, target, radius, mapper, p, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Percentile filter. Every target value is set to the value at percentile
+	 * {@code p} of the source values in the box of the given radius around
+	 * the same position, see {@link RankCounter#binOfPercentile(double)}.
+	 * 
+	 * @param source
+	 *            values to filter. Must be defined in the target interval
+	 *            expanded by {@code radius}, e.g., extended by an
+	 *            out-of-bounds strategy.
+	 * @param target
+	 *            filtered values are written here. Must not be (a view of)
+	 *            the source, because windows would read values that were
+	 *            already filtered. Only passing the very same object as
+	 *            source and target is detected; views sharing the source's
+	 *            data are not.
+	 * @param radius
+	 *            radius of the box neighborhood in every dimension.
+	 * @param mapper
+	 *            maps values to bins. Its resolution determines the
+	 *            resolution of the result.
+	 * @param p
+	 *            percentile in [0, 1]. 0 is minimum, 0.5 is median, 1 is
+	 *            maximum.
+	 * @param pool
+	 *            the pool on which lines are filtered.
+	 */
+	public static < T > void percentile( final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final long[] radius, final BinMapper1d< T > mapper, final double p, final ForkJoinPool pool )
+	{
+		if ( p < 0 || p > 1 )
+			throw new IllegalArgumentException( "percentile must be in [0, 1]" );
+		if ( source.numDimensions() != target.numDimensions() )
+			throw new IllegalArgumentException( "source and target have different dimensions" );
+		if ( source == target )
+			throw new IllegalArgumentException( "source and target must not be the same image" );
+		if ( Intervals.numElements( target ) == 0 )
+			return;
+
+		final long length = target.dimension( 0 );
+		final long numLines = Intervals.numElements( target ) / length;
+		final LineTask< T > task = new LineTask< T >( source, target, radius, mapper, p, 0, numLines );
+		if ( numLines * length > PARALLEL_THRESHOLD )
+			pool.invoke( task );
+		else
+			task.compute();
+	}
+
+	/**
+	 * Filter lines <code>from</code>...<code>to-1</code> in dimension 0,
+	 * splitting the range in halves and processing them in parallel if it is
+	 * large.
+	 */
+	private static final class LineTask< T > extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final RandomAccessible< T > source;
+
+		private final RandomAccessibleInterval< T > target;
+
+		private final long[] radius;
+
+		private final BinMapper1d< T > mapper;
+
+		private final double p;
+
+		private final long from;
+
+		private final long to;
+
+		LineTask( final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final long[] radius, final BinMapper1d< T > mapper, final double p, final long from, final long to )
+		{
+			this.source = source;
+			this.target = target;
+			this.radius = radius;
+			this.mapper = mapper;
+			this.p = p;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			final long length = target.dimension( 0 );
+			if ( ( to - from ) * length <= PARALLEL_THRESHOLD || to - from < 2 )
+			{
+				final int n = target.numDimensions();
+				final long[] lineDimensions = new long[ n - 1 ];
+				for ( int d = 1; d < n; ++d )
+					lineDimensions[ d - 1 ] = target.dimension( d );
+				final long[] lineIndex = new long[ n - 1 ];
+				final long[] position = new long[ n ];
+
+				final SlidingWindowHistogram< T > window = new SlidingWindowHistogram< T >( source, mapper.copy(), radius );
+				final RandomAccess< T > out = target.randomAccess();
+				for ( long l = from; l < to; ++l )
+				{
+					IntervalIndexer.indexToPosition( l, lineDimensions, lineIndex );
+					position[ 0 ] = target.min( 0 );
+					for ( int d = 1; d < n; ++d )
+						position[ d ] = target.min( d ) + lineIndex[ d - 1 ];
+					window.setPosition( position );
+					out.setPosition( position );
+					for ( long x = 0; x < length; ++x )
+					{
+						if ( x > 0 )
+						{
+							window.fwd( 0 );
+							out.fwd( 0 );
+						}
+						final long bin = window.percentileBin( p );
+						if ( bin >= 0 )
+							window.getCenterValue( bin, out.get() );
+					}
+				}
+			}
+			else
+			{
+				final long m = ( from + to ) >>> 1;
+				invokeAll( new LineTask< T >( source, target, radius, mapper, p, from, m ), new LineTask< T >( source, target, radius, mapper, p, m, to ) );
+			}
+		}
+	}
+}
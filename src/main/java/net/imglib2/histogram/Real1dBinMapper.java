@@ -115,12 +115,20 @@ public class Real1dBinMapper< T extends RealType< T >> implements BinMapper1d< T
 	@Override
 	public long map( final T value )
 	{
-		final double val = value.getRealDouble();
+		return map( value.getRealDouble() );
+	}
+
+	/**
+	 * Maps a primitive value to a bin, see {@link #map(RealType)}.
+	 */
+	long map( final double val )
+	{
 		long pos;
 		if ( val >= minVal && val <= maxVal )
 		{
+			// bin >= 0, so truncation is floor
 			final double bin = ( val - minVal ) / binWidth;
-			pos = ( long ) Math.floor( bin );
+			pos = ( long ) bin;
 			// catch out of bounds which can happen for edge values and roundoff
 			// errs
 			if ( pos >= interiorBins )
@@ -199,6 +207,27 @@ public class Real1dBinMapper< T extends RealType< T >> implements BinMapper1d< T
 		return new Real1dBinMapper< T >( minVal, maxVal, bins, tailBins );
 	}
 
+	@Override
+	public boolean equals( final Object obj )
+	{
+		if ( !( obj instanceof Real1dBinMapper ) )
+			return false;
+		final Real1dBinMapper< ? > other = ( Real1dBinMapper< ? > ) obj;
+		return bins == other.bins && tailBins == other.tailBins &&
+				Double.compare( minVal, other.minVal ) == 0 && Double.compare( maxVal, other.maxVal ) == 0;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = ( int ) ( bins ^ ( bins >>> 32 ) );
+		final long min = Double.doubleToLongBits( minVal );
+		final long max = Double.doubleToLongBits( maxVal );
+		hash = 31 * hash + ( int ) ( min ^ ( min >>> 32 ) );
+		hash = 31 * hash + ( int ) ( max ^ ( max >>> 32 ) );
+		return 31 * hash + ( tailBins ? 1 : 0 );
+	}
+
 	/**
 	 * This is a convenience method for creating a {@link HistogramNd} from
 	 * inputs that describe a set of real 1-d based bin mappers. The inputs
@@ -0,0 +1,354 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+
+/**
+ * Histogram of the values in a box-shaped window, that can be moved over a
+ * {@link RandomAccessible} one step at a time. When the window moves, only the
+ * hyperplane of values leaving the window is removed and only the hyperplane
+ * of values entering the window is added. Bin counts are kept in a
+ * {@link RankCounter}, so that rank and percentile queries (median, minimum,
+ * maximum, ...) take O(log binCount).
+ * 
+ * <p>
+ * The window is centered at the current position and extends
+ * {@code radius[d]} samples in both directions in every dimension
+ * {@code d}. The source must be defined for all positions that are visited,
+ * e.g., extended by an out-of-bounds strategy. Values that map outside the
+ * bins of the {@link BinMapper1d} (if it has no tails) are not counted, see
+ * {@link #ignoredCount()}.
+ * </p>
+ * 
+ * <p>
+ * Values are counted lazily: the window is counted on the first query after
+ * construction or {@link #setPosition(long[])}, so only positions that are
+ * actually queried need to be defined in the source.
+ * </p>
+ * 
+ * @author agent
+ */
+public class SlidingWindowHistogram< T >
+{
+	private final int n;
+
+	private final RandomAccess< T > access;
+
+	private final BinMapper1d< T > mapper;
+
+	private final RankCounter counter;
+
+	private final long binCount;
+
+	private final long[] radius;
+
+	private final long[] position;
+
+	private final long[] min;
+
+	private final long[] max;
+
+	private final long[] tmp;
+
+	private long ignoredCount;
+
+	/**
+	 * Whether {@link #counter} and {@link #ignoredCount} hold the counts of
+	 * the window at the current position.
+	 */
+	private boolean counted;
+
+	/**
+	 * Create a window histogram over {@code source}, positioned at the
+	 * origin. No values are counted until the window is queried, so the
+	 * source does not need to be defined around the origin if the window is
+	 * moved first.
+	 * 
+	 * @param source
+	 *            the values to count.
+	 * @param mapper
+	 *            maps values to bins. At most {@link Integer#MAX_VALUE} bins
+	 *            are supported.
+	 * @param radius
+	 *            the radius of the window in every dimension.
+	 */
+	public SlidingWindowHistogram( final RandomAccessible< T > source, final BinMapper1d< T > mapper, final long[] radius )
+	{
+		n = source.numDimensions();
+		if ( radius.length != n )
+			throw new IllegalArgumentException( "radius has wrong number of dimensions" );
+		for ( int d = 0; d < n; ++d )
+			if ( radius[ d ] < 0 )
+				throw new IllegalArgumentException( "invalid radius (< 0)" );
+		binCount = mapper.getBinCount();
+		if ( binCount > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many bins for a sliding window histogram" );
+		this.access = source.randomAccess();
+		this.mapper = mapper;
+		this.counter = new RankCounter( ( int ) binCount );
+		this.radius = radius.clone();
+		position = new long[ n ];
+		min = new long[ n ];
+		max = new long[ n ];
+		tmp = new long[ n ];
+		setPosition( position );
+	}
+
+	/**
+	 * Move the window to be centered at {@code position}. All values in the
+	 * window are counted anew on the next query.
+	 */
+	public void setPosition( final long[] position )
+	{
+		counted = false;
+		for ( int d = 0; d < n; ++d )
+		{
+			this.position[ d ] = position[ d ];
+			min[ d ] = position[ d ] - radius[ d ];
+			max[ d ] = position[ d ] + radius[ d ];
+		}
+	}
+
+	/**
+	 * Move the window one step forward in dimension {@code d}.
+	 */
+	public void fwd( final int d )
+	{
+		if ( counted )
+			move( d, max[ d ] + 1, min[ d ] );
+		else
+		{
+			++min[ d ];
+			++max[ d ];
+		}
+		++position[ d ];
+	}
+
+	/**
+	 * Move the window one step backward in dimension {@code d}.
+	 */
+	public void bck( final int d )
+	{
+		if ( counted )
+			move( d, min[ d ] - 1, max[ d ] );
+		else
+		{
+			--min[ d ];
+			--max[ d ];
+		}
+		--position[ d ];
+	}
+
+	/**
+	 * Returns the center of the window in dimension {@code d}.
+	 */
+	public long getLongPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	/**
+	 * Returns the number of values in the window that are counted in bins.
+	 */
+	public long valueCount()
+	{
+		count();
+		return counter.totalCount();
+	}
+
+	/**
+	 * Returns the number of values in the window that map outside the bins.
+	 */
+	public long ignoredCount()
+	{
+		count();
+		return ignoredCount;
+	}
+
+	/**
+	 * Returns the number of bins.
+	 */
+	public long getBinCount()
+	{
+		return binCount;
+	}
+
+	/**
+	 * Returns the number of values in the window that map to the given bin.
+	 */
+	public long frequency( final long binPos )
+	{
+		count();
+		return counter.frequency( ( int ) binPos );
+	}
+
+	/**
+	 * Returns the bin containing the value with the given (0-based) rank
+	 * among the counted values in the window, or -1 if the rank is out of
+	 * range.
+	 */
+	public long rankBin( final long rank )
+	{
+		count();
+		return counter.binOfRank( rank );
+	}
+
+	/**
+	 * Returns the bin containing the value at percentile {@code p} in [0,1]
+	 * among the counted values in the window, or -1 if no values are
+	 * counted. See {@link RankCounter#binOfPercentile(double)}.
+	 */
+	public long percentileBin( final double p )
+	{
+		count();
+		return counter.binOfPercentile( p );
+	}
+
+	/**
+	 * Returns the bin containing the (lower) median of the counted values in
+	 * the window, or -1 if no values are counted.
+	 */
+	public long medianBin()
+	{
+		count();
+		return counter.binOfRank( ( counter.totalCount() - 1 ) / 2 );
+	}
+
+	/**
+	 * Returns the lowest occupied bin, or -1 if no values are counted.
+	 */
+	public long minBin()
+	{
+		count();
+		return counter.binOfRank( 0 );
+	}
+
+	/**
+	 * Returns the highest occupied bin, or -1 if no values are counted.
+	 */
+	public long maxBin()
+	{
+		count();
+		return counter.binOfRank( counter.totalCount() - 1 );
+	}
+
+	/**
+	 * Gets the data value associated with the center of a bin.
+	 */
+	public void getCenterValue( final long binPos, final T value )
+	{
+		mapper.getCenterValue( binPos, value );
+	}
+
+	/**
+	 * Returns the {@link RankCounter} holding the bin counts of the window.
+	 */
+	public RankCounter counter()
+	{
+		count();
+		return counter;
+	}
+
+	/**
+	 * Count all values in the window if they are not counted yet.
+	 */
+	private void count()
+	{
+		if ( !counted )
+		{
+			counter.reset();
+			ignoredCount = 0;
+			visit( 1 );
+			counted = true;
+		}
+	}
+
+	/**
+	 * Add the hyperplane at {@code enter} and remove the hyperplane at
+	 * {@code leave} in dimension {@code d}, and update the window bounds.
+	 */
+	private void move( final int d, final long enter, final long leave )
+	{
+		final long lo = min[ d ];
+		final long hi = max[ d ];
+
+		min[ d ] = max[ d ] = leave;
+		visit( -1 );
+
+		min[ d ] = max[ d ] = enter;
+		visit( 1 );
+
+		final long shift = enter > hi ? 1 : -1;
+		min[ d ] = lo + shift;
+		max[ d ] = hi + shift;
+	}
+
+	/**
+	 * Add {@code delta} to the counts of all values in the box from
+	 * {@link #min} to {@link #max}.
+	 */
+	private void visit( final int delta )
+	{
+		final long[] pos = tmp;
+		for ( int d = 0; d < n; ++d )
+			pos[ d ] = min[ d ];
+		access.setPosition( pos );
+		while ( true )
+		{
+			final long bin = mapper.map( access.get() );
+			if ( bin >= 0 && bin < binCount )
+				counter.add( ( int ) bin, delta );
+			else
+				ignoredCount += delta;
+
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( pos[ d ] < max[ d ] )
+				{
+					++pos[ d ];
+					access.fwd( d );
+					break;
+				}
+				pos[ d ] = min[ d ];
+				access.setPosition( min[ d ], d );
+			}
+			if ( d == n )
+				return;
+		}
+	}
+}
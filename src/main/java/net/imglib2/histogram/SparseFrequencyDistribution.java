@@ -0,0 +1,444 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.AbstractLocalizingCursor;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.ImgView;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+/**
+ * A {@link DiscreteFrequencyDistribution} that stores only the non-zero
+ * counts, in a hash map keyed by the linearized bin index. Memory is
+ * proportional to the number of occupied bins rather than to the number of
+ * bins, which makes high-dimensional joint histograms feasible.
+ * 
+ * <p>
+ * The {@link net.imglib2.img.Img} view of the counts ({@link #cursor()},
+ * {@link #randomAccess()}, ...) visits all bins, including empty ones, and is
+ * read-only: modifying the {@link LongType}s it returns throws an
+ * {@link UnsupportedOperationException}. Use
+ * {@link #setFrequency(long[], long)}, {@link #increment(long[])}, and
+ * {@link #decrement(long[])} to modify counts.
+ * </p>
+ * 
+ * @author agent
+ */
+public class SparseFrequencyDistribution extends DiscreteFrequencyDistribution
+{
+	private final long[] binCounts;
+
+	private final long[] steps;
+
+	private final LongLongHashMap map;
+
+	/**
+	 * Construct an n-dimensional sparse counter with the given number of bins.
+	 * The product of bin counts must not exceed {@link Long#MAX_VALUE}.
+	 */
+	public SparseFrequencyDistribution( final long[] binCounts )
+	{
+		this( binCounts.clone(), steps( binCounts ), new LongLongHashMap() );
+	}
+
+	private SparseFrequencyDistribution( final long[] binCounts, final long[] steps, final LongLongHashMap map )
+	{
+		super( ImgView.wrap( Views.interval( new CountsView( binCounts, steps, map ), new FinalInterval( binCounts ) ), new ArrayImgFactory< LongType >() ), false );
+		this.binCounts = binCounts;
+		this.steps = steps;
+		this.map = map;
+	}
+
+	/**
+	 * Returns the number of bins with non-zero counts.
+	 */
+	public long occupiedBinCount()
+	{
+		return map.size();
+	}
+
+	@Override
+	public void resetCounters()
+	{
+		map.clear();
+		totalValues = 0;
+		countsReplaced();
+	}
+
+	@Override
+	public long frequency( final long[] binPos )
+	{
+		for ( int d = 0; d < binCounts.length; d++ )
+		{
+			if ( binPos[ d ] < 0 || binPos[ d ] >= binCounts[ d ] )
+				return 0;
+		}
+		return map.get( index( binPos ) );
+	}
+
+	@Override
+	public void setFrequency( final long[] binPos, final long value )
+	{
+		if ( value < 0 ) { throw new IllegalArgumentException( "frequency count must be >= 0" ); }
+		countChanged( binPos, value - map.put( index( binPos ), value ) );
+	}
+
+	@Override
+	public void increment( final long[] binPos )
+	{
+		map.add( index( binPos ), 1 );
+		countChanged( binPos, 1 );
+	}
+
+	@Override
+	public void decrement( final long[] binPos )
+	{
+		map.add( index( binPos ), -1 );
+		countChanged( binPos, -1 );
+	}
+
+	@Override
+	public void merge( final DiscreteFrequencyDistribution other )
+	{
+		if ( numDimensions() != other.numDimensions() ) { throw new IllegalArgumentException( "distributions have different dimensions" ); }
+		for ( int d = 0; d < numDimensions(); d++ )
+		{
+			if ( dimension( d ) != other.dimension( d ) ) { throw new IllegalArgumentException( "distributions have different dimensions" ); }
+		}
+		final long[] binPos = new long[ numDimensions() ];
+		final Cursor< LongType > cursor = other.countedBinsCursor();
+		while ( cursor.hasNext() )
+		{
+			final long count = cursor.next().get();
+			if ( count != 0 )
+			{
+				cursor.localize( binPos );
+				map.add( index( binPos ), count );
+			}
+		}
+		totalValues += other.totalValues();
+		countsReplaced();
+	}
+
+	@Override
+	void addCounts( final long[] flatCounts )
+	{
+		final int size = ( int ) Math.min( size(), flatCounts.length );
+		long sum = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			if ( flatCounts[ i ] != 0 )
+			{
+				map.add( i, flatCounts[ i ] );
+				sum += flatCounts[ i ];
+			}
+		}
+		totalValues += sum;
+		countsReplaced();
+	}
+
+	/**
+	 * Adds frequency counts given as a map from flat bin index to count,
+	 * visiting only its occupied entries.
+	 */
+	void addCounts( final LongLongHashMap counts )
+	{
+		long sum = 0;
+		for ( int i = 0; i < counts.capacity(); i++ )
+		{
+			final long key = counts.keyAt( i );
+			if ( key >= 0 )
+			{
+				final long count = counts.valueAt( i );
+				map.add( key, count );
+				sum += count;
+			}
+		}
+		totalValues += sum;
+		countsReplaced();
+	}
+
+	@Override
+	Cursor< LongType > countedBinsCursor()
+	{
+		return new OccupiedCursor();
+	}
+
+	/**
+	 * Returns a list of bin positions of the highest frequency bins. If no
+	 * values are counted, all bins are returned.
+	 */
+	@Override
+	public List< long[] > modePositions()
+	{
+		if ( map.size() == 0 )
+			return super.modePositions();
+		long commonValue = 0;
+		final List< long[] > modePositions = new ArrayList< long[] >();
+		final Cursor< LongType > cursor = countedBinsCursor();
+		while ( cursor.hasNext() )
+		{
+			final long val = cursor.next().get();
+			if ( val >= commonValue )
+			{
+				if ( val > commonValue )
+				{
+					commonValue = val;
+					modePositions.clear();
+				}
+				final long[] pos = new long[ numDimensions() ];
+				cursor.localize( pos );
+				modePositions.add( pos );
+			}
+		}
+		return modePositions;
+	}
+
+	/**
+	 * Returns a sparse distribution with the same number of bins and the same
+	 * counts.
+	 */
+	@Override
+	public SparseFrequencyDistribution copy()
+	{
+		final SparseFrequencyDistribution copy = new SparseFrequencyDistribution( binCounts, steps, map.copy() );
+		copy.totalValues = totalValues;
+		return copy;
+	}
+
+	private long index( final long[] binPos )
+	{
+		long index = 0;
+		for ( int d = 0; d < steps.length; d++ )
+			index += binPos[ d ] * steps[ d ];
+		return index;
+	}
+
+	private static long[] steps( final long[] binCounts )
+	{
+		final long[] steps = new long[ binCounts.length ];
+		long step = 1;
+		for ( int d = 0; d < binCounts.length; d++ )
+		{
+			if ( binCounts[ d ] <= 0 ) { throw new IllegalArgumentException( "invalid bin count (<= 0)" ); }
+			if ( step > Long.MAX_VALUE / binCounts[ d ] ) { throw new IllegalArgumentException( "too many bins (> Long.MAX_VALUE)" ); }
+			steps[ d ] = step;
+			step *= binCounts[ d ];
+		}
+		return steps;
+	}
+
+	/**
+	 * {@link LongAccess} holding one count, for the {@link LongType}s returned
+	 * by the read-only views of the counts.
+	 */
+	private static final class ReadOnlyCount implements LongAccess
+	{
+		long value;
+
+		@Override
+		public long getValue( final int index )
+		{
+			return value;
+		}
+
+		@Override
+		public void setValue( final int index, final long v )
+		{
+			throw new UnsupportedOperationException( "counts of a SparseFrequencyDistribution are read-only, use setFrequency()" );
+		}
+	}
+
+	/**
+	 * Read-only view of the counts of all bins.
+	 */
+	private static final class CountsView implements RandomAccessible< LongType >
+	{
+		private final long[] binCounts;
+
+		private final long[] steps;
+
+		private final LongLongHashMap map;
+
+		CountsView( final long[] binCounts, final long[] steps, final LongLongHashMap map )
+		{
+			this.binCounts = binCounts;
+			this.steps = steps;
+			this.map = map;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return binCounts.length;
+		}
+
+		@Override
+		public RandomAccess< LongType > randomAccess()
+		{
+			return new CountsAccess();
+		}
+
+		@Override
+		public RandomAccess< LongType > randomAccess( final Interval interval )
+		{
+			return randomAccess();
+		}
+
+		private final class CountsAccess extends Point implements RandomAccess< LongType >
+		{
+			private final ReadOnlyCount access = new ReadOnlyCount();
+
+			private final LongType count = new LongType( access );
+
+			CountsAccess()
+			{
+				super( binCounts.length );
+			}
+
+			@Override
+			public LongType get()
+			{
+				long index = 0;
+				for ( int d = 0; d < n; d++ )
+					index += position[ d ] * steps[ d ];
+				access.value = map.get( index );
+				return count;
+			}
+
+			@Override
+			public CountsAccess copy()
+			{
+				final CountsAccess copy = new CountsAccess();
+				copy.setPosition( this );
+				return copy;
+			}
+
+			@Override
+			public CountsAccess copyRandomAccess()
+			{
+				return copy();
+			}
+		}
+	}
+
+	/**
+	 * Visits the occupied bins, in hash table order.
+	 */
+	private final class OccupiedCursor extends AbstractLocalizingCursor< LongType >
+	{
+		private final ReadOnlyCount access = new ReadOnlyCount();
+
+		private final LongType count = new LongType( access );
+
+		private int slot;
+
+		private int nextSlot;
+
+		OccupiedCursor()
+		{
+			super( binCounts.length );
+			reset();
+		}
+
+		private OccupiedCursor( final OccupiedCursor cursor )
+		{
+			super( binCounts.length );
+			slot = cursor.slot;
+			nextSlot = cursor.nextSlot;
+			cursor.localize( position );
+		}
+
+		@Override
+		public LongType get()
+		{
+			access.value = map.valueAt( slot );
+			return count;
+		}
+
+		@Override
+		public void fwd()
+		{
+			slot = nextSlot;
+			nextSlot = occupied( slot + 1 );
+			IntervalIndexer.indexToPosition( map.keyAt( slot ), binCounts, position );
+		}
+
+		@Override
+		public void reset()
+		{
+			slot = -1;
+			nextSlot = occupied( 0 );
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return nextSlot < map.capacity();
+		}
+
+		@Override
+		public OccupiedCursor copy()
+		{
+			return new OccupiedCursor( this );
+		}
+
+		@Override
+		public OccupiedCursor copyCursor()
+		{
+			return copy();
+		}
+
+		private int occupied( final int from )
+		{
+			int i = from;
+			while ( i < map.capacity() && map.keyAt( i ) < 0 )
+				++i;
+			return i;
+		}
+	}
+}
@@ -59,6 +59,15 @@ public abstract class AbstractNativeImg< T extends NativeType< T >, A >
 		this.numEntities = entitiesPerPixel.mulCeil( numPixels );
 	}
 
+	/**
+	 * @return the number of basic type entities per pixel in the storage of
+	 *         this image.
+	 */
+	public Fraction getEntitiesPerPixel()
+	{
+		return entitiesPerPixel;
+	}
+
 	@Override
 	public void setLinkedType( final T type )
 	{
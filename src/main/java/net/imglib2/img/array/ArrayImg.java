@@ -41,6 +41,7 @@ import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.Img;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
 import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.iteration.SubIntervalIterable;
@@ -132,13 +133,7 @@ public class ArrayImg< T extends NativeType< T >, A > extends AbstractNativeImg<
 	public ArrayImg< T, ? > copy()
 	{
 		final ArrayImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
-
-		final ArrayCursor< T > source = this.cursor();
-		final ArrayCursor< T > target = copy.cursor();
-
-		while ( source.hasNext() )
-			target.next().set( source.next() );
-
+		ImgUtil.copy( this, copy );
 		return copy;
 	}
 
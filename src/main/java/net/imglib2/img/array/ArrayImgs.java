@@ -34,12 +34,20 @@
 
 package net.imglib2.img.array;
 
+import java.nio.ByteBuffer;
+
 import net.imglib2.img.basictypeaccess.array.ByteArray;
 import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
 import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.ARGBType;
@@ -356,4 +364,153 @@ final public class ArrayImgs
 		img.setLinkedType( t );
 		return img;
 	}
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link UnsignedByteType}, {@link ByteBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< UnsignedByteType, ByteBufferAccess > unsignedBytes( final ByteBuffer buffer, final long... dim )
+	{
+		final ByteBufferAccess access = new ByteBufferAccess( buffer );
+		final ArrayImg< UnsignedByteType, ByteBufferAccess > img = new ArrayImg< UnsignedByteType, ByteBufferAccess >( access, dim, new Fraction() );
+		final UnsignedByteType t = new UnsignedByteType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link ByteType}, {@link ByteBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< ByteType, ByteBufferAccess > bytes( final ByteBuffer buffer, final long... dim )
+	{
+		final ByteBufferAccess access = new ByteBufferAccess( buffer );
+		final ArrayImg< ByteType, ByteBufferAccess > img = new ArrayImg< ByteType, ByteBufferAccess >( access, dim, new Fraction() );
+		final ByteType t = new ByteType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link UnsignedShortType}, {@link ShortBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< UnsignedShortType, ShortBufferAccess > unsignedShorts( final ByteBuffer buffer, final long... dim )
+	{
+		final ShortBufferAccess access = new ShortBufferAccess( buffer );
+		final ArrayImg< UnsignedShortType, ShortBufferAccess > img = new ArrayImg< UnsignedShortType, ShortBufferAccess >( access, dim, new Fraction() );
+		final UnsignedShortType t = new UnsignedShortType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link ShortType}, {@link ShortBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< ShortType, ShortBufferAccess > shorts( final ByteBuffer buffer, final long... dim )
+	{
+		final ShortBufferAccess access = new ShortBufferAccess( buffer );
+		final ArrayImg< ShortType, ShortBufferAccess > img = new ArrayImg< ShortType, ShortBufferAccess >( access, dim, new Fraction() );
+		final ShortType t = new ShortType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link UnsignedIntType}, {@link IntBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< UnsignedIntType, IntBufferAccess > unsignedInts( final ByteBuffer buffer, final long... dim )
+	{
+		final IntBufferAccess access = new IntBufferAccess( buffer );
+		final ArrayImg< UnsignedIntType, IntBufferAccess > img = new ArrayImg< UnsignedIntType, IntBufferAccess >( access, dim, new Fraction() );
+		final UnsignedIntType t = new UnsignedIntType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link IntType}, {@link IntBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< IntType, IntBufferAccess > ints( final ByteBuffer buffer, final long... dim )
+	{
+		final IntBufferAccess access = new IntBufferAccess( buffer );
+		final ArrayImg< IntType, IntBufferAccess > img = new ArrayImg< IntType, IntBufferAccess >( access, dim, new Fraction() );
+		final IntType t = new IntType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link LongType}, {@link LongBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< LongType, LongBufferAccess > longs( final ByteBuffer buffer, final long... dim )
+	{
+		final LongBufferAccess access = new LongBufferAccess( buffer );
+		final ArrayImg< LongType, LongBufferAccess > img = new ArrayImg< LongType, LongBufferAccess >( access, dim, new Fraction() );
+		final LongType t = new LongType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link FloatType}, {@link FloatBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< FloatType, FloatBufferAccess > floats( final ByteBuffer buffer, final long... dim )
+	{
+		final FloatBufferAccess access = new FloatBufferAccess( buffer );
+		final ArrayImg< FloatType, FloatBufferAccess > img = new ArrayImg< FloatType, FloatBufferAccess >( access, dim, new Fraction() );
+		final FloatType t = new FloatType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link DoubleType}, {@link DoubleBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< DoubleType, DoubleBufferAccess > doubles( final ByteBuffer buffer, final long... dim )
+	{
+		final DoubleBufferAccess access = new DoubleBufferAccess( buffer );
+		final ArrayImg< DoubleType, DoubleBufferAccess > img = new ArrayImg< DoubleType, DoubleBufferAccess >( access, dim, new Fraction() );
+		final DoubleType t = new DoubleType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+
+	/**
+	 * Creates an {@link ArrayImg}<{@link ARGBType}, {@link IntBufferAccess}>
+	 * reusing a passed {@link ByteBuffer}, starting at its current position.
+	 * The byte order of the buffer is used.
+	 */
+	final public static ArrayImg< ARGBType, IntBufferAccess > argbs( final ByteBuffer buffer, final long... dim )
+	{
+		final IntBufferAccess access = new IntBufferAccess( buffer );
+		final ArrayImg< ARGBType, IntBufferAccess > img = new ArrayImg< ARGBType, IntBufferAccess >( access, dim, new Fraction() );
+		final ARGBType t = new ARGBType( img );
+		img.setLinkedType( t );
+		return img;
+	}
 }
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory that creates {@link ArrayImg ArrayImgs} whose data is held in a
+ * direct (off-heap) {@link java.nio.ByteBuffer}, see
+ * {@link net.imglib2.img.basictypeaccess.nio.BufferAccess}.
+ * 
+ * <p>
+ * A direct buffer holds at most 2 GB, so the number of bytes (not only the
+ * number of entities) of an image is limited. Use
+ * {@link net.imglib2.img.planar.BufferPlanarImgFactory} or
+ * {@link net.imglib2.img.cell.BufferCellImgFactory} for larger images.
+ * </p>
+ * 
+ * @author agent
+ */
+public class BufferArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	private static int numEntitiesRangeCheck( final long[] dimensions, final Fraction entitiesPerPixel, final int bytesPerEntity )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		if ( numEntities > Integer.MAX_VALUE / bytesPerEntity )
+			throw new RuntimeException( "Number of bytes in Container too big, use for example BufferCellImgFactory instead: " + ( ( long ) numEntities * bytesPerEntity ) + " > " + Integer.MAX_VALUE );
+
+		return numEntities;
+	}
+
+	@Override
+	public ArrayImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, ByteBufferAccess.BYTES );
+
+		return new ArrayImg< T, ByteBufferAccess >( new ByteBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, CharBufferAccess.BYTES );
+
+		return new ArrayImg< T, CharBufferAccess >( new CharBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, ShortBufferAccess.BYTES );
+
+		return new ArrayImg< T, ShortBufferAccess >( new ShortBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, IntBufferAccess.BYTES );
+
+		return new ArrayImg< T, IntBufferAccess >( new IntBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, LongBufferAccess.BYTES );
+
+		return new ArrayImg< T, LongBufferAccess >( new LongBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, FloatBufferAccess.BYTES );
+
+		return new ArrayImg< T, FloatBufferAccess >( new FloatBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, DoubleBufferAccess.BYTES );
+
+		return new ArrayImg< T, DoubleBufferAccess >( new DoubleBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new BufferArrayImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import java.io.IOException;
+
+import net.imglib2.img.basictypeaccess.ByteAccess;
+import net.imglib2.img.basictypeaccess.DoubleAccess;
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.MappedFile;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.WindowedByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.WindowedDoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.WindowedFloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.WindowedIntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.WindowedLongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.WindowedShortBufferAccess;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Convenience factory methods for creation of {@link ArrayImg} instances on
+ * memory-mapped files. The pixels are expected as a flat array in
+ * {@link ArrayImg} order, starting at a given byte offset in the file, with
+ * the byte order of the {@link MappedFile}. Nothing is read until pixels are
+ * accessed.
+ * 
+ * <p>
+ * Images larger than 2 GB are mapped as a sequence of windows (still with at
+ * most {@link Integer#MAX_VALUE} pixels). Images on a
+ * {@link MappedFile.Mode#READ_ONLY read-only} file throw a
+ * {@link java.nio.ReadOnlyBufferException} when written to.
+ * </p>
+ * 
+ * @author agent
+ */
+final public class MappedArrayImgs
+{
+	private MappedArrayImgs()
+	{}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link UnsignedByteType}, {@link ByteAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< UnsignedByteType, ByteAccess > unsignedBytes( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< UnsignedByteType, ByteAccess > img = new ArrayImg< UnsignedByteType, ByteAccess >( byteAccess( file, offset, dim ), dim, new Fraction() );
+		final UnsignedByteType t = new UnsignedByteType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link ByteType}, {@link ByteAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< ByteType, ByteAccess > bytes( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< ByteType, ByteAccess > img = new ArrayImg< ByteType, ByteAccess >( byteAccess( file, offset, dim ), dim, new Fraction() );
+		final ByteType t = new ByteType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link UnsignedShortType}, {@link ShortAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< UnsignedShortType, ShortAccess > unsignedShorts( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< UnsignedShortType, ShortAccess > img = new ArrayImg< UnsignedShortType, ShortAccess >( shortAccess( file, offset, dim ), dim, new Fraction() );
+		final UnsignedShortType t = new UnsignedShortType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link ShortType}, {@link ShortAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< ShortType, ShortAccess > shorts( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< ShortType, ShortAccess > img = new ArrayImg< ShortType, ShortAccess >( shortAccess( file, offset, dim ), dim, new Fraction() );
+		final ShortType t = new ShortType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link UnsignedIntType}, {@link IntAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< UnsignedIntType, IntAccess > unsignedInts( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< UnsignedIntType, IntAccess > img = new ArrayImg< UnsignedIntType, IntAccess >( intAccess( file, offset, dim ), dim, new Fraction() );
+		final UnsignedIntType t = new UnsignedIntType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link IntType}, {@link IntAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< IntType, IntAccess > ints( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< IntType, IntAccess > img = new ArrayImg< IntType, IntAccess >( intAccess( file, offset, dim ), dim, new Fraction() );
+		final IntType t = new IntType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link LongType}, {@link LongAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< LongType, LongAccess > longs( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< LongType, LongAccess > img = new ArrayImg< LongType, LongAccess >( longAccess( file, offset, dim ), dim, new Fraction() );
+		final LongType t = new LongType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link FloatType}, {@link FloatAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< FloatType, FloatAccess > floats( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< FloatType, FloatAccess > img = new ArrayImg< FloatType, FloatAccess >( floatAccess( file, offset, dim ), dim, new Fraction() );
+		final FloatType t = new FloatType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create an {@link ArrayImg}<{@link DoubleType}, {@link DoubleAccess}> on a
+	 * {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static ArrayImg< DoubleType, DoubleAccess > doubles( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final ArrayImg< DoubleType, DoubleAccess > img = new ArrayImg< DoubleType, DoubleAccess >( doubleAccess( file, offset, dim ), dim, new Fraction() );
+		final DoubleType t = new DoubleType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	private static ByteAccess byteAccess( final MappedFile file, final long offset, final long[] dim ) throws IOException
+	{
+		final long numBytes = ( long ) ArrayImgFactory.numEntitiesRangeCheck( dim, new Fraction() ) * ByteBufferAccess.BYTES;
+		if ( numBytes <= Integer.MAX_VALUE )
+			return new ByteBufferAccess( file.map( offset, numBytes ) );
+		final int shift = WindowedByteBufferAccess.DEFAULT_WINDOW_SHIFT;
+		return new WindowedByteBufferAccess( file.mapWindows( offset, numBytes, ByteBufferAccess.BYTES << shift ), shift );
+	}
+
+	private static DoubleAccess doubleAccess( final MappedFile file, final long offset, final long[] dim ) throws IOException
+	{
+		final long numBytes = ( long ) ArrayImgFactory.numEntitiesRangeCheck( dim, new Fraction() ) * DoubleBufferAccess.BYTES;
+		if ( numBytes <= Integer.MAX_VALUE )
+			return new DoubleBufferAccess( file.map( offset, numBytes ) );
+		final int shift = WindowedDoubleBufferAccess.DEFAULT_WINDOW_SHIFT;
+		return new WindowedDoubleBufferAccess( file.mapWindows( offset, numBytes, DoubleBufferAccess.BYTES << shift ), shift );
+	}
+
+	private static FloatAccess floatAccess( final MappedFile file, final long offset, final long[] dim ) throws IOException
+	{
+		final long numBytes = ( long ) ArrayImgFactory.numEntitiesRangeCheck( dim, new Fraction() ) * FloatBufferAccess.BYTES;
+		if ( numBytes <= Integer.MAX_VALUE )
+			return new FloatBufferAccess( file.map( offset, numBytes ) );
+		final int shift = WindowedFloatBufferAccess.DEFAULT_WINDOW_SHIFT;
+		return new WindowedFloatBufferAccess( file.mapWindows( offset, numBytes, FloatBufferAccess.BYTES << shift ), shift );
+	}
+
+	private static IntAccess intAccess( final MappedFile file, final long offset, final long[] dim ) throws IOException
+	{
+		final long numBytes = ( long ) ArrayImgFactory.numEntitiesRangeCheck( dim, new Fraction() ) * IntBufferAccess.BYTES;
+		if ( numBytes <= Integer.MAX_VALUE )
+			return new IntBufferAccess( file.map( offset, numBytes ) );
+		final int shift = WindowedIntBufferAccess.DEFAULT_WINDOW_SHIFT;
+		return new WindowedIntBufferAccess( file.mapWindows( offset, numBytes, IntBufferAccess.BYTES << shift ), shift );
+	}
+
+	private static LongAccess longAccess( final MappedFile file, final long offset, final long[] dim ) throws IOException
+	{
+		final long numBytes = ( long ) ArrayImgFactory.numEntitiesRangeCheck( dim, new Fraction() ) * LongBufferAccess.BYTES;
+		if ( numBytes <= Integer.MAX_VALUE )
+			return new LongBufferAccess( file.map( offset, numBytes ) );
+		final int shift = WindowedLongBufferAccess.DEFAULT_WINDOW_SHIFT;
+		return new WindowedLongBufferAccess( file.mapWindows( offset, numBytes, LongBufferAccess.BYTES << shift ), shift );
+	}
+
+	private static ShortAccess shortAccess( final MappedFile file, final long offset, final long[] dim ) throws IOException
+	{
+		final long numBytes = ( long ) ArrayImgFactory.numEntitiesRangeCheck( dim, new Fraction() ) * ShortBufferAccess.BYTES;
+		if ( numBytes <= Integer.MAX_VALUE )
+			return new ShortBufferAccess( file.map( offset, numBytes ) );
+		final int shift = WindowedShortBufferAccess.DEFAULT_WINDOW_SHIFT;
+		return new WindowedShortBufferAccess( file.mapWindows( offset, numBytes, ShortBufferAccess.BYTES << shift ), shift );
+	}
+}
@@ -34,17 +34,20 @@
 
 package net.imglib2.img.basictypeaccess.array;
 
-import java.io.Serializable;
+import net.imglib2.img.basictypeaccess.DataAccess;
 
 /**
- * TODO
+ * A {@link DataAccess} that stores its data in a Java array, returned by
+ * {@link #getCurrentStorageArray()}.
  *
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public interface ArrayDataAccess< A > extends Serializable
+public interface ArrayDataAccess< A > extends DataAccess< A >
 {
-	A createArray( int numEntities );
-
+	/**
+	 * @return the Java array holding the data, for example a
+	 *         <code>float[]</code> for a {@link FloatArray}.
+	 */
 	Object getCurrentStorageArray();
 }
@@ -35,6 +35,7 @@
 package net.imglib2.img.basictypeaccess.array;
 
 import net.imglib2.img.basictypeaccess.ByteAccess;
+import net.imglib2.img.basictypeaccess.SizedAccess;
 
 /**
  * TODO
@@ -42,8 +43,12 @@ import net.imglib2.img.basictypeaccess.ByteAccess;
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class ByteArray implements ByteAccess, ArrayDataAccess< ByteArray >
+public class ByteArray implements ByteAccess, ArrayDataAccess< ByteArray >, SizedAccess
 {
+	// the computed default of earlier versions, which did not implement
+	// SizedAccess
+	private static final long serialVersionUID = 6011288796056139515L;
+
 	protected byte data[];
 
 	public ByteArray( final int numEntities )
@@ -79,4 +84,10 @@ public class ByteArray implements ByteAccess, ArrayDataAccess< ByteArray >
 	{
 		return new ByteArray( numEntities );
 	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return data.length;
+	}
 }
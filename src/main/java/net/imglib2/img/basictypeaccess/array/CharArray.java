@@ -35,6 +35,7 @@
 package net.imglib2.img.basictypeaccess.array;
 
 import net.imglib2.img.basictypeaccess.CharAccess;
+import net.imglib2.img.basictypeaccess.SizedAccess;
 
 /**
  * TODO
@@ -42,8 +43,12 @@ import net.imglib2.img.basictypeaccess.CharAccess;
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class CharArray implements CharAccess, ArrayDataAccess< CharArray >
+public class CharArray implements CharAccess, ArrayDataAccess< CharArray >, SizedAccess
 {
+	// the computed default of earlier versions, which did not implement
+	// SizedAccess
+	private static final long serialVersionUID = 4358444752704928576L;
+
 	protected char data[];
 
 	public CharArray( final int numEntities )
@@ -79,4 +84,10 @@ public class CharArray implements CharAccess, ArrayDataAccess< CharArray >
 	{
 		return new CharArray( numEntities );
 	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return 2 * ( long ) data.length;
+	}
 }
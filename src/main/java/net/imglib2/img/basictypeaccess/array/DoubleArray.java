@@ -35,6 +35,7 @@
 package net.imglib2.img.basictypeaccess.array;
 
 import net.imglib2.img.basictypeaccess.DoubleAccess;
+import net.imglib2.img.basictypeaccess.SizedAccess;
 
 /**
  * TODO
@@ -42,8 +43,12 @@ import net.imglib2.img.basictypeaccess.DoubleAccess;
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class DoubleArray implements DoubleAccess, ArrayDataAccess< DoubleArray >
+public class DoubleArray implements DoubleAccess, ArrayDataAccess< DoubleArray >, SizedAccess
 {
+	// the computed default of earlier versions, which did not implement
+	// SizedAccess
+	private static final long serialVersionUID = 954568496744695939L;
+
 	protected double data[];
 
 	public DoubleArray( final int numEntities )
@@ -79,4 +84,10 @@ public class DoubleArray implements DoubleAccess, ArrayDataAccess< DoubleArray >
 	{
 		return data;
 	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return 8 * ( long ) data.length;
+	}
 }
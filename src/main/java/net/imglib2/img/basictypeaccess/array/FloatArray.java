@@ -35,6 +35,7 @@
 package net.imglib2.img.basictypeaccess.array;
 
 import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.SizedAccess;
 
 /**
  * TODO
@@ -42,8 +43,12 @@ import net.imglib2.img.basictypeaccess.FloatAccess;
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class FloatArray implements FloatAccess, ArrayDataAccess< FloatArray >
+public class FloatArray implements FloatAccess, ArrayDataAccess< FloatArray >, SizedAccess
 {
+	// the computed default of earlier versions, which did not implement
+	// SizedAccess
+	private static final long serialVersionUID = 5697199659086672382L;
+
 	protected float data[];
 
 	public FloatArray( final int numEntities )
@@ -79,4 +84,10 @@ public class FloatArray implements FloatAccess, ArrayDataAccess< FloatArray >
 	{
 		return data;
 	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return 4 * ( long ) data.length;
+	}
 }
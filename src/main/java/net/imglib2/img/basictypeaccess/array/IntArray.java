@@ -35,6 +35,7 @@
 package net.imglib2.img.basictypeaccess.array;
 
 import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.SizedAccess;
 
 /**
  * TODO
@@ -42,8 +43,12 @@ import net.imglib2.img.basictypeaccess.IntAccess;
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class IntArray implements IntAccess, ArrayDataAccess< IntArray >
+public class IntArray implements IntAccess, ArrayDataAccess< IntArray >, SizedAccess
 {
+	// the computed default of earlier versions, which did not implement
+	// SizedAccess
+	private static final long serialVersionUID = 5412163670600854236L;
+
 	protected int data[];
 
 	public IntArray( final int numEntities )
@@ -79,4 +84,10 @@ public class IntArray implements IntAccess, ArrayDataAccess< IntArray >
 	{
 		return data;
 	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return 4 * ( long ) data.length;
+	}
 }
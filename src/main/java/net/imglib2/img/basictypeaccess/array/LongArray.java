@@ -35,6 +35,7 @@
 package net.imglib2.img.basictypeaccess.array;
 
 import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.SizedAccess;
 
 /**
  * TODO
@@ -42,8 +43,12 @@ import net.imglib2.img.basictypeaccess.LongAccess;
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class LongArray implements LongAccess, ArrayDataAccess< LongArray >
+public class LongArray implements LongAccess, ArrayDataAccess< LongArray >, SizedAccess
 {
+	// the computed default of earlier versions, which did not implement
+	// SizedAccess
+	private static final long serialVersionUID = -3037560086576936140L;
+
 	protected long data[];
 
 	public LongArray( final int numEntities )
@@ -79,4 +84,10 @@ public class LongArray implements LongAccess, ArrayDataAccess< LongArray >
 	{
 		return new LongArray( numEntities );
 	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return 8 * ( long ) data.length;
+	}
 }
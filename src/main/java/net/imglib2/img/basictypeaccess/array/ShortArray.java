@@ -35,14 +35,19 @@
 package net.imglib2.img.basictypeaccess.array;
 
 import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.img.basictypeaccess.SizedAccess;
 
 /**
  * 
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
-public class ShortArray implements ShortAccess, ArrayDataAccess< ShortArray >
+public class ShortArray implements ShortAccess, ArrayDataAccess< ShortArray >, SizedAccess
 {
+	// the computed default of earlier versions, which did not implement
+	// SizedAccess
+	private static final long serialVersionUID = -9119984950550149498L;
+
 	protected short data[];
 
 	public ShortArray( final int numEntities )
@@ -78,4 +83,10 @@ public class ShortArray implements ShortAccess, ArrayDataAccess< ShortArray >
 	{
 		return data;
 	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return 2 * ( long ) data.length;
+	}
 }
@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import net.imglib2.img.basictypeaccess.FloatAccess;
+
+/**
+ * {@link FloatAccess} backed by a {@link ByteBuffer}.
+ * 
+ * @author agent
+ */
+public class FloatBufferAccess implements FloatAccess, BufferAccess< FloatBufferAccess >
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Size of an entity, in bytes.
+	 */
+	public static final int BYTES = 4;
+
+	protected transient ByteBuffer buffer;
+
+	protected transient FloatBuffer view;
+
+	/**
+	 * Allocate a direct buffer with native byte order.
+	 * 
+	 * @param numEntities
+	 *            number of floats in the buffer.
+	 */
+	public FloatBufferAccess( final int numEntities )
+	{
+		this( ByteBuffer.allocateDirect( checkedSize( numEntities ) ).order( ByteOrder.nativeOrder() ) );
+	}
+
+	/**
+	 * Wrap an existing buffer. Entity 0 is at the current position of the
+	 * buffer. The byte order of the buffer is used.
+	 */
+	public FloatBufferAccess( final ByteBuffer buffer )
+	{
+		this.buffer = buffer.slice().order( buffer.order() );
+		this.view = this.buffer.asFloatBuffer();
+	}
+
+	private static int checkedSize( final int numEntities )
+	{
+		if ( numEntities > Integer.MAX_VALUE / BYTES )
+			throw new IllegalArgumentException( "Cannot allocate a buffer for " + numEntities + " entities of " + BYTES + " bytes (limit is 2 GB)." );
+		return numEntities * BYTES;
+	}
+
+	@Override
+	public float getValue( final int index )
+	{
+		return view.get( index );
+	}
+
+	@Override
+	public void setValue( final int index, final float value )
+	{
+		view.put( index, value );
+	}
+
+	@Override
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * @return the number of floats in the buffer.
+	 */
+	public int size()
+	{
+		return buffer.capacity() / BYTES;
+	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		return buffer.capacity();
+	}
+
+	/**
+	 * Allocate a direct buffer with native byte order.
+	 */
+	@Override
+	public FloatBufferAccess createArray( final int numEntities )
+	{
+		return new FloatBufferAccess( numEntities );
+	}
+
+	/**
+	 * Serialized form is the byte order followed by the content of the
+	 * buffer.
+	 */
+	private void writeObject( final ObjectOutputStream out ) throws IOException
+	{
+		out.defaultWriteObject();
+		final byte[] bytes = new byte[ buffer.capacity() ];
+		final ByteBuffer source = buffer.duplicate();
+		source.clear();
+		source.get( bytes );
+		out.writeBoolean( buffer.order() == ByteOrder.BIG_ENDIAN );
+		out.writeInt( bytes.length );
+		out.write( bytes );
+	}
+
+	private void readObject( final ObjectInputStream in ) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		final ByteOrder order = in.readBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		final byte[] bytes = new byte[ in.readInt() ];
+		in.readFully( bytes );
+		buffer = ByteBuffer.allocateDirect( bytes.length ).order( order );
+		buffer.put( bytes ).clear();
+		view = buffer.asFloatBuffer();
+	}
+}
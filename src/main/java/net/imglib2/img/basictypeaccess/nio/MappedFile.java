@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * A file whose content is memory-mapped into {@link ByteBuffer ByteBuffers}.
+ * These buffers can be wrapped by {@link BufferAccess buffer accesses} to
+ * create images on the file without reading it, see
+ * {@link net.imglib2.img.array.MappedArrayImgs} and
+ * {@link net.imglib2.img.planar.MappedPlanarImgs}. The operating system loads
+ * pages on demand and caches them.
+ * 
+ * <p>
+ * A single mapping is limited to 2 GB. Larger regions are mapped as a
+ * sequence of windows, see {@link #mapWindows(long, long, int)}.
+ * </p>
+ * 
+ * <p>
+ * Closing the file does not unmap the buffers. They stay valid until they are
+ * garbage collected. In {@link Mode#READ_WRITE} mode, changes are written to
+ * the file by the operating system at an unspecified time, or when
+ * {@link #force()} is called.
+ * </p>
+ * 
+ * @author agent
+ */
+public class MappedFile implements Closeable
+{
+	public static enum Mode
+	{
+		READ_ONLY( "r", FileChannel.MapMode.READ_ONLY ),
+		READ_WRITE( "rw", FileChannel.MapMode.READ_WRITE );
+
+		private final String fileMode;
+
+		private final FileChannel.MapMode mapMode;
+
+		private Mode( final String fileMode, final FileChannel.MapMode mapMode )
+		{
+			this.fileMode = fileMode;
+			this.mapMode = mapMode;
+		}
+	}
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final Mode mode;
+
+	private final ByteOrder order;
+
+	private final ArrayList< MappedByteBuffer > mappings;
+
+	/**
+	 * Open a file for mapping.
+	 * 
+	 * @param file
+	 *            the file. In {@link Mode#READ_WRITE} mode it is created if
+	 *            it does not exist, and grows as regions beyond its end are
+	 *            mapped.
+	 * @param mode
+	 *            whether the mapped buffers are read-only or read-write.
+	 * @param order
+	 *            byte order of the data in the file.
+	 */
+	public MappedFile( final File file, final Mode mode, final ByteOrder order ) throws IOException
+	{
+		this.file = new RandomAccessFile( file, mode.fileMode );
+		this.channel = this.file.getChannel();
+		this.mode = mode;
+		this.order = order;
+		this.mappings = new ArrayList< MappedByteBuffer >();
+	}
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	public ByteOrder getOrder()
+	{
+		return order;
+	}
+
+	/**
+	 * @return the current size of the file in bytes.
+	 */
+	public long size() throws IOException
+	{
+		return channel.size();
+	}
+
+	/**
+	 * Map a region of the file.
+	 * 
+	 * @param offset
+	 *            position of the region in the file, in bytes.
+	 * @param numBytes
+	 *            size of the region, at most {@link Integer#MAX_VALUE}.
+	 * @return a buffer with the byte order of this file.
+	 */
+	public synchronized ByteBuffer map( final long offset, final long numBytes ) throws IOException
+	{
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Cannot map more than 2 GB at once, use mapWindows() instead: " + numBytes + " > " + Integer.MAX_VALUE );
+		if ( mode == Mode.READ_ONLY && offset + numBytes > channel.size() )
+			throw new IOException( "Region [" + offset + ", " + ( offset + numBytes ) + ") exceeds file size " + channel.size() );
+
+		final MappedByteBuffer buffer = channel.map( mode.mapMode, offset, numBytes );
+		if ( mode == Mode.READ_WRITE )
+			mappings.add( buffer );
+		return buffer.order( order );
+	}
+
+	/**
+	 * Map a region of the file as a sequence of consecutive windows.
+	 * 
+	 * @param offset
+	 *            position of the region in the file, in bytes.
+	 * @param numBytes
+	 *            size of the region.
+	 * @param windowBytes
+	 *            size of each window but the last, in bytes.
+	 * @return buffers with the byte order of this file.
+	 */
+	public ByteBuffer[] mapWindows( final long offset, final long numBytes, final int windowBytes ) throws IOException
+	{
+		final int numWindows = ( int ) ( ( numBytes + windowBytes - 1 ) / windowBytes );
+		final ByteBuffer[] windows = new ByteBuffer[ numWindows ];
+		for ( int i = 0; i < numWindows; ++i )
+		{
+			final long start = ( long ) i * windowBytes;
+			windows[ i ] = map( offset + start, Math.min( windowBytes, numBytes - start ) );
+		}
+		return windows;
+	}
+
+	/**
+	 * Write changes in all read-write mappings to the file.
+	 */
+	public synchronized void force()
+	{
+		for ( final MappedByteBuffer buffer : mappings )
+			buffer.force();
+	}
+
+	/**
+	 * Close the file. Mapped buffers remain valid.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		force();
+		file.close();
+	}
+}
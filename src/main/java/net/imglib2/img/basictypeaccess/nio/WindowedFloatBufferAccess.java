@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import net.imglib2.img.basictypeaccess.FloatAccess;
+
+/**
+ * {@link FloatAccess} backed by a sequence of {@link ByteBuffer} windows, for
+ * data that does not fit into a single buffer (2 GB). Every window but the
+ * last holds exactly 2<sup>windowShift</sup> floats.
+ * 
+ * @author agent
+ */
+public class WindowedFloatBufferAccess implements FloatAccess
+{
+	/**
+	 * The default window shift, for windows of 1 GB.
+	 */
+	public static final int DEFAULT_WINDOW_SHIFT = 30 - 2;
+
+	protected final FloatBuffer[] windows;
+
+	protected final int windowShift;
+
+	protected final int windowMask;
+
+	/**
+	 * @param windows
+	 *            the windows. Entity 0 of each window is at its current
+	 *            position. The byte order of each window is used.
+	 * @param windowShift
+	 *            every window but the last holds 2<sup>windowShift</sup>
+	 *            floats.
+	 */
+	public WindowedFloatBufferAccess( final ByteBuffer[] windows, final int windowShift )
+	{
+		this.windows = new FloatBuffer[ windows.length ];
+		for ( int i = 0; i < windows.length; ++i )
+			this.windows[ i ] = windows[ i ].slice().order( windows[ i ].order() ).asFloatBuffer();
+		this.windowShift = windowShift;
+		this.windowMask = ( 1 << windowShift ) - 1;
+	}
+
+	@Override
+	public float getValue( final int index )
+	{
+		return windows[ index >>> windowShift ].get( index & windowMask );
+	}
+
+	@Override
+	public void setValue( final int index, final float value )
+	{
+		windows[ index >>> windowShift ].put( index & windowMask, value );
+	}
+}
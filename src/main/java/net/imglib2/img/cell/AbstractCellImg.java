@@ -37,6 +37,7 @@ package net.imglib2.img.cell;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.Img;
 import net.imglib2.type.NativeType;
+import net.imglib2.util.ImgUtil;
 
 /**
  * Abstract superclass for {@link Img} types that divide their underlying data
@@ -150,10 +151,6 @@ public abstract class AbstractCellImg< T extends NativeType< T >, A, C extends A
 
 	protected void copyDataTo( final AbstractCellImg< T, ?, ?, ? > copy )
 	{
-		final CellCursor< T, A, C > source = this.cursor();
-		final CellCursor< T, ?, ? > target = copy.cursor();
-
-		while ( source.hasNext() )
-			target.next().set( source.next() );
+		ImgUtil.copy( this, copy );
 	}
 }
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.DataAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for creating {@link CellImg CellImgs} whose cells are held in
+ * direct (off-heap) {@link java.nio.ByteBuffer ByteBuffers}, see
+ * {@link net.imglib2.img.basictypeaccess.nio.BufferAccess}. Each cell is
+ * limited to 2 GB.
+ * 
+ * <p>
+ * The created images report a {@link CellImgFactory} with the same cell
+ * dimensions as their {@link CellImg#factory() factory}, so copies made
+ * through it are on-heap.
+ * </p>
+ * 
+ * @author agent
+ */
+public class BufferCellImgFactory< T extends NativeType< T > > extends AbstractCellImgFactory< T >
+{
+	public BufferCellImgFactory()
+	{}
+
+	public BufferCellImgFactory( final int cellSize )
+	{
+		super( cellSize );
+	}
+
+	public BufferCellImgFactory( final int[] cellDimensions )
+	{
+		super( cellDimensions );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public CellImg< T, ?, ? > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ?, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CellImg< T, ByteBufferAccess, DefaultCell< ByteBufferAccess > > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ByteBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, CharBufferAccess, DefaultCell< CharBufferAccess > > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new CharBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, ShortBufferAccess, DefaultCell< ShortBufferAccess > > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ShortBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, IntBufferAccess, DefaultCell< IntBufferAccess > > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new IntBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, LongBufferAccess, DefaultCell< LongBufferAccess > > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LongBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, FloatBufferAccess, DefaultCell< FloatBufferAccess > > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new FloatBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DoubleBufferAccess, DefaultCell< DoubleBufferAccess > > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DoubleBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new BufferCellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends DataAccess< A > > CellImg< T, A, DefaultCell< A > > createInstance( final A array, long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		dimensions = checkDimensions( dimensions );
+		final int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+		return new CellImg< T, A, DefaultCell< A > >( new CellImgFactory< T >( cellSize ), new ListImgCells< A >( array, entitiesPerPixel, dimensions, cellSize ) );
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.img.basictypeaccess.DataAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link CellImg}-like image whose cells are created on first access by a
+ * {@link CellLoader} and held in a {@link CellCache}, see
+ * {@link CachedCells}. This allows to work on regions of images that are much
+ * larger than the available memory. {@link CellCursor} and
+ * {@link CellRandomAccess} work unchanged on this image.
+ * 
+ * <p>
+ * {@link #factory()} and {@link #copy()} create ordinary in-memory
+ * {@link CellImg CellImgs} with the same cell dimensions.
+ * </p>
+ * 
+ * @see CachedCellImgFactory
+ * 
+ * @author agent
+ */
+public class CachedCellImg< T extends NativeType< T >, A extends DataAccess< A > > extends AbstractCellImg< T, A, DefaultCell< A >, CellImgFactory< T > >
+{
+	public CachedCellImg( final CellImgFactory< T > factory, final CachedCells< A > cells )
+	{
+		super( factory, cells );
+	}
+
+	@Override
+	public CachedCells< A > getCells()
+	{
+		return ( CachedCells< A > ) cells;
+	}
+
+	/**
+	 * Write back all modified cells, see {@link CellCache#flush()}.
+	 */
+	public void flush()
+	{
+		getCells().getCache().flush();
+	}
+
+	@Override
+	public CellImg< T, ?, ? > copy()
+	{
+		final CellImg< T, ?, ? > copy = factory().create( dimension, firstElement().createVariable() );
+		copyDataTo( copy );
+		return copy;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.DataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DirtyByteArray;
+import net.imglib2.img.basictypeaccess.array.DirtyCharArray;
+import net.imglib2.img.basictypeaccess.array.DirtyDoubleArray;
+import net.imglib2.img.basictypeaccess.array.DirtyFloatArray;
+import net.imglib2.img.basictypeaccess.array.DirtyIntArray;
+import net.imglib2.img.basictypeaccess.array.DirtyLongArray;
+import net.imglib2.img.basictypeaccess.array.DirtyShortArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for creating {@link CachedCellImg CachedCellImgs}. Cells are
+ * populated on first access by the {@link CellLoader} given to the factory.
+ * The loader (and writer) must match the basic type access of the type, e.g.,
+ * a {@code CellLoader< FloatArray >} for
+ * {@link net.imglib2.type.numeric.real.FloatType}.
+ * 
+ * <p>
+ * If a {@link CellWriter} is given, cells are backed by {@code Dirty*Array}
+ * accesses (e.g. {@link DirtyFloatArray}), and only modified cells are written
+ * back.
+ * </p>
+ * 
+ * @author agent
+ */
+public class CachedCellImgFactory< T extends NativeType< T > > extends AbstractCellImgFactory< T >
+{
+	/**
+	 * Default memory budget of the cell cache: 256 MB.
+	 */
+	public static final long DEFAULT_MAX_CACHE_BYTES = 256l * 1024 * 1024;
+
+	private final CellLoader< ? > loader;
+
+	private final CellWriter< ? > writer;
+
+	private final CellCacheFactory cacheFactory;
+
+	/**
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 * @param loader
+	 *            populates newly created cells.
+	 * @param writer
+	 *            writes back modified cells. May be {@code null}.
+	 * @param cacheFactory
+	 *            creates the cell cache of each image, e.g. a
+	 *            {@link ConcurrentCellCacheFactory} for images that are
+	 *            accessed by many threads.
+	 */
+	public CachedCellImgFactory( final int[] cellDimensions, final CellLoader< ? > loader, final CellWriter< ? > writer, final CellCacheFactory cacheFactory )
+	{
+		super( cellDimensions );
+		this.loader = loader;
+		this.writer = writer;
+		this.cacheFactory = cacheFactory;
+	}
+
+	/**
+	 * Create a factory for images that hold their cells in a
+	 * {@link LruCellCache}.
+	 * 
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 * @param loader
+	 *            populates newly created cells.
+	 * @param writer
+	 *            writes back modified cells. May be {@code null}.
+	 * @param maxCacheBytes
+	 *            memory budget of the cell cache, in bytes.
+	 */
+	public CachedCellImgFactory( final int[] cellDimensions, final CellLoader< ? > loader, final CellWriter< ? > writer, final long maxCacheBytes )
+	{
+		this( cellDimensions, loader, writer, new LruCellCacheFactory( maxCacheBytes ) );
+	}
+
+	/**
+	 * Create a factory for read-only cached images with the
+	 * {@link #DEFAULT_MAX_CACHE_BYTES default} memory budget.
+	 * 
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 * @param loader
+	 *            populates newly created cells.
+	 */
+	public CachedCellImgFactory( final int[] cellDimensions, final CellLoader< ? > loader )
+	{
+		this( cellDimensions, loader, null, DEFAULT_MAX_CACHE_BYTES );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public CachedCellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( CachedCellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CachedCellImg< T, ByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( writer == null ? new ByteArray( 1 ) : new DirtyByteArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, CharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( writer == null ? new CharArray( 1 ) : new DirtyCharArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, ShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( writer == null ? new ShortArray( 1 ) : new DirtyShortArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, IntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( writer == null ? new IntArray( 1 ) : new DirtyIntArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, LongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( writer == null ? new LongArray( 1 ) : new DirtyLongArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, FloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( writer == null ? new FloatArray( 1 ) : new DirtyFloatArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( writer == null ? new DoubleArray( 1 ) : new DirtyDoubleArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	/**
+	 * Returns a {@link CellImgFactory}, because images created for other
+	 * types can not be populated by the loader of this factory.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new CellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private < A extends DataAccess< A > > CachedCellImg< T, A > createInstance( final A creator, long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		dimensions = checkDimensions( dimensions );
+		final int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+		final CachedCells< A > cells = new CachedCells< A >( creator, entitiesPerPixel, dimensions, cellSize, ( CellLoader< A > ) loader, ( CellWriter< A > ) writer, cacheFactory );
+		return new CachedCellImg< T, A >( new CellImgFactory< T >( cellSize ), cells );
+	}
+}
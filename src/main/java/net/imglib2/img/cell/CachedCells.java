@@ -0,0 +1,319 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.DataAccess;
+import net.imglib2.img.basictypeaccess.Dirty;
+import net.imglib2.img.basictypeaccess.SizedAccess;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.IterableRandomAccessibleInterval;
+
+/**
+ * {@link Cells} that are created on first access. Cells are populated by a
+ * {@link CellLoader} and held in a {@link CellCache} which may evict them. If
+ * a {@link CellWriter} is given, evicted cells are written back if they were
+ * modified (this requires a {@link Dirty} creator access, e.g.
+ * {@link net.imglib2.img.basictypeaccess.array.DirtyFloatArray}, otherwise all
+ * evicted cells are written back).
+ * 
+ * <p>
+ * The cell that a {@link CellRandomAccess} or {@link CellCursor} currently
+ * points into is {@link CellCache#pin(long) pinned}, so that it is not evicted
+ * while the access may still write to it. The pin is released when the access
+ * moves to another cell, or when it is garbage collected. Abandoned accesses
+ * therefore keep their cell in memory until the next garbage collection.
+ * </p>
+ * 
+ * @param <A>
+ *            the basic type access of the cells.
+ * 
+ * @author agent
+ */
+public class CachedCells< A extends DataAccess< A > > extends AbstractCells< A, DefaultCell< A >, IterableRandomAccessibleInterval< DefaultCell< A > > >
+{
+	private final A creator;
+
+	private final CellLoader< A > loader;
+
+	private final CellWriter< A > writer;
+
+	private final CellCache< A > cache;
+
+	private final IterableRandomAccessibleInterval< DefaultCell< A > > cells;
+
+	/**
+	 * The {@link Pin}s of all {@link CellGridRandomAccess}es that may still
+	 * hold a pin.
+	 */
+	private final Set< Pin > pins;
+
+	/**
+	 * Receives the {@link Pin}s of garbage-collected
+	 * {@link CellGridRandomAccess}es.
+	 */
+	private final ReferenceQueue< Object > releasedPins;
+
+	/**
+	 * Create cells that are held in a {@link CellCache} created by
+	 * {@code cacheFactory}.
+	 * 
+	 * @param creator
+	 *            used to allocate cell data. Must be a {@link SizedAccess}.
+	 * @param entitiesPerPixel
+	 * @param dimensions
+	 *            dimensions of the image.
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 * @param loader
+	 *            populates newly created cells.
+	 * @param writer
+	 *            writes back modified cells. May be {@code null}.
+	 * @param cacheFactory
+	 *            creates the cache holding the cells.
+	 */
+	public CachedCells( final A creator, final Fraction entitiesPerPixel, final long[] dimensions, final int[] cellDimensions, final CellLoader< A > loader, final CellWriter< A > writer, final CellCacheFactory cacheFactory )
+	{
+		super( entitiesPerPixel, dimensions, cellDimensions );
+		if ( !( creator instanceof SizedAccess ) )
+			throw new IllegalArgumentException( "cell data must implement SizedAccess" );
+		this.creator = creator;
+		this.loader = loader;
+		this.writer = writer;
+		this.cache = cacheFactory.create( new CellBackend() );
+		this.cells = new IterableRandomAccessibleInterval< DefaultCell< A > >( new CellGrid() );
+		this.pins = Collections.newSetFromMap( new ConcurrentHashMap< Pin, Boolean >() );
+		this.releasedPins = new ReferenceQueue< Object >();
+	}
+
+	/**
+	 * Create cells that are held in a {@link LruCellCache}.
+	 * 
+	 * @param creator
+	 *            used to allocate cell data. Must be a {@link SizedAccess}.
+	 * @param entitiesPerPixel
+	 * @param dimensions
+	 *            dimensions of the image.
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 * @param loader
+	 *            populates newly created cells.
+	 * @param writer
+	 *            writes back modified cells. May be {@code null}.
+	 * @param maxCacheBytes
+	 *            memory budget of the {@link LruCellCache}, in bytes.
+	 */
+	public CachedCells( final A creator, final Fraction entitiesPerPixel, final long[] dimensions, final int[] cellDimensions, final CellLoader< A > loader, final CellWriter< A > writer, final long maxCacheBytes )
+	{
+		this( creator, entitiesPerPixel, dimensions, cellDimensions, loader, writer, new LruCellCacheFactory( maxCacheBytes ) );
+	}
+
+	@Override
+	protected IterableRandomAccessibleInterval< DefaultCell< A > > cells()
+	{
+		return cells;
+	}
+
+	public CellCache< A > getCache()
+	{
+		return cache;
+	}
+
+	/**
+	 * Release the pins of garbage-collected accesses.
+	 */
+	private void releasePins()
+	{
+		Pin pin;
+		while ( ( pin = ( Pin ) releasedPins.poll() ) != null )
+		{
+			pins.remove( pin );
+			if ( pin.index >= 0 )
+				cache.unpin( pin.index );
+		}
+	}
+
+	private class CellBackend implements CellCache.Backend< A >
+	{
+		private final long[] cellGridPosition = new long[ n ];
+
+		private final long[] cellMin = new long[ n ];
+
+		private final int[] cellDims = new int[ n ];
+
+		@Override
+		public DefaultCell< A > load( final long index )
+		{
+			final DefaultCell< A > cell;
+			synchronized ( this )
+			{
+				IntervalIndexer.indexToPosition( index, numCells, cellGridPosition );
+				getCellDimensions( cellGridPosition, cellMin, cellDims );
+				cell = new DefaultCell< A >( creator, cellDims, cellMin, entitiesPerPixel );
+			}
+			loader.load( cell );
+			final A data = cell.getData();
+			if ( data instanceof Dirty )
+				( ( Dirty ) data ).setDirty( false );
+			return cell;
+		}
+
+		@Override
+		public void writeBack( final long index, final DefaultCell< A > cell )
+		{
+			if ( writer == null )
+				return;
+			final A data = cell.getData();
+			if ( data instanceof Dirty )
+			{
+				final Dirty dirty = ( Dirty ) data;
+				if ( !dirty.isDirty() )
+					return;
+				dirty.setDirty( false );
+			}
+			writer.write( cell );
+		}
+
+		@Override
+		public long sizeInBytes( final DefaultCell< A > cell )
+		{
+			return ( ( SizedAccess ) cell.getData() ).getSizeInBytes();
+		}
+	}
+
+	/**
+	 * The cell grid as a {@link RandomAccessibleInterval} whose accesses fetch
+	 * cells from the cache.
+	 */
+	private class CellGrid extends AbstractInterval implements RandomAccessibleInterval< DefaultCell< A > >
+	{
+		CellGrid()
+		{
+			super( numCells );
+		}
+
+		@Override
+		public RandomAccess< DefaultCell< A > > randomAccess()
+		{
+			return new CellGridRandomAccess();
+		}
+
+		@Override
+		public RandomAccess< DefaultCell< A > > randomAccess( final Interval interval )
+		{
+			return randomAccess();
+		}
+	}
+
+	/**
+	 * The pin held by a {@link CellGridRandomAccess}. Enqueued in
+	 * {@link CachedCells#releasedPins} when the access is garbage collected.
+	 */
+	private static final class Pin extends WeakReference< Object >
+	{
+		/**
+		 * The flattened index of the pinned cell, or -1.
+		 */
+		volatile long index = -1;
+
+		Pin( final Object access, final ReferenceQueue< Object > queue )
+		{
+			super( access, queue );
+		}
+	}
+
+	/**
+	 * Accesses the cell grid. Keeps the cell at the current position pinned.
+	 */
+	private class CellGridRandomAccess extends Point implements RandomAccess< DefaultCell< A > >
+	{
+		private final Pin pin;
+
+		private DefaultCell< A > cell;
+
+		CellGridRandomAccess()
+		{
+			super( CachedCells.this.n );
+			pin = new Pin( this, releasedPins );
+			pins.add( pin );
+		}
+
+		CellGridRandomAccess( final CellGridRandomAccess ra )
+		{
+			super( ra.position, true );
+			pin = new Pin( this, releasedPins );
+			pins.add( pin );
+		}
+
+		@Override
+		public DefaultCell< A > get()
+		{
+			final long index = IntervalIndexer.positionToIndex( position, numCells );
+			if ( index != pin.index )
+			{
+				releasePins();
+				final DefaultCell< A > newCell = cache.pin( index );
+				if ( pin.index >= 0 )
+					cache.unpin( pin.index );
+				pin.index = index;
+				cell = newCell;
+			}
+			return cell;
+		}
+
+		@Override
+		public CellGridRandomAccess copy()
+		{
+			return new CellGridRandomAccess( this );
+		}
+
+		@Override
+		public CellGridRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.img.basictypeaccess.DataAccess;
+
+/**
+ * Holds the {@link DefaultCell cells} of {@link CachedCells}, keyed by their
+ * flattened index in the cell grid. Cells that are not present are obtained
+ * from a {@link Backend} on first access. A cache may evict cells that are
+ * not {@link #pin(long) pinned} at any time, after passing them to
+ * {@link Backend#writeBack(long, DefaultCell)}.
+ * 
+ * @author agent
+ */
+public interface CellCache< A extends DataAccess< A > >
+{
+	/**
+	 * Loads and writes back the cells of a {@link CellCache}.
+	 */
+	public interface Backend< A extends DataAccess< A > >
+	{
+		/**
+		 * Create and populate the cell with the given flattened grid index.
+		 */
+		public DefaultCell< A > load( long index );
+
+		/**
+		 * Write back the cell with the given flattened grid index if it was
+		 * modified.
+		 */
+		public void writeBack( long index, DefaultCell< A > cell );
+
+		/**
+		 * @return the approximate memory size of the cell data, in bytes.
+		 */
+		public long sizeInBytes( DefaultCell< A > cell );
+	}
+
+	/**
+	 * Get the cell with the given flattened grid index, loading it if it is
+	 * not present.
+	 */
+	public DefaultCell< A > get( long index );
+
+	/**
+	 * Get the cell with the given flattened grid index, like
+	 * {@link #get(long)}, and pin it. A pinned cell is not evicted until it is
+	 * unpinned as many times as it was pinned. Code that keeps writing to a
+	 * cell must pin it, otherwise its writes may go to a cell that was already
+	 * evicted and written back.
+	 */
+	public DefaultCell< A > pin( long index );
+
+	/**
+	 * Release one {@link #pin(long) pin} of the cell with the given flattened
+	 * grid index.
+	 */
+	public void unpin( long index );
+
+	/**
+	 * Write back all modified cells. Cells stay in the cache.
+	 */
+	public void flush();
+
+	/**
+	 * Write back all modified cells and remove all cells that are not pinned
+	 * from the cache.
+	 */
+	public void invalidateAll();
+}
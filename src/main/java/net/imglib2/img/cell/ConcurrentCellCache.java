@@ -0,0 +1,471 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.imglib2.img.basictypeaccess.DataAccess;
+
+/**
+ * A thread-safe {@link CellCache} for {@link CachedCells} that are accessed by
+ * many threads, each with its own {@link CellRandomAccess} or
+ * {@link CellCursor}.
+ * 
+ * <ul>
+ * <li>Hits do not lock. They are a lookup in a {@link ConcurrentHashMap}
+ * followed by a volatile read.</li>
+ * <li>Loading is deduplicated. A thread requesting a cell that is currently
+ * being loaded by another thread waits for that load to complete.</li>
+ * <li>If the memory size of the loaded cells exceeds the budget, cells are
+ * evicted by one thread at a time, while other threads continue. A cell that
+ * is requested while it is written back is reused rather than reloaded.</li>
+ * </ul>
+ * 
+ * <p>
+ * Cells are evicted in CLOCK (second chance) order: loaded cells are kept in
+ * a queue, and a cell that was used since it was last examined is moved to
+ * the back of the queue instead of being evicted. This approximates least
+ * recently used eviction at amortized constant cost per miss. The numbers of
+ * hits, misses (loads) and evictions are counted for monitoring.
+ * </p>
+ * 
+ * <p>
+ * {@link #pin(long) Pinned} cells are not evicted, even if that exceeds the
+ * memory budget.
+ * </p>
+ * 
+ * @author agent
+ */
+public class ConcurrentCellCache< A extends DataAccess< A > > implements CellCache< A >
+{
+	private final Backend< A > backend;
+
+	private final long maxBytes;
+
+	private final ConcurrentHashMap< Long, Entry< A > > cells;
+
+	/**
+	 * Cells that have been evicted and are currently written back.
+	 */
+	private final ConcurrentHashMap< Long, DefaultCell< A > > writingBack;
+
+	private final AtomicLong bytes;
+
+	/**
+	 * Loaded cells in eviction order. May contain entries that have been
+	 * evicted by {@link #invalidateAll()}, these are skipped.
+	 */
+	private final ConcurrentLinkedQueue< Entry< A > > queue;
+
+	/**
+	 * Number of entries in {@link #queue}.
+	 */
+	private final AtomicInteger queueSize;
+
+	private final ReentrantLock evictionLock;
+
+	private final StripedCounter hits;
+
+	private final AtomicLong misses;
+
+	private final AtomicLong evictions;
+
+	/**
+	 * @param backend
+	 *            loads and writes back cells.
+	 * @param maxBytes
+	 *            maximum memory size of the cached cells, in bytes.
+	 */
+	public ConcurrentCellCache( final Backend< A > backend, final long maxBytes )
+	{
+		this.backend = backend;
+		this.maxBytes = maxBytes;
+		cells = new ConcurrentHashMap< Long, Entry< A > >();
+		writingBack = new ConcurrentHashMap< Long, DefaultCell< A > >();
+		bytes = new AtomicLong();
+		queue = new ConcurrentLinkedQueue< Entry< A > >();
+		queueSize = new AtomicInteger();
+		evictionLock = new ReentrantLock();
+		hits = new StripedCounter();
+		misses = new AtomicLong();
+		evictions = new AtomicLong();
+	}
+
+	@Override
+	public DefaultCell< A > get( final long index )
+	{
+		return get( index, false );
+	}
+
+	@Override
+	public DefaultCell< A > pin( final long index )
+	{
+		return get( index, true );
+	}
+
+	@Override
+	public void unpin( final long index )
+	{
+		final Entry< A > entry = cells.get( index );
+		if ( entry == null || entry.pins.getAndDecrement() <= 0 )
+			throw new IllegalStateException( "cell " + index + " is not pinned" );
+	}
+
+	@Override
+	public void flush()
+	{
+		for ( final Entry< A > entry : cells.values() )
+		{
+			final DefaultCell< A > cell = entry.cell;
+			if ( cell != null )
+				backend.writeBack( entry.index, cell );
+		}
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		evictionLock.lock();
+		try
+		{
+			for ( final Entry< A > entry : cells.values() )
+				if ( entry.cell != null )
+					evict( entry );
+		}
+		finally
+		{
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of requests that were answered from the cache,
+	 *         including requests that waited for another thread loading the
+	 *         cell.
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that loaded a cell.
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of evicted cells.
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of cached cells, including cells currently loading.
+	 */
+	public int getCellCount()
+	{
+		return cells.size();
+	}
+
+	/**
+	 * @return the memory size of the cached cells, in bytes.
+	 */
+	public long sizeInBytes()
+	{
+		return bytes.get();
+	}
+
+	private DefaultCell< A > get( final long index, final boolean pin )
+	{
+		final Long key = index;
+		while ( true )
+		{
+			Entry< A > entry = cells.get( key );
+			if ( entry != null )
+			{
+				final DefaultCell< A > cell = entry.cell;
+				if ( cell != null )
+				{
+					if ( pin && !entry.pin() )
+						continue;
+					hits.increment();
+					entry.touch();
+					return cell;
+				}
+			}
+			else
+			{
+				final Entry< A > newEntry = new Entry< A >( index, this );
+				entry = cells.putIfAbsent( key, newEntry );
+				if ( entry == null )
+				{
+					entry = newEntry;
+					misses.incrementAndGet();
+					entry.future.run();
+					final DefaultCell< A > cell = await( key, entry );
+					entry.bytes = backend.sizeInBytes( cell );
+					entry.touch();
+					if ( pin )
+						entry.pins.incrementAndGet();
+					entry.cell = cell;
+					queue.offer( entry );
+					queueSize.incrementAndGet();
+					if ( bytes.addAndGet( entry.bytes ) > maxBytes )
+						evict();
+					return cell;
+				}
+			}
+			// another thread is loading this cell
+			final DefaultCell< A > cell = await( key, entry );
+			if ( pin && !entry.pin() )
+				continue;
+			hits.increment();
+			return cell;
+		}
+	}
+
+	private DefaultCell< A > await( final Long key, final Entry< A > entry )
+	{
+		boolean interrupted = false;
+		try
+		{
+			while ( true )
+			{
+				try
+				{
+					return entry.future.get();
+				}
+				catch ( final InterruptedException e )
+				{
+					interrupted = true;
+				}
+				catch ( final ExecutionException e )
+				{
+					cells.remove( key, entry );
+					final Throwable cause = e.getCause();
+					if ( cause instanceof RuntimeException )
+						throw ( RuntimeException ) cause;
+					if ( cause instanceof Error )
+						throw ( Error ) cause;
+					throw new RuntimeException( cause );
+				}
+			}
+		}
+		finally
+		{
+			if ( interrupted )
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Load a cell, or reuse it if it is currently written back.
+	 */
+	private DefaultCell< A > load( final long index )
+	{
+		final DefaultCell< A > cell = writingBack.get( index );
+		return cell != null ? cell : backend.load( index );
+	}
+
+	/**
+	 * Evict cells in CLOCK order until the memory budget is met. Returns
+	 * immediately if another thread is already evicting.
+	 */
+	private void evict()
+	{
+		if ( !evictionLock.tryLock() )
+			return;
+		try
+		{
+			// every entry is examined at most twice, even if other threads
+			// keep using them. Keep at least the most recently loaded cell.
+			for ( int i = 2 * queueSize.get(); i > 0 && bytes.get() > maxBytes && queueSize.get() > 1; --i )
+			{
+				final Entry< A > entry = queue.poll();
+				if ( entry.evicted )
+					queueSize.decrementAndGet();
+				else if ( entry.referenced )
+				{
+					entry.referenced = false;
+					queue.offer( entry );
+				}
+				else if ( evict( entry ) )
+					queueSize.decrementAndGet();
+				else
+					queue.offer( entry );
+			}
+		}
+		finally
+		{
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Remove a loaded entry and write it back, unless it is pinned. Must be
+	 * called while holding the eviction lock.
+	 * 
+	 * @return whether the entry was evicted.
+	 */
+	private boolean evict( final Entry< A > entry )
+	{
+		// pair with Entry.pin(): either we see the pin, or the pinning thread
+		// sees that the entry is evicted
+		entry.evicted = true;
+		if ( entry.pins.get() > 0 )
+		{
+			entry.evicted = false;
+			return false;
+		}
+		final Long key = entry.index;
+		final DefaultCell< A > cell = entry.cell;
+		writingBack.put( key, cell );
+		if ( cells.remove( key, entry ) )
+		{
+			bytes.addAndGet( -entry.bytes );
+			evictions.incrementAndGet();
+			backend.writeBack( entry.index, cell );
+		}
+		writingBack.remove( key, cell );
+		return true;
+	}
+
+	private static final class Entry< A extends DataAccess< A > >
+	{
+		final long index;
+
+		final FutureTask< DefaultCell< A > > future;
+
+		/**
+		 * The loaded cell, or {@code null} while loading.
+		 */
+		volatile DefaultCell< A > cell;
+
+		/**
+		 * Whether the cell was used since it was last examined for eviction.
+		 */
+		volatile boolean referenced;
+
+		/**
+		 * Set when the entry is evicted. Only written while holding the
+		 * eviction lock.
+		 */
+		volatile boolean evicted;
+
+		/**
+		 * Number of pins. An entry with pins is not evicted.
+		 */
+		final AtomicInteger pins = new AtomicInteger();
+
+		long bytes;
+
+		Entry( final long index, final ConcurrentCellCache< A > cache )
+		{
+			this.index = index;
+			this.future = new FutureTask< DefaultCell< A > >( new Callable< DefaultCell< A > >()
+			{
+				@Override
+				public DefaultCell< A > call()
+				{
+					return cache.load( index );
+				}
+			} );
+		}
+
+		/**
+		 * Pin this entry.
+		 * 
+		 * @return false if the entry is evicted. Then the pin is not taken and
+		 *         the cell must be looked up again.
+		 */
+		boolean pin()
+		{
+			pins.incrementAndGet();
+			if ( evicted )
+			{
+				pins.decrementAndGet();
+				return false;
+			}
+			return true;
+		}
+
+		void touch()
+		{
+			// avoid writing the shared flag on every hit
+			if ( !referenced )
+				referenced = true;
+		}
+	}
+
+	/**
+	 * A counter that is incremented by many threads. Increments are spread
+	 * over several padded slots to avoid contention.
+	 */
+	private static final class StripedCounter
+	{
+		private static final int STRIPES = 16;
+
+		private static final int PADDING = 8;
+
+		private final AtomicLongArray counts = new AtomicLongArray( STRIPES * PADDING );
+
+		void increment()
+		{
+			final int stripe = ( int ) ( Thread.currentThread().getId() % STRIPES );
+			counts.incrementAndGet( stripe * PADDING );
+		}
+
+		long get()
+		{
+			long sum = 0;
+			for ( int i = 0; i < STRIPES; ++i )
+				sum += counts.get( i * PADDING );
+			return sum;
+		}
+	}
+}
@@ -34,7 +34,7 @@
 
 package net.imglib2.img.cell;
 
-import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.DataAccess;
 import net.imglib2.util.Fraction;
 
 /**
@@ -43,7 +43,7 @@ import net.imglib2.util.Fraction;
  * 
  * @author Tobias Pietzsch (tobias.pietzsch@gmail.com)
  */
-public final class DefaultCell< A extends ArrayDataAccess< A > > extends AbstractCell< A >
+public final class DefaultCell< A extends DataAccess< A > > extends AbstractCell< A >
 {
 	private final A data;
 
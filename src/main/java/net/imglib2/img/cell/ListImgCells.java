@@ -34,7 +34,7 @@
 
 package net.imglib2.img.cell;
 
-import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.DataAccess;
 import net.imglib2.img.list.ListImg;
 import net.imglib2.img.list.ListImgFactory;
 import net.imglib2.img.list.ListLocalizingCursor;
@@ -47,7 +47,7 @@ import net.imglib2.util.Fraction;
  * 
  * @author Tobias Pietzsch (tobias.pietzsch@gmail.com)
  */
-public class ListImgCells< A extends ArrayDataAccess< A > > extends AbstractCells< A, DefaultCell< A >, ListImg< DefaultCell< A > > >
+public class ListImgCells< A extends DataAccess< A > > extends AbstractCells< A, DefaultCell< A >, ListImg< DefaultCell< A > > >
 {
 	private final ListImg< DefaultCell< A > > cells;
 
@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.img.basictypeaccess.DataAccess;
+
+/**
+ * A {@link CellCache} that keeps the most recently used cells up to a maximum
+ * memory size. Cells beyond that size are evicted in least-recently-used
+ * order: they are written back and then only referenced softly, so that they
+ * can still be reused until the garbage collector reclaims them.
+ * 
+ * <p>
+ * {@link #pin(long) Pinned} cells are not evicted, even if that exceeds the
+ * memory budget.
+ * </p>
+ * 
+ * <p>
+ * All methods are synchronized on the cache, i.e., loading a cell blocks all
+ * other threads.
+ * </p>
+ * 
+ * @author agent
+ */
+public class LruCellCache< A extends DataAccess< A > > implements CellCache< A >
+{
+	private final Backend< A > backend;
+
+	private final long maxBytes;
+
+	private long bytes;
+
+	private final LinkedHashMap< Long, DefaultCell< A > > cells;
+
+	private final HashMap< Long, CellReference< A > > softCells;
+
+	/**
+	 * Number of pins of each pinned cell.
+	 */
+	private final HashMap< Long, Integer > pins;
+
+	private final ReferenceQueue< DefaultCell< A > > queue;
+
+	/**
+	 * @param backend
+	 *            loads and writes back cells.
+	 * @param maxBytes
+	 *            maximum memory size of the strongly referenced cells, in
+	 *            bytes. At least the most recently used cell is always kept.
+	 */
+	public LruCellCache( final Backend< A > backend, final long maxBytes )
+	{
+		this.backend = backend;
+		this.maxBytes = maxBytes;
+		this.bytes = 0;
+		this.cells = new LinkedHashMap< Long, DefaultCell< A > >( 16, 0.75f, true );
+		this.softCells = new HashMap< Long, CellReference< A > >();
+		this.pins = new HashMap< Long, Integer >();
+		this.queue = new ReferenceQueue< DefaultCell< A > >();
+	}
+
+	@Override
+	public synchronized DefaultCell< A > get( final long index )
+	{
+		final DefaultCell< A > cell = getNoEvict( index );
+		evict();
+		return cell;
+	}
+
+	@Override
+	public synchronized DefaultCell< A > pin( final long index )
+	{
+		final DefaultCell< A > cell = getNoEvict( index );
+		final Long key = index;
+		final Integer count = pins.get( key );
+		pins.put( key, count == null ? 1 : count + 1 );
+		evict();
+		return cell;
+	}
+
+	@Override
+	public synchronized void unpin( final long index )
+	{
+		final Long key = index;
+		final Integer count = pins.get( key );
+		if ( count == null )
+			throw new IllegalStateException( "cell " + index + " is not pinned" );
+		if ( count == 1 )
+			pins.remove( key );
+		else
+			pins.put( key, count - 1 );
+	}
+
+	@Override
+	public synchronized void flush()
+	{
+		for ( final Map.Entry< Long, DefaultCell< A > > entry : cells.entrySet() )
+			backend.writeBack( entry.getKey(), entry.getValue() );
+		cleanSoftCells();
+		for ( final CellReference< A > ref : new ArrayList< CellReference< A > >( softCells.values() ) )
+		{
+			final DefaultCell< A > cell = ref.get();
+			if ( cell != null )
+				backend.writeBack( ref.index, cell );
+		}
+	}
+
+	@Override
+	public synchronized void invalidateAll()
+	{
+		flush();
+		final Iterator< Map.Entry< Long, DefaultCell< A > > > it = cells.entrySet().iterator();
+		while ( it.hasNext() )
+		{
+			final Map.Entry< Long, DefaultCell< A > > entry = it.next();
+			if ( !pins.containsKey( entry.getKey() ) )
+			{
+				it.remove();
+				bytes -= backend.sizeInBytes( entry.getValue() );
+			}
+		}
+		softCells.clear();
+	}
+
+	/**
+	 * @return the memory size of the strongly referenced cells, in bytes.
+	 */
+	public synchronized long sizeInBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Get a cell from {@link #cells}, {@link #softCells} or the backend. Newly
+	 * added cells count towards {@link #bytes}, but are not evicted.
+	 */
+	private DefaultCell< A > getNoEvict( final long index )
+	{
+		final Long key = index;
+		DefaultCell< A > cell = cells.get( key );
+		if ( cell == null )
+		{
+			cleanSoftCells();
+			final CellReference< A > ref = softCells.remove( key );
+			if ( ref != null )
+				cell = ref.get();
+			if ( cell == null )
+				cell = backend.load( index );
+			cells.put( key, cell );
+			bytes += backend.sizeInBytes( cell );
+		}
+		return cell;
+	}
+
+	/**
+	 * Evict least recently used cells that are not pinned until the memory
+	 * budget is met. The most recently used cell is kept.
+	 */
+	private void evict()
+	{
+		final Iterator< Map.Entry< Long, DefaultCell< A > > > it = cells.entrySet().iterator();
+		while ( bytes > maxBytes && it.hasNext() )
+		{
+			final Map.Entry< Long, DefaultCell< A > > eldest = it.next();
+			if ( !it.hasNext() )
+				break;
+			final Long key = eldest.getKey();
+			if ( pins.containsKey( key ) )
+				continue;
+			it.remove();
+			final DefaultCell< A > cell = eldest.getValue();
+			bytes -= backend.sizeInBytes( cell );
+			backend.writeBack( key, cell );
+			softCells.put( key, new CellReference< A >( key, cell, queue ) );
+		}
+	}
+
+	/**
+	 * Remove entries for garbage-collected cells.
+	 */
+	private void cleanSoftCells()
+	{
+		CellReference< ? > ref;
+		while ( ( ref = ( CellReference< ? > ) queue.poll() ) != null )
+			if ( softCells.get( ref.index ) == ref )
+				softCells.remove( ref.index );
+	}
+
+	private static final class CellReference< A extends DataAccess< A > > extends SoftReference< DefaultCell< A > >
+	{
+		final long index;
+
+		CellReference( final long index, final DefaultCell< A > cell, final ReferenceQueue< DefaultCell< A > > queue )
+		{
+			super( cell, queue );
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link net.imglib2.Cursor} on a {@link PagedArrayImg}.
+ * 
+ * @param <T>
+ * 
+ * @author agent
+ */
+public class PagedArrayCursor< T extends NativeType< T > > extends AbstractCursor< T > implements PagedArrayImg.PagedContainerSampler
+{
+	protected final T type;
+
+	protected final PagedArrayImg< T, ? > img;
+
+	protected final long[] dimensions;
+
+	protected final int pageShift;
+
+	protected final int lastPageIndex;
+
+	/**
+	 * The last index in the last page.
+	 */
+	protected final int lastIndexInLastPage;
+
+	protected int pageIndex;
+
+	/**
+	 * The current index of the type in the current page.
+	 */
+	protected int index;
+
+	/**
+	 * The last index in the current page.
+	 */
+	protected int lastIndex;
+
+	protected PagedArrayCursor( final PagedArrayCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+		img = cursor.img;
+		type = img.createLinkedType();
+		dimensions = cursor.dimensions;
+		pageShift = cursor.pageShift;
+		lastPageIndex = cursor.lastPageIndex;
+		lastIndexInLastPage = cursor.lastIndexInLastPage;
+		pageIndex = cursor.pageIndex;
+		index = cursor.index;
+		lastIndex = cursor.lastIndex;
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	public PagedArrayCursor( final PagedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+		this.img = img;
+		type = img.createLinkedType();
+		dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		pageShift = img.pageShift;
+		lastPageIndex = img.numPages() - 1;
+		lastIndexInLastPage = ( int ) ( img.size() - 1 - ( ( long ) lastPageIndex << pageShift ) );
+		reset();
+	}
+
+	@Override
+	public int getCurrentPageIndex()
+	{
+		return pageIndex;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public PagedArrayCursor< T > copy()
+	{
+		return new PagedArrayCursor< T >( this );
+	}
+
+	@Override
+	public PagedArrayCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return ( index < lastIndex ) || ( pageIndex < lastPageIndex );
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( ++index > lastIndex )
+		{
+			index = 0;
+			setPage( pageIndex + 1 );
+		}
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		if ( steps == 0 )
+			return;
+		final long newIndex = globalIndex() + steps;
+		index = ( int ) newIndex & img.pageMask;
+		final int newPageIndex = ( int ) ( newIndex >> pageShift );
+		if ( newPageIndex != pageIndex )
+			setPage( newPageIndex );
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void reset()
+	{
+		index = -1;
+		setPage( 0 );
+		type.updateIndex( -1 );
+	}
+
+	/**
+	 * @return the index of the current pixel in the flat iteration order.
+	 */
+	public long globalIndex()
+	{
+		return ( ( long ) pageIndex << pageShift ) + index;
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		IntervalIndexer.indexToPosition( globalIndex(), dimensions, position );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return IntervalIndexer.indexToPosition( globalIndex(), dimensions, img.steps, d );
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	private void setPage( final int page )
+	{
+		pageIndex = page;
+		lastIndex = ( page == lastPageIndex ) ? lastIndexInLastPage : img.pageMask;
+		type.updateContainer( this );
+	}
+}
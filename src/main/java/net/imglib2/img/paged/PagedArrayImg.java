@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import java.util.ArrayList;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.basictypeaccess.DataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * A flat array image, like {@link net.imglib2.img.array.ArrayImg}, whose
+ * pixels are split into pages of 2<sup>pageShift</sup> pixels. Each page is a
+ * separate basic type access. Cursors and random accesses index pixels with
+ * <code>long</code> and switch pages as needed, so the number of pixels is not
+ * limited to {@link Integer#MAX_VALUE}.
+ * 
+ * <p>
+ * Iteration order is flat, as for {@link net.imglib2.img.array.ArrayImg}.
+ * Pages are not aligned to rows or planes.
+ * </p>
+ * 
+ * @param <T>
+ * @param <A>
+ * 
+ * @author agent
+ */
+public class PagedArrayImg< T extends NativeType< T >, A extends DataAccess< A > > extends AbstractNativeImg< T, A >
+{
+	/**
+	 * The smallest supported page shift. Pages of at least 64 pixels hold a
+	 * whole number of entities for all types packing several pixels into one
+	 * entity.
+	 */
+	public static final int MIN_PAGE_SHIFT = 6;
+
+	/**
+	 * The largest supported page shift.
+	 */
+	public static final int MAX_PAGE_SHIFT = 30;
+
+	/**
+	 * This interface is implemented by all samplers on the
+	 * {@link PagedArrayImg}. It allows the container to ask for the page the
+	 * sampler is currently in.
+	 */
+	public interface PagedContainerSampler
+	{
+		/**
+		 * @return the index of the page the sampler is currently accessing.
+		 */
+		public int getCurrentPageIndex();
+	}
+
+	final protected int pageShift;
+
+	final protected int pageMask;
+
+	final protected long[] steps;
+
+	final protected ArrayList< A > pages;
+
+	/**
+	 * Create a {@link PagedArrayImg} whose pages are created using
+	 * {@link DataAccess#createArray(int)} of the given creator, for
+	 * example a {@link net.imglib2.img.basictypeaccess.array.FloatArray} for
+	 * pages on the Java heap, or a
+	 * {@link net.imglib2.img.basictypeaccess.nio.FloatBufferAccess} for pages
+	 * in direct buffers.
+	 * 
+	 * @param creator
+	 *            used to create the pages.
+	 * @param dim
+	 *            dimensions of the image.
+	 * @param entitiesPerPixel
+	 * @param pageShift
+	 *            pages hold 2<sup>pageShift</sup> pixels.
+	 */
+	public PagedArrayImg( final A creator, final long[] dim, final Fraction entitiesPerPixel, final int pageShift )
+	{
+		super( dim, entitiesPerPixel );
+
+		if ( pageShift < MIN_PAGE_SHIFT || pageShift > MAX_PAGE_SHIFT )
+			throw new IllegalArgumentException( "pageShift must be in [" + MIN_PAGE_SHIFT + ", " + MAX_PAGE_SHIFT + "]: " + pageShift );
+
+		final long pageSize = 1l << pageShift;
+		if ( entitiesPerPixel.mulCeil( pageSize ) > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of entities per page too big, use a smaller pageShift: " + entitiesPerPixel.mulCeil( pageSize ) + " > " + Integer.MAX_VALUE );
+
+		this.pageShift = pageShift;
+		this.pageMask = ( int ) ( pageSize - 1 );
+
+		steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dimension, steps );
+
+		final long numPages = ( numPixels + pageSize - 1 ) >> pageShift;
+		if ( numPages > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of pages too big, use a larger pageShift: " + numPages + " > " + Integer.MAX_VALUE );
+
+		pages = new ArrayList< A >( ( int ) numPages );
+		for ( long i = 0; i < numPages; ++i )
+		{
+			final long pixelsInPage = Math.min( pageSize, numPixels - ( i << pageShift ) );
+			pages.add( creator.createArray( ( int ) entitiesPerPixel.mulCeil( pixelsInPage ) ) );
+		}
+	}
+
+	@Override
+	public A update( final Object c )
+	{
+		return pages.get( ( ( PagedContainerSampler ) c ).getCurrentPageIndex() );
+	}
+
+	/**
+	 * @return pages hold 2<sup>pageShift</sup> pixels.
+	 */
+	public int getPageShift()
+	{
+		return pageShift;
+	}
+
+	/**
+	 * @return the number of pixels in each page but the last.
+	 */
+	public long pageSize()
+	{
+		return 1l << pageShift;
+	}
+
+	public int numPages()
+	{
+		return pages.size();
+	}
+
+	public A getPage( final int no )
+	{
+		return pages.get( no );
+	}
+
+	@Override
+	public PagedArrayCursor< T > cursor()
+	{
+		return new PagedArrayCursor< T >( this );
+	}
+
+	@Override
+	public PagedArrayLocalizingCursor< T > localizingCursor()
+	{
+		return new PagedArrayLocalizingCursor< T >( this );
+	}
+
+	@Override
+	public PagedArrayRandomAccess< T > randomAccess()
+	{
+		return new PagedArrayRandomAccess< T >( this );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public PagedArrayImgFactory< T > factory()
+	{
+		return new PagedArrayImgFactory< T >( pageShift );
+	}
+
+	@Override
+	public PagedArrayImg< T, ? > copy()
+	{
+		final PagedArrayImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+		ImgUtil.copy( this, copy );
+		return copy;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link RandomAccess} on a {@link PagedArrayImg}.
+ * 
+ * <p>
+ * The page is switched lazily when the index leaves the current page. While
+ * the position is outside the image, the type is not updated to a page, so
+ * (like for {@link net.imglib2.img.array.ArrayRandomAccess}) it must not be
+ * accessed.
+ * </p>
+ * 
+ * @param <T>
+ * 
+ * @author agent
+ */
+public class PagedArrayRandomAccess< T extends NativeType< T > > extends AbstractLocalizable implements RandomAccess< T >, PagedArrayImg.PagedContainerSampler
+{
+	protected final T type;
+
+	protected final PagedArrayImg< T, ? > img;
+
+	protected final long[] steps;
+
+	protected final int pageShift;
+
+	protected final int pageMask;
+
+	protected final int numPages;
+
+	/**
+	 * The index of the current pixel in the flat iteration order.
+	 */
+	protected long index;
+
+	protected int pageIndex;
+
+	protected PagedArrayRandomAccess( final PagedArrayRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+		img = randomAccess.img;
+		type = img.createLinkedType();
+		steps = randomAccess.steps;
+		pageShift = randomAccess.pageShift;
+		pageMask = randomAccess.pageMask;
+		numPages = randomAccess.numPages;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = randomAccess.position[ d ];
+		index = randomAccess.index;
+		pageIndex = -1;
+		updateType();
+	}
+
+	public PagedArrayRandomAccess( final PagedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+		this.img = img;
+		type = img.createLinkedType();
+		steps = img.steps;
+		pageShift = img.pageShift;
+		pageMask = img.pageMask;
+		numPages = img.numPages();
+		index = 0;
+		pageIndex = -1;
+		updateType();
+	}
+
+	@Override
+	public int getCurrentPageIndex()
+	{
+		return pageIndex;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		index += steps[ d ];
+		++position[ d ];
+		updateType();
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		index -= steps[ d ];
+		--position[ d ];
+		updateType();
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		move( ( long ) distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		index += steps[ d ] * distance;
+		position[ d ] += distance;
+		updateType();
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long distance = localizable.getLongPosition( d );
+			position[ d ] += distance;
+			index += distance * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		localizable.localize( position );
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+			index += position[ d ] * steps[ d ];
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		setPosition( ( long ) pos, d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		index += ( pos - position[ d ] ) * steps[ d ];
+		position[ d ] = pos;
+		updateType();
+	}
+
+	@Override
+	public PagedArrayRandomAccess< T > copy()
+	{
+		return new PagedArrayRandomAccess< T >( this );
+	}
+
+	@Override
+	public PagedArrayRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+
+	private void updateType()
+	{
+		final int page = ( int ) ( index >> pageShift );
+		if ( page != pageIndex )
+		{
+			pageIndex = page;
+			if ( page >= 0 && page < numPages )
+				type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) index & pageMask );
+	}
+}
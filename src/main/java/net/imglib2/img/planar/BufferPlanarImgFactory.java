@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory that creates {@link PlanarImg PlanarImgs} whose planes are held in
+ * direct (off-heap) {@link java.nio.ByteBuffer ByteBuffers}, see
+ * {@link net.imglib2.img.basictypeaccess.nio.BufferAccess}. Each plane is
+ * limited to 2 GB.
+ * 
+ * @author agent
+ */
+public class BufferPlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	@Override
+	public PlanarImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( PlanarImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public PlanarImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new PlanarImg< T, ByteBufferAccess >( new ByteBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public PlanarImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new PlanarImg< T, CharBufferAccess >( new CharBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public PlanarImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new PlanarImg< T, ShortBufferAccess >( new ShortBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public PlanarImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new PlanarImg< T, IntBufferAccess >( new IntBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public PlanarImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new PlanarImg< T, LongBufferAccess >( new LongBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public PlanarImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new PlanarImg< T, FloatBufferAccess >( new FloatBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public PlanarImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return new PlanarImg< T, DoubleBufferAccess >( new DoubleBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new BufferPlanarImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
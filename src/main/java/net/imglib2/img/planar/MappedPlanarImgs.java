@@ -0,0 +1,218 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import java.io.IOException;
+
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.MappedFile;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Convenience factory methods for creation of {@link PlanarImg} instances on
+ * memory-mapped files. The planes are expected one after another, starting at
+ * a given byte offset in the file, with the byte order of the
+ * {@link MappedFile}. Each plane is mapped separately, so the file may be
+ * larger than 2 GB as long as a single plane is not.
+ * 
+ * <p>
+ * Images on a {@link MappedFile.Mode#READ_ONLY read-only} file throw a
+ * {@link java.nio.ReadOnlyBufferException} when written to.
+ * </p>
+ * 
+ * @author agent
+ */
+final public class MappedPlanarImgs
+{
+	private MappedPlanarImgs()
+	{}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link UnsignedByteType}, {@link ByteBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< UnsignedByteType, ByteBufferAccess > unsignedBytes( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< UnsignedByteType, ByteBufferAccess > img = new PlanarImg< UnsignedByteType, ByteBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, ByteBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ByteBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final UnsignedByteType t = new UnsignedByteType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link ByteType}, {@link ByteBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< ByteType, ByteBufferAccess > bytes( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< ByteType, ByteBufferAccess > img = new PlanarImg< ByteType, ByteBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, ByteBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ByteBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final ByteType t = new ByteType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link UnsignedShortType}, {@link ShortBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< UnsignedShortType, ShortBufferAccess > unsignedShorts( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< UnsignedShortType, ShortBufferAccess > img = new PlanarImg< UnsignedShortType, ShortBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, ShortBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ShortBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final UnsignedShortType t = new UnsignedShortType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link ShortType}, {@link ShortBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< ShortType, ShortBufferAccess > shorts( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< ShortType, ShortBufferAccess > img = new PlanarImg< ShortType, ShortBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, ShortBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ShortBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final ShortType t = new ShortType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link UnsignedIntType}, {@link IntBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< UnsignedIntType, IntBufferAccess > unsignedInts( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< UnsignedIntType, IntBufferAccess > img = new PlanarImg< UnsignedIntType, IntBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, IntBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new IntBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final UnsignedIntType t = new UnsignedIntType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link IntType}, {@link IntBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< IntType, IntBufferAccess > ints( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< IntType, IntBufferAccess > img = new PlanarImg< IntType, IntBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, IntBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new IntBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final IntType t = new IntType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link LongType}, {@link LongBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< LongType, LongBufferAccess > longs( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< LongType, LongBufferAccess > img = new PlanarImg< LongType, LongBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, LongBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new LongBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final LongType t = new LongType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link FloatType}, {@link FloatBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< FloatType, FloatBufferAccess > floats( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< FloatType, FloatBufferAccess > img = new PlanarImg< FloatType, FloatBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, FloatBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new FloatBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final FloatType t = new FloatType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	/**
+	 * Create a {@link PlanarImg}<{@link DoubleType}, {@link DoubleBufferAccess}> on
+	 * a {@link MappedFile}, starting at byte <em>offset</em>.
+	 */
+	final public static PlanarImg< DoubleType, DoubleBufferAccess > doubles( final MappedFile file, final long offset, final long... dim ) throws IOException
+	{
+		final PlanarImg< DoubleType, DoubleBufferAccess > img = new PlanarImg< DoubleType, DoubleBufferAccess >( dim, new Fraction() );
+		final long planeBytes = planeBytes( dim, DoubleBufferAccess.BYTES );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DoubleBufferAccess( file.map( offset + i * planeBytes, planeBytes ) ) );
+		final DoubleType t = new DoubleType( img );
+		img.setLinkedType( t );
+		return img;
+	}
+
+	private static long planeBytes( final long[] dim, final int bytesPerPixel )
+	{
+		final long planeBytes = ( dim.length > 1 ? dim[ 1 ] : 1 ) * dim[ 0 ] * bytesPerPixel;
+		if ( planeBytes > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of bytes in plane too big: " + planeBytes + " > " + Integer.MAX_VALUE );
+		return planeBytes;
+	}
+}
@@ -41,10 +41,11 @@ import net.imglib2.FlatIterationOrder;
 import net.imglib2.Interval;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.NativeImg;
+import net.imglib2.img.basictypeaccess.DataAccess;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
-import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.iteration.SubIntervalIterable;
 
@@ -62,7 +63,7 @@ import net.imglib2.view.iteration.SubIntervalIterable;
  * @author Johannes Schindelin
  * @author Tobias Pietzsch
  */
-public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractNativeImg< T, A > implements PlanarAccess< A >, SubIntervalIterable< T >
+public class PlanarImg< T extends NativeType< T >, A extends DataAccess< A > > extends AbstractNativeImg< T, A > implements PlanarAccess< A >, SubIntervalIterable< T >
 {
 	final protected int numSlices;
 
@@ -291,13 +292,7 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 	public PlanarImg< T, ? > copy()
 	{
 		final PlanarImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
-
-		final PlanarCursor< T > cursor1 = this.cursor();
-		final PlanarCursor< T > cursor2 = copy.cursor();
-
-		while ( cursor1.hasNext() )
-			cursor2.next().set( cursor1.next() );
-
+		ImgUtil.copy( this, copy );
 		return copy;
 	}
 
@@ -0,0 +1,282 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.parallel.Parallel;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Computes B-spline coefficients, such that the B-spline of the given order
+ * through the coefficients interpolates the source values. The coefficients
+ * are computed by the recursive filter of Unser et al. (1993), applied along
+ * every line of every dimension, with mirror-symmetric boundary conditions.
+ * Lines are filtered in parallel.
+ * 
+ * <p>
+ * The recursive filter is not local, i.e., every coefficient depends on a
+ * complete line of the source. Therefore, coefficients are always computed
+ * for the complete source interval and stored in an {@link ArrayImg}.
+ * </p>
+ * 
+ * @author agent
+ */
+public class BSplineCoefficients
+{
+	/**
+	 * Lines are not split between tasks below this number of elements.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	/**
+	 * Relative accuracy of the initial value of the causal filter.
+	 */
+	private static final double TOLERANCE = 1e-12;
+
+	/**
+	 * Poles of the recursive prefilter for B-splines of the given order.
+	 * 
+	 * @param order
+	 *            1, 3, or 5.
+	 */
+	public static double[] poles( final int order )
+	{
+		switch ( order )
+		{
+		case 1:
+			return new double[ 0 ];
+		case 3:
+			return new double[] { Math.sqrt( 3.0 ) - 2.0 };
+		case 5:
+			return new double[] {
+					Math.sqrt( 135.0 / 2.0 - Math.sqrt( 17745.0 / 4.0 ) ) + Math.sqrt( 105.0 / 4.0 ) - 13.0 / 2.0,
+					Math.sqrt( 135.0 / 2.0 + Math.sqrt( 17745.0 / 4.0 ) ) - Math.sqrt( 105.0 / 4.0 ) - 13.0 / 2.0 };
+		default:
+			throw new IllegalArgumentException( "B-spline order must be 1, 3, or 5" );
+		}
+	}
+
+	/**
+	 * Compute B-spline coefficients of {@code source}, using the
+	 * {@link Parallel#defaultPool() default pool}.
+	 * 
+	 * @return coefficients, with min at the origin.
+	 */
+	public static < T extends RealType< T > > ArrayImg< DoubleType, DoubleArray > compute( final RandomAccessibleInterval< T > source, final int order )
+	{
+		return compute( source, order, Parallel.defaultPool() );
+	}
+
+	/**
+	 * Compute B-spline coefficients of {@code source}.
+	 * 
+	 * @param source
+	 *            values to interpolate.
+	 * @param order
+	 *            order of the B-spline, 1, 3, or 5.
+	 * @param pool
+	 *            the pool on which lines are filtered.
+	 * @return coefficients, with min at the origin.
+	 */
+	public static < T extends RealType< T > > ArrayImg< DoubleType, DoubleArray > compute( final RandomAccessibleInterval< T > source, final int order, final ForkJoinPool pool )
+	{
+		final double[] poles = poles( order );
+		final long numElements = Intervals.numElements( source );
+		if ( numElements > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "source is too large for B-spline coefficients in an ArrayImg" );
+
+		final int n = source.numDimensions();
+		final long[] dimensions = new long[ n ];
+		source.dimensions( dimensions );
+		final double[] data = new double[ ( int ) numElements ];
+		final Cursor< T > c = Views.flatIterable( source ).cursor();
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = c.next().getRealDouble();
+
+		if ( poles.length > 0 )
+		{
+			int stride = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				final int length = ( int ) dimensions[ d ];
+				if ( length > 1 )
+				{
+					final LineTask task = new LineTask( data, poles, length, stride, 0, data.length / length );
+					if ( data.length > PARALLEL_THRESHOLD )
+						pool.invoke( task );
+					else
+						task.compute();
+				}
+				stride *= length;
+			}
+		}
+
+		return ArrayImgs.doubles( data, dimensions );
+	}
+
+	/**
+	 * Filter lines <code>from</code>...<code>to-1</code> along one dimension,
+	 * splitting the range in halves and processing them in parallel if it is
+	 * large.
+	 */
+	private static final class LineTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] data;
+
+		private final double[] poles;
+
+		private final int length;
+
+		private final int stride;
+
+		private final int from;
+
+		private final int to;
+
+		LineTask( final double[] data, final double[] poles, final int length, final int stride, final int from, final int to )
+		{
+			this.data = data;
+			this.poles = poles;
+			this.length = length;
+			this.stride = stride;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( ( long ) ( to - from ) * length <= PARALLEL_THRESHOLD || to - from < 2 )
+			{
+				final double[] line = new double[ length ];
+				for ( int l = from; l < to; ++l )
+				{
+					final int inner = l % stride;
+					final int outer = l / stride;
+					final int start = outer * stride * length + inner;
+					for ( int i = 0, j = start; i < length; ++i, j += stride )
+						line[ i ] = data[ j ];
+					filter( line, poles );
+					for ( int i = 0, j = start; i < length; ++i, j += stride )
+						data[ j ] = line[ i ];
+				}
+			}
+			else
+			{
+				final int m = ( from + to ) >>> 1;
+				invokeAll( new LineTask( data, poles, length, stride, from, m ), new LineTask( data, poles, length, stride, m, to ) );
+			}
+		}
+	}
+
+	/**
+	 * Replace the values of {@code c} by B-spline coefficients, in place.
+	 */
+	static void filter( final double[] c, final double[] poles )
+	{
+		final int n = c.length;
+		if ( n == 1 )
+			return;
+
+		double lambda = 1;
+		for ( final double z : poles )
+			lambda *= ( 1 - z ) * ( 1 - 1 / z );
+		for ( int i = 0; i < n; ++i )
+			c[ i ] *= lambda;
+
+		for ( final double z : poles )
+		{
+			// causal
+			c[ 0 ] = initialCausalCoefficient( c, z );
+			for ( int i = 1; i < n; ++i )
+				c[ i ] += z * c[ i - 1 ];
+
+			// anti-causal
+			c[ n - 1 ] = ( z / ( z * z - 1 ) ) * ( z * c[ n - 2 ] + c[ n - 1 ] );
+			for ( int i = n - 2; i >= 0; --i )
+				c[ i ] = z * ( c[ i + 1 ] - c[ i ] );
+		}
+	}
+
+	/**
+	 * Initial value of the causal filter for mirror-symmetric boundary
+	 * conditions.
+	 */
+	private static double initialCausalCoefficient( final double[] c, final double z )
+	{
+		final int n = c.length;
+		final int horizon = ( int ) Math.ceil( Math.log( TOLERANCE ) / Math.log( Math.abs( z ) ) );
+		if ( horizon < n )
+		{
+			// accelerated loop, truncated where z^k is negligible
+			double zn = z;
+			double sum = c[ 0 ];
+			for ( int i = 1; i < horizon; ++i )
+			{
+				sum += zn * c[ i ];
+				zn *= z;
+			}
+			return sum;
+		}
+		else
+		{
+			// full loop
+			double zn = z;
+			final double iz = 1 / z;
+			double z2n = Math.pow( z, n - 1 );
+			double sum = c[ 0 ] + z2n * c[ n - 1 ];
+			z2n *= z2n * iz;
+			for ( int i = 1; i < n - 1; ++i )
+			{
+				sum += ( zn + z2n ) * c[ i ];
+				zn *= z;
+				z2n *= iz;
+			}
+			return sum / ( 1 - zn * zn );
+		}
+	}
+}
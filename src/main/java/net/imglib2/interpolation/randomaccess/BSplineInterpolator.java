@@ -0,0 +1,289 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.interpolation.separable.BSplineKernel;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * n-dimensional B-spline interpolation on precomputed
+ * {@link BSplineCoefficients}. Outside the source interval, coefficients are
+ * mirrored, which corresponds to mirroring the source.
+ * 
+ * <p>
+ * The kernel is applied separably: the weights and (mirrored) array offsets of
+ * each dimension are computed once per sample, and rows along dimension 0 are
+ * summed before weighting with the higher dimensions.
+ * </p>
+ * 
+ * @param <T>
+ * 
+ * @author agent
+ */
+public class BSplineInterpolator< T extends RealType< T > > extends RealPoint implements RealRandomAccess< T >
+{
+	final protected BSplineKernel kernel;
+
+	/**
+	 * window size, <code>order + 1</code>.
+	 */
+	final protected int size;
+
+	final protected ArrayImg< DoubleType, DoubleArray > coefficients;
+
+	/**
+	 * min of the source interval.
+	 */
+	final protected long[] min;
+
+	final protected T interpolatedValue;
+
+	final protected double minValue, maxValue;
+
+	final protected boolean clip;
+
+	final private double[] data;
+
+	final private long[] dimensions;
+
+	final private int[] steps;
+
+	/**
+	 * weights of the window pixels, <code>size</code> per dimension.
+	 */
+	final private double[] weights;
+
+	/**
+	 * array offsets of the window pixels, <code>size</code> per dimension.
+	 */
+	final private int[] offsets;
+
+	/**
+	 * current window pixel in dimensions 1...n-1.
+	 */
+	final private int[] k;
+
+	/**
+	 * @param coefficients
+	 *            B-spline coefficients, see {@link BSplineCoefficients}.
+	 * @param min
+	 *            min of the source interval, i.e., the position of
+	 *            coefficient (0,...,0).
+	 * @param order
+	 *            order of the B-spline, 1, 3, or 5.
+	 * @param type
+	 *            type of the interpolated value.
+	 * @param clip
+	 *            clip the interpolated value to the range of the
+	 *            {@link RealType}.
+	 */
+	public BSplineInterpolator( final ArrayImg< DoubleType, DoubleArray > coefficients, final long[] min, final int order, final T type, final boolean clip )
+	{
+		super( coefficients.numDimensions() );
+
+		this.kernel = new BSplineKernel( order );
+		this.size = kernel.support();
+		this.coefficients = coefficients;
+		this.min = min.clone();
+
+		this.interpolatedValue = type.createVariable();
+		this.clip = clip;
+		this.minValue = interpolatedValue.getMinValue();
+		this.maxValue = interpolatedValue.getMaxValue();
+
+		final Object access = coefficients.update( null );
+		if ( access instanceof BufferAccess )
+		{
+			// buffer-backed coefficients are copied, they are only read
+			data = new double[ ( int ) coefficients.size() ];
+			( ( BufferAccess< ? > ) access ).getBuffer().asDoubleBuffer().get( data );
+		}
+		else
+			data = ( ( DoubleArray ) access ).getCurrentStorageArray();
+		dimensions = new long[ n ];
+		coefficients.dimensions( dimensions );
+		steps = new int[ n ];
+		int step = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			steps[ d ] = step;
+			step *= dimensions[ d ];
+		}
+
+		weights = new double[ size * n ];
+		offsets = new int[ size * n ];
+		k = new int[ n ];
+	}
+
+	public BSplineInterpolator( final BSplineInterpolator< T > interpolator )
+	{
+		super( interpolator );
+
+		this.kernel = interpolator.kernel;
+		this.size = interpolator.size;
+		this.coefficients = interpolator.coefficients;
+		this.min = interpolator.min;
+
+		this.interpolatedValue = interpolator.interpolatedValue.copy();
+		this.clip = interpolator.clip;
+		this.minValue = interpolator.minValue;
+		this.maxValue = interpolator.maxValue;
+
+		data = interpolator.data;
+		dimensions = interpolator.dimensions;
+		steps = interpolator.steps;
+
+		weights = new double[ size * n ];
+		offsets = new int[ size * n ];
+		k = new int[ n ];
+	}
+
+	/**
+	 * @return the B-spline coefficients.
+	 */
+	public ArrayImg< DoubleType, DoubleArray > getCoefficients()
+	{
+		return coefficients;
+	}
+
+	@Override
+	public T get()
+	{
+		final int half = size / 2;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double x = position[ d ];
+			final long start = ( long ) Math.floor( x ) - half + 1;
+			final long local = start - min[ d ];
+			final long dim = dimensions[ d ];
+			final int o = d * size;
+			if ( local >= 0 && local + size <= dim )
+			{
+				for ( int i = 0; i < size; ++i )
+					offsets[ o + i ] = ( int ) ( local + i ) * steps[ d ];
+			}
+			else
+			{
+				for ( int i = 0; i < size; ++i )
+					offsets[ o + i ] = ( int ) mirror( local + i, dim ) * steps[ d ];
+			}
+			for ( int i = 0; i < size; ++i )
+				weights[ o + i ] = kernel.weight( x - ( start + i ) );
+		}
+
+		for ( int d = 1; d < n; ++d )
+			k[ d ] = 0;
+		double interpolated = 0;
+		do
+		{
+			// weight and offset of the current row along dimension 0
+			double w = 1;
+			int rowOffset = 0;
+			for ( int d = 1; d < n; ++d )
+			{
+				w *= weights[ d * size + k[ d ] ];
+				rowOffset += offsets[ d * size + k[ d ] ];
+			}
+			double row = 0;
+			for ( int i = 0; i < size; ++i )
+				row += weights[ i ] * data[ rowOffset + offsets[ i ] ];
+			interpolated += w * row;
+		}
+		while ( nextRow() < n );
+
+		if ( clip )
+		{
+			if ( interpolated < minValue )
+				interpolated = minValue;
+			else if ( interpolated > maxValue )
+				interpolated = maxValue;
+		}
+
+		interpolatedValue.setReal( interpolated );
+
+		return interpolatedValue;
+	}
+
+	/**
+	 * Mirror <code>x</code> into <code>0...dim-1</code> without repeating the
+	 * boundary pixel.
+	 */
+	private static long mirror( final long x, final long dim )
+	{
+		if ( dim == 1 )
+			return 0;
+		final long period = 2 * dim - 2;
+		long y = x % period;
+		if ( y < 0 )
+			y += period;
+		return y < dim ? y : period - y;
+	}
+
+	/**
+	 * Advance {@link #k} to the next row of the window.
+	 * 
+	 * @return the dimension that was incremented, or <code>n</code> if all
+	 *         rows have been visited.
+	 */
+	private int nextRow()
+	{
+		int d = 1;
+		for ( ; d < n; ++d )
+		{
+			if ( ++k[ d ] < size )
+				break;
+			k[ d ] = 0;
+		}
+		return d;
+	}
+
+	@Override
+	public BSplineInterpolator< T > copy()
+	{
+		return new BSplineInterpolator< T >( this );
+	}
+
+	@Override
+	public BSplineInterpolator< T > copyRealRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorSingleBoundary;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Util;
+import net.imglib2.view.ExtendedRandomAccessibleInterval;
+
+/**
+ * Creates {@link BSplineInterpolator BSplineInterpolators}. The source must
+ * be a {@link RandomAccessibleInterval} or an
+ * {@link ExtendedRandomAccessibleInterval}. Its
+ * {@link BSplineCoefficients coefficients} are computed on the first call to
+ * {@link #create(RandomAccessible)} and cached for further calls with the
+ * same source interval, so that interpolators for several threads share them.
+ * Call {@link #clearCache()} after modifying the source.
+ * 
+ * <p>
+ * The out-of-bounds strategy of an {@link ExtendedRandomAccessibleInterval}
+ * is ignored. Outside the interval, the source is mirrored as by
+ * {@link OutOfBoundsMirrorSingleBoundary}.
+ * </p>
+ * 
+ * @param <T>
+ * 
+ * @author agent
+ */
+public class BSplineInterpolatorFactory< T extends RealType< T > > implements InterpolatorFactory< T, RandomAccessible< T > >
+{
+	final protected int order;
+
+	final protected boolean clipping;
+
+	final private Map< RandomAccessibleInterval< T >, ArrayImg< DoubleType, DoubleArray > > cache = new WeakHashMap< RandomAccessibleInterval< T >, ArrayImg< DoubleType, DoubleArray > >();
+
+	/**
+	 * Creates a new {@link BSplineInterpolatorFactory} for cubic B-splines,
+	 * clipping to the range of the {@link RealType}.
+	 */
+	public BSplineInterpolatorFactory()
+	{
+		this( 3, true );
+	}
+
+	/**
+	 * Creates a new {@link BSplineInterpolatorFactory}.
+	 * 
+	 * @param order
+	 *            order of the B-spline, 1, 3, or 5.
+	 * @param clipping
+	 *            B-spline interpolation can create values that are bigger or
+	 *            smaller than the original values, so they can be clipped to
+	 *            the range of the {@link RealType} if wanted
+	 */
+	public BSplineInterpolatorFactory( final int order, final boolean clipping )
+	{
+		BSplineCoefficients.poles( order );
+		this.order = order;
+		this.clipping = clipping;
+	}
+
+	@Override
+	public BSplineInterpolator< T > create( final RandomAccessible< T > randomAccessible )
+	{
+		final RandomAccessibleInterval< T > source = sourceInterval( randomAccessible );
+		final long[] min = new long[ source.numDimensions() ];
+		source.min( min );
+		return new BSplineInterpolator< T >( getCoefficients( source ), min, order, Util.getTypeFromInterval( source ), clipping );
+	}
+
+	/**
+	 * For now, ignore the {@link RealInterval} and return
+	 * {@link #create(RandomAccessible)}.
+	 */
+	@Override
+	public BSplineInterpolator< T > create( final RandomAccessible< T > randomAccessible, final RealInterval interval )
+	{
+		return create( randomAccessible );
+	}
+
+	/**
+	 * Get the B-spline coefficients of {@code source}, computing them if they
+	 * are not cached.
+	 */
+	public synchronized ArrayImg< DoubleType, DoubleArray > getCoefficients( final RandomAccessibleInterval< T > source )
+	{
+		ArrayImg< DoubleType, DoubleArray > coefficients = cache.get( source );
+		if ( coefficients == null )
+		{
+			coefficients = BSplineCoefficients.compute( source, order );
+			cache.put( source, coefficients );
+		}
+		return coefficients;
+	}
+
+	/**
+	 * Discard all cached coefficients.
+	 */
+	public synchronized void clearCache()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * @return order of the B-spline
+	 */
+	public int getOrder()
+	{
+		return order;
+	}
+
+	/**
+	 * @return - if clipping to the {@link RealType} range will be performed
+	 */
+	public boolean getClipping()
+	{
+		return clipping;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static < T > RandomAccessibleInterval< T > sourceInterval( final RandomAccessible< T > randomAccessible )
+	{
+		if ( randomAccessible instanceof ExtendedRandomAccessibleInterval )
+			return ( ( ExtendedRandomAccessibleInterval< T, ? > ) randomAccessible ).getSource();
+		if ( randomAccessible instanceof RandomAccessibleInterval )
+			return ( RandomAccessibleInterval< T > ) randomAccessible;
+		throw new IllegalArgumentException( "B-spline interpolation requires a RandomAccessibleInterval or ExtendedRandomAccessibleInterval source" );
+	}
+}
@@ -34,16 +34,25 @@
 
 package net.imglib2.interpolation.randomaccess;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealRandomAccess;
-import net.imglib2.Sampler;
 import net.imglib2.position.transform.FloorOffset;
 import net.imglib2.type.numeric.RealType;
 
 /**
  * n-dimensional double-based Lanczos Interpolation
  * 
+ * <p>
+ * Kernel weights are linearly interpolated from a lookup table sampled at
+ * <code>lutScale</code> points per pixel. Lookup tables are shared by all
+ * interpolators with the same alpha and scale. For each sample, the weights
+ * are computed once per dimension, and rows along dimension 0 are summed
+ * before weighting with the higher dimensions.
+ * </p>
+ * 
  * @author Stephan Preibisch
  * @author Stephan Saalfeld (saalfeld@mpi-cbg.de)
  */
@@ -51,19 +60,53 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 {
 	final static protected double piSquare = Math.PI * Math.PI;
 
+	/**
+	 * default number of lookup table entries per pixel.
+	 */
 	final static protected int lutScale = 10;
 
+	/**
+	 * lookup tables, indexed by alpha and scale.
+	 */
+	final static private ConcurrentHashMap< Long, double[] > luts = new ConcurrentHashMap< Long, double[] >();
+
 	final protected int alpha;
 
+	/**
+	 * number of lookup table entries per pixel.
+	 */
+	final protected int scale;
+
 	final protected T interpolatedValue;
 
-	final protected long[] size, max;
+	/**
+	 * window size, <code>2 * alpha</code>.
+	 */
+	final protected int size;
 
 	final protected double minValue, maxValue;
 
 	final protected boolean clip;
 
-	final protected double[] lut, products;
+	/**
+	 * lookup table, shared with other interpolators. Must not be modified.
+	 */
+	final protected double[] lut;
+
+	/**
+	 * weights of the window pixels, <code>size</code> per dimension.
+	 */
+	final protected double[] kernel;
+
+	/**
+	 * first pixel of the window.
+	 */
+	final protected long[] start;
+
+	/**
+	 * current window pixel in dimensions 1...n-1.
+	 */
+	final protected int[] k;
 
 	final static private long[] createOffset( final int a, final int n )
 	{
@@ -89,20 +132,41 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 	 *            - range for clipping (ignored if min==max)
 	 */
 	public LanczosInterpolator( final RandomAccessible< T > randomAccessible, final int alpha, final boolean clip, final double min, final double max )
+	{
+		this( randomAccessible, alpha, clip, min, max, lutScale );
+	}
+
+	/**
+	 * Creates a new Lanczos-interpolation
+	 * 
+	 * @param randomAccessible
+	 *            - the {@link RandomAccessible} to work on
+	 * @param alpha
+	 *            - the radius of values to incorporate (typically 2 or 3)
+	 * @param clip
+	 *            - clips the value to range of the {@link RealType}, i.e. tests
+	 *            if the interpolated value is out of range
+	 * @param min
+	 *            - range for clipping (ignored if min==max)
+	 * @param max
+	 *            - range for clipping (ignored if min==max)
+	 * @param scale
+	 *            - number of lookup table entries per pixel. Higher values
+	 *            give more accurate weights.
+	 */
+	public LanczosInterpolator( final RandomAccessible< T > randomAccessible, final int alpha, final boolean clip, final double min, final double max, final int scale )
 	{
 		super( randomAccessible.randomAccess(), createOffset( alpha, randomAccessible.numDimensions() ) );
 
 		this.alpha = alpha;
+		this.scale = scale;
 
-		lut = createLanczosLUT( alpha, lutScale );
-		products = new double[ n + 1 ];
-		products[ n ] = 1.0;
+		lut = lanczosLUT( alpha, scale );
 
-		this.size = new long[ n ];
-		this.max = new long[ n ];
-
-		for ( int d = 0; d < n; ++d )
-			size[ d ] = alpha * 2;
+		size = alpha * 2;
+		kernel = new double[ size * n ];
+		start = new long[ n ];
+		k = new int[ n ];
 
 		this.clip = clip;
 
@@ -122,15 +186,17 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 
 	public LanczosInterpolator( final LanczosInterpolator< T > interpolator )
 	{
-		super( interpolator.target.copyRandomAccess(), interpolator.offset );
+		super( interpolator, interpolator.target.copyRandomAccess(), interpolator.offset );
 
 		this.alpha = interpolator.alpha;
+		this.scale = interpolator.scale;
 
-		lut = interpolator.lut.clone();
-		products = interpolator.products.clone();
+		lut = interpolator.lut;
 
-		this.size = interpolator.size.clone();
-		this.max = interpolator.max.clone();
+		size = interpolator.size;
+		kernel = new double[ size * n ];
+		start = new long[ n ];
+		k = new int[ n ];
 
 		this.clip = interpolator.clip;
 
@@ -139,61 +205,84 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 		this.maxValue = interpolator.maxValue;
 	}
 
+	/**
+	 * Get the shared lookup table for the given alpha and scale, creating it
+	 * if necessary.
+	 */
+	final static protected double[] lanczosLUT( final int alpha, final int scale )
+	{
+		final Long key = ( ( long ) alpha << 32 ) | scale;
+		double[] lut = luts.get( key );
+		if ( lut == null )
+		{
+			lut = createLanczosLUT( alpha, scale );
+			final double[] existing = luts.putIfAbsent( key, lut );
+			if ( existing != null )
+				lut = existing;
+		}
+		return lut;
+	}
+
 	final static private double[] createLanczosLUT( final int max, final int scale )
 	{
 		final double[] lut = new double[ max * scale + 2 ];
 		for ( int i = 0; i < lut.length; ++i )
 		{
-			final double x = ( double ) i / ( double ) lutScale;
+			final double x = ( double ) i / ( double ) scale;
 			lut[ i ] = lanczos( x, max );
 		}
 		return lut;
 	}
 
-	final protected void resetKernel()
+	/**
+	 * Fill {@link #kernel} with the weights of the window starting at
+	 * {@link #start}.
+	 */
+	final protected void fillKernel()
 	{
-		for ( int d = n - 1; d >= 0; --d )
+		for ( int d = 0; d < n; ++d )
 		{
-			final long p = target.getLongPosition( d );
-			max[ d ] = p + size[ d ];
-			products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ d + 1 ];
+			final int o = d * size;
+			for ( int i = 0; i < size; ++i )
+				kernel[ o + i ] = lookUpLanczos( position[ d ] - ( start[ d ] + i ) );
 		}
 	}
 
-	final protected void accumulate( final int d )
+	/**
+	 * Weight of the current row, i.e., the product of the weights of dimensions
+	 * 1...n-1 at {@link #k}.
+	 */
+	final protected double rowWeight()
 	{
-		for ( int e = d; e >= 0; --e )
-			products[ e ] = lookUpLanczos( position[ e ] - target.getLongPosition( e ) ) * products[ e + 1 ];
+		double w = 1;
+		for ( int d = 1; d < n; ++d )
+			w *= kernel[ d * size + k[ d ] ];
+		return w;
 	}
 
-	@Override
-	public T get()
+	/**
+	 * Advance {@link #k} to the next row of the window.
+	 * 
+	 * @return the dimension that was incremented, or <code>n</code> if all
+	 *         rows have been visited.
+	 */
+	final protected int nextRow()
 	{
-		double convolved = 0;
-
-		resetKernel();
-
-		boolean proceed = true;
-
-		A: while ( proceed )
+		int d = 1;
+		for ( ; d < n; ++d )
 		{
-			convolved += target.get().getRealDouble() * products[ 0 ];
-
-			for ( int d = 0; d < n; ++d )
-			{
-				target.fwd( d );
-				final long p = target.getLongPosition( d );
-				if ( p < max[ d ] )
-				{
-					products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ ++d ];
-					continue A;
-				}
-				target.move( -size[ d ], d );
-				accumulate( d );
-			}
-			proceed = false;
+			if ( ++k[ d ] < size )
+				break;
+			k[ d ] = 0;
 		}
+		return d;
+	}
 
+	/**
+	 * Clip to the value range if desired and set {@link #interpolatedValue}.
+	 */
+	final protected T setInterpolatedValue( double convolved )
+	{
 		// do clipping if desired (it should be, except maybe for float or
 		// double input)
 		if ( clip )
@@ -209,6 +298,42 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 		return interpolatedValue;
 	}
 
+	@Override
+	public T get()
+	{
+		target.localize( start );
+		fillKernel();
+
+		for ( int d = 1; d < n; ++d )
+			k[ d ] = 0;
+		double convolved = 0;
+		while ( true )
+		{
+			double row = 0;
+			for ( int i = 0; i < size; ++i )
+			{
+				row += kernel[ i ] * target.get().getRealDouble();
+				target.fwd( 0 );
+			}
+			target.move( -size, 0 );
+			convolved += rowWeight() * row;
+
+			final int d = nextRow();
+			if ( d >= n )
+			{
+				// back to the start of the window
+				for ( int e = 1; e < n; ++e )
+					target.move( -size + 1, e );
+				break;
+			}
+			target.fwd( d );
+			for ( int e = 1; e < d; ++e )
+				target.move( -size + 1, e );
+		}
+
+		return setInterpolatedValue( convolved );
+	}
+
 	private static final double lanczos( final double x, final double a )
 	{
 		if ( x == 0 )
@@ -216,23 +341,23 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 		return ( ( a * Math.sin( Math.PI * x ) * Math.sin( Math.PI * x / a ) ) / ( piSquare * x * x ) );
 	}
 
-	final private double lookUpLanczos( final double x )
+	final protected double lookUpLanczos( final double x )
 	{
-		final double y = x < 0 ? -lutScale * x : lutScale * x;
+		final double y = x < 0 ? -scale * x : scale * x;
 		final int yi = ( int ) y;
 		final double d = y - yi;
 		return ( lut[ yi + 1 ] - lut[ yi ] ) * d + lut[ yi ];
 	}
 
 	@Override
-	public Sampler< T > copy()
+	public LanczosInterpolator< T > copy()
 	{
-		return copy();
+		return new LanczosInterpolator< T >( this );
 	}
 
 	@Override
-	public RealRandomAccess< T > copyRealRandomAccess()
+	public LanczosInterpolator< T > copyRealRandomAccess()
 	{
-		return new LanczosInterpolator< T >( this );
+		return copy();
 	}
 }
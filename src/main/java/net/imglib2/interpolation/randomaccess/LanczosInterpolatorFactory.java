@@ -51,6 +51,10 @@ public class LanczosInterpolatorFactory< T extends RealType< T >> implements Int
 
 	double min, max;
 
+	int lutScale = LanczosInterpolator.lutScale;
+
+	boolean primitive = true;
+
 	/**
 	 * Creates a new {@link LanczosInterpolatorFactory} using the Lanczos (sinc)
 	 * interpolation in a certain window
@@ -127,7 +131,10 @@ public class LanczosInterpolatorFactory< T extends RealType< T >> implements Int
 	@Override
 	public LanczosInterpolator< T > create( final RandomAccessible< T > randomAccessible )
 	{
-		return new LanczosInterpolator< T >( randomAccessible, alpha, clipping, min, max );
+		final PrimitiveStorage storage = primitive ? PrimitiveStorage.of( randomAccessible ) : null;
+		if ( storage != null )
+			return new LanczosInterpolatorPrimitive< T >( randomAccessible, storage, alpha, clipping, min, max, lutScale );
+		return new LanczosInterpolator< T >( randomAccessible, alpha, clipping, min, max, lutScale );
 	}
 
 	/**
@@ -165,6 +172,45 @@ public class LanczosInterpolatorFactory< T extends RealType< T >> implements Int
 		this.clipping = clipping;
 	}
 
+	/**
+	 * Set the resolution of the lookup table for the Lanczos kernel. Higher
+	 * values give more accurate weights. Lookup tables are shared between all
+	 * interpolators with the same alpha and resolution.
+	 * 
+	 * @param lutScale
+	 *            - number of lookup table entries per pixel (default 10)
+	 */
+	public void setLutScale( final int lutScale )
+	{
+		this.lutScale = lutScale;
+	}
+
+	/**
+	 * Whether to create a {@link LanczosInterpolatorPrimitive} for
+	 * {@link net.imglib2.img.array.ArrayImg ArrayImgs} and
+	 * {@link net.imglib2.img.planar.PlanarImg PlanarImgs} of standard real
+	 * types (default true). It computes the weights separably, so results
+	 * differ from the generic {@link LanczosInterpolator} by roundoff, and for
+	 * integer types possibly by one. Set to false to get the values of the
+	 * generic interpolator.
+	 * 
+	 * @param primitive
+	 *            - create primitive interpolators (true)
+	 */
+	public void setPrimitive( final boolean primitive )
+	{
+		this.primitive = primitive;
+	}
+
+	/**
+	 * @return - if primitive interpolators are created for sources that
+	 *         support them
+	 */
+	public boolean getPrimitive()
+	{
+		return primitive;
+	}
+
 	/**
 	 * @return - rectangular radius of the window for perfoming the lanczos
 	 *         interpolation
@@ -181,4 +227,12 @@ public class LanczosInterpolatorFactory< T extends RealType< T >> implements Int
 	{
 		return clipping;
 	}
+
+	/**
+	 * @return - number of lookup table entries per pixel
+	 */
+	public int getLutScale()
+	{
+		return lutScale;
+	}
 }
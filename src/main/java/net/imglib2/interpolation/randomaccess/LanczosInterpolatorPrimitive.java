@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * n-dimensional Lanczos interpolation, reading pixels directly from the
+ * primitive arrays of an {@link net.imglib2.img.array.ArrayImg} or
+ * {@link net.imglib2.img.planar.PlanarImg}. The kernel is applied separably:
+ * the weights of each dimension are looked up once, and rows along dimension
+ * 0 are summed before weighting with the higher dimensions. Where the window
+ * of the position is not completely inside the image, the generic
+ * {@link LanczosInterpolator} is used, so that out-of-bounds values are
+ * obtained from the source.
+ * 
+ * <p>
+ * Created by {@link LanczosInterpolatorFactory} when the source supports it.
+ * </p>
+ * 
+ * @author agent
+ */
+public class LanczosInterpolatorPrimitive< T extends RealType< T > > extends LanczosInterpolator< T >
+{
+	final protected PrimitiveStorage storage;
+
+	public LanczosInterpolatorPrimitive( final RandomAccessible< T > randomAccessible, final PrimitiveStorage storage, final int alpha, final boolean clip, final double min, final double max )
+	{
+		this( randomAccessible, storage, alpha, clip, min, max, lutScale );
+	}
+
+	public LanczosInterpolatorPrimitive( final RandomAccessible< T > randomAccessible, final PrimitiveStorage storage, final int alpha, final boolean clip, final double min, final double max, final int scale )
+	{
+		super( randomAccessible, alpha, clip, min, max, scale );
+		this.storage = storage;
+	}
+
+	public LanczosInterpolatorPrimitive( final LanczosInterpolatorPrimitive< T > interpolator )
+	{
+		super( interpolator );
+		this.storage = interpolator.storage;
+	}
+
+	@Override
+	public T get()
+	{
+		for ( int d = 0; d < n; ++d )
+			start[ d ] = Floor.floor( position[ d ] ) - alpha + 1;
+		if ( !storage.contains( start, size ) )
+			return super.get();
+
+		fillKernel();
+
+		final int index = storage.index( start );
+		final int plane = storage.plane( start );
+		final int step0 = storage.steps[ 0 ];
+		for ( int d = 1; d < n; ++d )
+			k[ d ] = 0;
+		double convolved = 0;
+		do
+		{
+			// offset of the current row along dimension 0
+			int rowIndex = index;
+			int rowPlane = plane;
+			for ( int d = 1; d < n; ++d )
+			{
+				rowIndex += k[ d ] * storage.steps[ d ];
+				rowPlane += k[ d ] * storage.planeSteps[ d ];
+			}
+			double row = 0;
+			for ( int i = 0; i < size; ++i )
+				row += kernel[ i ] * storage.get( rowPlane, rowIndex + i * step0 );
+			convolved += rowWeight() * row;
+		}
+		while ( nextRow() < n );
+
+		return setInterpolatedValue( convolved );
+	}
+
+	@Override
+	public LanczosInterpolatorPrimitive< T > copy()
+	{
+		return new LanczosInterpolatorPrimitive< T >( this );
+	}
+
+	@Override
+	public LanczosInterpolatorPrimitive< T > copyRealRandomAccess()
+	{
+		return copy();
+	}
+}
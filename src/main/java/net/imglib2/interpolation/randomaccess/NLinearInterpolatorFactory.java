@@ -39,6 +39,13 @@ import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.type.numeric.NumericType;
 
 /**
+ * Creates {@link NLinearInterpolator NLinearInterpolators}. For
+ * {@link net.imglib2.img.array.ArrayImg ArrayImgs} and
+ * {@link net.imglib2.img.planar.PlanarImg PlanarImgs} of standard real types
+ * an {@link NLinearInterpolatorPrimitive} is created, unless disabled by
+ * {@link #setPrimitive(boolean)}. It accumulates in <code>double</code> and
+ * rounds once, so for integer types its values can differ from the generic
+ * interpolators, which round at every step.
  * 
  * @param <T>
  * 
@@ -48,9 +55,15 @@ import net.imglib2.type.numeric.NumericType;
  */
 public class NLinearInterpolatorFactory< T extends NumericType< T > > implements InterpolatorFactory< T, RandomAccessible< T > >
 {
+	boolean primitive = true;
+
 	@Override
 	public NLinearInterpolator< T > create( final RandomAccessible< T > randomAccessible )
 	{
+		final PrimitiveStorage storage = primitive ? PrimitiveStorage.of( randomAccessible ) : null;
+		if ( storage != null )
+			return new NLinearInterpolatorPrimitive< T >( randomAccessible, storage );
+
 		switch ( randomAccessible.numDimensions() )
 		{
 		case 1:
@@ -73,4 +86,26 @@ public class NLinearInterpolatorFactory< T extends NumericType< T > > implements
 	{
 		return create( randomAccessible );
 	}
+
+	/**
+	 * Whether to create an {@link NLinearInterpolatorPrimitive} for sources
+	 * that support it (default true). Set to false to get the rounding of the
+	 * generic interpolators for integer types.
+	 * 
+	 * @param primitive
+	 *            - create primitive interpolators (true)
+	 */
+	public void setPrimitive( final boolean primitive )
+	{
+		this.primitive = primitive;
+	}
+
+	/**
+	 * @return - if primitive interpolators are created for sources that
+	 *         support them
+	 */
+	public boolean getPrimitive()
+	{
+		return primitive;
+	}
 }
@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.type.numeric.NumericType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Performs multi-linear interpolation, reading pixels directly from the
+ * primitive arrays of an {@link net.imglib2.img.array.ArrayImg} or
+ * {@link net.imglib2.img.planar.PlanarImg}. Values are accumulated in a
+ * <code>double</code>. Where the 2x2x...x2 neighborhood of the position is
+ * not completely inside the image, the generic {@link NLinearInterpolator}
+ * is used, so that out-of-bounds values are obtained from the source.
+ * 
+ * <p>
+ * Created by {@link NLinearInterpolatorFactory} when the source supports it.
+ * </p>
+ * 
+ * @param <T>
+ * 
+ * @author agent
+ */
+public class NLinearInterpolatorPrimitive< T extends NumericType< T > > extends NLinearInterpolator< T >
+{
+	final protected PrimitiveStorage storage;
+
+	/**
+	 * index and plane offsets of the corners of the 2x2x...x2 neighborhood, in
+	 * the order of {@link #weights}.
+	 */
+	final protected int[] cornerIndices, cornerPlanes;
+
+	final protected RealType< ? > value;
+
+	/**
+	 * floored position.
+	 */
+	final private long[] min;
+
+	protected NLinearInterpolatorPrimitive( final NLinearInterpolatorPrimitive< T > interpolator )
+	{
+		super( interpolator );
+		storage = interpolator.storage;
+		cornerIndices = interpolator.cornerIndices;
+		cornerPlanes = interpolator.cornerPlanes;
+		value = ( RealType< ? > ) accumulator;
+		min = new long[ n ];
+	}
+
+	protected NLinearInterpolatorPrimitive( final RandomAccessible< T > randomAccessible, final PrimitiveStorage storage )
+	{
+		super( randomAccessible );
+		this.storage = storage;
+		cornerIndices = new int[ 1 << n ];
+		cornerPlanes = new int[ 1 << n ];
+		for ( int c = 0; c < cornerIndices.length; ++c )
+			for ( int d = 0; d < n; ++d )
+				if ( ( c & ( 1 << d ) ) != 0 )
+				{
+					cornerIndices[ c ] += storage.steps[ d ];
+					cornerPlanes[ c ] += storage.planeSteps[ d ];
+				}
+		value = ( RealType< ? > ) accumulator;
+		min = new long[ n ];
+	}
+
+	@Override
+	public T get()
+	{
+		for ( int d = 0; d < n; ++d )
+			min[ d ] = Floor.floor( position[ d ] );
+		if ( !storage.contains( min, 2 ) )
+			return super.get();
+
+		// fill weights as in fillWeights(), starting from the highest dimension
+		weights[ 0 ] = 1.0d;
+		for ( int d = n - 1; d >= 0; --d )
+		{
+			final double w = position[ d ] - min[ d ];
+			final double wInv = 1.0d - w;
+			final int wInvIndexIncrement = 1 << d;
+			final int baseIndexIncrement = wInvIndexIncrement * 2;
+			for ( int baseIndex = 0; baseIndex < weights.length; baseIndex += baseIndexIncrement )
+			{
+				weights[ baseIndex + wInvIndexIncrement ] = weights[ baseIndex ] * w;
+				weights[ baseIndex ] *= wInv;
+			}
+		}
+
+		final int index = storage.index( min );
+		final int plane = storage.plane( min );
+		double sum = 0;
+		for ( int c = 0; c < weights.length; ++c )
+			sum += weights[ c ] * storage.get( plane + cornerPlanes[ c ], index + cornerIndices[ c ] );
+		value.setReal( sum );
+		return accumulator;
+	}
+
+	@Override
+	public NLinearInterpolatorPrimitive< T > copy()
+	{
+		return new NLinearInterpolatorPrimitive< T >( this );
+	}
+
+	@Override
+	public NLinearInterpolatorPrimitive< T > copyRealRandomAccess()
+	{
+		return copy();
+	}
+}
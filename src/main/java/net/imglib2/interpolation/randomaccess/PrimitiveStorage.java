@@ -0,0 +1,284 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.ExtendedRandomAccessibleInterval;
+
+/**
+ * Direct read access to the primitive arrays backing an {@link ArrayImg} or
+ * {@link PlanarImg} of {@link FloatType}, {@link DoubleType},
+ * {@link UnsignedShortType}, or {@link UnsignedByteType}, for specialized
+ * interpolators.
+ * 
+ * <p>
+ * A pixel is addressed by a plane and an index into that plane. An
+ * {@link ArrayImg} has a single plane. Moving by one pixel in dimension d adds
+ * {@link #steps}[d] to the index and {@link #planeSteps}[d] to the plane.
+ * </p>
+ * 
+ * @author agent
+ */
+final class PrimitiveStorage
+{
+	static final int FLOAT = 0;
+
+	static final int DOUBLE = 1;
+
+	static final int UNSIGNED_SHORT = 2;
+
+	static final int UNSIGNED_BYTE = 3;
+
+	final int kind;
+
+	final int n;
+
+	/**
+	 * image dimensions.
+	 */
+	final long[] dimensions;
+
+	final int[] steps;
+
+	final int[] planeSteps;
+
+	private final float[][] floats;
+
+	private final double[][] doubles;
+
+	private final short[][] shorts;
+
+	private final byte[][] bytes;
+
+	private PrimitiveStorage( final int kind, final long[] dimensions, final int[] steps, final int[] planeSteps, final Object[] planes )
+	{
+		this.kind = kind;
+		this.n = dimensions.length;
+		this.dimensions = dimensions;
+		this.steps = steps;
+		this.planeSteps = planeSteps;
+		floats = kind == FLOAT ? new float[ planes.length ][] : null;
+		doubles = kind == DOUBLE ? new double[ planes.length ][] : null;
+		shorts = kind == UNSIGNED_SHORT ? new short[ planes.length ][] : null;
+		bytes = kind == UNSIGNED_BYTE ? new byte[ planes.length ][] : null;
+		for ( int i = 0; i < planes.length; ++i )
+		{
+			switch ( kind )
+			{
+			case FLOAT:
+				floats[ i ] = ( float[] ) planes[ i ];
+				break;
+			case DOUBLE:
+				doubles[ i ] = ( double[] ) planes[ i ];
+				break;
+			case UNSIGNED_SHORT:
+				shorts[ i ] = ( short[] ) planes[ i ];
+				break;
+			default:
+				bytes[ i ] = ( byte[] ) planes[ i ];
+			}
+		}
+	}
+
+	/**
+	 * Get the value of the pixel at the given index of the given plane.
+	 */
+	double get( final int plane, final int index )
+	{
+		switch ( kind )
+		{
+		case FLOAT:
+			return floats[ plane ][ index ];
+		case DOUBLE:
+			return doubles[ plane ][ index ];
+		case UNSIGNED_SHORT:
+			return shorts[ plane ][ index ] & 0xffff;
+		default:
+			return bytes[ plane ][ index ] & 0xff;
+		}
+	}
+
+	/**
+	 * Check whether the box of pixels from <code>min</code> to
+	 * <code>min + size - 1</code> in every dimension lies inside the image.
+	 */
+	boolean contains( final long[] min, final int size )
+	{
+		for ( int d = 0; d < n; ++d )
+			if ( min[ d ] < 0 || min[ d ] + size > dimensions[ d ] )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Get the index into the plane of the given pixel.
+	 */
+	int index( final long[] position )
+	{
+		long index = 0;
+		for ( int d = 0; d < n; ++d )
+			index += position[ d ] * steps[ d ];
+		return ( int ) index;
+	}
+
+	/**
+	 * Get the plane containing the given pixel.
+	 */
+	int plane( final long[] position )
+	{
+		long plane = 0;
+		for ( int d = 0; d < n; ++d )
+			plane += position[ d ] * planeSteps[ d ];
+		return ( int ) plane;
+	}
+
+	/**
+	 * Get direct access to the pixels of <code>source</code>, if
+	 * <code>source</code> is an {@link ArrayImg} or {@link PlanarImg} of a
+	 * supported type, or an {@link ExtendedRandomAccessibleInterval} of one.
+	 * 
+	 * @return direct access, or <code>null</code> if not supported.
+	 */
+	static PrimitiveStorage of( final RandomAccessible< ? > source )
+	{
+		Object img = source;
+		if ( img instanceof ExtendedRandomAccessibleInterval )
+			img = ( ( ExtendedRandomAccessibleInterval< ?, ? > ) img ).getSource();
+
+		if ( img != null && img.getClass() == ArrayImg.class )
+		{
+			final ArrayImg< ?, ? > arrayImg = ( ArrayImg< ?, ? > ) img;
+			if ( arrayImg.size() == 0 )
+				return null;
+			final int kind = kind( arrayImg.firstElement() );
+			final Object data = arrayImg.update( null );
+			if ( kind < 0 || !( data instanceof ArrayDataAccess ) )
+				return null;
+			final Object array = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+			if ( !isArrayOf( array, kind ) )
+				return null;
+			final int n = arrayImg.numDimensions();
+			final long[] dimensions = new long[ n ];
+			arrayImg.dimensions( dimensions );
+			final int[] steps = new int[ n ];
+			int step = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				steps[ d ] = step;
+				step *= dimensions[ d ];
+			}
+			return new PrimitiveStorage( kind, dimensions, steps, new int[ n ], new Object[] { array } );
+		}
+
+		if ( img != null && img.getClass() == PlanarImg.class )
+		{
+			final PlanarImg< ?, ? > planarImg = ( PlanarImg< ?, ? > ) img;
+			if ( planarImg.size() == 0 )
+				return null;
+			final int kind = kind( planarImg.firstElement() );
+			if ( kind < 0 )
+				return null;
+			final Object[] planes = new Object[ planarImg.numSlices() ];
+			for ( int i = 0; i < planes.length; ++i )
+			{
+				final Object plane = planarImg.getPlane( i );
+				if ( !( plane instanceof ArrayDataAccess ) )
+					return null;
+				planes[ i ] = ( ( ArrayDataAccess< ? > ) plane ).getCurrentStorageArray();
+				if ( !isArrayOf( planes[ i ], kind ) )
+					return null;
+			}
+			final int n = planarImg.numDimensions();
+			final long[] dimensions = new long[ n ];
+			planarImg.dimensions( dimensions );
+			final int[] steps = new int[ n ];
+			final int[] planeSteps = new int[ n ];
+			int step = 1;
+			int planeStep = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( d < 2 )
+				{
+					steps[ d ] = step;
+					step *= dimensions[ d ];
+				}
+				else
+				{
+					planeSteps[ d ] = planeStep;
+					planeStep *= dimensions[ d ];
+				}
+			}
+			return new PrimitiveStorage( kind, dimensions, steps, planeSteps, planes );
+		}
+
+		return null;
+	}
+
+	private static int kind( final Object type )
+	{
+		final Class< ? > c = type.getClass();
+		if ( c == FloatType.class )
+			return FLOAT;
+		if ( c == DoubleType.class )
+			return DOUBLE;
+		if ( c == UnsignedShortType.class )
+			return UNSIGNED_SHORT;
+		if ( c == UnsignedByteType.class )
+			return UNSIGNED_BYTE;
+		return -1;
+	}
+
+	private static boolean isArrayOf( final Object array, final int kind )
+	{
+		switch ( kind )
+		{
+		case FLOAT:
+			return array instanceof float[];
+		case DOUBLE:
+			return array instanceof double[];
+		case UNSIGNED_SHORT:
+			return array instanceof short[];
+		default:
+			return array instanceof byte[];
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.separable;
+
+import net.imglib2.interpolation.randomaccess.BSplineCoefficients;
+
+/**
+ * B-spline basis function of odd order (1, 3 or 5). Interpolating with this
+ * kernel reproduces the source values only when it is applied to B-spline
+ * coefficients computed by {@link BSplineCoefficients}, not to the source
+ * itself. For order 1 the coefficients are equal to the source, and the
+ * kernel is {@link NLinearKernel n-linear}.
+ * 
+ * @author agent
+ */
+public class BSplineKernel implements ResamplingKernel
+{
+	final protected int order;
+
+	/**
+	 * @param order
+	 *            order of the B-spline, 1, 3 or 5.
+	 */
+	public BSplineKernel( final int order )
+	{
+		if ( order != 1 && order != 3 && order != 5 )
+			throw new IllegalArgumentException( "B-spline order must be 1, 3, or 5" );
+		this.order = order;
+	}
+
+	public int getOrder()
+	{
+		return order;
+	}
+
+	@Override
+	public int support()
+	{
+		return order + 1;
+	}
+
+	@Override
+	public double weight( final double x )
+	{
+		final double a = x < 0 ? -x : x;
+		switch ( order )
+		{
+		case 1:
+			return a < 1 ? 1 - a : 0;
+		case 3:
+			if ( a < 1 )
+				return 2.0 / 3.0 + a * a * ( a / 2 - 1 );
+			if ( a < 2 )
+			{
+				final double b = 2 - a;
+				return b * b * b / 6;
+			}
+			return 0;
+		default:
+			if ( a < 1 )
+			{
+				final double a2 = a * a;
+				return 11.0 / 20.0 + a2 * ( -1.0 / 2.0 + a2 * ( 1.0 / 4.0 - a / 12 ) );
+			}
+			if ( a < 2 )
+				return 17.0 / 40.0 + a * ( 5.0 / 8.0 + a * ( -7.0 / 4.0 + a * ( 5.0 / 4.0 + a * ( -3.0 / 8.0 + a / 24 ) ) ) );
+			if ( a < 3 )
+			{
+				final double b = 3 - a;
+				final double b2 = b * b;
+				return b2 * b2 * b / 120;
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.separable;
+
+import net.imglib2.interpolation.randomaccess.LanczosInterpolator;
+
+/**
+ * Lanczos interpolation kernel, the separable equivalent of
+ * {@link LanczosInterpolator}. Weights are computed exactly rather than
+ * looked up, because {@link SeparableResampler} evaluates them only once per
+ * target coordinate and axis.
+ * 
+ * @author agent
+ */
+public class LanczosKernel implements ResamplingKernel
+{
+	final protected int alpha;
+
+	/**
+	 * @param alpha
+	 *            the radius of values to incorporate (typically 2 or 3)
+	 */
+	public LanczosKernel( final int alpha )
+	{
+		this.alpha = alpha;
+	}
+
+	@Override
+	public int support()
+	{
+		return 2 * alpha;
+	}
+
+	@Override
+	public double weight( final double x )
+	{
+		if ( x == 0 )
+			return 1;
+		if ( x <= -alpha || x >= alpha )
+			return 0;
+		return alpha * Math.sin( Math.PI * x ) * Math.sin( Math.PI * x / alpha ) / ( Math.PI * Math.PI * x * x );
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.separable;
+
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Resamples a {@link RandomAccessible} into a target
+ * {@link RandomAccessibleInterval} under an axis-aligned scaling and
+ * translation, using a separable {@link ResamplingKernel}.
+ * 
+ * <p>
+ * Target pixel <em>x</em> is set to the source interpolated at
+ * <code>scale[d] * x[d] + offset[d]</code>. This gives the same result as
+ * rastering an interpolated source ({@link Views#raster},
+ * {@link Views#interpolate}) through that transform, but is much cheaper:
+ * the kernel weights are computed once per target coordinate and axis, the
+ * source samples that contribute to any target pixel are read once into a
+ * <code>double[]</code> buffer, and the kernel is applied one axis at a time. Each target pixel then costs
+ * <em>O(n &times; support)</em> instead of <em>O(support<sup>n</sup>)</em>.
+ * </p>
+ * 
+ * <p>
+ * Large targets are processed in slabs along the last dimension to bound the
+ * size of the intermediate buffers. Buffers are reused between calls, so a
+ * resampler is not thread-safe; use one per thread (for instance, one per
+ * stripe of a target that is rendered in parallel).
+ * </p>
+ * 
+ * @author agent
+ */
+public class SeparableResampler
+{
+	/**
+	 * Targets are processed in slabs such that the intermediate buffers hold
+	 * about that many values.
+	 */
+	private static final long MAX_BUFFER_SIZE = 1 << 22;
+
+	final protected ResamplingKernel kernel;
+
+	final protected int support;
+
+	final protected boolean clip;
+
+	private double[] bufferA;
+
+	private double[] bufferB;
+
+	/**
+	 * @param kernel
+	 *            the interpolation kernel
+	 * @param clip
+	 *            whether to clip interpolated values to the range of the
+	 *            target type
+	 */
+	public SeparableResampler( final ResamplingKernel kernel, final boolean clip )
+	{
+		this.kernel = kernel;
+		this.support = kernel.support();
+		this.clip = clip;
+		this.bufferA = new double[ 0 ];
+		this.bufferB = new double[ 0 ];
+	}
+
+	/**
+	 * Create a resampler that does not clip interpolated values.
+	 * 
+	 * @param kernel
+	 *            the interpolation kernel
+	 */
+	public SeparableResampler( final ResamplingKernel kernel )
+	{
+		this( kernel, false );
+	}
+
+	/**
+	 * Set each pixel <em>x</em> of <code>target</code> to
+	 * <code>source</code> interpolated at
+	 * <code>scale[d] * x[d] + offset[d]</code>.
+	 * 
+	 * @param source
+	 *            the source, must be defined wherever the kernel reaches
+	 * @param target
+	 *            the target
+	 * @param scale
+	 *            scale factor per axis
+	 * @param offset
+	 *            translation per axis
+	 */
+	public < S extends RealType< S >, T extends RealType< T > > void resample( final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final double[] scale, final double[] offset )
+	{
+		final int n = target.numDimensions();
+		if ( n == 0 || source.numDimensions() != n )
+			throw new IllegalArgumentException( "source and target must have the same, positive number of dimensions" );
+
+		// per-axis tables of first source coordinate and weights
+		final int[] targetSize = new int[ n ];
+		final long[][] first = new long[ n ][];
+		final double[][] weights = new double[ n ][];
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( target.dimension( d ) > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "target too large" );
+			targetSize[ d ] = ( int ) target.dimension( d );
+			first[ d ] = new long[ targetSize[ d ] ];
+			weights[ d ] = new double[ targetSize[ d ] * support ];
+			for ( int t = 0; t < targetSize[ d ]; ++t )
+			{
+				final double x = scale[ d ] * ( target.min( d ) + t ) + offset[ d ];
+				final long f = ( long ) Math.floor( x ) - support / 2 + 1;
+				first[ d ][ t ] = f;
+				for ( int k = 0; k < support; ++k )
+					weights[ d ][ t * support + k ] = kernel.weight( x - ( f + k ) );
+			}
+		}
+
+		// source coordinates used along each axis
+		final int last = n - 1;
+		final long[][] used = new long[ n ][];
+		for ( int d = 0; d < n; ++d )
+			used[ d ] = usedCoordinates( first[ d ], 0, targetSize[ d ] );
+
+		// choose slab height along the last axis
+		int height = targetSize[ last ];
+		while ( height > 1 && bufferSize( used, targetSize, 0, height ) > MAX_BUFFER_SIZE )
+		{
+			height = ( height + 1 ) / 2;
+			used[ last ] = usedCoordinates( first[ last ], 0, height );
+		}
+
+		for ( int t0 = 0; t0 < targetSize[ last ]; t0 += height )
+			resampleSlab( source, target, first, weights, targetSize, used, t0, Math.min( targetSize[ last ], t0 + height ) );
+	}
+
+	/**
+	 * Get the sorted source coordinates used by target coordinates
+	 * <code>from</code>...<code>to-1</code> along one axis.
+	 */
+	private long[] usedCoordinates( final long[] first, final int from, final int to )
+	{
+		final long[] sorted = Arrays.copyOfRange( first, from, to );
+		Arrays.sort( sorted );
+		final long[] used = new long[ sorted.length * support ];
+		int size = 0;
+		for ( final long f : sorted )
+			for ( long x = size == 0 ? f : Math.max( f, used[ size - 1 ] + 1 ); x < f + support; ++x )
+				used[ size++ ] = x;
+		return Arrays.copyOf( used, size );
+	}
+
+	/**
+	 * Size of the largest buffer needed to resample target slab
+	 * <code>from</code>...<code>to-1</code> along the last axis.
+	 */
+	private long bufferSize( final long[][] used, final int[] targetSize, final int from, final int to )
+	{
+		final int n = targetSize.length;
+		long maxSize = 0;
+		for ( int p = 0; p <= n; ++p )
+		{
+			long size = 1;
+			for ( int d = 0; d < n; ++d )
+				size *= d < p ? ( d == n - 1 ? to - from : targetSize[ d ] ) : used[ d ].length;
+			maxSize = Math.max( maxSize, size );
+		}
+		return maxSize;
+	}
+
+	private < S extends RealType< S >, T extends RealType< T > > void resampleSlab( final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final long[][] first, final double[][] weights, final int[] targetSize, final long[][] used, final int from, final int to )
+	{
+		final int n = targetSize.length;
+		final int last = n - 1;
+		used[ last ] = usedCoordinates( first[ last ], from, to );
+		final long size = bufferSize( used, targetSize, from, to );
+		if ( size > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "source region too large" );
+		if ( bufferA.length < size )
+		{
+			bufferA = new double[ ( int ) size ];
+			bufferB = new double[ ( int ) size ];
+		}
+
+		// read the used source coordinates, rows along dimension 0
+		final int[] dims = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			dims[ d ] = used[ d ].length;
+		double[] in = bufferA;
+		double[] out = bufferB;
+		final RandomAccess< S > sourceAccess = source.randomAccess();
+		final int[] index = new int[ n ];
+		final long[] x0 = used[ 0 ];
+		for ( int i = 0;; )
+		{
+			for ( int d = 1; d < n; ++d )
+				sourceAccess.setPosition( used[ d ][ index[ d ] ], d );
+			sourceAccess.setPosition( x0[ 0 ], 0 );
+			in[ i++ ] = sourceAccess.get().getRealDouble();
+			for ( int j = 1; j < x0.length; ++j )
+			{
+				final long step = x0[ j ] - x0[ j - 1 ];
+				if ( step == 1 )
+					sourceAccess.fwd( 0 );
+				else
+					sourceAccess.move( step, 0 );
+				in[ i++ ] = sourceAccess.get().getRealDouble();
+			}
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++index[ d ] < dims[ d ] )
+					break;
+				index[ d ] = 0;
+			}
+			if ( d >= n )
+				break;
+		}
+
+		// apply kernel along each axis
+		for ( int d = 0; d < n; ++d )
+		{
+			final int tFrom = d == last ? from : 0;
+			final int tCount = d == last ? to - from : targetSize[ d ];
+			final int[] firstIndex = new int[ tCount ];
+			for ( int t = 0; t < tCount; ++t )
+				firstIndex[ t ] = Arrays.binarySearch( used[ d ], first[ d ][ tFrom + t ] );
+			convolve( in, out, dims, d, firstIndex, weights[ d ], tFrom, tCount );
+			dims[ d ] = tCount;
+			final double[] tmp = in;
+			in = out;
+			out = tmp;
+		}
+
+		// write target slab
+		final long[] targetMin = new long[ n ];
+		final long[] targetMax = new long[ n ];
+		target.min( targetMin );
+		target.max( targetMax );
+		targetMin[ last ] = target.min( last ) + from;
+		targetMax[ last ] = target.min( last ) + to - 1;
+		final Cursor< T > targetCursor = Views.flatIterable( Views.interval( target, targetMin, targetMax ) ).cursor();
+		if ( clip )
+		{
+			final T type = targetCursor.next();
+			final double minValue = type.getMinValue();
+			final double maxValue = type.getMaxValue();
+			targetCursor.reset();
+			for ( int i = 0; targetCursor.hasNext(); ++i )
+			{
+				final double v = in[ i ];
+				targetCursor.next().setReal( v < minValue ? minValue : v > maxValue ? maxValue : v );
+			}
+		}
+		else
+		{
+			for ( int i = 0; targetCursor.hasNext(); ++i )
+				targetCursor.next().setReal( in[ i ] );
+		}
+	}
+
+	/**
+	 * Apply the kernel along axis d.
+	 * 
+	 * @param in
+	 *            input buffer with dimensions <code>dims</code>.
+	 * @param out
+	 *            output buffer with dimensions <code>dims</code> except
+	 *            <code>tCount</code> along axis d.
+	 * @param firstIndex
+	 *            index in the input buffer along axis d of the first sample
+	 *            for each computed target coordinate.
+	 * @param weights
+	 *            <code>support</code> weights for each target coordinate
+	 *            along axis d.
+	 * @param tFrom
+	 *            first target coordinate to compute.
+	 * @param tCount
+	 *            number of target coordinates to compute.
+	 */
+	private void convolve( final double[] in, final double[] out, final int[] dims, final int d, final int[] firstIndex, final double[] weights, final int tFrom, final int tCount )
+	{
+		int inner = 1;
+		for ( int e = 0; e < d; ++e )
+			inner *= dims[ e ];
+		int outer = 1;
+		for ( int e = d + 1; e < dims.length; ++e )
+			outer *= dims[ e ];
+		final int inLength = dims[ d ] * inner;
+		final int outLength = tCount * inner;
+
+		for ( int o = 0; o < outer; ++o )
+		{
+			final int inBase = o * inLength;
+			final int outBase = o * outLength;
+			for ( int t = 0; t < tCount; ++t )
+			{
+				final int outOffset = outBase + t * inner;
+				final int f = firstIndex[ t ];
+				final int w0 = ( tFrom + t ) * support;
+				if ( inner == 1 )
+				{
+					double sum = 0;
+					for ( int k = 0; k < support; ++k )
+						sum += weights[ w0 + k ] * in[ inBase + f + k ];
+					out[ outOffset ] = sum;
+				}
+				else
+				{
+					for ( int i = 0; i < inner; ++i )
+						out[ outOffset + i ] = 0;
+					for ( int k = 0; k < support; ++k )
+					{
+						final double w = weights[ w0 + k ];
+						if ( w == 0 )
+							continue;
+						final int inOffset = inBase + ( f + k ) * inner;
+						for ( int i = 0; i < inner; ++i )
+							out[ outOffset + i ] += w * in[ inOffset + i ];
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Base class for {@link KNearestNeighborSearch} implementations. Keeps the
+ * squared distances of the k best points found so far in ascending order;
+ * subclasses keep the points themselves and move them along in
+ * {@link #move(int, int)}.
+ * 
+ * @author Tobias Pietzsch
+ * @author agent
+ */
+public abstract class AbstractKNearestNeighborSearch< T > implements KNearestNeighborSearch< T >
+{
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final double[] bestSquDistances;
+
+	public AbstractKNearestNeighborSearch( final int n, final int k )
+	{
+		this.n = n;
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestSquDistances = new double[ k ];
+		for ( int i = 0; i < k; ++i )
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		search();
+	}
+
+	/**
+	 * Perform k-nearest-neighbor search for the reference coordinate in
+	 * {@link #pos}.
+	 */
+	protected abstract void search();
+
+	/**
+	 * Forget the best points of the last search.
+	 */
+	protected void clearBest()
+	{
+		for ( int i = 0; i < k; ++i )
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+	}
+
+	/**
+	 * @return the squared distance a point must be below to be among the k
+	 *         best points found so far.
+	 */
+	protected double maxBestSquDistance()
+	{
+		return bestSquDistances[ k - 1 ];
+	}
+
+	/**
+	 * Insert a squared distance into the sorted {@link #bestSquDistances},
+	 * dropping the largest. Worse points are {@link #move(int, int) moved}
+	 * one index up.
+	 * 
+	 * @return the index at which the subclass must store the point, or -1 if
+	 *         the point is not among the k best.
+	 */
+	protected int insert( final double squDistance )
+	{
+		if ( squDistance >= bestSquDistances[ k - 1 ] )
+			return -1;
+		int i = k - 1;
+		for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+		{
+			bestSquDistances[ i ] = bestSquDistances[ j ];
+			move( j, i );
+		}
+		bestSquDistances[ i ] = squDistance;
+		return i;
+	}
+
+	/**
+	 * Move the best point at index <em>from</em> to index <em>to</em>.
+	 */
+	protected abstract void move( int from, int to );
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+}
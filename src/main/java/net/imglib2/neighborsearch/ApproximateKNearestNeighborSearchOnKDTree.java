@@ -0,0 +1,345 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.interpolation.neighborsearch.InverseDistanceWeightingInterpolatorFactory;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchInterpolatorFactory;
+
+/**
+ * Approximate {@link KNearestNeighborSearch} on kd-trees, using best-bin-first
+ * traversal.
+ * 
+ * <p>
+ * Branches that are not taken on the way down the tree are put into a
+ * priority queue, keyed by a lower bound of their distance to the reference.
+ * The search repeatedly descends into the closest pending branch. It stops
+ * when
+ * <ul>
+ * <li>no pending branch can contain a point closer than the current
+ * <em>k</em>th best distance divided by <em>(1 + epsilon)</em>, or</li>
+ * <li><em>maxLeaves</em> descents (each ending at a leaf) have been made.</li>
+ * </ul>
+ * With epsilon = 0 and no limit on the number of leaves, the result is exact.
+ * Otherwise, if only epsilon limits the search, the distance to the
+ * <em>i</em>th found neighbor is at most <em>(1 + epsilon)</em> times the
+ * distance to the true <em>i</em>th nearest neighbor.
+ * </p>
+ * 
+ * <p>
+ * Like any {@link KNearestNeighborSearch}, it can be used with
+ * {@link InverseDistanceWeightingInterpolatorFactory} or
+ * {@link NearestNeighborSearchInterpolatorFactory}.
+ * </p>
+ * 
+ * @author agent
+ */
+public class ApproximateKNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final KDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final double epsilon;
+
+	protected final int maxLeaves;
+
+	/**
+	 * a branch is searched only if its lower bound times this is smaller than
+	 * the current <em>k</em>th best squared distance.
+	 */
+	protected final double boundFactor;
+
+	protected KDTreeNode< T >[] bestPoints;
+
+	protected double[] bestSquDistances;
+
+	/**
+	 * binary min-heap of pending branches and their squared distance lower
+	 * bounds.
+	 */
+	private KDTreeNode< T >[] heapNodes;
+
+	private double[] heapBounds;
+
+	private int heapSize;
+
+	/**
+	 * @param tree
+	 *            the tree to search.
+	 * @param k
+	 *            number of neighbors.
+	 * @param epsilon
+	 *            allowed relative error of the neighbor distances.
+	 * @param maxLeaves
+	 *            maximum number of leaves to reach before stopping the search.
+	 *            Values &lt;= 0 mean no limit.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public ApproximateKNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k, final double epsilon, final int maxLeaves )
+	{
+		assert epsilon >= 0;
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.epsilon = epsilon;
+		this.maxLeaves = maxLeaves > 0 ? maxLeaves : Integer.MAX_VALUE;
+		this.boundFactor = ( 1 + epsilon ) * ( 1 + epsilon );
+		this.bestPoints = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ k ];
+		this.bestSquDistances = new double[ k ];
+		for ( int i = 0; i < k; ++i )
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		this.heapNodes = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ 64 ];
+		this.heapBounds = new double[ 64 ];
+	}
+
+	/**
+	 * Create an epsilon-approximate search without limit on the number of
+	 * leaves.
+	 */
+	public ApproximateKNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k, final double epsilon )
+	{
+		this( tree, k, epsilon, 0 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	public double getEpsilon()
+	{
+		return epsilon;
+	}
+
+	public int getMaxLeaves()
+	{
+		return maxLeaves;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestPoints[ i ] = null;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+
+		heapSize = 0;
+		push( tree.getRoot(), 0 );
+		int leaves = 0;
+		while ( heapSize > 0 && leaves < maxLeaves )
+		{
+			final double bound = heapBounds[ 0 ];
+			if ( bound * boundFactor >= bestSquDistances[ k - 1 ] )
+				break;
+			descend( pop(), bound );
+			++leaves;
+		}
+		Arrays.fill( heapNodes, 0, heapSize, null );
+	}
+
+	/**
+	 * Walk from node to a leaf, always taking the near branch, and queue the
+	 * away branches that may contain closer points.
+	 */
+	protected void descend( final KDTreeNode< T > node, final double bound )
+	{
+		KDTreeNode< T > current = node;
+		while ( current != null )
+		{
+			// consider the current node
+			final double squDistance = current.squDistanceTo( pos );
+			if ( squDistance < bestSquDistances[ k - 1 ] )
+			{
+				int i = k - 1;
+				for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+				{
+					bestSquDistances[ i ] = bestSquDistances[ j ];
+					bestPoints[ i ] = bestPoints[ j ];
+				}
+				bestSquDistances[ i ] = squDistance;
+				bestPoints[ i ] = current;
+			}
+
+			final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+			final boolean leftIsNearBranch = axisDiff < 0;
+			final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+			final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+
+			// queue the away branch - maybe
+			if ( awayChild != null )
+			{
+				final double awayBound = Math.max( bound, axisDiff * axisDiff );
+				if ( awayBound * boundFactor < bestSquDistances[ k - 1 ] )
+					push( awayChild, awayBound );
+			}
+
+			current = nearChild;
+		}
+	}
+
+	private void push( final KDTreeNode< T > node, final double bound )
+	{
+		if ( heapSize == heapNodes.length )
+		{
+			heapNodes = Arrays.copyOf( heapNodes, 2 * heapSize );
+			heapBounds = Arrays.copyOf( heapBounds, 2 * heapSize );
+		}
+		int i = heapSize++;
+		while ( i > 0 )
+		{
+			final int parent = ( i - 1 ) >>> 1;
+			if ( heapBounds[ parent ] <= bound )
+				break;
+			heapNodes[ i ] = heapNodes[ parent ];
+			heapBounds[ i ] = heapBounds[ parent ];
+			i = parent;
+		}
+		heapNodes[ i ] = node;
+		heapBounds[ i ] = bound;
+	}
+
+	private KDTreeNode< T > pop()
+	{
+		final KDTreeNode< T > top = heapNodes[ 0 ];
+		final int last = --heapSize;
+		final KDTreeNode< T > node = heapNodes[ last ];
+		final double bound = heapBounds[ last ];
+		heapNodes[ last ] = null;
+		int i = 0;
+		while ( true )
+		{
+			int child = 2 * i + 1;
+			if ( child >= last )
+				break;
+			if ( child + 1 < last && heapBounds[ child + 1 ] < heapBounds[ child ] )
+				++child;
+			if ( bound <= heapBounds[ child ] )
+				break;
+			heapNodes[ i ] = heapNodes[ child ];
+			heapBounds[ i ] = heapBounds[ child ];
+			i = child;
+		}
+		if ( last > 0 )
+		{
+			heapNodes[ i ] = node;
+			heapBounds[ i ] = bound;
+		}
+		return top;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public ApproximateKNearestNeighborSearchOnKDTree< T > copy()
+	{
+		final ApproximateKNearestNeighborSearchOnKDTree< T > copy = new ApproximateKNearestNeighborSearchOnKDTree< T >( tree, k, epsilon, maxLeaves );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestPoints[ i ] = bestPoints[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+		}
+		return copy;
+	}
+}
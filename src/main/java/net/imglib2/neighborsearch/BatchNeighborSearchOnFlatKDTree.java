@@ -0,0 +1,552 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.IterableRealInterval;
+import net.imglib2.RealCursor;
+import net.imglib2.parallel.Parallel;
+
+/**
+ * Answers many nearest-neighbor, k-nearest-neighbor or radius queries on a
+ * {@link FlatKDTree} in one call. Query points are given as a flat array (
+ * <code>n</code> consecutive coordinates per query) or as an
+ * {@link IterableRealInterval}. Neighbors are reported as
+ * {@link FlatKDTree#getValueIndex(int) value indices}, that is, indices into
+ * the list the tree was constructed from, and written to preallocated
+ * primitive arrays.
+ * 
+ * <p>
+ * Queries are sorted along a Z-order curve, so that consecutive queries visit
+ * similar parts of the tree, and processed in chunks on a
+ * {@link ForkJoinPool}. Each chunk uses its own search, so a
+ * {@link BatchNeighborSearchOnFlatKDTree} can be used from several threads.
+ * </p>
+ * 
+ * @author agent
+ */
+public class BatchNeighborSearchOnFlatKDTree< T >
+{
+	/**
+	 * Chunks are never smaller than that many queries.
+	 */
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 256;
+
+	/**
+	 * Number of chunks per thread of the pool.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final FlatKDTree< T > tree;
+
+	private final int n;
+
+	private final ForkJoinPool pool;
+
+	private final int minChunkSize;
+
+	/**
+	 * Create a batch search that runs on the {@link Parallel#defaultPool()
+	 * default pool}.
+	 */
+	public BatchNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this( tree, Parallel.defaultPool(), DEFAULT_MIN_CHUNK_SIZE );
+	}
+
+	/**
+	 * @param tree
+	 *            the tree to search.
+	 * @param pool
+	 *            the pool on which to run the queries.
+	 * @param minChunkSize
+	 *            queries are not split into chunks smaller than this.
+	 */
+	public BatchNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final ForkJoinPool pool, final int minChunkSize )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pool = pool;
+		this.minChunkSize = Math.max( 1, minChunkSize );
+	}
+
+	/**
+	 * Find the nearest neighbor of each query.
+	 * 
+	 * @param queries
+	 *            query coordinates, <code>n</code> consecutive values per
+	 *            query.
+	 * @param indices
+	 *            receives the value index of the nearest neighbor of query
+	 *            <em>q</em> at <code>indices[q]</code>, or -1 if the tree is
+	 *            empty.
+	 * @param squDistances
+	 *            receives the squared distance to the nearest neighbor of
+	 *            query <em>q</em> at <code>squDistances[q]</code>. May be
+	 *            <code>null</code>.
+	 */
+	public void nearestNeighbors( final double[] queries, final int[] indices, final double[] squDistances )
+	{
+		run( queries, new ChunkFactory()
+		{
+			@Override
+			public RecursiveAction create( final int[] order, final int from, final int to )
+			{
+				return new NearestNeighborChunk( queries, order, from, to, indices, squDistances );
+			}
+		} );
+	}
+
+	/**
+	 * Find the nearest neighbor of each query, see
+	 * {@link #nearestNeighbors(double[], int[], double[])}.
+	 */
+	public void nearestNeighbors( final IterableRealInterval< ? > queries, final int[] indices, final double[] squDistances )
+	{
+		nearestNeighbors( flatten( queries ), indices, squDistances );
+	}
+
+	/**
+	 * Find the <em>k</em> nearest neighbors of each query.
+	 * 
+	 * @param queries
+	 *            query coordinates, <code>n</code> consecutive values per
+	 *            query.
+	 * @param k
+	 *            number of neighbors.
+	 * @param indices
+	 *            receives the value index of the <em>i</em>th nearest
+	 *            neighbor of query <em>q</em> at <code>indices[q*k+i]</code>,
+	 *            or -1 if the tree has less than <em>k</em> nodes.
+	 * @param squDistances
+	 *            receives the squared distance to the <em>i</em>th nearest
+	 *            neighbor of query <em>q</em> at
+	 *            <code>squDistances[q*k+i]</code>. May be <code>null</code>.
+	 */
+	public void kNearestNeighbors( final double[] queries, final int k, final int[] indices, final double[] squDistances )
+	{
+		run( queries, new ChunkFactory()
+		{
+			@Override
+			public RecursiveAction create( final int[] order, final int from, final int to )
+			{
+				return new KNearestNeighborChunk( queries, order, from, to, k, indices, squDistances );
+			}
+		} );
+	}
+
+	/**
+	 * Find the <em>k</em> nearest neighbors of each query, see
+	 * {@link #kNearestNeighbors(double[], int, int[], double[])}.
+	 */
+	public void kNearestNeighbors( final IterableRealInterval< ? > queries, final int k, final int[] indices, final double[] squDistances )
+	{
+		kNearestNeighbors( flatten( queries ), k, indices, squDistances );
+	}
+
+	/**
+	 * Find all neighbors within <em>radius</em> of each query.
+	 * 
+	 * @param queries
+	 *            query coordinates, <code>n</code> consecutive values per
+	 *            query.
+	 * @param radius
+	 *            the search radius.
+	 * @param sortResults
+	 *            whether the neighbors of each query should be sorted by
+	 *            distance.
+	 */
+	public RadiusNeighbors radiusNeighbors( final double[] queries, final double radius, final boolean sortResults )
+	{
+		final int numQueries = queries.length / n;
+		final int[] counts = new int[ numQueries ];
+		final List< RadiusChunk > chunks = new ArrayList< RadiusChunk >();
+		run( queries, new ChunkFactory()
+		{
+			@Override
+			public RecursiveAction create( final int[] order, final int from, final int to )
+			{
+				final RadiusChunk chunk = new RadiusChunk( queries, order, from, to, radius, sortResults, counts );
+				chunks.add( chunk );
+				return chunk;
+			}
+		} );
+
+		final int[] offsets = new int[ numQueries + 1 ];
+		for ( int q = 0; q < numQueries; ++q )
+			offsets[ q + 1 ] = offsets[ q ] + counts[ q ];
+		final int[] indices = new int[ offsets[ numQueries ] ];
+		final double[] squDistances = new double[ offsets[ numQueries ] ];
+		for ( final RadiusChunk chunk : chunks )
+			chunk.copyTo( offsets, indices, squDistances );
+		return new RadiusNeighbors( offsets, indices, squDistances );
+	}
+
+	/**
+	 * Find all neighbors within <em>radius</em> of each query, see
+	 * {@link #radiusNeighbors(double[], double, boolean)}.
+	 */
+	public RadiusNeighbors radiusNeighbors( final IterableRealInterval< ? > queries, final double radius, final boolean sortResults )
+	{
+		return radiusNeighbors( flatten( queries ), radius, sortResults );
+	}
+
+	/**
+	 * Result of
+	 * {@link BatchNeighborSearchOnFlatKDTree#radiusNeighbors(double[], double, boolean)}
+	 * . The neighbors of query <em>q</em> are stored at indices
+	 * <code>offsets[q]</code> (inclusive) to <code>offsets[q+1]</code>
+	 * (exclusive) of the indices and squDistances arrays.
+	 */
+	public static class RadiusNeighbors
+	{
+		private final int[] offsets;
+
+		private final int[] indices;
+
+		private final double[] squDistances;
+
+		public RadiusNeighbors( final int[] offsets, final int[] indices, final double[] squDistances )
+		{
+			this.offsets = offsets;
+			this.indices = indices;
+			this.squDistances = squDistances;
+		}
+
+		/**
+		 * @return the number of neighbors of query <em>q</em>.
+		 */
+		public int numNeighbors( final int q )
+		{
+			return offsets[ q + 1 ] - offsets[ q ];
+		}
+
+		/**
+		 * @return the value index of the <em>i</em>th neighbor of query
+		 *         <em>q</em>.
+		 */
+		public int getIndex( final int q, final int i )
+		{
+			return indices[ offsets[ q ] + i ];
+		}
+
+		/**
+		 * @return the squared distance of the <em>i</em>th neighbor of query
+		 *         <em>q</em>.
+		 */
+		public double getSquareDistance( final int q, final int i )
+		{
+			return squDistances[ offsets[ q ] + i ];
+		}
+
+		public int[] getOffsets()
+		{
+			return offsets;
+		}
+
+		public int[] getIndices()
+		{
+			return indices;
+		}
+
+		public double[] getSquareDistances()
+		{
+			return squDistances;
+		}
+	}
+
+	/**
+	 * Copy the coordinates of the elements of <em>queries</em> into a flat
+	 * array.
+	 */
+	public static double[] flatten( final IterableRealInterval< ? > queries )
+	{
+		final int n = queries.numDimensions();
+		final long length = queries.size() * n;
+		if ( length > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many coordinates for a flat array: " + length );
+		final double[] coordinates = new double[ ( int ) length ];
+		final RealCursor< ? > cursor = queries.localizingCursor();
+		for ( int i = 0; cursor.hasNext(); i += n )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; ++d )
+				coordinates[ i + d ] = cursor.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	/**
+	 * Sort the queries along a Z-order curve over the bounding box of the tree
+	 * and return the permutation. The 31 bit key interleaves the coordinates
+	 * of (at most) the first 31 dimensions.
+	 */
+	private int[] zOrder( final double[] queries, final int numQueries )
+	{
+		final int keyDims = Math.min( n, 31 );
+		final int bits = 31 / keyDims;
+		final long maxCell = ( 1L << bits ) - 1;
+		final double[] offset = new double[ keyDims ];
+		final double[] scale = new double[ keyDims ];
+		for ( int d = 0; d < keyDims; ++d )
+		{
+			offset[ d ] = tree.realMin( d );
+			final double extent = tree.realMax( d ) - offset[ d ];
+			scale[ d ] = extent > 0 ? maxCell / extent : 0;
+		}
+
+		final long[] keys = new long[ numQueries ];
+		for ( int q = 0, i = 0; q < numQueries; ++q, i += n )
+		{
+			long key = 0;
+			for ( int d = 0; d < keyDims; ++d )
+			{
+				final long cell = Math.max( 0, Math.min( maxCell, ( long ) ( ( queries[ i + d ] - offset[ d ] ) * scale[ d ] ) ) );
+				for ( int b = 0; b < bits; ++b )
+					key |= ( ( cell >>> b ) & 1L ) << ( b * keyDims + d );
+			}
+			keys[ q ] = ( key << 32 ) | q;
+		}
+		Arrays.sort( keys );
+
+		final int[] order = new int[ numQueries ];
+		for ( int q = 0; q < numQueries; ++q )
+			order[ q ] = ( int ) keys[ q ];
+		return order;
+	}
+
+	private interface ChunkFactory
+	{
+		public RecursiveAction create( int[] order, int from, int to );
+	}
+
+	/**
+	 * Sort queries and split them into chunks that are processed in parallel.
+	 */
+	private void run( final double[] queries, final ChunkFactory factory )
+	{
+		if ( queries.length % n != 0 )
+			throw new IllegalArgumentException( "number of coordinates is not a multiple of " + n );
+		final int numQueries = queries.length / n;
+		if ( numQueries == 0 )
+			return;
+		final int[] order = zOrder( queries, numQueries );
+
+		final long numChunks = Math.max( 1, Math.min( ( long ) pool.getParallelism() * CHUNKS_PER_THREAD, numQueries / minChunkSize ) );
+		final List< RecursiveAction > chunks = new ArrayList< RecursiveAction >();
+		for ( long i = 0; i < numChunks; ++i )
+			chunks.add( factory.create( order, ( int ) ( numQueries * i / numChunks ), ( int ) ( numQueries * ( i + 1 ) / numChunks ) ) );
+
+		if ( chunks.size() == 1 )
+			chunks.get( 0 ).invoke();
+		else
+			pool.invoke( new RecursiveAction()
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute()
+				{
+					invokeAll( chunks );
+				}
+			} );
+	}
+
+	/**
+	 * Process the queries <code>order[from]</code>...
+	 * <code>order[to-1]</code>.
+	 */
+	private abstract class Chunk extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected final double[] queries;
+
+		protected final int[] order;
+
+		protected final int from;
+
+		protected final int to;
+
+		Chunk( final double[] queries, final int[] order, final int from, final int to )
+		{
+			this.queries = queries;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+		}
+
+	}
+
+	private final class NearestNeighborChunk extends Chunk
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int[] indices;
+
+		private final double[] squDistances;
+
+		NearestNeighborChunk( final double[] queries, final int[] order, final int from, final int to, final int[] indices, final double[] squDistances )
+		{
+			super( queries, order, from, to );
+			this.indices = indices;
+			this.squDistances = squDistances;
+		}
+
+		@Override
+		protected void compute()
+		{
+			final NearestNeighborSearchOnFlatKDTree< T > search = new NearestNeighborSearchOnFlatKDTree< T >( tree );
+			for ( int i = from; i < to; ++i )
+			{
+				final int q = order[ i ];
+				System.arraycopy( queries, q * n, search.pos, 0, n );
+				search.search();
+				indices[ q ] = search.bestNode < 0 ? -1 : tree.getValueIndex( search.bestNode );
+				if ( squDistances != null )
+					squDistances[ q ] = search.bestSquDistance;
+			}
+		}
+	}
+
+	private final class KNearestNeighborChunk extends Chunk
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int k;
+
+		private final int[] indices;
+
+		private final double[] squDistances;
+
+		KNearestNeighborChunk( final double[] queries, final int[] order, final int from, final int to, final int k, final int[] indices, final double[] squDistances )
+		{
+			super( queries, order, from, to );
+			this.k = k;
+			this.indices = indices;
+			this.squDistances = squDistances;
+		}
+
+		@Override
+		protected void compute()
+		{
+			final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+			for ( int i = from; i < to; ++i )
+			{
+				final int q = order[ i ];
+				System.arraycopy( queries, q * n, search.pos, 0, n );
+				search.search();
+				for ( int j = 0, o = q * k; j < k; ++j, ++o )
+				{
+					final int node = search.bestNodes[ j ];
+					indices[ o ] = node < 0 ? -1 : tree.getValueIndex( node );
+					if ( squDistances != null )
+						squDistances[ o ] = search.bestSquDistances[ j ];
+				}
+			}
+		}
+	}
+
+	private final class RadiusChunk extends Chunk
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double radius;
+
+		private final boolean sortResults;
+
+		private final int[] counts;
+
+		private int[] indices;
+
+		private double[] squDistances;
+
+		RadiusChunk( final double[] queries, final int[] order, final int from, final int to, final double radius, final boolean sortResults, final int[] counts )
+		{
+			super( queries, order, from, to );
+			this.radius = radius;
+			this.sortResults = sortResults;
+			this.counts = counts;
+		}
+
+		@Override
+		protected void compute()
+		{
+			final RadiusNeighborSearchOnFlatKDTree< T > search = new RadiusNeighborSearchOnFlatKDTree< T >( tree );
+			int size = 0;
+			indices = new int[ 1024 ];
+			squDistances = new double[ 1024 ];
+			for ( int i = from; i < to; ++i )
+			{
+				final int q = order[ i ];
+				System.arraycopy( queries, q * n, search.pos, 0, n );
+				search.search( radius, sortResults );
+				final int count = search.numNeighbors;
+				counts[ q ] = count;
+				if ( size + count > indices.length )
+				{
+					final int capacity = Math.max( 2 * indices.length, size + count );
+					indices = Arrays.copyOf( indices, capacity );
+					squDistances = Arrays.copyOf( squDistances, capacity );
+				}
+				for ( int j = 0; j < count; ++j )
+					indices[ size + j ] = tree.getValueIndex( search.resultNodes[ j ] );
+				System.arraycopy( search.resultSquDistances, 0, squDistances, size, count );
+				size += count;
+			}
+		}
+
+		/**
+		 * Copy the results of this chunk to their place in the result arrays.
+		 */
+		void copyTo( final int[] offsets, final int[] allIndices, final double[] allSquDistances )
+		{
+			for ( int i = from, j = 0; i < to; ++i )
+			{
+				final int q = order[ i ];
+				final int count = counts[ q ];
+				System.arraycopy( indices, j, allIndices, offsets[ q ], count );
+				System.arraycopy( squDistances, j, allSquDistances, offsets[ q ], count );
+				j += count;
+			}
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.neighborsearch;
+
+import net.imglib2.DynamicKDTree;
+
+/**
+ * Depth-first traversal of a {@link DynamicKDTree} towards a reference
+ * coordinate. The near branch of every inner node is searched first, the away
+ * branch only if the splitting plane is within {@link #squBound()} of the
+ * reference. The searches on {@link DynamicKDTree}s differ only in their bound
+ * and in what they do with the points within it.
+ * 
+ * @author agent
+ */
+abstract class DynamicKDTreeTraversal
+{
+	private final DynamicKDTree< ? > tree;
+
+	private final int n;
+
+	private final double[] pos;
+
+	private double[] positions;
+
+	/**
+	 * @param pos
+	 *            the reference coordinate, read by every {@link #traverse()}.
+	 */
+	DynamicKDTreeTraversal( final DynamicKDTree< ? > tree, final double[] pos )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = pos;
+	}
+
+	/**
+	 * @return the squared distance within which points are searched. It may
+	 *         shrink while {@link #visit(int, double)} collects points.
+	 */
+	abstract double squBound();
+
+	/**
+	 * Called for every handle whose point is within {@link #squBound()} of the
+	 * reference.
+	 */
+	abstract void visit( int handle, double squDistance );
+
+	void traverse()
+	{
+		// the positions array is replaced when the tree grows
+		positions = tree.getFlatPositions();
+		traverse( tree.getRoot() );
+	}
+
+	private void traverse( final DynamicKDTree.Node current )
+	{
+		if ( current.isLeaf() )
+		{
+			// consider all points in the leaf
+			for ( int j = 0; j < current.numHandles(); ++j )
+			{
+				final int handle = current.getHandle( j );
+				final int offset = handle * n;
+				double squDistance = 0;
+				for ( int d = 0; d < n; ++d )
+				{
+					final double diff = positions[ offset + d ] - pos[ d ];
+					squDistance += diff * diff;
+				}
+				if ( squDistance <= squBound() )
+					visit( handle, squDistance );
+			}
+			return;
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final DynamicKDTree.Node nearChild = leftIsNearBranch ? current.left() : current.right();
+		final DynamicKDTree.Node awayChild = leftIsNearBranch ? current.right() : current.left();
+		traverse( nearChild );
+
+		// search the away branch - maybe
+		if ( axisSquDistance <= squBound() )
+			traverse( awayChild );
+	}
+}
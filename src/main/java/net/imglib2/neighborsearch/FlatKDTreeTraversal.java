@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.neighborsearch;
+
+import net.imglib2.FlatKDTree;
+
+/**
+ * Depth-first traversal of a {@link FlatKDTree} towards a reference
+ * coordinate. The near branch of every node is searched first, the away
+ * branch only if the splitting plane is within {@link #squBound()} of the
+ * reference. The searches on {@link FlatKDTree}s differ only in their bound
+ * and in what they do with the points within it.
+ * 
+ * @author agent
+ */
+abstract class FlatKDTreeTraversal
+{
+	private final FlatKDTree< ? > tree;
+
+	private final int n;
+
+	private final double[] pos;
+
+	private final double[] positions;
+
+	private final int size;
+
+	/**
+	 * @param pos
+	 *            the reference coordinate, read by every {@link #traverse()}.
+	 */
+	FlatKDTreeTraversal( final FlatKDTree< ? > tree, final double[] pos )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = pos;
+		this.positions = tree.getFlatPositions();
+		this.size = ( int ) tree.size();
+	}
+
+	/**
+	 * @return the squared distance within which points are searched. It may
+	 *         shrink while {@link #visit(int, double)} collects points.
+	 */
+	abstract double squBound();
+
+	/**
+	 * Called for every node whose point is within {@link #squBound()} of the
+	 * reference.
+	 */
+	abstract void visit( int node, double squDistance );
+
+	void traverse()
+	{
+		if ( size > 0 )
+			traverse( tree.getRoot(), 0 );
+	}
+
+	private void traverse( final int current, final int d )
+	{
+		// consider the current node
+		final int offset = current * n;
+		double squDistance = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			final double diff = positions[ offset + i ] - pos[ i ];
+			squDistance += diff * diff;
+		}
+		if ( squDistance <= squBound() )
+			visit( current, squDistance );
+
+		final double axisDiff = pos[ d ] - positions[ offset + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = FlatKDTree.left( current );
+		final int right = left + 1;
+		final int nearChild = leftIsNearBranch ? left : right;
+		final int awayChild = leftIsNearBranch ? right : left;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		if ( nearChild < size )
+			traverse( nearChild, dChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= squBound() ) && ( awayChild < size ) )
+			traverse( awayChild, dChild );
+	}
+}
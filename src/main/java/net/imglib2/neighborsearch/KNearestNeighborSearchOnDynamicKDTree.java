@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.neighborsearch;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link DynamicKDTree}s.
+ * 
+ * @author agent
+ */
+public class KNearestNeighborSearchOnDynamicKDTree< T > extends AbstractKNearestNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final DynamicKDTree.Entry< T >[] bestPoints;
+
+	protected final int[] bestHandles;
+
+	private final DynamicKDTreeTraversal traversal;
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree, final int k )
+	{
+		super( tree.numDimensions(), k );
+		this.tree = tree;
+		this.bestPoints = ( DynamicKDTree.Entry< T >[] ) new DynamicKDTree.Entry< ? >[ k ];
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ] = new DynamicKDTree.Entry< T >( tree );
+		this.bestHandles = new int[ k ];
+		for ( int i = 0; i < k; ++i )
+			bestHandles[ i ] = -1;
+		this.traversal = new DynamicKDTreeTraversal( tree, pos )
+		{
+			@Override
+			double squBound()
+			{
+				return maxBestSquDistance();
+			}
+
+			@Override
+			void visit( final int handle, final double squDistance )
+			{
+				final int i = insert( squDistance );
+				if ( i >= 0 )
+					bestHandles[ i ] = handle;
+			}
+		};
+	}
+
+	@Override
+	protected void search()
+	{
+		clearBest();
+		for ( int i = 0; i < k; ++i )
+			bestHandles[ i ] = -1;
+		traversal.traverse();
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ].setHandle( bestHandles[ i ] );
+	}
+
+	@Override
+	protected void move( final int from, final int to )
+	{
+		bestHandles[ to ] = bestHandles[ from ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public KNearestNeighborSearchOnDynamicKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnDynamicKDTree< T > copy = new KNearestNeighborSearchOnDynamicKDTree< T >( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestHandles[ i ] = bestHandles[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestPoints[ i ].setHandle( bestHandles[ i ] );
+		}
+		return copy;
+	}
+}
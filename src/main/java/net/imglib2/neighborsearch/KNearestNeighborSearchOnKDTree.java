@@ -31,7 +31,6 @@
  * POSSIBILITY OF SUCH DAMAGE.
  * #L%
  */
-
 package net.imglib2.neighborsearch;
 
 import net.imglib2.KDTree;
@@ -44,69 +43,33 @@ import net.imglib2.Sampler;
  * 
  * @author Tobias Pietzsch
  */
-public class KNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSearch< T >
+public class KNearestNeighborSearchOnKDTree< T > extends AbstractKNearestNeighborSearch< T >
 {
 	protected KDTree< T > tree;
 
-	protected final int n;
-
-	protected final double[] pos;
-
-	protected final int k;
-
 	protected KDTreeNode< T >[] bestPoints;
 
-	protected double[] bestSquDistances;
-
 	@SuppressWarnings( "unchecked" )
 	public KNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k )
 	{
+		super( tree.numDimensions(), k );
 		this.tree = tree;
-		this.n = tree.numDimensions();
-		this.pos = new double[ n ];
-		this.k = k;
-		this.bestPoints = new KDTreeNode[ k ];
-		this.bestSquDistances = new double[ k ];
-		for ( int i = 0; i < k; ++i )
-			bestSquDistances[ i ] = Double.MAX_VALUE;
-	}
-
-	@Override
-	public int numDimensions()
-	{
-		return n;
-	}
-
-	@Override
-	public int getK()
-	{
-		return k;
+		this.bestPoints = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ k ];
 	}
 
 	@Override
-	public void search( final RealLocalizable reference )
+	protected void search()
 	{
-		reference.localize( pos );
-		for ( int i = 0; i < k; ++i )
-			bestSquDistances[ i ] = Double.MAX_VALUE;
+		clearBest();
 		searchNode( tree.getRoot() );
 	}
 
 	protected void searchNode( final KDTreeNode< T > current )
 	{
 		// consider the current node
-		final double squDistance = current.squDistanceTo( pos );
-		if ( squDistance < bestSquDistances[ k - 1 ] )
-		{
-			int i = k - 1;
-			for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
-			{
-				bestSquDistances[ i ] = bestSquDistances[ j ];
-				bestPoints[ i ] = bestPoints[ j ];
-			}
-			bestSquDistances[ i ] = squDistance;
+		final int i = insert( current.squDistanceTo( pos ) );
+		if ( i >= 0 )
 			bestPoints[ i ] = current;
-		}
 
 		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
 		final double axisSquDistance = axisDiff * axisDiff;
@@ -119,58 +82,26 @@ public class KNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSear
 			searchNode( nearChild );
 
 		// search the away branch - maybe
-		if ( ( axisSquDistance <= bestSquDistances[ k - 1 ] ) && ( awayChild != null ) )
+		if ( ( axisSquDistance <= maxBestSquDistance() ) && ( awayChild != null ) )
 			searchNode( awayChild );
 	}
 
 	@Override
-	public Sampler< T > getSampler( final int i )
+	protected void move( final int from, final int to )
 	{
-		return bestPoints[ i ];
+		bestPoints[ to ] = bestPoints[ from ];
 	}
 
 	@Override
-	public RealLocalizable getPosition( final int i )
+	public Sampler< T > getSampler( final int i )
 	{
 		return bestPoints[ i ];
 	}
 
 	@Override
-	public double getSquareDistance( final int i )
-	{
-		return bestSquDistances[ i ];
-	}
-
-	@Override
-	public double getDistance( final int i )
-	{
-		return Math.sqrt( bestSquDistances[ i ] );
-	}
-
-	/* NearestNeighborSearch */
-
-	@Override
-	public RealLocalizable getPosition()
-	{
-		return getPosition( 0 );
-	}
-
-	@Override
-	public Sampler< T > getSampler()
-	{
-		return getSampler( 0 );
-	}
-
-	@Override
-	public double getSquareDistance()
-	{
-		return getSquareDistance( 0 );
-	}
-
-	@Override
-	public double getDistance()
+	public RealLocalizable getPosition( final int i )
 	{
-		return getDistance( 0 );
+		return bestPoints[ i ];
 	}
 
 	@Override
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link FlatKDTree}s.
+ * 
+ * @author agent
+ */
+public class NearestNeighborSearchOnFlatKDTree< T > implements NearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final FlatKDTree.Node< T > bestPoint;
+
+	protected int bestNode;
+
+	protected double bestSquDistance;
+
+	private final FlatKDTreeTraversal traversal;
+
+	public NearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.bestPoint = new FlatKDTree.Node< T >( tree );
+		this.traversal = new FlatKDTreeTraversal( tree, pos )
+		{
+			@Override
+			double squBound()
+			{
+				return bestSquDistance;
+			}
+
+			@Override
+			void visit( final int node, final double squDistance )
+			{
+				if ( squDistance < bestSquDistance )
+				{
+					bestSquDistance = squDistance;
+					bestNode = node;
+				}
+			}
+		};
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		search();
+	}
+
+	/**
+	 * Perform nearest-neighbor search for the reference coordinate in
+	 * {@link #pos}.
+	 */
+	protected void search()
+	{
+		bestSquDistance = Double.MAX_VALUE;
+		bestNode = -1;
+		traversal.traverse();
+		bestPoint.setNode( bestNode );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final NearestNeighborSearchOnFlatKDTree< T > copy = new NearestNeighborSearchOnFlatKDTree< T >( tree );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestNode = bestNode;
+		copy.bestSquDistance = bestSquDistance;
+		copy.bestPoint.setNode( bestNode );
+		return copy;
+	}
+}
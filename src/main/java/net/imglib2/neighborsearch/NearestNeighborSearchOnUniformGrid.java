@@ -0,0 +1,280 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.UniformGrid;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link UniformGrid}s.
+ * 
+ * <p>
+ * Cells are visited in rings of increasing distance around the cell
+ * containing the reference point, until the best point found is closer than
+ * any point outside the visited cells can be.
+ * </p>
+ * 
+ * @author agent
+ */
+public class NearestNeighborSearchOnUniformGrid< T > implements NearestNeighborSearch< T >
+{
+	protected final UniformGrid< T > grid;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected final int size;
+
+	protected final double cellSize;
+
+	protected final int[] gridDimensions;
+
+	protected final long[] cellSteps;
+
+	protected final double[] min;
+
+	/**
+	 * cell containing the reference point.
+	 */
+	private final int[] center;
+
+	private final int[] lo;
+
+	private final int[] hi;
+
+	private final int[] cell;
+
+	/**
+	 * range of points in a row of cells.
+	 */
+	private final int[] range;
+
+	protected final UniformGrid.Entry< T > bestPoint;
+
+	protected int bestIndex;
+
+	protected double bestSquDistance;
+
+	public NearestNeighborSearchOnUniformGrid( final UniformGrid< T > grid )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = grid.getFlatPositions();
+		this.size = ( int ) grid.size();
+		this.cellSize = grid.getCellSize();
+		this.gridDimensions = new int[ n ];
+		this.cellSteps = new long[ n ];
+		this.min = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			gridDimensions[ d ] = grid.getGridDimension( d );
+			cellSteps[ d ] = grid.getCellStep( d );
+			min[ d ] = grid.realMin( d );
+		}
+		this.center = new int[ n ];
+		this.lo = new int[ n ];
+		this.hi = new int[ n ];
+		this.cell = new int[ n ];
+		this.range = new int[ 2 ];
+		this.bestPoint = new UniformGrid.Entry< T >( grid );
+		this.bestIndex = -1;
+		this.bestSquDistance = Double.MAX_VALUE;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		bestSquDistance = Double.MAX_VALUE;
+		bestIndex = -1;
+		if ( size > 0 )
+		{
+			for ( int d = 0; d < n; ++d )
+				center[ d ] = grid.cellCoordinate( pos[ d ], d );
+			for ( int r = 0;; ++r )
+			{
+				searchRing( r );
+
+				// distance to the nearest side of the visited box that is not
+				// a border of the grid
+				double bound = Double.POSITIVE_INFINITY;
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( center[ d ] - r > 0 )
+						bound = Math.min( bound, pos[ d ] - ( min[ d ] + ( center[ d ] - r ) * cellSize ) );
+					if ( center[ d ] + r < gridDimensions[ d ] - 1 )
+						bound = Math.min( bound, min[ d ] + ( center[ d ] + r + 1 ) * cellSize - pos[ d ] );
+				}
+				if ( bound == Double.POSITIVE_INFINITY || ( bestIndex >= 0 && bound * bound >= bestSquDistance ) )
+					break;
+			}
+		}
+		bestPoint.setIndex( bestIndex );
+	}
+
+	/**
+	 * Visit all cells with Chebyshev distance <em>r</em> from the center
+	 * cell.
+	 */
+	protected void searchRing( final int r )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			lo[ d ] = Math.max( 0, center[ d ] - r );
+			hi[ d ] = Math.min( gridDimensions[ d ] - 1, center[ d ] + r );
+			cell[ d ] = lo[ d ];
+		}
+		// iterate rows of cells along dimension 0
+		while ( true )
+		{
+			long base = 0;
+			int rowDistance = 0;
+			double rowSquDistance = 0;
+			for ( int d = 1; d < n; ++d )
+			{
+				base += cell[ d ] * cellSteps[ d ];
+				rowDistance = Math.max( rowDistance, Math.abs( cell[ d ] - center[ d ] ) );
+				rowSquDistance += squDistanceToCell( d, cell[ d ] );
+			}
+			if ( rowSquDistance < bestSquDistance )
+			{
+				if ( rowDistance == r )
+					searchCells( base + lo[ 0 ], base + hi[ 0 ] );
+				else
+				{
+					if ( center[ 0 ] - r >= 0 )
+						searchCells( base + center[ 0 ] - r, base + center[ 0 ] - r );
+					if ( r > 0 && center[ 0 ] + r < gridDimensions[ 0 ] )
+						searchCells( base + center[ 0 ] + r, base + center[ 0 ] + r );
+				}
+			}
+
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( cell[ d ] < hi[ d ] )
+				{
+					++cell[ d ];
+					break;
+				}
+				cell[ d ] = lo[ d ];
+			}
+			if ( d >= n )
+				break;
+		}
+	}
+
+	/**
+	 * Squared distance in dimension d from the reference point to cell c.
+	 */
+	protected double squDistanceToCell( final int d, final int c )
+	{
+		final double cellMin = min[ d ] + c * cellSize;
+		final double diff = pos[ d ] < cellMin ? cellMin - pos[ d ] : Math.max( 0, pos[ d ] - cellMin - cellSize );
+		return diff * diff;
+	}
+
+	/**
+	 * Consider all points in cells <code>firstCell</code>...
+	 * <code>lastCell</code>.
+	 */
+	protected void searchCells( final long firstCell, final long lastCell )
+	{
+		grid.cellRange( firstCell, lastCell, range );
+		final int to = range[ 1 ];
+		for ( int i = range[ 0 ]; i < to; ++i )
+		{
+			final int offset = i * n;
+			double distance = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double diff = positions[ offset + d ] - pos[ d ];
+				distance += diff * diff;
+			}
+			if ( distance < bestSquDistance )
+			{
+				bestSquDistance = distance;
+				bestIndex = i;
+			}
+		}
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnUniformGrid< T > copy()
+	{
+		final NearestNeighborSearchOnUniformGrid< T > copy = new NearestNeighborSearchOnUniformGrid< T >( grid );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestIndex = bestIndex;
+		copy.bestSquDistance = bestSquDistance;
+		copy.bestPoint.setIndex( bestIndex );
+		return copy;
+	}
+}
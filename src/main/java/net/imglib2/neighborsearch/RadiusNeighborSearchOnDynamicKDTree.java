@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link DynamicKDTree}s. Results are kept in primitive arrays that grow as
+ * needed and are reused between searches.
+ * 
+ * @author agent
+ */
+public class RadiusNeighborSearchOnDynamicKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultHandles;
+
+	protected double[] resultSquDistances;
+
+	protected final ArrayList< DynamicKDTree.Entry< T > > resultPoints;
+
+	private final DynamicKDTreeTraversal traversal;
+
+	private double squRadius;
+
+	public RadiusNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.resultHandles = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultPoints = new ArrayList< DynamicKDTree.Entry< T > >();
+		this.traversal = new DynamicKDTreeTraversal( tree, pos )
+		{
+			@Override
+			double squBound()
+			{
+				return squRadius;
+			}
+
+			@Override
+			void visit( final int handle, final double squDistance )
+			{
+				if ( numNeighbors == resultHandles.length )
+				{
+					resultHandles = Arrays.copyOf( resultHandles, 2 * numNeighbors );
+					resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+				}
+				resultHandles[ numNeighbors ] = handle;
+				resultSquDistances[ numNeighbors ] = squDistance;
+				++numNeighbors;
+			}
+		};
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		squRadius = radius * radius;
+		traversal.traverse();
+		if ( sortResults && numNeighbors > 1 )
+			Util.quicksort( resultSquDistances, resultHandles, 0, numNeighbors - 1 );
+		for ( int i = resultPoints.size(); i < numNeighbors; ++i )
+			resultPoints.add( new DynamicKDTree.Entry< T >( tree ) );
+		for ( int i = 0; i < numNeighbors; ++i )
+			resultPoints.get( i ).setHandle( resultHandles[ i ] );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return resultPoints.get( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return resultPoints.get( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
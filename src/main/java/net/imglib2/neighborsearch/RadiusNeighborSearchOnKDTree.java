@@ -34,19 +34,27 @@
 
 package net.imglib2.neighborsearch;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 import net.imglib2.KDTree;
 import net.imglib2.KDTreeNode;
 import net.imglib2.RealLocalizable;
 import net.imglib2.Sampler;
-import net.imglib2.util.ValuePair;
+import net.imglib2.util.Util;
 
 /**
  * Implementation of {@link RadiusNeighborSearch} search for kd-trees.
  * 
+ * Found nodes and their squared distances are stored in arrays that grow as
+ * needed and are reused between searches, so a search does not allocate once
+ * the buffers are large enough. The tree is traversed with an explicit stack.
+ * 
+ * Subclasses access the results through {@link #resultNodes} and
+ * {@link #resultSquDistances}. The <code>resultPoints</code> list of
+ * (node, distance) pairs and the recursive <code>searchNode</code> method of
+ * earlier versions have been removed, use {@link #resultNodes} and
+ * {@link #searchNodes(KDTreeNode, double, int)} instead.
+ * 
  * @author Tobias Pietzsch
  */
 public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch< T >
@@ -57,34 +65,77 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 
 	protected final double[] pos;
 
-	protected ArrayList< ValuePair< KDTreeNode< T >, Double > > resultPoints;
+	/**
+	 * the nodes found by the last search, at indices 0 to
+	 * {@link #numNeighbors} - 1.
+	 */
+	protected KDTreeNode< T >[] resultNodes;
+
+	/**
+	 * squared distances of the {@link #resultNodes} to the reference.
+	 */
+	protected double[] resultSquDistances;
+
+	protected int numNeighbors;
+
+	/**
+	 * whether the last search dropped neighbors within radius because the
+	 * maximum number of hits was reached.
+	 */
+	protected boolean truncated;
+
+	private KDTreeNode< T >[] stack;
+
+	private int[] permutation;
+
+	private KDTreeNode< T >[] sortedNodes;
 
+	@SuppressWarnings( "unchecked" )
 	public RadiusNeighborSearchOnKDTree( final KDTree< T > tree )
 	{
 		this.tree = tree;
 		this.n = tree.numDimensions();
 		this.pos = new double[ n ];
-		this.resultPoints = new ArrayList< ValuePair< KDTreeNode< T >, Double > >();
+		this.resultNodes = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.stack = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ 64 ];
+		this.permutation = new int[ 0 ];
+		this.sortedNodes = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ 0 ];
 	}
 
 	@Override
 	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		search( reference, radius, sortResults, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Perform neighbor search within a radius about a reference coordinate,
+	 * finding at most <em>maxHits</em> neighbors. If there are more neighbors
+	 * within radius, the search stops at the first one that does not fit,
+	 * {@link #isTruncated()} is true, and which of the points within radius
+	 * are found is unspecified.
+	 * 
+	 * @param reference
+	 *            the reference coordinate.
+	 * @param radius
+	 *            the radius about the reference coordinate that should be
+	 *            searched for neighbors.
+	 * @param sortResults
+	 *            whether the results should be ordered by ascending distances
+	 *            to reference.
+	 * @param maxHits
+	 *            the maximum number of neighbors to find.
+	 */
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults, final int maxHits )
 	{
 		assert radius >= 0;
 		reference.localize( pos );
-		resultPoints.clear();
-		searchNode( tree.getRoot(), radius * radius );
-		if ( sortResults )
-		{
-			Collections.sort( resultPoints, new Comparator< ValuePair< KDTreeNode< T >, Double > >()
-			{
-				@Override
-				public int compare( final ValuePair< KDTreeNode< T >, Double > o1, final ValuePair< KDTreeNode< T >, Double > o2 )
-				{
-					return Double.compare( o1.b, o2.b );
-				}
-			} );
-		}
+		numNeighbors = 0;
+		truncated = false;
+		searchNodes( tree.getRoot(), radius * radius, maxHits );
+		if ( sortResults && numNeighbors > 1 )
+			sortResults();
 	}
 
 	@Override
@@ -93,57 +144,114 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 		return n;
 	}
 
-	protected void searchNode( final KDTreeNode< T > current, final double squRadius )
+	/**
+	 * Find up to maxHits nodes within radius in the subtree of root, without
+	 * recursion. Sets {@link #truncated} if a further node within radius is
+	 * found.
+	 */
+	protected void searchNodes( final KDTreeNode< T > root, final double squRadius, final int maxHits )
 	{
-		// consider the current node
-		final double squDistance = current.squDistanceTo( pos );
-		if ( squDistance <= squRadius )
+		int top = 0;
+		stack[ top++ ] = root;
+		while ( top > 0 )
 		{
-			resultPoints.add( new ValuePair< KDTreeNode< T >, Double >( current, squDistance ) );
+			final KDTreeNode< T > current = stack[ --top ];
+
+			// consider the current node
+			final double squDistance = current.squDistanceTo( pos );
+			if ( squDistance <= squRadius )
+			{
+				if ( numNeighbors >= maxHits )
+				{
+					truncated = true;
+					break;
+				}
+				addResult( current, squDistance );
+			}
+
+			final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+			final double axisSquDistance = axisDiff * axisDiff;
+			final boolean leftIsNearBranch = axisDiff < 0;
+
+			// push the away branch - maybe - below the near branch
+			final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+			final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+			if ( top + 2 > stack.length )
+				stack = Arrays.copyOf( stack, 2 * stack.length );
+			if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
+				stack[ top++ ] = awayChild;
+			if ( nearChild != null )
+				stack[ top++ ] = nearChild;
 		}
+		Arrays.fill( stack, 0, top, null );
+	}
 
-		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
-		final double axisSquDistance = axisDiff * axisDiff;
-		final boolean leftIsNearBranch = axisDiff < 0;
+	private void addResult( final KDTreeNode< T > node, final double squDistance )
+	{
+		if ( numNeighbors == resultNodes.length )
+		{
+			resultNodes = Arrays.copyOf( resultNodes, 2 * numNeighbors );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+		}
+		resultNodes[ numNeighbors ] = node;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
 
-		// search the near branch
-		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
-		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
-		if ( nearChild != null )
-			searchNode( nearChild, squRadius );
+	/**
+	 * Sort the results by distance, using a primitive sort on the distances.
+	 */
+	private void sortResults()
+	{
+		if ( permutation.length < numNeighbors )
+		{
+			permutation = new int[ resultNodes.length ];
+			sortedNodes = Arrays.copyOf( sortedNodes, resultNodes.length );
+		}
+		for ( int i = 0; i < numNeighbors; ++i )
+			permutation[ i ] = i;
+		Util.quicksort( resultSquDistances, permutation, 0, numNeighbors - 1 );
+		System.arraycopy( resultNodes, 0, sortedNodes, 0, numNeighbors );
+		for ( int i = 0; i < numNeighbors; ++i )
+			resultNodes[ i ] = sortedNodes[ permutation[ i ] ];
+	}
 
-		// search the away branch - maybe
-		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
-			searchNode( awayChild, squRadius );
+	/**
+	 * @return true if the last search found more neighbors within radius than
+	 *         the maximum number of hits, and dropped them.
+	 */
+	public boolean isTruncated()
+	{
+		return truncated;
 	}
 
 	@Override
 	public int numNeighbors()
 	{
-		return resultPoints.size();
+		return numNeighbors;
 	}
 
 	@Override
 	public Sampler< T > getSampler( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public RealLocalizable getPosition( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public double getSquareDistance( final int i )
 	{
-		return resultPoints.get( i ).b;
+		return resultSquDistances[ i ];
 	}
 
 	@Override
 	public double getDistance( final int i )
 	{
-		return Math.sqrt( resultPoints.get( i ).b );
+		return Math.sqrt( resultSquDistances[ i ] );
 	}
 }
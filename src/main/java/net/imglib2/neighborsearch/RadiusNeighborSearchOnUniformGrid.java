@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.UniformGrid;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link UniformGrid}s. Only cells intersecting the bounding box of the
+ * search sphere are visited; rows of cells along dimension 0 are scanned as
+ * contiguous ranges of points. Results are kept in primitive arrays that grow
+ * as needed and are reused between searches.
+ * 
+ * @author agent
+ */
+public class RadiusNeighborSearchOnUniformGrid< T > implements RadiusNeighborSearch< T >
+{
+	protected final UniformGrid< T > grid;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected final int size;
+
+	protected final double cellSize;
+
+	protected final long[] cellSteps;
+
+	protected final double[] min;
+
+	private final int[] lo;
+
+	private final int[] hi;
+
+	private final int[] cell;
+
+	/**
+	 * range of points in a row of cells.
+	 */
+	private final int[] range;
+
+	protected int numNeighbors;
+
+	protected int[] resultIndices;
+
+	protected double[] resultSquDistances;
+
+	protected final ArrayList< UniformGrid.Entry< T > > resultPoints;
+
+	public RadiusNeighborSearchOnUniformGrid( final UniformGrid< T > grid )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = grid.getFlatPositions();
+		this.size = ( int ) grid.size();
+		this.cellSize = grid.getCellSize();
+		this.cellSteps = new long[ n ];
+		this.min = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			cellSteps[ d ] = grid.getCellStep( d );
+			min[ d ] = grid.realMin( d );
+		}
+		this.lo = new int[ n ];
+		this.hi = new int[ n ];
+		this.cell = new int[ n ];
+		this.range = new int[ 2 ];
+		this.resultIndices = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultPoints = new ArrayList< UniformGrid.Entry< T > >();
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		if ( size > 0 )
+			searchCells( radius * radius, radius );
+		if ( sortResults && numNeighbors > 1 )
+			Util.quicksort( resultSquDistances, resultIndices, 0, numNeighbors - 1 );
+		for ( int i = resultPoints.size(); i < numNeighbors; ++i )
+			resultPoints.add( new UniformGrid.Entry< T >( grid ) );
+		for ( int i = 0; i < numNeighbors; ++i )
+			resultPoints.get( i ).setIndex( resultIndices[ i ] );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	protected void searchCells( final double squRadius, final double radius )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			lo[ d ] = grid.cellCoordinate( pos[ d ] - radius, d );
+			hi[ d ] = grid.cellCoordinate( pos[ d ] + radius, d );
+			cell[ d ] = lo[ d ];
+		}
+		// iterate rows of cells along dimension 0
+		while ( true )
+		{
+			long base = 0;
+			double rowSquDistance = 0;
+			for ( int d = 1; d < n; ++d )
+			{
+				base += cell[ d ] * cellSteps[ d ];
+				final double cellMin = min[ d ] + cell[ d ] * cellSize;
+				final double diff = pos[ d ] < cellMin ? cellMin - pos[ d ] : Math.max( 0, pos[ d ] - cellMin - cellSize );
+				rowSquDistance += diff * diff;
+			}
+			if ( rowSquDistance <= squRadius )
+			{
+				grid.cellRange( base + lo[ 0 ], base + hi[ 0 ], range );
+				final int to = range[ 1 ];
+				for ( int i = range[ 0 ]; i < to; ++i )
+				{
+					final int offset = i * n;
+					double squDistance = 0;
+					for ( int d = 0; d < n; ++d )
+					{
+						final double diff = positions[ offset + d ] - pos[ d ];
+						squDistance += diff * diff;
+					}
+					if ( squDistance <= squRadius )
+					{
+						if ( numNeighbors == resultIndices.length )
+						{
+							resultIndices = Arrays.copyOf( resultIndices, 2 * numNeighbors );
+							resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+						}
+						resultIndices[ numNeighbors ] = i;
+						resultSquDistances[ numNeighbors ] = squDistance;
+						++numNeighbors;
+					}
+				}
+			}
+
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( cell[ d ] < hi[ d ] )
+				{
+					++cell[ d ];
+					break;
+				}
+				cell[ d ] = lo[ d ];
+			}
+			if ( d >= n )
+				break;
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return resultPoints.get( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return resultPoints.get( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
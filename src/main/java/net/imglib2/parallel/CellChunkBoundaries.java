@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.parallel;
+
+import java.util.Arrays;
+
+import net.imglib2.img.cell.Cells;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link ChunkBoundaries} at the first pixel of every cell of a cell grid,
+ * with respect to the cell-by-cell iteration order of
+ * {@link net.imglib2.img.cell.CellCursor}. The boundaries are computed from
+ * the grid geometry only, i.e., the cells themselves are not accessed.
+ * 
+ * @author agent
+ */
+public class CellChunkBoundaries implements ChunkBoundaries
+{
+	/**
+	 * Iteration index of the first pixel of every cell, followed by the total
+	 * number of pixels.
+	 */
+	private final long[] boundaries;
+
+	public CellChunkBoundaries( final Cells< ?, ? > cells )
+	{
+		final int n = cells.numDimensions();
+		final long[] dimensions = new long[ n ];
+		final int[] cellDimensions = new int[ n ];
+		cells.dimensions( dimensions );
+		cells.cellDimensions( cellDimensions );
+		this.boundaries = createBoundaries( dimensions, cellDimensions );
+	}
+
+	public CellChunkBoundaries( final long[] dimensions, final int[] cellDimensions )
+	{
+		this.boundaries = createBoundaries( dimensions, cellDimensions );
+	}
+
+	private static long[] createBoundaries( final long[] dimensions, final int[] cellDimensions )
+	{
+		final int n = dimensions.length;
+		final long[] numCells = new long[ n ];
+		final int[] borderSize = new int[ n ];
+		long totalCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			numCells[ d ] = ( dimensions[ d ] - 1 ) / cellDimensions[ d ] + 1;
+			borderSize[ d ] = ( int ) ( dimensions[ d ] - ( numCells[ d ] - 1 ) * cellDimensions[ d ] );
+			totalCells *= numCells[ d ];
+		}
+
+		final long[] boundaries = new long[ ( int ) totalCells + 1 ];
+		final long[] cellGridPosition = new long[ n ];
+		long index = 0;
+		for ( int i = 0; i < totalCells; ++i )
+		{
+			boundaries[ i ] = index;
+			IntervalIndexer.indexToPosition( i, numCells, cellGridPosition );
+			long cellSize = 1;
+			for ( int d = 0; d < n; ++d )
+				cellSize *= ( cellGridPosition[ d ] + 1 == numCells[ d ] ) ? borderSize[ d ] : cellDimensions[ d ];
+			index += cellSize;
+		}
+		boundaries[ ( int ) totalCells ] = index;
+		return boundaries;
+	}
+
+	@Override
+	public long floor( final long index )
+	{
+		final int i = Arrays.binarySearch( boundaries, index );
+		return i >= 0 ? index : boundaries[ Math.max( -i - 2, 0 ) ];
+	}
+
+	@Override
+	public long ceil( final long index )
+	{
+		final int i = Arrays.binarySearch( boundaries, index );
+		return i >= 0 ? index : boundaries[ Math.min( -i - 1, boundaries.length - 1 ) ];
+	}
+}
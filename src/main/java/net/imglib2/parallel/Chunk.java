@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.parallel;
+
+import net.imglib2.IterableInterval;
+
+/**
+ * A contiguous range of the iteration order of an {@link IterableInterval}.
+ * 
+ * <p>
+ * Similar to {@link java.util.Spliterator}, a {@link Chunk} can be split
+ * repeatedly using {@link #trySplit()} to distribute work over several
+ * threads. Split points are aligned to the {@link ChunkBoundaries} of the
+ * chunk, which are usually the natural storage units of the underlying
+ * container (see {@link Parallel#boundaries(IterableInterval)}).
+ * </p>
+ * 
+ * @author agent
+ */
+public class Chunk< T >
+{
+	private final IterableInterval< T > source;
+
+	private final ChunkBoundaries boundaries;
+
+	private long offset;
+
+	private long size;
+
+	/**
+	 * Create a chunk covering the range {@code [offset, offset + size)} of the
+	 * iteration order of {@code source}.
+	 */
+	public Chunk( final IterableInterval< T > source, final ChunkBoundaries boundaries, final long offset, final long size )
+	{
+		this.source = source;
+		this.boundaries = boundaries;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * Create a chunk covering the complete iteration order of
+	 * {@code source}.
+	 */
+	public Chunk( final IterableInterval< T > source, final ChunkBoundaries boundaries )
+	{
+		this( source, boundaries, 0, source.size() );
+	}
+
+	/**
+	 * @return index of the first element of this chunk in the iteration order
+	 *         of the source.
+	 */
+	public long offset()
+	{
+		return offset;
+	}
+
+	/**
+	 * @return number of elements in this chunk.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	public IterableInterval< T > getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * If this chunk can be split at a boundary, return a new chunk covering
+	 * the first part. This chunk is reduced to cover the remaining part.
+	 * The split point is the boundary closest to the middle of the chunk.
+	 * 
+	 * @return a chunk covering the first part of this chunk, or {@code null}
+	 *         if there is no boundary inside this chunk.
+	 */
+	public Chunk< T > trySplit()
+	{
+		final long end = offset + size;
+		final long mid = offset + size / 2;
+		final long lower = boundaries.floor( mid );
+		final long upper = boundaries.ceil( mid );
+		final long split;
+		if ( lower > offset && ( mid - lower <= upper - mid || upper >= end ) )
+			split = lower;
+		else if ( upper > offset && upper < end )
+			split = upper;
+		else
+			return null;
+
+		final Chunk< T > prefix = new Chunk< T >( source, boundaries, offset, split - offset );
+		offset = split;
+		size = end - split;
+		return prefix;
+	}
+
+	/**
+	 * @return a {@link ChunkCursor} iterating the elements of this chunk.
+	 */
+	public ChunkCursor< T > cursor()
+	{
+		return new ChunkCursor< T >( source.cursor(), offset, size );
+	}
+
+	/**
+	 * @return a {@link ChunkCursor} iterating the elements of this chunk,
+	 *         optimized for localizing in every step.
+	 */
+	public ChunkCursor< T > localizingCursor()
+	{
+		return new ChunkCursor< T >( source.localizingCursor(), offset, size );
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.parallel;
+
+import net.imglib2.Cursor;
+
+/**
+ * A {@link Cursor} that iterates a contiguous range of the iteration order of
+ * another {@link Cursor}. The range starts {@code offset} elements after the
+ * first element of the source cursor and contains {@code size} elements.
+ * 
+ * @author agent
+ */
+public class ChunkCursor< T > implements Cursor< T >
+{
+	protected final Cursor< T > source;
+
+	protected final long offset;
+
+	protected final long size;
+
+	/**
+	 * Number of elements remaining in the chunk.
+	 */
+	protected long remaining;
+
+	protected ChunkCursor( final ChunkCursor< T > cursor )
+	{
+		this.source = cursor.source.copyCursor();
+		this.offset = cursor.offset;
+		this.size = cursor.size;
+		this.remaining = cursor.remaining;
+	}
+
+	/**
+	 * @param source
+	 *            a cursor on the full iteration order. It will be
+	 *            {@link Cursor#reset() reset} and moved to the start of the
+	 *            chunk.
+	 * @param offset
+	 *            index of the first element of the chunk.
+	 * @param size
+	 *            number of elements in the chunk.
+	 */
+	public ChunkCursor( final Cursor< T > source, final long offset, final long size )
+	{
+		this.source = source;
+		this.offset = offset;
+		this.size = size;
+		reset();
+	}
+
+	@Override
+	public T get()
+	{
+		return source.get();
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		remaining -= steps;
+		source.jumpFwd( steps );
+	}
+
+	@Override
+	public void fwd()
+	{
+		--remaining;
+		source.fwd();
+	}
+
+	@Override
+	public void reset()
+	{
+		source.reset();
+		source.jumpFwd( offset );
+		remaining = size;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return remaining > 0;
+	}
+
+	@Override
+	public T next()
+	{
+		fwd();
+		return get();
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void localize( final int[] position )
+	{
+		source.localize( position );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		source.localize( position );
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		return source.getIntPosition( d );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return source.getLongPosition( d );
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		source.localize( position );
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		source.localize( position );
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return source.getFloatPosition( d );
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return source.getDoublePosition( d );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return source.numDimensions();
+	}
+
+	@Override
+	public ChunkCursor< T > copy()
+	{
+		return new ChunkCursor< T >( this );
+	}
+
+	@Override
+	public ChunkCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
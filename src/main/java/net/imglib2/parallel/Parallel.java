@@ -0,0 +1,286 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.paged.PagedArrayImg;
+import net.imglib2.img.planar.PlanarImg;
+
+/**
+ * Process {@link IterableInterval IterableIntervals} in parallel on a
+ * {@link ForkJoinPool}. The iteration order is recursively split into
+ * {@link Chunk chunks} at the natural storage units of the underlying
+ * container (see {@link #boundaries(IterableInterval)}), and every chunk is
+ * processed by a {@link ChunkTask} or {@link ChunkReducer} on its own cursor.
+ * 
+ * <pre>
+ * {@code
+ * final double sum = Parallel.reduce( img, new ChunkReducer< FloatType, Double >()
+ * {
+ * 	public Double reduce( final Cursor< FloatType > c )
+ * 	{
+ * 		double s = 0;
+ * 		while ( c.hasNext() )
+ * 			s += c.next().get();
+ * 		return s;
+ * 	}
+ * 
+ * 	public Double combine( final Double a, final Double b )
+ * 	{
+ * 		return a + b;
+ * 	}
+ * } );
+ * }
+ * </pre>
+ * 
+ * @author agent
+ */
+public class Parallel
+{
+	/**
+	 * Chunks are not split below this number of elements by default.
+	 */
+	public static final long DEFAULT_MIN_CHUNK_SIZE = 4096;
+
+	/**
+	 * Number of chunks per thread of the pool. Having more chunks than threads
+	 * helps to balance the load when chunks take different times.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static final class PoolHolder
+	{
+		static final ForkJoinPool pool = new ForkJoinPool();
+	}
+
+	/**
+	 * Get the {@link ForkJoinPool} that is used if no pool is specified
+	 * explicitly. It is created on first use, with parallelism equal to the
+	 * number of available processors.
+	 */
+	public static ForkJoinPool defaultPool()
+	{
+		return PoolHolder.pool;
+	}
+
+	/**
+	 * Get the natural {@link ChunkBoundaries} for splitting the iteration order
+	 * of {@code interval}:
+	 * <ul>
+	 * <li>every index for {@link ArrayImg},</li>
+	 * <li>planes for {@link PlanarImg},</li>
+	 * <li>cells for {@link AbstractCellImg},</li>
+	 * <li>pages for {@link PagedArrayImg},</li>
+	 * <li>lines for other {@link IterableInterval IterableIntervals} with
+	 * {@link FlatIterationOrder},</li>
+	 * <li>every index otherwise.</li>
+	 * </ul>
+	 */
+	public static ChunkBoundaries boundaries( final IterableInterval< ? > interval )
+	{
+		if ( interval instanceof ArrayImg )
+			return new StridedChunkBoundaries( 1 );
+		if ( interval instanceof PlanarImg )
+		{
+			final long planeSize = interval.numDimensions() > 2 ? interval.dimension( 0 ) * interval.dimension( 1 ) : 1;
+			return new StridedChunkBoundaries( planeSize );
+		}
+		if ( interval instanceof PagedArrayImg )
+			return new StridedChunkBoundaries( ( ( PagedArrayImg< ?, ? > ) interval ).pageSize() );
+		if ( interval instanceof AbstractCellImg )
+			return new CellChunkBoundaries( ( ( AbstractCellImg< ?, ?, ?, ? > ) interval ).getCells() );
+		if ( interval.iterationOrder() instanceof FlatIterationOrder && interval.numDimensions() > 1 )
+			return new StridedChunkBoundaries( interval.dimension( 0 ) );
+		return new StridedChunkBoundaries( 1 );
+	}
+
+	/**
+	 * Create a {@link Chunk} covering the complete iteration order of
+	 * {@code interval}, split at the natural
+	 * {@link #boundaries(IterableInterval) boundaries}.
+	 */
+	public static < T > Chunk< T > chunk( final IterableInterval< T > interval )
+	{
+		return new Chunk< T >( interval, boundaries( interval ) );
+	}
+
+	/**
+	 * Run {@code task} on chunks of {@code interval} in parallel, using the
+	 * {@link #defaultPool() default pool}.
+	 */
+	public static < T > void forEach( final IterableInterval< T > interval, final ChunkTask< T > task )
+	{
+		forEach( interval, task, defaultPool(), DEFAULT_MIN_CHUNK_SIZE );
+	}
+
+	/**
+	 * Run {@code task} on chunks of {@code interval} in parallel.
+	 * 
+	 * @param interval
+	 *            the elements to process.
+	 * @param task
+	 *            is run on every chunk.
+	 * @param pool
+	 *            the pool on which to run the tasks.
+	 * @param minChunkSize
+	 *            chunks are not split below this number of elements.
+	 */
+	public static < T > void forEach( final IterableInterval< T > interval, final ChunkTask< T > task, final ForkJoinPool pool, final long minChunkSize )
+	{
+		final Chunk< T > chunk = chunk( interval );
+		pool.invoke( new ForEachAction< T >( chunk, task, threshold( chunk.size(), pool, minChunkSize ) ) );
+	}
+
+	/**
+	 * Compute results on chunks of {@code interval} in parallel and combine
+	 * them, using the {@link #defaultPool() default pool}.
+	 * 
+	 * @return the combined result for all elements.
+	 */
+	public static < T, R > R reduce( final IterableInterval< T > interval, final ChunkReducer< T, R > reducer )
+	{
+		return reduce( interval, reducer, defaultPool(), DEFAULT_MIN_CHUNK_SIZE );
+	}
+
+	/**
+	 * Compute results on chunks of {@code interval} in parallel and combine
+	 * them.
+	 * 
+	 * @param interval
+	 *            the elements to process.
+	 * @param reducer
+	 *            computes and combines chunk results.
+	 * @param pool
+	 *            the pool on which to run the tasks.
+	 * @param minChunkSize
+	 *            chunks are not split below this number of elements.
+	 * @return the combined result for all elements.
+	 */
+	public static < T, R > R reduce( final IterableInterval< T > interval, final ChunkReducer< T, R > reducer, final ForkJoinPool pool, final long minChunkSize )
+	{
+		final Chunk< T > chunk = chunk( interval );
+		return pool.invoke( new ReduceTask< T, R >( chunk, reducer, threshold( chunk.size(), pool, minChunkSize ) ) );
+	}
+
+	/**
+	 * Chunks larger than the returned size are split further.
+	 */
+	private static long threshold( final long size, final ForkJoinPool pool, final long minChunkSize )
+	{
+		final long numChunks = ( long ) pool.getParallelism() * CHUNKS_PER_THREAD;
+		return Math.max( ( size + numChunks - 1 ) / numChunks, minChunkSize );
+	}
+
+	private static final class ForEachAction< T > extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Chunk< T > chunk;
+
+		private final ChunkTask< T > task;
+
+		private final long threshold;
+
+		ForEachAction( final Chunk< T > chunk, final ChunkTask< T > task, final long threshold )
+		{
+			this.chunk = chunk;
+			this.task = task;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( chunk.size() > threshold )
+			{
+				final Chunk< T > prefix = chunk.trySplit();
+				if ( prefix != null )
+				{
+					invokeAll( new ForEachAction< T >( prefix, task, threshold ), new ForEachAction< T >( chunk, task, threshold ) );
+					return;
+				}
+			}
+			if ( chunk.size() > 0 )
+				task.run( chunk.cursor() );
+		}
+	}
+
+	private static final class ReduceTask< T, R > extends RecursiveTask< R >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Chunk< T > chunk;
+
+		private final ChunkReducer< T, R > reducer;
+
+		private final long threshold;
+
+		ReduceTask( final Chunk< T > chunk, final ChunkReducer< T, R > reducer, final long threshold )
+		{
+			this.chunk = chunk;
+			this.reducer = reducer;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected R compute()
+		{
+			if ( chunk.size() > threshold )
+			{
+				final Chunk< T > prefix = chunk.trySplit();
+				if ( prefix != null )
+				{
+					final ReduceTask< T, R > first = new ReduceTask< T, R >( prefix, reducer, threshold );
+					final ReduceTask< T, R > second = new ReduceTask< T, R >( chunk, reducer, threshold );
+					first.fork();
+					final R b = second.compute();
+					final R a = first.join();
+					return reducer.combine( a, b );
+				}
+			}
+			return reducer.reduce( chunk.cursor() );
+		}
+	}
+
+	private Parallel()
+	{}
+}
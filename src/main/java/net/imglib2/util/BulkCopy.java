@@ -0,0 +1,863 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealBulkConverter;
+import net.imglib2.converter.RealFloatConverter;
+import net.imglib2.converter.read.ConvertedRandomAccessibleInterval;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.ByteAccess;
+import net.imglib2.img.basictypeaccess.CharAccess;
+import net.imglib2.img.basictypeaccess.Dirty;
+import net.imglib2.img.basictypeaccess.DoubleAccess;
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCell;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.paged.PagedArrayImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+import net.imglib2.view.Views;
+
+/**
+ * Copies between {@link RandomAccessibleInterval RandomAccessibleIntervals}
+ * in runs of consecutive storage entities, if both sides are views of
+ * {@link ArrayImg}, {@link PlanarImg}, {@link PagedArrayImg} or
+ * {@link AbstractCellImg} with the same pixel type and whole numbers of
+ * entities per pixel. Supported views are intervals and
+ * {@link MixedTransformView MixedTransformViews} (translation, slicing,
+ * permutation, inversion) that keep dimension 0 of the view on dimension 0 of
+ * the image. Runs along dimension 0 are copied with
+ * {@link System#arraycopy(Object, int, Object, int, int)} or bulk
+ * {@link ByteBuffer} operations (which swap bytes if the buffers have
+ * different {@link ByteOrder}). Converted copies with a
+ * {@link RealBulkConverter} from a standard real type are converted in runs
+ * by the converter kernel, unless a subclass of the converter overrides
+ * {@link Converter#convert(Object, Object)} but not the kernel. Everything
+ * else is copied pixel by pixel.
+ * 
+ * @see ImgUtil#copy(RandomAccessibleInterval, RandomAccessibleInterval)
+ * 
+ * @author agent
+ */
+final class BulkCopy
+{
+	private BulkCopy()
+	{}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target )
+	{
+		if ( source instanceof ConvertedRandomAccessibleInterval )
+		{
+			final ConvertedRandomAccessibleInterval converted = ( ConvertedRandomAccessibleInterval ) source;
+			copy( converted.getSource(), target, converted.getConverter() );
+			return;
+		}
+
+		checkDimensions( source, target );
+		final Storage s = storage( source );
+		final Storage t = s == null ? null : storage( target );
+		if ( t != null && s.compatible( t ) )
+			copyRuns( source, s, target, t );
+		else
+			copyPixels( source, target );
+	}
+
+	static < A, B > void copy( final RandomAccessibleInterval< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, ? super B > converter )
+	{
+		checkDimensions( source, target );
+		if ( converter instanceof RealBulkConverter && kernelMatches( converter.getClass() ) )
+		{
+			final RealBulkConverter kernel = ( RealBulkConverter ) converter;
+			final Storage s = storage( source );
+			final RealReader reader = s == null ? null : RealReader.forStorage( s );
+			final Storage t = reader == null ? null : storage( target );
+			if ( t != null && t.entitiesPerPixel == 1 && t.typeClass == kernel.getOutputTypeClass() && !t.isBuffer )
+			{
+				convertRuns( source, s, reader, target, t, kernel );
+				return;
+			}
+		}
+
+		final Cursor< A > s = Views.flatIterable( source ).cursor();
+		final Cursor< B > t = Views.flatIterable( target ).cursor();
+		while ( s.hasNext() )
+			converter.convert( s.next(), t.next() );
+	}
+
+	private static void checkDimensions( final RandomAccessibleInterval< ? > source, final RandomAccessibleInterval< ? > target )
+	{
+		final int n = source.numDimensions();
+		if ( n != target.numDimensions() )
+			throw new IllegalArgumentException( "source and target have different numbers of dimensions" );
+		for ( int d = 0; d < n; ++d )
+			if ( source.dimension( d ) != target.dimension( d ) )
+				throw new IllegalArgumentException( "source and target have different dimensions" );
+	}
+
+	/**
+	 * Copy pixel by pixel in flat iteration order.
+	 */
+	private static < T extends Type< T > > void copyPixels( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target )
+	{
+		final Cursor< T > s = Views.flatIterable( source ).cursor();
+		final Cursor< T > t = Views.flatIterable( target ).cursor();
+		while ( s.hasNext() )
+			t.next().set( s.next() );
+	}
+
+	/**
+	 * Copy line by line, each line in runs that are consecutive in both
+	 * storages.
+	 */
+	private static void copyRuns( final RandomAccessibleInterval< ? > source, final Storage s, final RandomAccessibleInterval< ? > target, final Storage t )
+	{
+		final int n = source.numDimensions();
+		final long[] sPos = new long[ n ];
+		final long[] tPos = new long[ n ];
+		final long[] pos = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			max[ d ] = source.dimension( d ) - 1;
+		final long lineLength = source.dimension( 0 );
+		final int k = s.entitiesPerPixel;
+
+		while ( true )
+		{
+			for ( long x = 0; x < lineLength; )
+			{
+				for ( int d = 0; d < n; ++d )
+				{
+					sPos[ d ] = pos[ d ] + source.min( d );
+					tPos[ d ] = pos[ d ] + target.min( d );
+				}
+				sPos[ 0 ] += x;
+				tPos[ 0 ] += x;
+				s.locate( sPos );
+				t.locate( tPos );
+				final int len = ( int ) Math.min( lineLength - x, Math.min( s.run, t.run ) );
+				copyEntities( s.data, s.index * k, t.data, t.index * k, len * k, s.bytesPerEntity );
+				t.markDirty();
+				x += len;
+			}
+
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++pos[ d ] <= max[ d ] )
+					break;
+				pos[ d ] = 0;
+			}
+			if ( d >= n )
+				return;
+		}
+	}
+
+	/**
+	 * Convert line by line, each line in runs that are consecutive in both
+	 * storages, and each run in chunks that fit into a small buffer.
+	 */
+	private static void convertRuns( final RandomAccessibleInterval< ? > source, final Storage s, final RealReader reader, final RandomAccessibleInterval< ? > target, final Storage t, final RealBulkConverter kernel )
+	{
+		final int n = source.numDimensions();
+		final long[] sPos = new long[ n ];
+		final long[] tPos = new long[ n ];
+		final long[] pos = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			max[ d ] = source.dimension( d ) - 1;
+		final long lineLength = source.dimension( 0 );
+		final double[] buffer = new double[ ( int ) Math.min( lineLength, CONVERT_BUFFER_SIZE ) ];
+		// LongType is converted to float directly, rounding only once
+		final long[] longBuffer = s.typeClass == LongType.class && kernel instanceof RealFloatConverter ? new long[ buffer.length ] : null;
+
+		while ( true )
+		{
+			for ( long x = 0; x < lineLength; )
+			{
+				for ( int d = 0; d < n; ++d )
+				{
+					sPos[ d ] = pos[ d ] + source.min( d );
+					tPos[ d ] = pos[ d ] + target.min( d );
+				}
+				sPos[ 0 ] += x;
+				tPos[ 0 ] += x;
+				s.locate( sPos );
+				t.locate( tPos );
+				final int len = ( int ) Math.min( buffer.length, Math.min( lineLength - x, Math.min( s.run, t.run ) ) );
+				if ( longBuffer != null )
+				{
+					readLongs( s.data, s.index, longBuffer, len );
+					( ( RealFloatConverter< ? > ) kernel ).convert( longBuffer, t.data, t.index, len );
+				}
+				else
+				{
+					reader.read( s.data, s.index, buffer, len );
+					kernel.convert( buffer, t.data, t.index, len );
+				}
+				t.markDirty();
+				x += len;
+			}
+
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++pos[ d ] <= max[ d ] )
+					break;
+				pos[ d ] = 0;
+			}
+			if ( d >= n )
+				return;
+		}
+	}
+
+	private static final int CONVERT_BUFFER_SIZE = 4096;
+
+	private static void readLongs( final Object data, final int index, final long[] out, final int length )
+	{
+		if ( data instanceof ByteBuffer )
+		{
+			final ByteBuffer b = ( ByteBuffer ) data;
+			for ( int i = 0; i < length; ++i )
+				out[ i ] = b.getLong( 8 * ( index + i ) );
+		}
+		else
+			System.arraycopy( data, index, out, 0, length );
+	}
+
+	private static final ConcurrentHashMap< Class< ? >, Boolean > kernelMatches = new ConcurrentHashMap< Class< ? >, Boolean >();
+
+	/**
+	 * Whether the {@link RealBulkConverter} kernel of a converter class gives
+	 * the same result as its {@link Converter#convert(Object, Object)}, that
+	 * is, whether the kernel is declared in the same class as the per-pixel
+	 * conversion or in a subclass of it.
+	 */
+	private static boolean kernelMatches( final Class< ? > converterClass )
+	{
+		Boolean matches = kernelMatches.get( converterClass );
+		if ( matches == null )
+		{
+			final Class< ? > kernelClass;
+			try
+			{
+				kernelClass = converterClass.getMethod( "convert", double[].class, Object.class, int.class, int.class ).getDeclaringClass();
+			}
+			catch ( final NoSuchMethodException e )
+			{
+				throw new IllegalStateException( e );
+			}
+			Class< ? > convertClass = converterClass;
+			while ( convertClass != null && !declaresConvert( convertClass ) )
+				convertClass = convertClass.getSuperclass();
+			matches = convertClass != null && convertClass.isAssignableFrom( kernelClass );
+			kernelMatches.put( converterClass, matches );
+		}
+		return matches;
+	}
+
+	private static boolean declaresConvert( final Class< ? > c )
+	{
+		for ( final Method m : c.getDeclaredMethods() )
+			if ( m.getName().equals( "convert" ) && m.getParameterTypes().length == 2 )
+				return true;
+		return false;
+	}
+
+	private static void copyEntities( final Object src, final int srcPos, final Object dst, final int dstPos, final int length, final int bytesPerEntity )
+	{
+		if ( src instanceof ByteBuffer )
+		{
+			final ByteBuffer s = ( ( ByteBuffer ) src ).duplicate();
+			s.limit( ( srcPos + length ) * bytesPerEntity );
+			s.position( srcPos * bytesPerEntity );
+			if ( dst instanceof ByteBuffer )
+			{
+				final ByteBuffer t = ( ( ByteBuffer ) dst ).duplicate();
+				t.position( dstPos * bytesPerEntity );
+				final ByteOrder srcOrder = ( ( ByteBuffer ) src ).order();
+				final ByteOrder dstOrder = ( ( ByteBuffer ) dst ).order();
+				if ( bytesPerEntity == 1 || srcOrder == dstOrder )
+					t.put( s );
+				else
+					bufferToBuffer( s.slice().order( srcOrder ), t.slice().order( dstOrder ), bytesPerEntity );
+			}
+			else
+				bufferToArray( s.slice().order( ( ( ByteBuffer ) src ).order() ), dst, dstPos, length );
+		}
+		else if ( dst instanceof ByteBuffer )
+		{
+			final ByteBuffer t = ( ( ByteBuffer ) dst ).duplicate();
+			t.position( dstPos * bytesPerEntity );
+			arrayToBuffer( src, srcPos, t.slice().order( ( ( ByteBuffer ) dst ).order() ), length );
+		}
+		else
+			System.arraycopy( src, srcPos, dst, dstPos, length );
+	}
+
+	/**
+	 * Copy entities between buffers of different byte order through views
+	 * of the entity size, which swap the bytes of every entity.
+	 */
+	private static void bufferToBuffer( final ByteBuffer src, final ByteBuffer dst, final int bytesPerEntity )
+	{
+		if ( bytesPerEntity == 2 )
+			dst.asShortBuffer().put( src.asShortBuffer() );
+		else if ( bytesPerEntity == 4 )
+			dst.asIntBuffer().put( src.asIntBuffer() );
+		else
+			dst.asLongBuffer().put( src.asLongBuffer() );
+	}
+
+	private static void bufferToArray( final ByteBuffer src, final Object dst, final int dstPos, final int length )
+	{
+		if ( dst instanceof byte[] )
+			src.get( ( byte[] ) dst, dstPos, length );
+		else if ( dst instanceof char[] )
+			src.asCharBuffer().get( ( char[] ) dst, dstPos, length );
+		else if ( dst instanceof short[] )
+			src.asShortBuffer().get( ( short[] ) dst, dstPos, length );
+		else if ( dst instanceof int[] )
+			src.asIntBuffer().get( ( int[] ) dst, dstPos, length );
+		else if ( dst instanceof long[] )
+			src.asLongBuffer().get( ( long[] ) dst, dstPos, length );
+		else if ( dst instanceof float[] )
+			src.asFloatBuffer().get( ( float[] ) dst, dstPos, length );
+		else
+			src.asDoubleBuffer().get( ( double[] ) dst, dstPos, length );
+	}
+
+	private static void arrayToBuffer( final Object src, final int srcPos, final ByteBuffer dst, final int length )
+	{
+		if ( src instanceof byte[] )
+			dst.put( ( byte[] ) src, srcPos, length );
+		else if ( src instanceof char[] )
+			dst.asCharBuffer().put( ( char[] ) src, srcPos, length );
+		else if ( src instanceof short[] )
+			dst.asShortBuffer().put( ( short[] ) src, srcPos, length );
+		else if ( src instanceof int[] )
+			dst.asIntBuffer().put( ( int[] ) src, srcPos, length );
+		else if ( src instanceof long[] )
+			dst.asLongBuffer().put( ( long[] ) src, srcPos, length );
+		else if ( src instanceof float[] )
+			dst.asFloatBuffer().put( ( float[] ) src, srcPos, length );
+		else
+			dst.asDoubleBuffer().put( ( double[] ) src, srcPos, length );
+	}
+
+	/**
+	 * Find the storage behind {@code rai}, or {@code null} if it is not
+	 * supported.
+	 */
+	private static Storage storage( final RandomAccessibleInterval< ? > rai )
+	{
+		final ArrayList< MixedTransform > transforms = new ArrayList< MixedTransform >();
+		RandomAccessible< ? > ra = rai;
+		int dim0 = 0;
+		while ( true )
+		{
+			if ( ra instanceof IntervalView )
+				ra = ( ( IntervalView< ? > ) ra ).getSource();
+			else if ( ra instanceof MixedTransformView )
+			{
+				final MixedTransform transform = ( ( MixedTransformView< ? > ) ra ).getTransformToSource();
+				// find the source dimension that view dimension 0 maps to
+				int d0 = -1;
+				for ( int d = 0; d < transform.numTargetDimensions(); ++d )
+					if ( !transform.getComponentZero( d ) && transform.getComponentMapping( d ) == dim0 )
+						d0 = d;
+				if ( d0 < 0 || transform.getComponentInversion( d0 ) )
+					return null;
+				dim0 = d0;
+				transforms.add( transform );
+				ra = ( ( MixedTransformView< ? > ) ra ).getSource();
+			}
+			else
+				break;
+		}
+		if ( dim0 != 0 )
+			return null;
+
+		if ( !( ra instanceof AbstractNativeImg ) )
+			return null;
+		final AbstractNativeImg< ?, ? > img = ( AbstractNativeImg< ?, ? > ) ra;
+		final Fraction f = img.getEntitiesPerPixel();
+		if ( f.getNumerator() % f.getDenominator() != 0 )
+			return null;
+		final int k = ( int ) ( f.getNumerator() / f.getDenominator() );
+
+		final Storage storage;
+		if ( img instanceof ArrayImg )
+			storage = new ArrayStorage( ( ArrayImg< ?, ? > ) img );
+		else if ( img instanceof PlanarImg )
+			storage = new PlanarStorage( ( PlanarImg< ?, ? > ) img );
+		else if ( img instanceof PagedArrayImg )
+			storage = new PagedStorage( ( PagedArrayImg< ?, ? > ) img );
+		else if ( img instanceof AbstractCellImg )
+			storage = new CellStorage( ( AbstractCellImg< ?, ?, ?, ? > ) img );
+		else
+			return null;
+
+		storage.setTransforms( transforms, rai.numDimensions() );
+		storage.entitiesPerPixel = k;
+		storage.typeClass = img.firstElement().getClass();
+		return storage.bytesPerEntity < 0 ? null : storage;
+	}
+
+	/**
+	 * Storage of a native image. {@link #locate(long[])} finds the storage
+	 * array, the pixel index in that array, and the number of pixels that
+	 * are consecutive along dimension 0 starting at a given position.
+	 */
+	private static abstract class Storage
+	{
+		private MixedTransform[] transforms;
+
+		private long[][] positions;
+
+		int entitiesPerPixel;
+
+		Class< ? > typeClass;
+
+		int bytesPerEntity = -1;
+
+		boolean isBuffer;
+
+		Object access;
+
+		Object data;
+
+		int index;
+
+		long run;
+
+		void setTransforms( final ArrayList< MixedTransform > t, final int n )
+		{
+			transforms = t.toArray( new MixedTransform[ t.size() ] );
+			positions = new long[ transforms.length + 1 ][];
+			positions[ 0 ] = new long[ n ];
+			for ( int i = 0; i < transforms.length; ++i )
+				positions[ i + 1 ] = new long[ transforms[ i ].numTargetDimensions() ];
+		}
+
+		/**
+		 * Locate a position given in view coordinates.
+		 */
+		void locate( final long[] position )
+		{
+			if ( transforms.length == 0 )
+			{
+				locateInImg( position );
+				return;
+			}
+			System.arraycopy( position, 0, positions[ 0 ], 0, position.length );
+			for ( int i = 0; i < transforms.length; ++i )
+				transforms[ i ].apply( positions[ i ], positions[ i + 1 ] );
+			locateInImg( positions[ transforms.length ] );
+		}
+
+		/**
+		 * Locate a position given in image coordinates.
+		 */
+		abstract void locateInImg( long[] position );
+
+		void setAccess( final Object a )
+		{
+			access = a;
+			data = ( ( ArrayDataAccess< ? > ) a ).getCurrentStorageArray();
+		}
+
+		void checkAccess( final Object a )
+		{
+			if ( !( a instanceof ArrayDataAccess ) )
+				return;
+			final Object d = ( ( ArrayDataAccess< ? > ) a ).getCurrentStorageArray();
+			if ( !( d instanceof ByteBuffer || d.getClass().isArray() ) )
+				return;
+			isBuffer = d instanceof ByteBuffer;
+			if ( a instanceof ByteAccess )
+				bytesPerEntity = 1;
+			else if ( a instanceof CharAccess || a instanceof ShortAccess )
+				bytesPerEntity = 2;
+			else if ( a instanceof IntAccess || a instanceof FloatAccess )
+				bytesPerEntity = 4;
+			else if ( a instanceof LongAccess || a instanceof DoubleAccess )
+				bytesPerEntity = 8;
+		}
+
+		void markDirty()
+		{
+			if ( access instanceof Dirty )
+				( ( Dirty ) access ).setDirty( true );
+		}
+
+		boolean compatible( final Storage other )
+		{
+			return typeClass == other.typeClass && entitiesPerPixel == other.entitiesPerPixel && bytesPerEntity == other.bytesPerEntity;
+		}
+	}
+
+	private static class ArrayStorage extends Storage
+	{
+		private final long[] dimensions;
+
+		ArrayStorage( final ArrayImg< ?, ? > img )
+		{
+			dimensions = Intervals.dimensionsAsLongArray( img );
+			final Object a = img.update( null );
+			checkAccess( a );
+			if ( bytesPerEntity > 0 )
+				setAccess( a );
+		}
+
+		@Override
+		void locateInImg( final long[] position )
+		{
+			index = ( int ) IntervalIndexer.positionToIndex( position, dimensions );
+			run = dimensions[ 0 ] - position[ 0 ];
+		}
+	}
+
+	private static class PlanarStorage extends Storage
+	{
+		private final PlanarImg< ?, ? > img;
+
+		private final long[] dimensions;
+
+		PlanarStorage( final PlanarImg< ?, ? > img )
+		{
+			this.img = img;
+			dimensions = Intervals.dimensionsAsLongArray( img );
+			checkAccess( img.getPlane( 0 ) );
+		}
+
+		@Override
+		void locateInImg( final long[] position )
+		{
+			int slice = 0;
+			for ( int d = dimensions.length - 1; d >= 2; --d )
+				slice = slice * ( int ) dimensions[ d ] + ( int ) position[ d ];
+			setAccess( img.getPlane( slice ) );
+			index = ( int ) ( position[ 0 ] + ( dimensions.length > 1 ? position[ 1 ] * dimensions[ 0 ] : 0 ) );
+			run = dimensions[ 0 ] - position[ 0 ];
+		}
+	}
+
+	private static class PagedStorage extends Storage
+	{
+		private final PagedArrayImg< ?, ? > img;
+
+		private final long[] dimensions;
+
+		private final int pageShift;
+
+		PagedStorage( final PagedArrayImg< ?, ? > img )
+		{
+			this.img = img;
+			dimensions = Intervals.dimensionsAsLongArray( img );
+			pageShift = img.getPageShift();
+			checkAccess( img.getPage( 0 ) );
+		}
+
+		@Override
+		void locateInImg( final long[] position )
+		{
+			final long i = IntervalIndexer.positionToIndex( position, dimensions );
+			setAccess( img.getPage( ( int ) ( i >> pageShift ) ) );
+			index = ( int ) ( i & ( img.pageSize() - 1 ) );
+			run = img.pageSize() - index;
+		}
+	}
+
+	private static class CellStorage extends Storage
+	{
+		private final RandomAccess< ? extends AbstractCell< ? > > cells;
+
+		private final int[] cellDimensions;
+
+		private final long[] gridPosition;
+
+		private final long[] cellPosition;
+
+		CellStorage( final AbstractCellImg< ?, ?, ?, ? > img )
+		{
+			cells = img.getCells().randomAccess();
+			cellDimensions = new int[ img.numDimensions() ];
+			img.getCells().cellDimensions( cellDimensions );
+			gridPosition = new long[ cellDimensions.length ];
+			cellPosition = new long[ cellDimensions.length ];
+			checkAccess( cells.get().getData() );
+		}
+
+		@Override
+		void locateInImg( final long[] position )
+		{
+			for ( int d = 0; d < cellDimensions.length; ++d )
+				gridPosition[ d ] = position[ d ] / cellDimensions[ d ];
+			cells.setPosition( gridPosition );
+			final AbstractCell< ? > cell = cells.get();
+			for ( int d = 0; d < cellDimensions.length; ++d )
+				cellPosition[ d ] = position[ d ] - cell.min( d );
+			setAccess( cell.getData() );
+			index = cell.localPositionToIndex( cellPosition );
+			run = cell.dimension( 0 ) - cellPosition[ 0 ];
+		}
+	}
+
+	/**
+	 * Reads runs of pixels of a standard real type from a storage array or
+	 * buffer as doubles.
+	 */
+	private static abstract class RealReader
+	{
+		abstract void read( Object data, int index, double[] out, int length );
+
+		static RealReader forStorage( final Storage s )
+		{
+			if ( s.entitiesPerPixel != 1 )
+				return null;
+			final Class< ? > c = s.typeClass;
+			if ( c == UnsignedByteType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.get( index + i ) & 0xff;
+						}
+						else
+						{
+							final byte[] a = ( byte[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ] & 0xff;
+						}
+					}
+				};
+			else if ( c == ByteType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.get( index + i );
+						}
+						else
+						{
+							final byte[] a = ( byte[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ];
+						}
+					}
+				};
+			else if ( c == UnsignedShortType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.getShort( 2 * ( index + i ) ) & 0xffff;
+						}
+						else
+						{
+							final short[] a = ( short[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ] & 0xffff;
+						}
+					}
+				};
+			else if ( c == ShortType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.getShort( 2 * ( index + i ) );
+						}
+						else
+						{
+							final short[] a = ( short[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ];
+						}
+					}
+				};
+			else if ( c == UnsignedIntType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.getInt( 4 * ( index + i ) ) & 0xffffffffL;
+						}
+						else
+						{
+							final int[] a = ( int[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ] & 0xffffffffL;
+						}
+					}
+				};
+			else if ( c == IntType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.getInt( 4 * ( index + i ) );
+						}
+						else
+						{
+							final int[] a = ( int[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ];
+						}
+					}
+				};
+			else if ( c == LongType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.getLong( 8 * ( index + i ) );
+						}
+						else
+						{
+							final long[] a = ( long[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ];
+						}
+					}
+				};
+			else if ( c == FloatType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.getFloat( 4 * ( index + i ) );
+						}
+						else
+						{
+							final float[] a = ( float[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ];
+						}
+					}
+				};
+			else if ( c == DoubleType.class )
+				return new RealReader()
+				{
+					@Override
+					void read( final Object data, final int index, final double[] out, final int length )
+					{
+						if ( data instanceof ByteBuffer )
+						{
+							final ByteBuffer b = ( ByteBuffer ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = b.getDouble( 8 * ( index + i ) );
+						}
+						else
+						{
+							final double[] a = ( double[] ) data;
+							for ( int i = 0; i < length; ++i )
+								out[ i ] = a[ index + i ];
+						}
+					}
+				};
+			return null;
+		}
+	}
+}
@@ -35,8 +35,11 @@
 package net.imglib2.util;
 
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
 import net.imglib2.img.Img;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 
@@ -54,6 +57,58 @@ import net.imglib2.type.numeric.RealType;
  */
 public class ImgUtil
 {
+	/**
+	 * Copy the pixels of {@code source} to {@code target}, which must have the
+	 * same dimensions. The pixel at {@code source.min()} is copied to
+	 * {@code target.min()}.
+	 * 
+	 * If both are {@link net.imglib2.img.array.ArrayImg ArrayImgs},
+	 * {@link net.imglib2.img.planar.PlanarImg PlanarImgs},
+	 * {@link net.imglib2.img.paged.PagedArrayImg PagedArrayImgs} or
+	 * {@link net.imglib2.img.cell.AbstractCellImg CellImgs} (or views of them)
+	 * with the same pixel type, runs of consecutive pixels are copied with
+	 * {@link System#arraycopy(Object, int, Object, int, int)} without going
+	 * through the type. Intervals, translations, slices and
+	 * permutations that keep dimension 0 in place are supported as views. A
+	 * {@link net.imglib2.converter.read.ConvertedRandomAccessibleInterval}
+	 * source is copied as by
+	 * {@link #copy(RandomAccessibleInterval, RandomAccessibleInterval, Converter)}.
+	 * Otherwise pixels are copied one by one in flat iteration order.
+	 * 
+	 * @param source
+	 *            - the source of the data
+	 * @param target
+	 *            - the destination for the copy
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > target )
+	{
+		BulkCopy.copy( source, target );
+	}
+
+	/**
+	 * Convert the pixels of {@code source} into {@code target}, which must
+	 * have the same dimensions. The pixel at {@code source.min()} is converted
+	 * to {@code target.min()}.
+	 * 
+	 * If the converter is a {@link net.imglib2.converter.RealBulkConverter},
+	 * the source has a standard real type, and both are stored as described
+	 * in {@link #copy(RandomAccessibleInterval, RandomAccessibleInterval)},
+	 * runs of consecutive pixels are converted at once by the converter's
+	 * kernel. Otherwise pixels are converted one by one in flat iteration
+	 * order.
+	 * 
+	 * @param source
+	 *            - the source of the data
+	 * @param target
+	 *            - the destination for the converted data
+	 * @param converter
+	 *            - converts source to target pixels
+	 */
+	public static < A, B > void copy( final RandomAccessibleInterval< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, ? super B > converter )
+	{
+		BulkCopy.copy( source, target, converter );
+	}
+
 	/**
 	 * Copy a flat array of doubles into an Img.
 	 * 
@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.converter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.display.projector.IterableIntervalProjector2D;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.BufferArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgUtil;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Checks that the {@link RealBulkConverter} kernels give the same results as
+ * per-pixel conversion.
+ * 
+ * @author agent
+ */
+public class RealBulkConverterTest
+{
+	private static final long[] dim = { 23, 17, 3 };
+
+	@SuppressWarnings( "unchecked" )
+	private static final ImgFactory< UnsignedShortType >[] sourceFactories = new ImgFactory[] {
+			new ArrayImgFactory< UnsignedShortType >(),
+			new BufferArrayImgFactory< UnsignedShortType >(),
+			new PlanarImgFactory< UnsignedShortType >(),
+			new CellImgFactory< UnsignedShortType >( 5 ),
+			new ListImgFactory< UnsignedShortType >() };
+
+	private static Img< UnsignedShortType > source( final ImgFactory< UnsignedShortType > factory )
+	{
+		final Img< UnsignedShortType > img = factory.create( dim, new UnsignedShortType() );
+		final Random random = new Random( 1 );
+		for ( final UnsignedShortType t : img )
+			t.set( random.nextInt( 65536 ) );
+		return img;
+	}
+
+	private static < B extends NativeType< B > > void check( final Converter< UnsignedShortType, B > converter, final B type )
+	{
+		for ( final ImgFactory< UnsignedShortType > factory : sourceFactories )
+		{
+			final Img< UnsignedShortType > source = source( factory );
+			final Img< B > bulk = new ArrayImgFactory< B >().create( dim, type );
+			ImgUtil.copy( source, bulk, converter );
+			assertConverted( source, bulk, converter, type );
+
+			final Img< B > cells = new CellImgFactory< B >( 4 ).create( dim, type );
+			ImgUtil.copy( Converters.convert( ( RandomAccessibleInterval< UnsignedShortType > ) source, converter, type ), cells );
+			assertConverted( source, cells, converter, type );
+
+			// slice
+			final RandomAccessibleInterval< UnsignedShortType > slice = Views.hyperSlice( source, 1, 4 );
+			final Img< B > sliceBulk = new PlanarImgFactory< B >().create( new long[] { dim[ 0 ], dim[ 2 ] }, type );
+			ImgUtil.copy( slice, sliceBulk, converter );
+			assertConverted( slice, sliceBulk, converter, type );
+		}
+	}
+
+	private static < A, B extends Type< B > > void assertConverted( final RandomAccessibleInterval< A > source, final RandomAccessibleInterval< B > actual, final Converter< A, B > converter, final B type )
+	{
+		final B expected = type.createVariable();
+		final Cursor< A > s = Views.flatIterable( source ).cursor();
+		final Cursor< B > a = Views.flatIterable( actual ).cursor();
+		while ( s.hasNext() )
+		{
+			converter.convert( s.next(), expected );
+			assertEquals( expected.toString(), a.next().toString() );
+		}
+	}
+
+	@Test
+	public void testRealFloatConverter()
+	{
+		check( new RealFloatConverter< UnsignedShortType >(), new FloatType() );
+	}
+
+	@Test
+	public void testRealDoubleConverter()
+	{
+		check( new RealDoubleConverter< UnsignedShortType >(), new DoubleType() );
+	}
+
+	@Test
+	public void testRealUnsignedByteConverter()
+	{
+		check( new RealUnsignedByteConverter< UnsignedShortType >( 1000, 50000 ), new UnsignedByteType() );
+	}
+
+	@Test
+	public void testRealUnsignedShortConverter()
+	{
+		check( new RealUnsignedShortConverter< UnsignedShortType >( 1000, 50000 ), new UnsignedShortType() );
+	}
+
+	@Test
+	public void testRealARGBConverter()
+	{
+		check( new RealARGBConverter< UnsignedShortType >( 0, 65535 ), new ARGBType() );
+	}
+
+	@Test
+	public void testRealLUTConverter()
+	{
+		check( new RealLUTConverter< UnsignedShortType >( 100, 60000, new ColorTable8() ), new ARGBType() );
+	}
+
+	@Test
+	public void testSubclassOverridingConvert()
+	{
+		check( new RealARGBConverter< UnsignedShortType >( 0, 65535 )
+		{
+			@Override
+			public void convert( final UnsignedShortType input, final ARGBType output )
+			{
+				output.set( input.get() );
+			}
+		}, new ARGBType() );
+	}
+
+	@Test
+	public void testLongToFloat()
+	{
+		final Img< LongType > source = new ArrayImgFactory< LongType >().create( new long[] { 4 }, new LongType() );
+		final long[] values = { ( 1l << 60 ) + ( 1l << 36 ) + 1, Long.MAX_VALUE, -( 1l << 55 ) - ( 1l << 31 ) - 1, 12345 };
+		final Cursor< LongType > c = source.cursor();
+		for ( final long v : values )
+			c.next().set( v );
+		final RealFloatConverter< LongType > converter = new RealFloatConverter< LongType >();
+		final Img< FloatType > bulk = new ArrayImgFactory< FloatType >().create( new long[] { 4 }, new FloatType() );
+		ImgUtil.copy( source, bulk, converter );
+		assertConverted( source, bulk, converter, new FloatType() );
+	}
+
+	@Test
+	public void testProjector()
+	{
+		final RealARGBConverter< UnsignedShortType > converter = new RealARGBConverter< UnsignedShortType >( 0, 65535 );
+		for ( final ImgFactory< UnsignedShortType > factory : sourceFactories )
+		{
+			final Img< UnsignedShortType > source = source( factory );
+			final Img< ARGBType > target = new ArrayImgFactory< ARGBType >().create( new long[] { dim[ 0 ], dim[ 1 ] }, new ARGBType() );
+			final IterableIntervalProjector2D< UnsignedShortType, ARGBType > projector = new IterableIntervalProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, target, converter, null, 1 );
+			projector.setPosition( 2, 2 );
+			projector.map();
+
+			final ARGBType expected = new ARGBType();
+			final RandomAccess< UnsignedShortType > s = source.randomAccess();
+			final Cursor< ARGBType > c = target.localizingCursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				s.setPosition( new long[] { c.getLongPosition( 0 ), c.getLongPosition( 1 ), 2 } );
+				converter.convert( s.get(), expected );
+				assertEquals( expected.get(), c.get().get() );
+			}
+		}
+	}
+}
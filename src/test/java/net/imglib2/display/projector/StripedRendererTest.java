@@ -0,0 +1,265 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.Volatile;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.projector.composite.CompositeXYProjector;
+import net.imglib2.display.projector.volatiles.Volatile2DRandomAccessibleProjector;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that 2D projectors rendering in stripes on an executor give the same
+ * results as rendering in the calling thread, and that rendering can be
+ * canceled.
+ * 
+ * @author agent
+ */
+public class StripedRendererTest
+{
+	private static final long[] dim = { 37, 29, 3 };
+
+	private static final int numTasks = 7;
+
+	private ExecutorService executorService;
+
+	private ArrayImg< UnsignedShortType, ? > source;
+
+	/** A converter that does not have a bulk kernel. */
+	private static final Converter< UnsignedShortType, ARGBType > grey = new Converter< UnsignedShortType, ARGBType >()
+	{
+		@Override
+		public void convert( final UnsignedShortType input, final ARGBType output )
+		{
+			final int v = input.get() & 0xff;
+			output.set( ARGBType.rgba( v, v, v, 255 ) );
+		}
+	};
+
+	@Before
+	public void setUp()
+	{
+		executorService = Executors.newFixedThreadPool( 3 );
+		source = ArrayImgs.unsignedShorts( dim );
+		final Random random = new Random( 42 );
+		for ( final UnsignedShortType t : source )
+			t.set( random.nextInt( 1000 ) );
+	}
+
+	@After
+	public void tearDown()
+	{
+		executorService.shutdown();
+	}
+
+	@Test
+	public void testIterableIntervalProjector()
+	{
+		for ( final Converter< UnsignedShortType, ARGBType > converter : converters() )
+		{
+			final ArrayImg< ARGBType, IntArray > expected = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+			final ArrayImg< ARGBType, IntArray > actual = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+			final IterableIntervalProjector2D< UnsignedShortType, ARGBType > p1 = new IterableIntervalProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, expected, converter );
+			final IterableIntervalProjector2D< UnsignedShortType, ARGBType > p2 = new IterableIntervalProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, actual, converter, executorService, numTasks );
+			p1.setPosition( 2, 2 );
+			p2.setPosition( 2, 2 );
+			p1.map();
+			p2.map();
+			assertFalse( p2.isCanceled() );
+			assertArrayEquals( expected.update( null ).getCurrentStorageArray(), actual.update( null ).getCurrentStorageArray() );
+		}
+	}
+
+	@Test
+	public void testRandomAccessibleProjector()
+	{
+		final ArrayImg< ARGBType, IntArray > expected = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+		final ArrayImg< ARGBType, IntArray > actual = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+		final RandomAccessibleProjector2D< UnsignedShortType, ARGBType > p1 = new RandomAccessibleProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, expected, grey );
+		final RandomAccessibleProjector2D< UnsignedShortType, ARGBType > p2 = new RandomAccessibleProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, actual, grey, executorService, numTasks );
+		p1.setPosition( 1, 2 );
+		p2.setPosition( 1, 2 );
+		p1.map();
+		p2.map();
+		assertFalse( p2.isCanceled() );
+		assertArrayEquals( expected.update( null ).getCurrentStorageArray(), actual.update( null ).getCurrentStorageArray() );
+	}
+
+	@Test
+	public void testCompositeXYProjector()
+	{
+		final ArrayList< Converter< UnsignedShortType, ARGBType > > channels = new ArrayList< Converter< UnsignedShortType, ARGBType > >();
+		channels.add( grey );
+		channels.add( new RealARGBConverter< UnsignedShortType >( 0, 1000 ) );
+		channels.add( grey );
+		for ( final boolean composite : new boolean[] { false, true } )
+		{
+			final ArrayImg< ARGBType, IntArray > expected = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+			final ArrayImg< ARGBType, IntArray > actual = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+			final CompositeXYProjector< UnsignedShortType > p1 = new CompositeXYProjector< UnsignedShortType >( source, Views.iterable( expected ), channels, 2 );
+			final CompositeXYProjector< UnsignedShortType > p2 = new CompositeXYProjector< UnsignedShortType >( source, Views.iterable( actual ), channels, 2, executorService, numTasks );
+			p1.setComposite( composite );
+			p2.setComposite( composite );
+			p1.setPosition( 1, 2 );
+			p2.setPosition( 1, 2 );
+			p1.map();
+			p2.map();
+			assertArrayEquals( expected.update( null ).getCurrentStorageArray(), actual.update( null ).getCurrentStorageArray() );
+		}
+	}
+
+	@Test
+	public void testVolatileProjector()
+	{
+		final ArrayList< Volatile< IntType > > list = new ArrayList< Volatile< IntType > >();
+		for ( int i = 0; i < dim[ 0 ] * dim[ 1 ]; ++i )
+			list.add( new Volatile< IntType >( new IntType( i ), true ) );
+		final ListImg< Volatile< IntType > > volatileSource = new ListImg< Volatile< IntType > >( list, dim[ 0 ], dim[ 1 ] );
+		final Converter< Volatile< IntType >, IntType > converter = new Converter< Volatile< IntType >, IntType >()
+		{
+			@Override
+			public void convert( final Volatile< IntType > input, final IntType output )
+			{
+				output.set( input.get() );
+			}
+		};
+
+		final ArrayImg< IntType, IntArray > target = ArrayImgs.ints( dim[ 0 ], dim[ 1 ] );
+		final Volatile2DRandomAccessibleProjector< IntType, Volatile< IntType >, IntType > projector = new Volatile2DRandomAccessibleProjector< IntType, Volatile< IntType >, IntType >( 0, 1, volatileSource, target, converter, executorService, numTasks );
+		projector.map();
+		assertTrue( projector.isValid() );
+		final Cursor< IntType > c = target.cursor();
+		for ( int i = 0; c.hasNext(); ++i )
+			assertEquals( i, c.next().get() );
+
+		list.get( list.size() - 1 ).setValid( false );
+		projector.map();
+		assertFalse( projector.isValid() );
+	}
+
+	@Test
+	public void testCancel()
+	{
+		final ArrayImg< ARGBType, IntArray > target = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+		final AtomicInteger count = new AtomicInteger();
+		final InterruptibleProjector[] projector = new InterruptibleProjector[ 1 ];
+		final Converter< UnsignedShortType, ARGBType > canceling = new Converter< UnsignedShortType, ARGBType >()
+		{
+			@Override
+			public void convert( final UnsignedShortType input, final ARGBType output )
+			{
+				if ( count.incrementAndGet() == 10 )
+					projector[ 0 ].cancel();
+				output.set( 1 );
+			}
+		};
+		projector[ 0 ] = new IterableIntervalProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, target, canceling, null, 1 );
+		projector[ 0 ].map();
+		assertTrue( projector[ 0 ].isCanceled() );
+		assertEquals( dim[ 0 ], count.get() );
+
+		count.set( -( int ) ( dim[ 0 ] * dim[ 1 ] ) );
+		projector[ 0 ].map();
+		assertFalse( projector[ 0 ].isCanceled() );
+		for ( final ARGBType t : target )
+			assertEquals( 1, t.get() );
+	}
+
+	@Test
+	public void testCancelBeforeMap()
+	{
+		final ArrayImg< ARGBType, IntArray > target = ArrayImgs.argbs( dim[ 0 ], dim[ 1 ] );
+		final AtomicInteger count = new AtomicInteger();
+		final Converter< UnsignedShortType, ARGBType > counting = new Converter< UnsignedShortType, ARGBType >()
+		{
+			@Override
+			public void convert( final UnsignedShortType input, final ARGBType output )
+			{
+				count.incrementAndGet();
+			}
+		};
+		final InterruptibleProjector projector = new IterableIntervalProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, target, counting, executorService, 4 );
+		projector.cancel();
+		projector.map();
+		assertTrue( projector.isCanceled() );
+		assertEquals( 0, count.get() );
+
+		projector.map();
+		assertFalse( projector.isCanceled() );
+		assertEquals( dim[ 0 ] * dim[ 1 ], count.get() );
+
+		count.set( 0 );
+		final InterruptibleProjector single = new IterableIntervalProjector2D< UnsignedShortType, ARGBType >( 0, 1, source, target, counting );
+		single.cancel();
+		single.map();
+		assertTrue( single.isCanceled() );
+		assertEquals( 0, count.get() );
+		single.map();
+		assertFalse( single.isCanceled() );
+		assertEquals( dim[ 0 ] * dim[ 1 ], count.get() );
+	}
+
+	private static ArrayList< Converter< UnsignedShortType, ARGBType > > converters()
+	{
+		final ArrayList< Converter< UnsignedShortType, ARGBType > > converters = new ArrayList< Converter< UnsignedShortType, ARGBType > >();
+		converters.add( grey );
+		converters.add( new RealARGBConverter< UnsignedShortType >( 0, 1000 ) );
+		return converters;
+	}
+}
@@ -34,12 +34,27 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -104,6 +119,189 @@ public class Histogram1dTest
 		assertEquals( 0, hist.upperTailCount() );
 	}
 
+	@Test
+	public void testParallel()
+	{
+		final Random rnd = new Random( 1 );
+		final long[] dims = new long[] { 300, 200, 7 };
+		final List< Img< UnsignedByteType >> imgs = new ArrayList< Img< UnsignedByteType >>();
+		imgs.add( new ArrayImgFactory< UnsignedByteType >().create( dims, new UnsignedByteType() ) );
+		imgs.add( new PlanarImgFactory< UnsignedByteType >().create( dims, new UnsignedByteType() ) );
+		for ( final Img< UnsignedByteType > img : imgs )
+		{
+			for ( final UnsignedByteType t : img )
+				t.set( rnd.nextInt( 256 ) );
+
+			final BinMapper1d< UnsignedByteType > binMapper =
+					new Integer1dBinMapper< UnsignedByteType >( 10, 200, true );
+
+			final Histogram1d< UnsignedByteType > sequential =
+					new Histogram1d< UnsignedByteType >( binMapper );
+			sequential.countData( ( Iterable< UnsignedByteType > ) img );
+
+			final Histogram1d< UnsignedByteType > parallel =
+					new Histogram1d< UnsignedByteType >( binMapper );
+			parallel.countDataParallel( img, new ForkJoinPool( 4 ) );
+			assertArrayEquals( sequential.toLongArray(), parallel.toLongArray() );
+			assertEquals( sequential.distributionCount(), parallel.distributionCount() );
+			assertEquals( img.firstElement().get(), parallel.firstDataValue().get() );
+
+			final BinMapper1d< UnsignedByteType > ignoringMapper =
+					new Integer1dBinMapper< UnsignedByteType >( 10, 200, false );
+			final Histogram1d< UnsignedByteType > ignoring =
+					new Histogram1d< UnsignedByteType >( ignoringMapper );
+			ignoring.countDataParallel( img );
+			final Histogram1d< UnsignedByteType > ignoringSequential =
+					new Histogram1d< UnsignedByteType >( ( Iterable< UnsignedByteType > ) img, ignoringMapper );
+			assertEquals( img.size(), ignoring.totalCount() );
+			assertEquals( ignoringSequential.ignoredCount(), ignoring.ignoredCount() );
+			assertArrayEquals( ignoringSequential.toLongArray(), ignoring.toLongArray() );
+
+			parallel.addDataParallel( img );
+			assertEquals( 2 * img.size(), parallel.distributionCount() );
+
+			// merge histograms of two halves
+			final Histogram1d< UnsignedByteType > first =
+					new Histogram1d< UnsignedByteType >( Views.interval( img, new long[] { 0, 0, 0 }, new long[] { 299, 199, 3 } ), binMapper );
+			final Histogram1d< UnsignedByteType > second =
+					new Histogram1d< UnsignedByteType >( Views.interval( img, new long[] { 0, 0, 4 }, new long[] { 299, 199, 6 } ), binMapper );
+			first.merge( second );
+			assertArrayEquals( sequential.toLongArray(), first.toLongArray() );
+			assertEquals( sequential.totalCount(), first.totalCount() );
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testMergeDifferentBounds()
+	{
+		final Histogram1d< UnsignedByteType > hist =
+				new Histogram1d< UnsignedByteType >( new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		hist.merge( new Histogram1d< UnsignedByteType >( hist ) );
+		hist.merge( new Histogram1d< UnsignedByteType >( new Integer1dBinMapper< UnsignedByteType >( 10, 256, false ) ) );
+	}
+
+	@Test
+	public void testStatistics()
+	{
+		final Random random = new Random( 1 );
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( new long[] { 100, 37 }, new UnsignedByteType() );
+		for ( final UnsignedByteType t : img )
+			t.set( ( int ) Math.max( 0, Math.min( 255, random.nextGaussian() * 30 + 80 ) ) );
+		final Histogram1d< UnsignedByteType > hist = new Histogram1d< UnsignedByteType >( new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		hist.countData( img );
+		assertSameStatistics( hist );
+
+		// cached statistics must follow modifications
+		for ( int i = 0; i < 500; ++i )
+			hist.increment( 200 );
+		assertSameStatistics( hist );
+		for ( int i = 0; i < 300; ++i )
+			hist.decrement( 200 );
+		hist.dfd().setFrequency( new long[] { 3 }, 17 );
+		assertSameStatistics( hist );
+
+		// and writes through the Img interface
+		final RandomAccess< LongType > access = hist.dfd().randomAccess();
+		access.setPosition( 250, 0 );
+		access.get().set( 40 );
+		assertEquals( 40, hist.frequency( 250 ) );
+		assertSameStatistics( hist );
+		for ( final LongType count : hist.dfd() )
+			count.setZero();
+		assertEquals( 0, hist.distributionCount() );
+		assertEquals( -1, hist.percentileBin( 0.5 ) );
+		hist.increment( 7 );
+		assertSameStatistics( hist );
+
+		hist.dfd().resetCounters();
+		assertEquals( -1, hist.percentileBin( 0.5 ) );
+		assertEquals( 0, hist.cumulativeFrequency( 255 ) );
+	}
+
+	private static void assertSameStatistics( final Histogram1d< ? > hist )
+	{
+		final long n = hist.distributionCount();
+		final int bins = ( int ) hist.getBinCount();
+		long cumulative = 0;
+		double sum = 0;
+		final long[] sorted = new long[ ( int ) n ];
+		for ( int bin = 0; bin < bins; ++bin )
+		{
+			final long count = hist.frequency( bin );
+			for ( long i = cumulative; i < cumulative + count; ++i )
+				sorted[ ( int ) i ] = bin;
+			cumulative += count;
+			sum += count * bin;
+			assertEquals( cumulative, hist.cumulativeFrequency( bin ) );
+		}
+		final double mean = sum / n;
+		double sumSqDiff = 0;
+		for ( final long bin : sorted )
+			sumSqDiff += ( bin - mean ) * ( bin - mean );
+		assertEquals( mean, hist.meanBin(), 1e-9 );
+		assertEquals( sumSqDiff / n, hist.varianceBin(), 1e-9 );
+		for ( final double p : new double[] { 0, 0.01, 0.25, 0.5, 0.75, 0.99, 1 } )
+			assertEquals( sorted[ ( int ) ( p * ( n - 1 ) ) ], hist.percentileBin( p ) );
+	}
+
+	@Test
+	public void testPrimitive()
+	{
+		for ( final Img< UnsignedByteType > img : randomImgs( new UnsignedByteType(), 256 ) )
+		{
+			assertSameCounts( img, new Integer1dBinMapper< UnsignedByteType >( 3, 100, false ) );
+			assertSameCounts( img, new Real1dBinMapper< UnsignedByteType >( 25, 180, 100, true ) );
+		}
+		for ( final Img< UnsignedShortType > img : randomImgs( new UnsignedShortType(), 65536 ) )
+		{
+			assertSameCounts( img, new Integer1dBinMapper< UnsignedShortType >( 3, 1000, true ) );
+			assertSameCounts( img, new Real1dBinMapper< UnsignedShortType >( 1000, 50000, 100, false ) );
+		}
+		for ( final Img< FloatType > img : randomImgs( new FloatType(), 1000 ) )
+		{
+			assertSameCounts( img, new Real1dBinMapper< FloatType >( 100, 700, 100, true ) );
+			assertSameCounts( img, new Real1dBinMapper< FloatType >( 100, 700, 100, false ) );
+		}
+		for ( final Img< DoubleType > img : randomImgs( new DoubleType(), 1000 ) )
+		{
+			assertSameCounts( img, new Real1dBinMapper< DoubleType >( 100, 700, 100, true ) );
+			assertSameCounts( img, new Real1dBinMapper< DoubleType >( 100, 700, 100, false ) );
+		}
+	}
+
+	/**
+	 * An ArrayImg and a PlanarImg with random values in [0, max).
+	 */
+	private < T extends RealType< T > & NativeType< T >> List< Img< T >> randomImgs( final T type, final double max )
+	{
+		final Random rnd = new Random( 2 );
+		final long[] dims = new long[] { 200, 100, 5 };
+		final List< Img< T >> imgs = new ArrayList< Img< T >>();
+		imgs.add( new ArrayImgFactory< T >().create( dims, type ) );
+		imgs.add( new PlanarImgFactory< T >().create( dims, type ) );
+		for ( final Img< T > img : imgs )
+			for ( final T t : img )
+				t.setReal( rnd.nextDouble() * max );
+		return imgs;
+	}
+
+	/**
+	 * Check that counting on primitive arrays gives the same result as
+	 * counting sequentially.
+	 */
+	private < T > void assertSameCounts( final Img< T > img, final BinMapper1d< T > mapper )
+	{
+		assertNotNull( PrimitiveCounter.count( img, mapper, new ForkJoinPool( 4 ) ) );
+
+		final Histogram1d< T > sequential = new Histogram1d< T >( mapper );
+		sequential.countData( ( Iterable< T > ) img );
+		final Histogram1d< T > primitive = new Histogram1d< T >( mapper );
+		primitive.countDataParallel( img, new ForkJoinPool( 4 ) );
+		assertArrayEquals( sequential.toLongArray(), primitive.toLongArray() );
+		assertEquals( sequential.ignoredCount(), primitive.ignoredCount() );
+		assertEquals( sequential.distributionCount(), primitive.distributionCount() );
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
@@ -36,16 +36,19 @@ package net.imglib2.histogram;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import net.imglib2.Cursor;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Test;
@@ -58,6 +61,196 @@ import org.junit.Test;
 public class HistogramNdTest
 {
 
+	@Test
+	public void testParallel()
+	{
+		final Random rnd = new Random( 1 );
+		final long[] dims = new long[] { 200, 150, 5 };
+		final Img< UnsignedByteType > img1 = new ArrayImgFactory< UnsignedByteType >().create( dims, new UnsignedByteType() );
+		final Img< UnsignedByteType > img2 = new ArrayImgFactory< UnsignedByteType >().create( dims, new UnsignedByteType() );
+		final long[][] expected = new long[ 32 ][ 16 ];
+		long ignored = 0;
+		final Cursor< UnsignedByteType > c1 = img1.cursor();
+		final Cursor< UnsignedByteType > c2 = img2.cursor();
+		while ( c1.hasNext() )
+		{
+			final int v1 = rnd.nextInt( 40 );
+			final int v2 = rnd.nextInt( 20 );
+			c1.next().set( v1 );
+			c2.next().set( v2 );
+			if ( v1 < 32 && v2 < 16 )
+				expected[ v1 ][ v2 ]++;
+			else
+				ignored++;
+		}
+
+		final List< Iterable< UnsignedByteType >> data =
+				new ArrayList< Iterable< UnsignedByteType >>();
+		data.add( img1 );
+		data.add( img2 );
+		final HistogramNd< UnsignedByteType > hist =
+				Integer1dBinMapper.histogramNd( new long[] { 0, 0 }, new long[] { 32, 16 }, new boolean[] { false, false } );
+		hist.countDataParallel( data );
+
+		assertEquals( ignored, hist.ignoredCount() );
+		assertEquals( img1.size(), hist.totalCount() );
+		final long[] pos = new long[ 2 ];
+		for ( int i = 0; i < 32; i++ )
+			for ( int j = 0; j < 16; j++ )
+			{
+				pos[ 0 ] = i;
+				pos[ 1 ] = j;
+				assertEquals( expected[ i ][ j ], hist.frequency( pos ) );
+			}
+
+		// merge with a copy counting the same data again
+		final HistogramNd< UnsignedByteType > copy = new HistogramNd< UnsignedByteType >( hist );
+		assertEquals( 0, copy.totalCount() );
+		copy.addDataParallel( data );
+		hist.merge( copy );
+		assertEquals( 2 * img1.size(), hist.totalCount() );
+		pos[ 0 ] = 3;
+		pos[ 1 ] = 4;
+		assertEquals( 2 * expected[ 3 ][ 4 ], hist.frequency( pos ) );
+	}
+
+	@Test
+	public void testSparse()
+	{
+		final List< Iterable< UnsignedByteType >> data =
+				new ArrayList< Iterable< UnsignedByteType >>();
+		data.add( getData1() );
+		data.add( getData2() );
+		final List< BinMapper1d< UnsignedByteType >> mappers = new ArrayList< BinMapper1d< UnsignedByteType >>();
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 4, 8, true ) );
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 3, 6, false ) );
+		final HistogramNd< UnsignedByteType > dense = new HistogramNd< UnsignedByteType >( mappers );
+		final HistogramNd< UnsignedByteType > sparse = new HistogramNd< UnsignedByteType >( mappers, true );
+		dense.countData( data );
+		sparse.countData( data );
+		assertSameCounts( dense, sparse );
+		assertEquals( dense.dfd().modeCount(), sparse.dfd().modeCount() );
+		assertEquals( dense.dfd().modePositions().size(), sparse.dfd().modePositions().size() );
+
+		final HistogramNd< UnsignedByteType > copy = sparse.copy();
+		assertTrue( copy.dfd() instanceof SparseFrequencyDistribution );
+		assertEquals( sparse.dfd().totalValues(), copy.dfd().totalValues() );
+		final Cursor< LongType > counts = dense.dfd().localizingCursor();
+		final long[] binPos = new long[ 2 ];
+		while ( counts.hasNext() )
+		{
+			counts.fwd();
+			counts.localize( binPos );
+			assertEquals( counts.get().get(), copy.dfd().frequency( binPos ) );
+		}
+		copy.dfd().resetCounters();
+		assertEquals( 0, copy.dfd().totalValues() );
+		assertSameCounts( dense, sparse );
+		copy.addData( data );
+		final long valueCount = dense.valueCount();
+		dense.merge( copy );
+		sparse.merge( copy );
+		assertEquals( 2 * valueCount, dense.valueCount() );
+		assertSameCounts( dense, sparse );
+
+		for ( int d = 0; d < 2; d++ )
+		{
+			assertEquals( dense.dfd().meanBin( d ), sparse.dfd().meanBin( d ), 1e-12 );
+			assertEquals( dense.dfd().varianceBin( d ), sparse.dfd().varianceBin( d ), 1e-12 );
+			for ( final double p : new double[] { 0, 0.3, 0.5, 1 } )
+				assertEquals( dense.percentileBin( d, p ), sparse.percentileBin( d, p ) );
+		}
+
+		sparse.subtractData( data );
+		sparse.subtractData( data );
+		assertEquals( 0, sparse.distributionCount() );
+		assertEquals( 0, ( ( SparseFrequencyDistribution ) sparse.dfd() ).occupiedBinCount() );
+	}
+
+	@Test( expected = UnsupportedOperationException.class )
+	public void testSparseCountsAreReadOnly()
+	{
+		final SparseFrequencyDistribution dfd = new SparseFrequencyDistribution( new long[] { 4, 3 } );
+		final Cursor< LongType > cursor = dfd.cursor();
+		cursor.next().set( 5 );
+	}
+
+	@Test
+	public void testSparseHighDimensional()
+	{
+		final Random rnd = new Random( 1 );
+		final int n = 4;
+		final long[] dims = new long[] { 100, 100 };
+		final List< Iterable< UnsignedByteType >> data =
+				new ArrayList< Iterable< UnsignedByteType >>();
+		for ( int d = 0; d < n; d++ )
+		{
+			final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( dims, new UnsignedByteType() );
+			for ( final UnsignedByteType t : img )
+				t.set( rnd.nextInt( 256 ) );
+			data.add( img );
+		}
+
+		// 256^4 bins, which would not fit into a dense distribution
+		final List< BinMapper1d< UnsignedByteType >> mappers = new ArrayList< BinMapper1d< UnsignedByteType >>();
+		for ( int d = 0; d < n; d++ )
+			mappers.add( new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		final HistogramNd< UnsignedByteType > hist = new HistogramNd< UnsignedByteType >( mappers, true );
+		hist.countData( data );
+
+		assertEquals( 1l << 32, hist.getBinCount() );
+		assertEquals( 100 * 100, hist.distributionCount() );
+		final SparseFrequencyDistribution dfd = ( SparseFrequencyDistribution ) hist.dfd();
+		assertTrue( dfd.occupiedBinCount() <= 100 * 100 );
+
+		final HistogramNd< UnsignedByteType > parallel = new HistogramNd< UnsignedByteType >( mappers, true );
+		parallel.countDataParallel( data );
+		assertEquals( 100 * 100, parallel.distributionCount() );
+		assertEquals( dfd.occupiedBinCount(), ( ( SparseFrequencyDistribution ) parallel.dfd() ).occupiedBinCount() );
+
+		final List< Iterator< UnsignedByteType >> iters = new ArrayList< Iterator< UnsignedByteType >>();
+		for ( final Iterable< UnsignedByteType > d : data )
+			iters.add( d.iterator() );
+		final long[] pos = new long[ n ];
+		while ( iters.get( 0 ).hasNext() )
+		{
+			for ( int d = 0; d < n; d++ )
+				pos[ d ] = iters.get( d ).next().get();
+			assertTrue( hist.frequency( pos ) > 0 );
+			hist.decrement( pos );
+		}
+		assertEquals( 0, hist.distributionCount() );
+		assertEquals( 0, dfd.occupiedBinCount() );
+	}
+
+	private static void assertSameCounts( final HistogramNd< ? > expected, final HistogramNd< ? > actual )
+	{
+		assertEquals( expected.getBinCount(), actual.getBinCount() );
+		assertEquals( expected.totalCount(), actual.totalCount() );
+		assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+		assertEquals( expected.valueCount(), actual.valueCount() );
+		assertEquals( expected.lowerTailCount(), actual.lowerTailCount() );
+		assertEquals( expected.upperTailCount(), actual.upperTailCount() );
+		for ( int d = 0; d < expected.numDimensions(); d++ )
+		{
+			assertEquals( expected.valueCount( d ), actual.valueCount( d ) );
+			assertEquals( expected.lowerTailCount( d ), actual.lowerTailCount( d ) );
+			assertEquals( expected.upperTailCount( d ), actual.upperTailCount( d ) );
+			for ( long v = 0; v < expected.dimension( d ); v++ )
+				assertEquals( expected.distributionCount( d, v ), actual.distributionCount( d, v ) );
+		}
+		final Cursor< LongType > c = expected.localizingCursor();
+		final Cursor< LongType > a = actual.localizingCursor();
+		final long[] pos = new long[ expected.numDimensions() ];
+		while ( c.hasNext() )
+		{
+			final long count = c.next().get();
+			assertEquals( count, a.next().get() );
+			c.localize( pos );
+			assertEquals( count, actual.frequency( pos ) );
+		}
+	}
+
 	@Test
 	public void testUnconstrainedNoTails()
 	{
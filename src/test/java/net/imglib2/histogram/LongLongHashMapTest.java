@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LongLongHashMap}.
+ * 
+ * @author agent
+ */
+public class LongLongHashMapTest
+{
+	@Test
+	public void testRandomOperations()
+	{
+		final Random random = new Random( 1 );
+		final LongLongHashMap map = new LongLongHashMap();
+		final Map< Long, Long > expected = new HashMap< Long, Long >();
+		for ( int i = 0; i < 100000; ++i )
+		{
+			// few distinct keys, such that entries are often removed again
+			final long key = random.nextInt( 2000 ) * 1000003l;
+			final long delta = random.nextInt( 3 ) - 1;
+			if ( random.nextInt( 10 ) == 0 )
+			{
+				map.put( key, 0 );
+				expected.remove( key );
+			}
+			else
+			{
+				final Long previous = expected.get( key );
+				final long value = ( previous == null ? 0 : previous ) + delta;
+				assertEquals( value, map.add( key, delta ) );
+				if ( value == 0 )
+					expected.remove( key );
+				else
+					expected.put( key, value );
+			}
+			if ( i % 1000 == 0 )
+				assertSameEntries( expected, map );
+		}
+		assertSameEntries( expected, map );
+		map.clear();
+		assertEquals( 0, map.size() );
+		assertEquals( 0, map.get( 0 ) );
+	}
+
+	private static void assertSameEntries( final Map< Long, Long > expected, final LongLongHashMap map )
+	{
+		assertEquals( expected.size(), map.size() );
+		for ( final Map.Entry< Long, Long > e : expected.entrySet() )
+			assertEquals( e.getValue().longValue(), map.get( e.getKey() ) );
+		int occupied = 0;
+		for ( int i = 0; i < map.capacity(); ++i )
+		{
+			if ( map.keyAt( i ) >= 0 )
+			{
+				++occupied;
+				assertEquals( expected.get( map.keyAt( i ) ).longValue(), map.valueAt( i ) );
+			}
+		}
+		assertEquals( expected.size(), occupied );
+	}
+}
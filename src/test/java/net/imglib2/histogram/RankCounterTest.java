@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RankCounter}.
+ * 
+ * @author agent
+ */
+public class RankCounterTest
+{
+	@Test
+	public void testRanks()
+	{
+		final Random random = new Random( 1 );
+		for ( final int binCount : new int[] { 1, 2, 7, 64, 100 } )
+		{
+			final RankCounter counter = new RankCounter( binCount );
+			final long[] counts = new long[ binCount ];
+			for ( int i = 0; i < 1000; ++i )
+			{
+				final int bin = random.nextInt( binCount );
+				if ( counts[ bin ] > 0 && random.nextBoolean() )
+				{
+					counter.decrement( bin );
+					--counts[ bin ];
+				}
+				else
+				{
+					counter.increment( bin );
+					++counts[ bin ];
+				}
+				assertSameCounts( counts, counter );
+			}
+		}
+	}
+
+	@Test
+	public void testPercentile()
+	{
+		final RankCounter counter = new RankCounter( 10 );
+		assertEquals( -1, counter.binOfPercentile( 0.5 ) );
+		counter.add( 2, 3 );
+		counter.add( 5, 1 );
+		counter.add( 9, 3 );
+		assertEquals( 2, counter.binOfPercentile( 0 ) );
+		assertEquals( 5, counter.binOfPercentile( 0.5 ) );
+		assertEquals( 9, counter.binOfPercentile( 1 ) );
+		counter.reset();
+		assertEquals( 0, counter.totalCount() );
+		assertEquals( -1, counter.binOfRank( 0 ) );
+	}
+
+	private static void assertSameCounts( final long[] counts, final RankCounter counter )
+	{
+		long below = 0;
+		long total = 0;
+		for ( final long c : counts )
+			total += c;
+		assertEquals( total, counter.totalCount() );
+		for ( int bin = 0; bin < counts.length; ++bin )
+		{
+			assertEquals( counts[ bin ], counter.frequency( bin ) );
+			assertEquals( below, counter.countBelow( bin ) );
+			for ( long r = below; r < below + counts[ bin ]; ++r )
+				assertEquals( bin, counter.binOfRank( r ) );
+			below += counts[ bin ];
+		}
+		assertEquals( -1, counter.binOfRank( total ) );
+	}
+}
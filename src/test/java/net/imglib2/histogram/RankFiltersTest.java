@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SlidingWindowHistogram} and {@link RankFilters}.
+ * 
+ * @author agent
+ */
+public class RankFiltersTest
+{
+	private static final int MAX_VALUE = 50;
+
+	private static Img< UnsignedShortType > randomImg( final long... dimensions )
+	{
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( dimensions );
+		final Random random = new Random( 1 );
+		for ( final UnsignedShortType t : img )
+			t.set( random.nextInt( MAX_VALUE ) );
+		return img;
+	}
+
+	@Test
+	public void testMoveMatchesRecount()
+	{
+		final Img< UnsignedShortType > img = randomImg( 20, 15, 10 );
+		final RandomAccessible< UnsignedShortType > source = Views.extendMirrorSingle( img );
+		final Integer1dBinMapper< UnsignedShortType > mapper = new Integer1dBinMapper< UnsignedShortType >( 10, 20, false );
+		final long[] radius = { 2, 1, 3 };
+		final SlidingWindowHistogram< UnsignedShortType > moving = new SlidingWindowHistogram< UnsignedShortType >( source, mapper, radius );
+		final SlidingWindowHistogram< UnsignedShortType > fixed = new SlidingWindowHistogram< UnsignedShortType >( source, mapper, radius );
+		final long[] position = new long[ 3 ];
+		final Random random = new Random( 2 );
+		for ( int i = 0; i < 200; ++i )
+		{
+			final int d = random.nextInt( 3 );
+			if ( random.nextBoolean() )
+			{
+				moving.fwd( d );
+				++position[ d ];
+			}
+			else
+			{
+				moving.bck( d );
+				--position[ d ];
+			}
+			fixed.setPosition( position );
+			assertEquals( fixed.valueCount(), moving.valueCount() );
+			assertEquals( fixed.ignoredCount(), moving.ignoredCount() );
+			assertEquals( 7 * 3 * 5, moving.valueCount() + moving.ignoredCount() );
+			for ( int bin = 0; bin < mapper.getBinCount(); ++bin )
+				assertEquals( fixed.frequency( bin ), moving.frequency( bin ) );
+		}
+	}
+
+	@Test
+	public void testMedian()
+	{
+		assertFilter( 0.5, 2, 1 );
+		assertFilter( 0.5, 0, 3 );
+		assertFilter( 0.5, 1, 1, 1 );
+	}
+
+	@Test
+	public void testMinMax()
+	{
+		assertFilter( 0, 2, 2 );
+		assertFilter( 1, 2, 2 );
+		assertFilter( 0.25, 1, 2 );
+	}
+
+	@Test
+	public void testUnextendedSourceInteriorTarget()
+	{
+		final Img< UnsignedShortType > img = randomImg( 20, 20 );
+		final Img< UnsignedShortType > result = ArrayImgs.unsignedShorts( 20, 20 );
+		final long[] radius = { 3, 3 };
+		final Integer1dBinMapper< UnsignedShortType > mapper = new Integer1dBinMapper< UnsignedShortType >( 0, 256, false );
+		RankFilters.median( img, Views.interval( result, new long[] { 3, 3 }, new long[] { 16, 16 } ), radius, mapper );
+
+		final Img< UnsignedShortType > expected = ArrayImgs.unsignedShorts( 20, 20 );
+		RankFilters.median( Views.extendBorder( img ), Views.interval( expected, new long[] { 3, 3 }, new long[] { 16, 16 } ), radius, mapper );
+		final Cursor< UnsignedShortType > e = expected.cursor();
+		final Cursor< UnsignedShortType > r = result.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), r.next().get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testSourceIsTarget()
+	{
+		final Img< UnsignedShortType > img = randomImg( 20, 20 );
+		RankFilters.median( img, img, new long[] { 1, 1 }, new Integer1dBinMapper< UnsignedShortType >( 0, MAX_VALUE, false ) );
+	}
+
+	@Test
+	public void testEmptyTarget()
+	{
+		final Img< UnsignedShortType > img = randomImg( 20, 20 );
+		final Img< UnsignedShortType > result = ArrayImgs.unsignedShorts( 20, 20 );
+		RankFilters.median( Views.extendBorder( img ), Views.interval( result, new long[] { 0, 0 }, new long[] { -1, 19 } ), new long[] { 1, 1 }, new Integer1dBinMapper< UnsignedShortType >( 0, MAX_VALUE, false ) );
+	}
+
+	private static void assertFilter( final double p, final long... radius )
+	{
+		final long[] dimensions = new long[ radius.length ];
+		Arrays.fill( dimensions, 300 );
+		dimensions[ radius.length - 1 ] = 9;
+		final Img< UnsignedShortType > img = randomImg( dimensions );
+		final RandomAccessible< UnsignedShortType > source = Views.extendBorder( img );
+		final Img< UnsignedShortType > result = ArrayImgs.unsignedShorts( dimensions );
+		final Integer1dBinMapper< UnsignedShortType > mapper = new Integer1dBinMapper< UnsignedShortType >( 0, MAX_VALUE, false );
+		RankFilters.percentile( source, result, radius, mapper, p );
+
+		final int n = radius.length;
+		final RandomAccess< UnsignedShortType > in = source.randomAccess();
+		final Cursor< UnsignedShortType > c = result.localizingCursor();
+		final long[] position = new long[ n ];
+		final long[] offset = new long[ n ];
+		int size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= 2 * radius[ d ] + 1;
+		final int[] values = new int[ size ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			for ( int i = 0; i < size; ++i )
+			{
+				int j = i;
+				for ( int d = 0; d < n; ++d )
+				{
+					final int w = ( int ) ( 2 * radius[ d ] + 1 );
+					offset[ d ] = position[ d ] + j % w - radius[ d ];
+					j /= w;
+				}
+				in.setPosition( offset );
+				values[ i ] = in.get().get();
+			}
+			Arrays.sort( values );
+			assertEquals( values[ ( int ) ( p * ( size - 1 ) ) ], c.get().get() );
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.display.projector.specialized.ArrayImgXYShortProjector;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.histogram.Integer1dBinMapper;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.array.BufferArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.BufferCellImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.BufferPlanarImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for images on {@link BufferAccess buffer accesses}.
+ * 
+ * @author agent
+ */
+public class BufferAccessTest
+{
+	@Test
+	public void testBufferArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "BufferArrayImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new BufferArrayImgFactory< FloatType >(), new ArrayImgFactory< FloatType >() ) );
+		}
+	}
+
+	@Test
+	public void testBufferPlanarImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "BufferPlanarImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new BufferPlanarImgFactory< FloatType >(), new PlanarImgFactory< FloatType >() ) );
+		}
+	}
+
+	@Test
+	public void testBufferCellImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "BufferCellImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new BufferCellImgFactory< FloatType >( 5 ), new CellImgFactory< FloatType >( 5 ) ) );
+		}
+	}
+
+	@Test
+	public void testWrapBuffer()
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( 4 + 6 * 4 ).order( ByteOrder.BIG_ENDIAN );
+		buffer.putInt( -1 );
+		for ( int i = 0; i < 6; ++i )
+			buffer.putInt( i * 10 );
+		buffer.position( 4 );
+
+		final ArrayImg< IntType, IntBufferAccess > img = ArrayImgs.ints( buffer, 3, 2 );
+		int i = 0;
+		for ( final IntType t : img )
+			assertEquals( 10 * i++, t.get() );
+
+		final RandomAccess< IntType > access = img.randomAccess();
+		access.setPosition( new long[] { 1, 1 } );
+		access.get().set( 42 );
+		assertEquals( 42, buffer.getInt( 4 + 4 * 4 ) );
+	}
+
+	@Test
+	public void testSerialization() throws Exception
+	{
+		final FloatBufferAccess access = new FloatBufferAccess( 10 );
+		for ( int i = 0; i < 10; ++i )
+			access.setValue( i, i * 0.5f );
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream( bytes );
+		out.writeObject( access );
+		out.close();
+		final ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+		final FloatBufferAccess copy = ( FloatBufferAccess ) in.readObject();
+
+		assertEquals( 10, copy.size() );
+		assertEquals( access.getBuffer().order(), copy.getBuffer().order() );
+		for ( int i = 0; i < 10; ++i )
+			assertEquals( i * 0.5f, copy.getValue( i ), 0 );
+	}
+
+	/**
+	 * Planes of a buffer-backed PlanarImg are not array accesses. Code that
+	 * reads planes as Java arrays must fall back to the generic path.
+	 */
+	@Test
+	public void testHistogramOnBufferPlanarImg()
+	{
+		final Img< UnsignedByteType > img = new BufferPlanarImgFactory< UnsignedByteType >().create( new long[] { 10, 8, 3 }, new UnsignedByteType() );
+		int i = 0;
+		for ( final UnsignedByteType t : img )
+			t.set( i++ % 7 );
+
+		final Histogram1d< UnsignedByteType > histogram = new Histogram1d< UnsignedByteType >( img, new Integer1dBinMapper< UnsignedByteType >( 0, 7, false ) );
+		assertEquals( 240, histogram.totalCount() );
+		assertEquals( 35, histogram.frequency( 0 ) );
+		assertEquals( 34, histogram.frequency( 6 ) );
+	}
+
+	/**
+	 * Specialized projectors read storage arrays directly, but must also work
+	 * on buffer-backed images that reach them through unchecked casts.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Test
+	public void testSpecializedProjectorOnBuffers()
+	{
+		final long[] dims = { 10, 8, 3 };
+		final ArrayImg< ShortType, ShortArray > arraySource = ArrayImgs.shorts( dims );
+		final ArrayImg< ShortType, ShortArray > bufferSource = ( ArrayImg ) new BufferArrayImgFactory< ShortType >().create( dims, new ShortType() );
+		final Cursor< ShortType > as = arraySource.cursor();
+		final Cursor< ShortType > bs = bufferSource.cursor();
+		for ( int i = 0; as.hasNext(); ++i )
+		{
+			as.next().set( ( short ) ( i * 37 - 400 ) );
+			bs.next().set( ( short ) ( i * 37 - 400 ) );
+		}
+
+		final ArrayImg< UnsignedShortType, ShortArray > arrayTarget = ArrayImgs.unsignedShorts( 10, 8 );
+		final ArrayImg< UnsignedShortType, ShortArray > bufferTarget = ( ArrayImg ) new BufferArrayImgFactory< UnsignedShortType >().create( new long[] { 10, 8 }, new UnsignedShortType() );
+		final ArrayImgXYShortProjector< ShortType > expected = new ArrayImgXYShortProjector< ShortType >( arraySource, arrayTarget, 2, 0 );
+		final ArrayImgXYShortProjector< ShortType > actual = new ArrayImgXYShortProjector< ShortType >( bufferSource, bufferTarget, 2, 0 );
+		expected.setPosition( 2, 2 );
+		actual.setPosition( 2, 2 );
+		expected.map();
+		actual.map();
+
+		final Cursor< UnsignedShortType > e = arrayTarget.cursor();
+		final Cursor< UnsignedShortType > a = bufferTarget.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get() );
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.MappedArrayImgs;
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.img.planar.MappedPlanarImgs;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for images on {@link MappedFile memory-mapped files}.
+ * 
+ * @author agent
+ */
+public class MappedFileTest
+{
+	private static File createFile( final ByteOrder order, final int offset, final int numShorts ) throws IOException
+	{
+		final File file = File.createTempFile( "mapped", ".raw" );
+		file.deleteOnExit();
+		final ByteBuffer data = ByteBuffer.allocate( offset + 2 * numShorts ).order( order );
+		data.position( offset );
+		for ( int i = 0; i < numShorts; ++i )
+			data.putShort( ( short ) ( 1000 + i ) );
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		raf.write( data.array() );
+		raf.close();
+		return file;
+	}
+
+	@Test
+	public void testReadArrayImg() throws IOException
+	{
+		for ( final ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN } )
+		{
+			final File file = createFile( order, 16, 4 * 3 * 2 );
+			final MappedFile mapped = new MappedFile( file, MappedFile.Mode.READ_ONLY, order );
+			final ArrayImg< UnsignedShortType, ShortAccess > img = MappedArrayImgs.unsignedShorts( mapped, 16, 4, 3, 2 );
+			mapped.close();
+
+			int i = 0;
+			for ( final UnsignedShortType t : img )
+				assertEquals( 1000 + i++, t.get() );
+			assertEquals( 24, i );
+		}
+	}
+
+	@Test
+	public void testReadPlanarImg() throws IOException
+	{
+		final File file = createFile( ByteOrder.LITTLE_ENDIAN, 2, 4 * 3 * 2 );
+		final MappedFile mapped = new MappedFile( file, MappedFile.Mode.READ_ONLY, ByteOrder.LITTLE_ENDIAN );
+		final PlanarImg< UnsignedShortType, ShortBufferAccess > img = MappedPlanarImgs.unsignedShorts( mapped, 2, 4, 3, 2 );
+		mapped.close();
+
+		assertEquals( 2, img.numSlices() );
+		final RandomAccess< UnsignedShortType > access = img.randomAccess();
+		access.setPosition( new long[] { 1, 2, 1 } );
+		assertEquals( 1000 + 12 + 2 * 4 + 1, access.get().get() );
+	}
+
+	@Test( expected = ReadOnlyBufferException.class )
+	public void testReadOnly() throws IOException
+	{
+		final File file = createFile( ByteOrder.BIG_ENDIAN, 0, 4 );
+		final MappedFile mapped = new MappedFile( file, MappedFile.Mode.READ_ONLY, ByteOrder.BIG_ENDIAN );
+		final ArrayImg< UnsignedShortType, ShortAccess > img = MappedArrayImgs.unsignedShorts( mapped, 0, 4 );
+		mapped.close();
+		img.firstElement().set( 1 );
+	}
+
+	@Test( expected = IOException.class )
+	public void testReadOnlyBeyondEnd() throws IOException
+	{
+		final File file = createFile( ByteOrder.BIG_ENDIAN, 0, 4 );
+		final MappedFile mapped = new MappedFile( file, MappedFile.Mode.READ_ONLY, ByteOrder.BIG_ENDIAN );
+		try
+		{
+			MappedArrayImgs.unsignedShorts( mapped, 0, 5 );
+		}
+		finally
+		{
+			mapped.close();
+		}
+	}
+
+	@Test
+	public void testReadWrite() throws IOException
+	{
+		final File file = File.createTempFile( "mapped", ".raw" );
+		file.deleteOnExit();
+		final MappedFile mapped = new MappedFile( file, MappedFile.Mode.READ_WRITE, ByteOrder.LITTLE_ENDIAN );
+		final ArrayImg< FloatType, FloatAccess > img = MappedArrayImgs.floats( mapped, 8, 5, 2 );
+		float v = 0;
+		for ( final FloatType t : img )
+			t.set( v++ * 0.25f );
+		mapped.close();
+
+		assertEquals( 8 + 10 * 4, file.length() );
+		final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+		final byte[] bytes = new byte[ 10 * 4 ];
+		raf.seek( 8 );
+		raf.readFully( bytes );
+		raf.close();
+		final ByteBuffer data = ByteBuffer.wrap( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+		for ( int i = 0; i < 10; ++i )
+			assertEquals( i * 0.25f, data.getFloat(), 0 );
+	}
+
+	@Test
+	public void testWindowedAccess() throws IOException
+	{
+		final File file = createFile( ByteOrder.BIG_ENDIAN, 0, 20 );
+		final MappedFile mapped = new MappedFile( file, MappedFile.Mode.READ_WRITE, ByteOrder.BIG_ENDIAN );
+		// windows of 8 shorts, the last window holds the remaining 4
+		final ByteBuffer[] windows = mapped.mapWindows( 0, 40, 16 );
+		assertEquals( 3, windows.length );
+		final WindowedShortBufferAccess access = new WindowedShortBufferAccess( windows, 3 );
+		for ( int i = 0; i < 20; ++i )
+			assertEquals( 1000 + i, access.getValue( i ) );
+		access.setValue( 17, ( short ) 7 );
+		assertEquals( 7, windows[ 2 ].getShort( 2 ) );
+		mapped.close();
+	}
+}
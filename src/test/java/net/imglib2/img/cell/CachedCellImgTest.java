@@ -0,0 +1,233 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachedCellImg}.
+ * 
+ * @author agent
+ */
+public class CachedCellImgTest
+{
+	/**
+	 * Stores written cells by their min position. Unknown cells are loaded
+	 * with zeros.
+	 */
+	static class MapStore implements CellLoader< FloatArray >, CellWriter< FloatArray >
+	{
+		final HashMap< String, float[] > store = new HashMap< String, float[] >();
+
+		int numLoads = 0;
+
+		int numWrites = 0;
+
+		@Override
+		public synchronized void load( final DefaultCell< FloatArray > cell )
+		{
+			++numLoads;
+			final float[] data = store.get( key( cell ) );
+			if ( data != null )
+				System.arraycopy( data, 0, cell.getData().getCurrentStorageArray(), 0, data.length );
+		}
+
+		@Override
+		public synchronized void write( final DefaultCell< FloatArray > cell )
+		{
+			++numWrites;
+			store.put( key( cell ), cell.getData().getCurrentStorageArray().clone() );
+		}
+
+		private static String key( final DefaultCell< ? > cell )
+		{
+			final long[] min = new long[ cell.n ];
+			cell.min( min );
+			return Util.printCoordinates( min );
+		}
+	}
+
+	/**
+	 * Loads cells with the flattened global index of each pixel.
+	 */
+	static class IndexLoader implements CellLoader< FloatArray >
+	{
+		final long[] dimensions;
+
+		final HashSet< Long > loadedCells = new HashSet< Long >();
+
+		IndexLoader( final long[] dimensions )
+		{
+			this.dimensions = dimensions;
+		}
+
+		@Override
+		public synchronized void load( final DefaultCell< FloatArray > cell )
+		{
+			final int n = dimensions.length;
+			final long[] position = new long[ n ];
+			final float[] data = cell.getData().getCurrentStorageArray();
+			for ( int i = 0; i < data.length; ++i )
+			{
+				cell.indexToGlobalPosition( i, position );
+				data[ i ] = IntervalIndexer.positionToIndex( position, dimensions );
+			}
+			loadedCells.add( cell.min( 0 ) + 1000 * cell.min( 1 ) );
+		}
+	}
+
+	@Test
+	public void testCachedCellImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			if ( dim[ i ].length > 1 )
+			{
+				final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( new int[] { 5 }, new MapStore(), new MapStore(), 1024 );
+				assertTrue( "ArrayImg vs CachedCellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), factory ) );
+			}
+		}
+	}
+
+	@Test
+	public void testLoadsOnlyAccessedCells()
+	{
+		final long[] dimensions = new long[] { 100, 100 };
+		final IndexLoader loader = new IndexLoader( dimensions );
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( new int[] { 10, 10 }, loader ).create( dimensions, new FloatType() );
+		assertEquals( 0, loader.loadedCells.size() );
+
+		// a new access points to the cell at the origin
+		final RandomAccess< FloatType > access = img.randomAccess();
+		assertEquals( 1, loader.loadedCells.size() );
+		access.setPosition( new long[] { 15, 23 } );
+		assertEquals( 2315, access.get().get(), 0 );
+		access.setPosition( new long[] { 99, 99 } );
+		assertEquals( 9999, access.get().get(), 0 );
+		assertEquals( 3, loader.loadedCells.size() );
+
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			assertEquals( IntervalIndexer.positionToIndex( new long[] { cursor.getLongPosition( 0 ), cursor.getLongPosition( 1 ) }, dimensions ), cursor.get().get(), 0 );
+		}
+		assertEquals( 100, loader.loadedCells.size() );
+	}
+
+	@Test
+	public void testWriteBack()
+	{
+		final long[] dimensions = new long[] { 40, 30 };
+		final MapStore store = new MapStore();
+		// budget of 2 cells of 10x10 floats
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( new int[] { 10, 10 }, store, store, 800 ).create( dimensions, new FloatType() );
+
+		// read all cells: nothing is modified, so nothing is written
+		for ( final FloatType t : img )
+			t.get();
+		assertEquals( 12, store.numLoads );
+		assertEquals( 0, store.numWrites );
+
+		// modify one pixel
+		final RandomAccess< FloatType > access = img.randomAccess();
+		access.setPosition( new long[] { 15, 5 } );
+		access.get().set( 42 );
+
+		// move the access off the modified cell, which unpins it. Then evict
+		// all cells by reading the image twice. (The finished cursors keep
+		// the last cell pinned until they are garbage collected.)
+		access.setPosition( new long[] { 0, 0 } );
+		for ( int k = 0; k < 2; ++k )
+			for ( final FloatType t : img )
+				t.get();
+		assertEquals( 1, store.numWrites );
+
+		img.getCells().getCache().invalidateAll();
+		access.setPosition( new long[] { 15, 5 } );
+		assertEquals( 42, access.get().get(), 0 );
+		access.setPosition( new long[] { 14, 5 } );
+		assertEquals( 0, access.get().get(), 0 );
+	}
+
+	@Test
+	public void testPinnedCellIsNotEvicted()
+	{
+		final CellCacheFactory[] cacheFactories = { new LruCellCacheFactory( 800 ), new ConcurrentCellCacheFactory( 800 ) };
+		for ( final CellCacheFactory cacheFactory : cacheFactories )
+		{
+			final long[] dimensions = new long[] { 40, 30 };
+			final MapStore store = new MapStore();
+			// budget of 2 cells of 10x10 floats
+			final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( new int[] { 10, 10 }, store, store, cacheFactory ).create( dimensions, new FloatType() );
+
+			final RandomAccess< FloatType > access = img.randomAccess();
+			access.setPosition( new long[] { 35, 25 } );
+			access.get().set( 1 );
+			for ( int k = 0; k < 2; ++k )
+				for ( final FloatType t : img )
+					t.get();
+
+			// the access still points into its cell, so this write is kept
+			access.setPosition( new long[] { 36, 25 } );
+			access.get().set( 2 );
+			access.setPosition( new long[] { 0, 0 } );
+			img.getCells().getCache().invalidateAll();
+
+			final RandomAccess< FloatType > check = img.randomAccess();
+			check.setPosition( new long[] { 35, 25 } );
+			assertEquals( 1, check.get().get(), 0 );
+			check.setPosition( new long[] { 36, 25 } );
+			assertEquals( 2, check.get().get(), 0 );
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConcurrentCellCache}.
+ * 
+ * @author agent
+ */
+public class ConcurrentCellCacheTest
+{
+	private static final long[] dimensions = new long[] { 60, 50 };
+
+	/**
+	 * Loads cells with the flattened global index of each pixel, and counts
+	 * how often every cell was loaded.
+	 */
+	static class SlowIndexLoader implements CellLoader< FloatArray >
+	{
+		final ConcurrentHashMap< Long, AtomicInteger > loads = new ConcurrentHashMap< Long, AtomicInteger >();
+
+		@Override
+		public void load( final DefaultCell< FloatArray > cell )
+		{
+			final long key = cell.min( 0 ) + 1000 * cell.min( 1 );
+			loads.putIfAbsent( key, new AtomicInteger() );
+			loads.get( key ).incrementAndGet();
+			try
+			{
+				Thread.sleep( 1 );
+			}
+			catch ( final InterruptedException e )
+			{}
+			final long[] position = new long[ 2 ];
+			final float[] data = cell.getData().getCurrentStorageArray();
+			for ( int i = 0; i < data.length; ++i )
+			{
+				cell.indexToGlobalPosition( i, position );
+				data[ i ] = IntervalIndexer.positionToIndex( position, dimensions );
+			}
+		}
+	}
+
+	private static void readConcurrently( final CachedCellImg< FloatType, ? > img, final int numThreads ) throws InterruptedException
+	{
+		final AtomicInteger errors = new AtomicInteger();
+		final ArrayList< Thread > threads = new ArrayList< Thread >();
+		for ( int t = 0; t < numThreads; ++t )
+		{
+			final int offset = t;
+			threads.add( new Thread()
+			{
+				@Override
+				public void run()
+				{
+					final RandomAccess< FloatType > access = img.randomAccess();
+					final long[] position = new long[ 2 ];
+					for ( long i = 0; i < img.size(); ++i )
+					{
+						final long index = ( i * 7 + offset ) % img.size();
+						IntervalIndexer.indexToPosition( index, dimensions, position );
+						access.setPosition( position );
+						if ( access.get().get() != index )
+							errors.incrementAndGet();
+					}
+				}
+			} );
+		}
+		for ( final Thread thread : threads )
+			thread.start();
+		for ( final Thread thread : threads )
+			thread.join();
+		assertEquals( 0, errors.get() );
+	}
+
+	@Test
+	public void testLoadsAreDeduplicated() throws InterruptedException
+	{
+		final SlowIndexLoader loader = new SlowIndexLoader();
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( new int[] { 10, 10 }, loader, null, new ConcurrentCellCacheFactory( Long.MAX_VALUE ) ).create( dimensions, new FloatType() );
+		readConcurrently( img, 8 );
+
+		assertEquals( 30, loader.loads.size() );
+		for ( final AtomicInteger count : loader.loads.values() )
+			assertEquals( 1, count.get() );
+
+		final ConcurrentCellCache< ? > cache = ( ConcurrentCellCache< ? > ) img.getCells().getCache();
+		assertEquals( 30, cache.getMissCount() );
+		assertEquals( 0, cache.getEvictionCount() );
+		assertEquals( 30, cache.getCellCount() );
+		assertEquals( 30 * 400, cache.sizeInBytes() );
+		assertTrue( cache.getHitCount() > 0 );
+	}
+
+	@Test
+	public void testEviction() throws InterruptedException
+	{
+		final SlowIndexLoader loader = new SlowIndexLoader();
+		// budget of 5 cells of 10x10 floats
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( new int[] { 10, 10 }, loader, null, new ConcurrentCellCacheFactory( 2000 ) ).create( dimensions, new FloatType() );
+		readConcurrently( img, 4 );
+
+		final ConcurrentCellCache< ? > cache = ( ConcurrentCellCache< ? > ) img.getCells().getCache();
+		assertTrue( cache.getEvictionCount() > 0 );
+		assertEquals( cache.getMissCount() - cache.getEvictionCount(), cache.getCellCount() );
+		assertEquals( cache.getCellCount() * 400, cache.sizeInBytes() );
+	}
+
+	@Test
+	public void testWriteBack()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			if ( dim[ i ].length > 1 )
+			{
+				final CachedCellImgTest.MapStore store = new CachedCellImgTest.MapStore();
+				final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( new int[] { 5 }, store, store, new ConcurrentCellCacheFactory( 1024 ) );
+				assertTrue( "ArrayImg vs CachedCellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), factory ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PagedArrayImg}.
+ * 
+ * @author agent
+ */
+public class PagedArrayImgTest
+{
+	@Test
+	public void testPagedArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "PagedArrayImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new PagedArrayImgFactory< FloatType >( 6 ), new ArrayImgFactory< FloatType >() ) );
+		}
+	}
+
+	@Test
+	public void testSameAsArrayImg()
+	{
+		final long[] dim = { 13, 7, 5 };
+		final ArrayImg< IntType, IntArray > reference = ArrayImgs.ints( dim );
+		int v = 0;
+		for ( final IntType t : reference )
+			t.set( v++ );
+		final PagedArrayImg< IntType, ? > img = new PagedArrayImgFactory< IntType >( 6 ).create( dim, new IntType() );
+		v = 0;
+		for ( final IntType t : img )
+			t.set( v++ );
+		assertEquals( ( 13 * 7 * 5 + 63 ) / 64, img.numPages() );
+
+		final Cursor< IntType > c = img.localizingCursor();
+		final RandomAccess< IntType > ra = reference.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			ra.setPosition( c );
+			assertEquals( ra.get().get(), c.get().get() );
+		}
+
+		final Random random = new Random( 1 );
+		final RandomAccess< IntType > pa = img.randomAccess();
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dim[ d ] );
+			pa.setPosition( pos );
+			ra.setPosition( pos );
+			assertEquals( ra.get().get(), pa.get().get() );
+
+			// move out of bounds and back across pages
+			pa.move( -100, 1 );
+			pa.move( 100, 1 );
+			final int d = random.nextInt( 3 );
+			if ( pos[ d ] + 1 < dim[ d ] )
+			{
+				pa.fwd( d );
+				ra.fwd( d );
+				assertEquals( ra.get().get(), pa.get().get() );
+			}
+		}
+	}
+
+	@Test
+	public void testJumpFwd()
+	{
+		final long[] dim = { 33, 9 };
+		final PagedArrayImg< IntType, ? > img = new PagedArrayImgFactory< IntType >( 6 ).create( dim, new IntType() );
+		int v = 0;
+		for ( final IntType t : img )
+			t.set( v++ );
+
+		for ( final Cursor< IntType > c : new Cursor[] { img.cursor(), img.localizingCursor() } )
+		{
+			c.jumpFwd( 0 );
+			c.jumpFwd( 1 );
+			assertEquals( 0, c.get().get() );
+			c.jumpFwd( 130 );
+			assertEquals( 130, c.get().get() );
+			assertEquals( 130 % 33, c.getLongPosition( 0 ) );
+			assertEquals( 130 / 33, c.getLongPosition( 1 ) );
+			final Cursor< IntType > copy = c.copyCursor();
+			copy.fwd();
+			assertEquals( 131, copy.get().get() );
+			int n = 131;
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				n++;
+			}
+			assertEquals( 33 * 9, n );
+		}
+	}
+
+	@Test
+	public void testBitType()
+	{
+		final long[] dim = { 100, 3 };
+		final PagedArrayImg< BitType, ? > img = new PagedArrayImgFactory< BitType >( 6 ).create( dim, new BitType() );
+		int i = 0;
+		for ( final BitType t : img )
+			t.set( i++ % 3 == 0 );
+		i = 0;
+		for ( final BitType t : img.copy() )
+			assertEquals( i++ % 3 == 0, t.get() );
+	}
+}
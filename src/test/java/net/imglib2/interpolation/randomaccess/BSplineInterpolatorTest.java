@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link BSplineInterpolator} and {@link BSplineCoefficients}.
+ * 
+ * @author agent
+ */
+public class BSplineInterpolatorTest
+{
+	private static Img< FloatType > randomImage( final Random rnd, final long... dimensions )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() * 100 );
+		return img;
+	}
+
+	/**
+	 * At integer positions, the interpolated value must be the source value.
+	 */
+	private static void assertInterpolating( final RandomAccessibleInterval< FloatType > source, final int order )
+	{
+		final RealRandomAccess< FloatType > interpolator = new BSplineInterpolatorFactory< FloatType >( order, false ).create( Views.extendBorder( source ) );
+		final Cursor< FloatType > c = Views.iterable( source ).localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			interpolator.setPosition( c );
+			assertEquals( c.get().get(), interpolator.get().get(), 1e-3 );
+		}
+	}
+
+	@Test
+	public void testInterpolating()
+	{
+		final Random rnd = new Random( 1 );
+		final long[][] sizes = { { 1 }, { 2 }, { 37 }, { 15, 9 }, { 8, 1, 5 }, { 7, 6, 5 } };
+		for ( final int order : new int[] { 1, 3, 5 } )
+			for ( final long[] dimensions : sizes )
+			{
+				final Img< FloatType > img = randomImage( rnd, dimensions );
+				assertInterpolating( img, order );
+				final long[] translation = new long[ dimensions.length ];
+				translation[ 0 ] = -3;
+				assertInterpolating( Views.translate( img, translation ), order );
+			}
+	}
+
+	/**
+	 * Cubic B-splines reproduce quadratic polynomials away from the border.
+	 */
+	@Test
+	public void testQuadratic()
+	{
+		final Img< DoubleType > img = new PlanarImgFactory< DoubleType >().create( new long[] { 40, 40, 3 }, new DoubleType() );
+		final Cursor< DoubleType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final double x = c.getDoublePosition( 0 );
+			final double y = c.getDoublePosition( 1 );
+			c.get().set( 0.1 * x * x - 0.3 * x * y + 2 * y + c.getDoublePosition( 2 ) );
+		}
+		final Random rnd = new Random( 2 );
+		final RealRandomAccess< DoubleType > interpolator = new BSplineInterpolatorFactory< DoubleType >().create( img );
+		final RealRandomAccess< DoubleType > copy = interpolator.copyRealRandomAccess();
+		for ( int i = 0; i < 1000; ++i )
+		{
+			final double x = 15 + rnd.nextDouble() * 10;
+			final double y = 15 + rnd.nextDouble() * 10;
+			final double z = rnd.nextDouble() * 2;
+			interpolator.setPosition( new double[] { x, y, z } );
+			copy.setPosition( interpolator );
+			// along z, cubic B-spline interpolation of a constant step is
+			// only exact at integer positions
+			final double expected = 0.1 * x * x - 0.3 * x * y + 2 * y;
+			final double zInterpolated = interpolator.get().get() - expected;
+			assertEquals( z, zInterpolated, 0.2 );
+			assertEquals( interpolator.get().get(), copy.get().get(), 0 );
+		}
+		for ( int i = 0; i < 1000; ++i )
+		{
+			final double x = 15 + rnd.nextDouble() * 10;
+			final double y = 15 + rnd.nextDouble() * 10;
+			interpolator.setPosition( new double[] { x, y, 1 } );
+			assertEquals( 0.1 * x * x - 0.3 * x * y + 2 * y + 1, interpolator.get().get(), 1e-6 );
+		}
+	}
+
+	@Test
+	public void testClipping()
+	{
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( new long[] { 16 }, new UnsignedByteType() );
+		final Cursor< UnsignedByteType > c = img.cursor();
+		for ( int i = 0; i < 16; ++i )
+			c.next().set( i % 2 == 0 ? 0 : 255 );
+		final RealRandomAccess< UnsignedByteType > interpolator = new BSplineInterpolatorFactory< UnsignedByteType >().create( img );
+		for ( double x = -5; x < 20; x += 0.1 )
+		{
+			interpolator.setPosition( x, 0 );
+			final int v = interpolator.get().get();
+			assertEquals( true, v >= 0 && v <= 255 );
+		}
+	}
+
+	@Test
+	public void testCache()
+	{
+		final Img< FloatType > img = randomImage( new Random( 3 ), 10, 10 );
+		final BSplineInterpolatorFactory< FloatType > factory = new BSplineInterpolatorFactory< FloatType >();
+		final BSplineInterpolator< FloatType > a = factory.create( Views.extendZero( img ) );
+		final BSplineInterpolator< FloatType > b = factory.create( img );
+		assertSame( a.getCoefficients(), b.getCoefficients() );
+		assertSame( a.getCoefficients(), a.copy().getCoefficients() );
+		factory.clearCache();
+		assertEquals( true, a.getCoefficients() != factory.create( img ).getCoefficients() );
+	}
+
+	@Test
+	public void testParallel()
+	{
+		final Img< FloatType > img = randomImage( new Random( 4 ), 100, 80, 30 );
+		final ArrayImg< DoubleType, DoubleArray > parallel = BSplineCoefficients.compute( img, 3 );
+		final ArrayImg< DoubleType, DoubleArray > sequential = BSplineCoefficients.compute( img, 3, new ForkJoinPool( 1 ) );
+		assertArrayEquals( sequential.update( null ).getCurrentStorageArray(), parallel.update( null ).getCurrentStorageArray(), 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testUnboundedSource()
+	{
+		new BSplineInterpolatorFactory< FloatType >().create( Views.translate( Views.extendZero( randomImage( new Random( 5 ), 4 ) ), 1 ) );
+	}
+}
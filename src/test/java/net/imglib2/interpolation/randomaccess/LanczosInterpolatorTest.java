@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.interpolation.separable.LanczosKernel;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LanczosInterpolator}.
+ * 
+ * @author agent
+ */
+public class LanczosInterpolatorTest
+{
+	private static RandomAccessible< FloatType > randomSource( final Random rnd, final long... dimensions )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() * 100 );
+		// not recognized by PrimitiveStorage
+		return Views.extendMirrorSingle( Views.interval( img, img ) );
+	}
+
+	/**
+	 * Largest difference of the interpolator to direct evaluation of the
+	 * kernel, at random positions in 3D.
+	 */
+	private static double maxError( final LanczosInterpolator< FloatType > interpolator, final RandomAccessible< FloatType > source, final int alpha, final Random rnd )
+	{
+		final LanczosKernel kernel = new LanczosKernel( alpha );
+		final RandomAccess< FloatType > ra = source.randomAccess();
+		final double[] x = new double[ 3 ];
+		final long[] p = new long[ 3 ];
+		double maxError = 0;
+		for ( int i = 0; i < 200; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				x[ d ] = rnd.nextDouble() * 12 - 1;
+			interpolator.setPosition( x );
+			double sum = 0;
+			for ( int k = 0; k < 8 * alpha * alpha * alpha; ++k )
+			{
+				double w = 1;
+				int r = k;
+				for ( int d = 0; d < 3; ++d )
+				{
+					p[ d ] = ( long ) Math.floor( x[ d ] ) - alpha + 1 + r % ( 2 * alpha );
+					r /= 2 * alpha;
+					w *= kernel.weight( x[ d ] - p[ d ] );
+				}
+				ra.setPosition( p );
+				sum += w * ra.get().get();
+			}
+			maxError = Math.max( maxError, Math.abs( sum - interpolator.get().get() ) );
+		}
+		return maxError;
+	}
+
+	@Test
+	public void testAccuracy()
+	{
+		final Random rnd = new Random( 1 );
+		final RandomAccessible< FloatType > source = randomSource( rnd, 10, 10, 10 );
+		final double coarse = maxError( new LanczosInterpolator< FloatType >( source, 3, false, 0, 0 ), source, 3, rnd );
+		final double fine = maxError( new LanczosInterpolator< FloatType >( source, 3, false, 0, 0, 1000 ), source, 3, rnd );
+		assertTrue( coarse < 2 );
+		assertTrue( fine < 1e-3 );
+
+		final LanczosInterpolatorFactory< FloatType > factory = new LanczosInterpolatorFactory< FloatType >( 2, false );
+		factory.setLutScale( 1000 );
+		assertTrue( maxError( factory.create( source ), source, 2, rnd ) < 1e-3 );
+	}
+
+	@Test
+	public void testSharedLUT()
+	{
+		final Random rnd = new Random( 2 );
+		final RandomAccessible< FloatType > source = randomSource( rnd, 10, 10 );
+		final LanczosInterpolator< FloatType > a = new LanczosInterpolator< FloatType >( source, 3, true, 0, 0 );
+		final LanczosInterpolator< FloatType > b = new LanczosInterpolatorFactory< FloatType >().create( source );
+		final LanczosInterpolator< FloatType > c = new LanczosInterpolator< FloatType >( source, 3, true, 0, 0, 20 );
+		assertSame( a.lut, b.lut );
+		assertSame( a.lut, a.copy().lut );
+		assertTrue( a.lut != c.lut );
+		assertSame( c.lut, c.copyRealRandomAccess().lut );
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final Random rnd = new Random( 3 );
+		final RandomAccessible< FloatType > source = randomSource( rnd, 10, 10 );
+		final LanczosInterpolator< FloatType > a = new LanczosInterpolator< FloatType >( source, 2, false, 0, 0 );
+		a.setPosition( new double[] { 3.3, 4.7 } );
+		final LanczosInterpolator< FloatType > b = a.copy();
+		assertEquals( a.get().get(), b.get().get(), 0 );
+		b.setPosition( new double[] { 5.1, 0.2 } );
+		a.setPosition( new double[] { 5.1, 0.2 } );
+		assertEquals( a.get().get(), b.get().get(), 0 );
+	}
+}
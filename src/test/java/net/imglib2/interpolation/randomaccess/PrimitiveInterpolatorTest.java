@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link NLinearInterpolatorPrimitive} and
+ * {@link LanczosInterpolatorPrimitive} to the generic interpolators.
+ * 
+ * @author agent
+ */
+public class PrimitiveInterpolatorTest
+{
+	private static < T extends RealType< T > & NativeType< T > > Img< T > randomImage( final ImgFactory< T > factory, final T type, final Random rnd, final long... dimensions )
+	{
+		final Img< T > img = factory.create( dimensions, type );
+		final double max = Math.min( type.getMaxValue(), 1000 );
+		for ( final T t : img )
+			t.setReal( rnd.nextDouble() * max );
+		return img;
+	}
+
+	/**
+	 * Compare two interpolators at random positions, including positions near
+	 * and outside the image border.
+	 */
+	private static < T extends RealType< T > > void compare( final RealRandomAccess< T > expected, final RealRandomAccess< T > actual, final long[] dimensions, final Random rnd, final double tolerance )
+	{
+		final int n = dimensions.length;
+		for ( int i = 0; i < 2000; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = rnd.nextDouble() * ( dimensions[ d ] + 8 ) - 4;
+				expected.setPosition( x, d );
+				actual.setPosition( x, d );
+			}
+			assertEquals( expected.get().getRealDouble(), actual.get().getRealDouble(), tolerance );
+		}
+	}
+
+	private static < T extends RealType< T > & NativeType< T > > void test( final ImgFactory< T > factory, final T type, final double tolerance )
+	{
+		final Random rnd = new Random( 1 );
+		final long[][] sizes = { { 23 }, { 17, 13 }, { 11, 7, 9 } };
+		for ( final long[] dimensions : sizes )
+		{
+			final Img< T > img = randomImage( factory, type, rnd, dimensions );
+			final RandomAccessible< T > source = Views.extendMirrorSingle( img );
+			// not recognized by PrimitiveStorage
+			final RandomAccessible< T > generic = Views.extendMirrorSingle( Views.interval( img, img ) );
+
+			final RealRandomAccess< T > nlinear = new NLinearInterpolatorFactory< T >().create( source );
+			assertTrue( nlinear instanceof NLinearInterpolatorPrimitive );
+			compare( new NLinearInterpolator< T >( generic ), nlinear, dimensions, rnd, tolerance );
+			compare( new NLinearInterpolator< T >( generic ), nlinear.copyRealRandomAccess(), dimensions, rnd, tolerance );
+
+			final RealRandomAccess< T > lanczos = new LanczosInterpolatorFactory< T >( 3, false ).create( source );
+			assertTrue( lanczos instanceof LanczosInterpolatorPrimitive );
+			compare( new LanczosInterpolator< T >( generic, 3, false, 0, 0 ), lanczos, dimensions, rnd, 1e-3 );
+
+			final RealRandomAccess< T > clipped = new LanczosInterpolatorFactory< T >( 2, true ).create( source );
+			compare( new LanczosInterpolator< T >( generic, 2, true, 0, 0 ), clipped.copyRealRandomAccess(), dimensions, rnd, 1e-3 );
+		}
+	}
+
+	@Test
+	public void testFloatArray()
+	{
+		test( new ArrayImgFactory< FloatType >(), new FloatType(), 1e-3 );
+	}
+
+	@Test
+	public void testDoublePlanar()
+	{
+		test( new PlanarImgFactory< DoubleType >(), new DoubleType(), 1e-3 );
+	}
+
+	/**
+	 * The generic interpolator accumulates in the integer type, so it rounds
+	 * at every step.
+	 */
+	@Test
+	public void testUnsignedShortArray()
+	{
+		test( new ArrayImgFactory< UnsignedShortType >(), new UnsignedShortType(), 3 );
+	}
+
+	@Test
+	public void testUnsignedBytePlanar()
+	{
+		test( new PlanarImgFactory< UnsignedByteType >(), new UnsignedByteType(), 3 );
+	}
+
+	/**
+	 * For integer types, the primitive interpolator rounds the interpolated
+	 * value once.
+	 */
+	@Test
+	public void testIntegerRounding()
+	{
+		final Random rnd = new Random( 1 );
+		final long[] dimensions = { 17, 13 };
+		final Img< UnsignedByteType > img = randomImage( new ArrayImgFactory< UnsignedByteType >(), new UnsignedByteType(), rnd, dimensions );
+		final Img< DoubleType > exact = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+		final Cursor< UnsignedByteType > c = img.cursor();
+		for ( final DoubleType t : exact )
+			t.set( c.next().get() );
+
+		final RealRandomAccess< UnsignedByteType > nlinear = new NLinearInterpolatorFactory< UnsignedByteType >().create( Views.extendZero( img ) );
+		final RealRandomAccess< DoubleType > reference = new NLinearInterpolator< DoubleType >( Views.extendZero( exact ) );
+		for ( int i = 0; i < 2000; ++i )
+		{
+			for ( int d = 0; d < 2; ++d )
+			{
+				// inside, so that the primitive path is taken
+				final double x = rnd.nextDouble() * ( dimensions[ d ] - 1 );
+				nlinear.setPosition( x, d );
+				reference.setPosition( x, d );
+			}
+			assertEquals( Util.round( reference.get().get() ), nlinear.get().get() );
+		}
+	}
+
+	@Test
+	public void testPrimitiveDisabled()
+	{
+		final Random rnd = new Random( 1 );
+		final long[] dimensions = { 17, 13 };
+		final Img< UnsignedShortType > img = randomImage( new ArrayImgFactory< UnsignedShortType >(), new UnsignedShortType(), rnd, dimensions );
+		final NLinearInterpolatorFactory< UnsignedShortType > nlinearFactory = new NLinearInterpolatorFactory< UnsignedShortType >();
+		nlinearFactory.setPrimitive( false );
+		final RealRandomAccess< UnsignedShortType > nlinear = nlinearFactory.create( Views.extendZero( img ) );
+		assertTrue( !( nlinear instanceof NLinearInterpolatorPrimitive ) );
+		compare( new NLinearInterpolator2D< UnsignedShortType >( Views.extendZero( img ) ), nlinear, dimensions, rnd, 0 );
+
+		final LanczosInterpolatorFactory< UnsignedShortType > lanczosFactory = new LanczosInterpolatorFactory< UnsignedShortType >( 3, false );
+		lanczosFactory.setPrimitive( false );
+		final RealRandomAccess< UnsignedShortType > lanczos = lanczosFactory.create( Views.extendZero( img ) );
+		assertTrue( !( lanczos instanceof LanczosInterpolatorPrimitive ) );
+		compare( new LanczosInterpolator< UnsignedShortType >( Views.extendZero( img ), 3, false, 0, 0 ), lanczos, dimensions, rnd, 0 );
+	}
+
+	@Test
+	public void testNotSpecialized()
+	{
+		final Img< FloatType > img = new CellImgFactory< FloatType >( 4 ).create( new long[] { 10, 10 }, new FloatType() );
+		assertTrue( !( new NLinearInterpolatorFactory< FloatType >().create( Views.extendZero( img ) ) instanceof NLinearInterpolatorPrimitive ) );
+		assertTrue( !( new LanczosInterpolatorFactory< FloatType >().create( Views.extendZero( img ) ) instanceof LanczosInterpolatorPrimitive ) );
+	}
+}
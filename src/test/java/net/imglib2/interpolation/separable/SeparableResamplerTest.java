@@ -0,0 +1,183 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.separable;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.interpolation.randomaccess.LanczosInterpolator;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link SeparableResampler} to per-pixel interpolation.
+ * 
+ * @author agent
+ */
+public class SeparableResamplerTest
+{
+	private static ArrayImg< FloatType, FloatArray > randomImage( final Random rnd, final long... dimensions )
+	{
+		final ArrayImg< FloatType, FloatArray > img = ArrayImgs.floats( dimensions );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() * 100 );
+		return img;
+	}
+
+	/**
+	 * Check that each target pixel equals the given interpolator at the
+	 * transformed position.
+	 */
+	private static void verify( final ArrayImg< FloatType, FloatArray > target, final RealRandomAccess< FloatType > interpolator, final double[] scale, final double[] offset, final double tolerance )
+	{
+		final int n = target.numDimensions();
+		final Cursor< FloatType > c = target.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			for ( int d = 0; d < n; ++d )
+				interpolator.setPosition( scale[ d ] * c.getDoublePosition( d ) + offset[ d ], d );
+			assertEquals( interpolator.get().getRealDouble(), c.get().getRealDouble(), tolerance );
+		}
+	}
+
+	@Test
+	public void testNLinear2D()
+	{
+		final Random rnd = new Random( 1 );
+		final RandomAccessible< FloatType > source = Views.extendMirrorSingle( randomImage( rnd, 40, 30 ) );
+		final SeparableResampler resampler = new SeparableResampler( new NLinearKernel() );
+		final double[][] scales = { { 0.37, 0.21 }, { 1, 1 }, { 2.5, 3.1 }, { -0.5, 0.75 } };
+		for ( final double[] scale : scales )
+		{
+			final double[] offset = { 3.3, -1.7 };
+			final ArrayImg< FloatType, FloatArray > target = ArrayImgs.floats( 50, 35 );
+			resampler.resample( source, target, scale, offset );
+			verify( target, new NLinearInterpolatorFactory< FloatType >().create( source ), scale, offset, 1e-3 );
+		}
+	}
+
+	@Test
+	public void testNLinear3DSlabs()
+	{
+		final Random rnd = new Random( 2 );
+		final RandomAccessible< FloatType > source = Views.extendBorder( randomImage( rnd, 20, 20, 20 ) );
+		final SeparableResampler resampler = new SeparableResampler( new NLinearKernel() );
+		final double[] scale = { 0.13, 0.11, 0.09 };
+		final double[] offset = { 0.5, 1.25, 2 };
+		// large enough to be processed in several slabs
+		final ArrayImg< FloatType, FloatArray > target = ArrayImgs.floats( 160, 160, 200 );
+		resampler.resample( source, Views.translate( target, 0, 0, 0 ), scale, offset );
+		verify( target, new NLinearInterpolatorFactory< FloatType >().create( source ), scale, offset, 1e-3 );
+	}
+
+	@Test
+	public void testLanczos2D()
+	{
+		final Random rnd = new Random( 3 );
+		final RandomAccessible< FloatType > source = Views.extendMirrorSingle( randomImage( rnd, 30, 30 ) );
+		final SeparableResampler resampler = new SeparableResampler( new LanczosKernel( 3 ) );
+		final double[] scale = { 0.4, 0.6 };
+		final double[] offset = { 2.2, 1.1 };
+		final ArrayImg< FloatType, FloatArray > target = ArrayImgs.floats( 40, 30 );
+		resampler.resample( source, target, scale, offset );
+
+		// compare to direct evaluation of the Lanczos kernel
+		final RandomAccess< FloatType > ra = source.randomAccess();
+		final Cursor< FloatType > c = target.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final double x = scale[ 0 ] * c.getDoublePosition( 0 ) + offset[ 0 ];
+			final double y = scale[ 1 ] * c.getDoublePosition( 1 ) + offset[ 1 ];
+			double sum = 0;
+			for ( long j = ( long ) Math.floor( y ) - 2; j <= ( long ) Math.floor( y ) + 3; ++j )
+				for ( long i = ( long ) Math.floor( x ) - 2; i <= ( long ) Math.floor( x ) + 3; ++i )
+				{
+					ra.setPosition( new long[] { i, j } );
+					sum += lanczos( x - i, 3 ) * lanczos( y - j, 3 ) * ra.get().getRealDouble();
+				}
+			assertEquals( sum, c.get().getRealDouble(), 1e-4 );
+		}
+
+		// LanczosInterpolator looks up weights in a table, use a fine one
+		verify( target, new LanczosInterpolator< FloatType >( source, 3, false, 0, 0, 1000 ), scale, offset, 1e-2 );
+	}
+
+	private static double lanczos( final double x, final int alpha )
+	{
+		if ( x == 0 )
+			return 1;
+		if ( Math.abs( x ) >= alpha )
+			return 0;
+		final double px = Math.PI * x;
+		return alpha * Math.sin( px ) * Math.sin( px / alpha ) / ( px * px );
+	}
+
+	@Test
+	public void testClip()
+	{
+		final ArrayImg< UnsignedByteType, ByteArray > source = ArrayImgs.unsignedBytes( 8 );
+		final Cursor< UnsignedByteType > c = source.cursor();
+		for ( int i = 0; i < 8; ++i )
+			c.next().set( i % 2 == 0 ? 0 : 255 );
+		final ArrayImg< UnsignedByteType, ByteArray > target = ArrayImgs.unsignedBytes( 40 );
+		new SeparableResampler( new LanczosKernel( 3 ), true ).resample( Views.extendBorder( source ), target, new double[] { 0.2 }, new double[] { 0 } );
+		for ( final UnsignedByteType t : target )
+		{
+			assertEquals( true, t.get() >= 0 );
+			assertEquals( true, t.get() <= 255 );
+		}
+		final Cursor< UnsignedByteType > tc = target.cursor();
+		for ( int i = 0; i < 40; i += 5 )
+		{
+			tc.jumpFwd( i == 0 ? 1 : 5 );
+			assertEquals( i / 5 % 2 == 0 ? 0 : 255, tc.get().get() );
+		}
+	}
+}
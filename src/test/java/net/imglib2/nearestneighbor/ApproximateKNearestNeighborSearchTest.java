@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.interpolation.neighborsearch.InverseDistanceWeightingInterpolatorFactory;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchInterpolatorFactory;
+import net.imglib2.neighborsearch.ApproximateKNearestNeighborSearchOnKDTree;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ApproximateKNearestNeighborSearchOnKDTree} against exhaustive
+ * search.
+ * 
+ * @author agent
+ */
+public class ApproximateKNearestNeighborSearchTest
+{
+	private static final int numPoints = 5000;
+
+	private static final int numQueries = 500;
+
+	private static final int k = 5;
+
+	private ArrayList< RealPoint > points;
+
+	private ArrayList< DoubleType > values;
+
+	private KDTree< DoubleType > tree;
+
+	private ArrayList< RealPoint > queries;
+
+	@Before
+	public void setUp()
+	{
+		final Random rnd = new Random( 4523 );
+		points = new ArrayList< RealPoint >();
+		values = new ArrayList< DoubleType >();
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			points.add( new RealPoint( rnd.nextDouble() * 100, rnd.nextDouble() * 100, rnd.nextDouble() * 100 ) );
+			values.add( new DoubleType( i ) );
+		}
+		// KDTree reorders the positions list, so give it a copy
+		tree = new KDTree< DoubleType >( values, new ArrayList< RealPoint >( points ) );
+		queries = new ArrayList< RealPoint >();
+		for ( int i = 0; i < numQueries; ++i )
+			queries.add( new RealPoint( rnd.nextDouble() * 120 - 10, rnd.nextDouble() * 120 - 10, rnd.nextDouble() * 120 - 10 ) );
+	}
+
+	private double[] exhaustiveSquDistances( final RealPoint query )
+	{
+		final double[] d = new double[ numPoints ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			double sum = 0;
+			for ( int j = 0; j < 3; ++j )
+			{
+				final double diff = points.get( i ).getDoublePosition( j ) - query.getDoublePosition( j );
+				sum += diff * diff;
+			}
+			d[ i ] = sum;
+		}
+		Arrays.sort( d );
+		return d;
+	}
+
+	@Test
+	public void testExact()
+	{
+		final ApproximateKNearestNeighborSearchOnKDTree< DoubleType > search = new ApproximateKNearestNeighborSearchOnKDTree< DoubleType >( tree, k, 0 );
+		for ( final RealPoint query : queries )
+		{
+			search.search( query );
+			final double[] expected = exhaustiveSquDistances( query );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( expected[ i ], search.getSquareDistance( i ), 1e-9 );
+				final int index = ( int ) search.getSampler( i ).get().get();
+				assertEquals( search.getSquareDistance( i ), squDistance( points.get( index ), query ), 1e-9 );
+			}
+		}
+	}
+
+	@Test
+	public void testEpsilonBound()
+	{
+		final double epsilon = 0.5;
+		final ApproximateKNearestNeighborSearchOnKDTree< DoubleType > search = new ApproximateKNearestNeighborSearchOnKDTree< DoubleType >( tree, k, epsilon );
+		for ( final RealPoint query : queries )
+		{
+			search.search( query );
+			final double[] expected = exhaustiveSquDistances( query );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertTrue( search.getDistance( i ) <= ( 1 + epsilon ) * Math.sqrt( expected[ i ] ) + 1e-9 );
+				if ( i > 0 )
+					assertTrue( search.getSquareDistance( i - 1 ) <= search.getSquareDistance( i ) );
+			}
+		}
+	}
+
+	@Test
+	public void testMaxLeaves()
+	{
+		final ApproximateKNearestNeighborSearchOnKDTree< DoubleType > search = new ApproximateKNearestNeighborSearchOnKDTree< DoubleType >( tree, k, 0, 1 );
+		for ( final RealPoint query : queries )
+		{
+			search.search( query );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertNotNull( search.getSampler( i ) );
+				final int index = ( int ) search.getSampler( i ).get().get();
+				assertEquals( search.getSquareDistance( i ), squDistance( points.get( index ), query ), 1e-9 );
+			}
+		}
+	}
+
+	@Test
+	public void testInterpolatorFactories()
+	{
+		final ApproximateKNearestNeighborSearchOnKDTree< DoubleType > search = new ApproximateKNearestNeighborSearchOnKDTree< DoubleType >( tree, 1, 0 );
+		final RealRandomAccess< DoubleType > nn = new NearestNeighborSearchInterpolatorFactory< DoubleType >().create( search );
+		final RealRandomAccess< DoubleType > idw = new InverseDistanceWeightingInterpolatorFactory< DoubleType >().create( search );
+		for ( int i = 0; i < 100; ++i )
+		{
+			nn.setPosition( points.get( i ) );
+			assertEquals( i, nn.get().get(), 0 );
+			idw.setPosition( points.get( i ) );
+			assertEquals( i, idw.get().get(), 0 );
+		}
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+}
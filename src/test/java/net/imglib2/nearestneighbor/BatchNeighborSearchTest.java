@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.BatchNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.BatchNeighborSearchOnFlatKDTree.RadiusNeighbors;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares {@link BatchNeighborSearchOnFlatKDTree} to one-at-a-time searches.
+ * 
+ * @author agent
+ */
+public class BatchNeighborSearchTest
+{
+	private static final int numDimensions = 3;
+
+	private static final int numQueries = 2000;
+
+	private ForkJoinPool pool;
+
+	private ArrayList< RealPoint > points;
+
+	private FlatKDTree< RealPoint > tree;
+
+	private double[] queries;
+
+	private BatchNeighborSearchOnFlatKDTree< RealPoint > batch;
+
+	@Before
+	public void setUp()
+	{
+		final Random rnd = new Random( 12 );
+		points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 10000; ++i )
+			points.add( new RealPoint( rnd.nextDouble() * 100, rnd.nextDouble() * 100, rnd.nextDouble() * 100 ) );
+		tree = new FlatKDTree< RealPoint >( points, points );
+		queries = new double[ numQueries * numDimensions ];
+		for ( int i = 0; i < queries.length; ++i )
+			queries[ i ] = rnd.nextDouble() * 120 - 10;
+		pool = new ForkJoinPool( 3 );
+		batch = new BatchNeighborSearchOnFlatKDTree< RealPoint >( tree, pool, 16 );
+	}
+
+	@After
+	public void tearDown()
+	{
+		pool.shutdown();
+	}
+
+	private RealPoint query( final int q )
+	{
+		return new RealPoint( queries[ q * 3 ], queries[ q * 3 + 1 ], queries[ q * 3 + 2 ] );
+	}
+
+	@Test
+	public void testNearestNeighbors()
+	{
+		final int[] indices = new int[ numQueries ];
+		final double[] squDistances = new double[ numQueries ];
+		batch.nearestNeighbors( queries, indices, squDistances );
+
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, 1 );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			search.search( query( q ) );
+			assertEquals( search.getSquareDistance(), squDistances[ q ], 0 );
+			assertEquals( search.getSampler().get(), points.get( indices[ q ] ) );
+		}
+	}
+
+	@Test
+	public void testKNearestNeighbors()
+	{
+		final int k = 4;
+		final int[] indices = new int[ numQueries * k ];
+		final double[] squDistances = new double[ numQueries * k ];
+		batch.kNearestNeighbors( queries, k, indices, squDistances );
+
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			search.search( query( q ) );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( search.getSquareDistance( i ), squDistances[ q * k + i ], 0 );
+				assertEquals( search.getSampler( i ).get(), points.get( indices[ q * k + i ] ) );
+			}
+		}
+	}
+
+	@Test
+	public void testRadiusNeighbors()
+	{
+		final double radius = 8;
+		final RadiusNeighbors result = batch.radiusNeighbors( queries, radius, true );
+
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > search = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			search.search( query( q ), radius, true );
+			assertEquals( search.numNeighbors(), result.numNeighbors( q ) );
+			for ( int i = 0; i < search.numNeighbors(); ++i )
+				assertEquals( search.getSquareDistance( i ), result.getSquareDistance( q, i ), 0 );
+		}
+	}
+
+	@Test
+	public void testIterableRealIntervalQueries()
+	{
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( numDimensions );
+		for ( int q = 0; q < numQueries; ++q )
+			list.add( query( q ), new IntType( q ) );
+
+		final int[] expected = new int[ numQueries ];
+		batch.nearestNeighbors( queries, expected, null );
+		final int[] indices = new int[ numQueries ];
+		batch.nearestNeighbors( list, indices, null );
+		for ( int q = 0; q < numQueries; ++q )
+			assertEquals( expected[ q ], indices[ q ] );
+	}
+
+	@Test
+	public void testNoQueries()
+	{
+		batch.nearestNeighbors( new double[ 0 ], new int[ 0 ], null );
+		assertEquals( 0, batch.radiusNeighbors( new double[ 0 ], 1, false ).getIndices().length );
+	}
+}
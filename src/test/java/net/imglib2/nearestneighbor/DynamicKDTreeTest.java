@@ -0,0 +1,290 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DynamicKDTree} under insertions, removals, and moves by
+ * comparing searches to exhaustive search.
+ * 
+ * @author agent
+ */
+public class DynamicKDTreeTest
+{
+	private static final int n = 3;
+
+	/**
+	 * coordinates of points in the tree by handle, <code>null</code> for
+	 * unused handles.
+	 */
+	private final ArrayList< double[] > points = new ArrayList< double[] >();
+
+	private void set( final int handle, final double[] position )
+	{
+		while ( points.size() <= handle )
+			points.add( null );
+		points.set( handle, position == null ? null : position.clone() );
+	}
+
+	private static double squDistance( final double[] a, final double[] b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.length; ++d )
+			sum += ( a[ d ] - b[ d ] ) * ( a[ d ] - b[ d ] );
+		return sum;
+	}
+
+	private double[] exhaustiveSquDistances( final double[] query )
+	{
+		final ArrayList< Double > d = new ArrayList< Double >();
+		for ( final double[] p : points )
+			if ( p != null )
+				d.add( squDistance( p, query ) );
+		final double[] sorted = new double[ d.size() ];
+		for ( int i = 0; i < sorted.length; ++i )
+			sorted[ i ] = d.get( i );
+		Arrays.sort( sorted );
+		return sorted;
+	}
+
+	private static double[] randomPoint( final Random rnd )
+	{
+		return new double[] { rnd.nextDouble() * 100, rnd.nextDouble() * 100, rnd.nextDouble() * 100 };
+	}
+
+	private void verifyStructure( final DynamicKDTree< IntType > tree )
+	{
+		int numPoints = 0;
+		for ( int handle = 0; handle < points.size(); ++handle )
+		{
+			assertEquals( points.get( handle ) != null, tree.contains( handle ) );
+			if ( points.get( handle ) != null )
+			{
+				++numPoints;
+				assertEquals( handle, tree.getValue( handle ).get() );
+			}
+		}
+		assertEquals( numPoints, tree.size() );
+		final double[] min = new double[ n ];
+		final double[] max = new double[ n ];
+		Arrays.fill( min, Double.NEGATIVE_INFINITY );
+		Arrays.fill( max, Double.POSITIVE_INFINITY );
+		assertEquals( numPoints, verifyNode( tree, tree.getRoot(), min, max ) );
+	}
+
+	private int verifyNode( final DynamicKDTree< IntType > tree, final DynamicKDTree.Node node, final double[] min, final double[] max )
+	{
+		if ( node.isLeaf() )
+		{
+			for ( int i = 0; i < node.numHandles(); ++i )
+			{
+				final double[] p = points.get( node.getHandle( i ) );
+				for ( int d = 0; d < n; ++d )
+				{
+					assertTrue( p[ d ] >= min[ d ] );
+					assertTrue( p[ d ] < max[ d ] );
+				}
+			}
+			assertEquals( node.numHandles(), node.size() );
+			return node.numHandles();
+		}
+		final int d = node.getSplitDimension();
+		final double split = node.getSplitCoordinate();
+		final double[] leftMax = max.clone();
+		leftMax[ d ] = split;
+		final double[] rightMin = min.clone();
+		rightMin[ d ] = split;
+		final int size = verifyNode( tree, node.left(), min, leftMax ) + verifyNode( tree, node.right(), rightMin, max );
+		assertEquals( size, node.size() );
+		return size;
+	}
+
+	private void verifySearches( final DynamicKDTree< IntType > tree, final Random rnd )
+	{
+		final NearestNeighborSearchOnDynamicKDTree< IntType > nn = new NearestNeighborSearchOnDynamicKDTree< IntType >( tree );
+		final KNearestNeighborSearchOnDynamicKDTree< IntType > knn = new KNearestNeighborSearchOnDynamicKDTree< IntType >( tree, 5 );
+		final RadiusNeighborSearchOnDynamicKDTree< IntType > radius = new RadiusNeighborSearchOnDynamicKDTree< IntType >( tree );
+		for ( int q = 0; q < 50; ++q )
+		{
+			final double[] query = randomPoint( rnd );
+			final RealPoint reference = RealPoint.wrap( query );
+			final double[] expected = exhaustiveSquDistances( query );
+
+			nn.search( reference );
+			assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+			assertEquals( expected[ 0 ], squDistance( points.get( nn.getSampler().get().get() ), query ), 0 );
+
+			knn.search( reference );
+			for ( int i = 0; i < 5; ++i )
+			{
+				assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], squDistance( points.get( knn.getSampler( i ).get().get() ), query ), 0 );
+			}
+
+			final double r = 15;
+			radius.search( reference, r, true );
+			int expectedNumNeighbors = 0;
+			while ( expectedNumNeighbors < expected.length && expected[ expectedNumNeighbors ] <= r * r )
+				++expectedNumNeighbors;
+			assertEquals( expectedNumNeighbors, radius.numNeighbors() );
+			for ( int i = 0; i < radius.numNeighbors(); ++i )
+			{
+				assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+				final double[] p = new double[ n ];
+				radius.getPosition( i ).localize( p );
+				assertEquals( expected[ i ], squDistance( p, query ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testRandomUpdates()
+	{
+		final Random rnd = new Random( 123 );
+		final DynamicKDTree< IntType > tree = new DynamicKDTree< IntType >( n, 8 );
+		final IntType[] values = new IntType[ 10000 ];
+		for ( int i = 0; i < values.length; ++i )
+			values[ i ] = new IntType( i );
+
+		final ArrayList< Integer > live = new ArrayList< Integer >();
+		for ( int round = 0; round < 10; ++round )
+		{
+			for ( int i = 0; i < 500; ++i )
+			{
+				final double[] p = randomPoint( rnd );
+				final int handle = tree.insert( null, p );
+				tree.remove( handle );
+				final int h = tree.insert( values[ handle ], p );
+				assertEquals( handle, h );
+				set( h, p );
+				live.add( h );
+			}
+			for ( int i = 0; i < 200; ++i )
+			{
+				final int handle = live.remove( rnd.nextInt( live.size() ) );
+				tree.remove( handle );
+				set( handle, null );
+				assertFalse( tree.contains( handle ) );
+			}
+			for ( int i = 0; i < 1000; ++i )
+			{
+				final int handle = live.get( rnd.nextInt( live.size() ) );
+				final double[] p = points.get( handle );
+				if ( rnd.nextBoolean() )
+					for ( int d = 0; d < n; ++d )
+						p[ d ] += rnd.nextGaussian();
+				else
+					p[ rnd.nextInt( n ) ] = rnd.nextDouble() * 100;
+				tree.move( handle, RealPoint.wrap( p ) );
+			}
+			verifyStructure( tree );
+			verifySearches( tree, rnd );
+		}
+	}
+
+	@Test
+	public void testSortedInsertions()
+	{
+		final Random rnd = new Random( 6 );
+		final DynamicKDTree< IntType > tree = new DynamicKDTree< IntType >( n );
+		for ( int i = 0; i < 5000; ++i )
+		{
+			final double[] p = new double[] { i * 0.02, 50, 50 + ( i % 3 ) };
+			set( tree.insert( new IntType( i ), p ), p );
+		}
+		verifyStructure( tree );
+		verifySearches( tree, rnd );
+		assertTrue( depth( tree.getRoot() ) < 40 );
+	}
+
+	@Test
+	public void testDuplicatePoints()
+	{
+		final Random rnd = new Random( 7 );
+		final DynamicKDTree< IntType > tree = new DynamicKDTree< IntType >( n, 4 );
+		for ( int i = 0; i < 300; ++i )
+		{
+			final double[] p = i % 2 == 0 ? new double[] { 10, 20, 30 } : randomPoint( rnd );
+			set( tree.insert( new IntType( i ), p ), p );
+		}
+		verifyStructure( tree );
+		verifySearches( tree, rnd );
+		for ( int i = 0; i < 300; i += 2 )
+		{
+			tree.remove( i );
+			set( i, null );
+		}
+		verifyStructure( tree );
+		verifySearches( tree, rnd );
+	}
+
+	@Test
+	public void testConstructFromIterableRealInterval()
+	{
+		final Random rnd = new Random( 8 );
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( n );
+		for ( int i = 0; i < 2000; ++i )
+		{
+			final double[] p = randomPoint( rnd );
+			list.add( RealPoint.wrap( p ), new IntType( i ) );
+			set( i, p );
+		}
+		final DynamicKDTree< IntType > tree = new DynamicKDTree< IntType >( list );
+		verifyStructure( tree );
+		verifySearches( tree, rnd );
+	}
+
+	private static int depth( final DynamicKDTree.Node node )
+	{
+		return node.isLeaf() ? 1 : 1 + Math.max( depth( node.left() ), depth( node.right() ) );
+	}
+}
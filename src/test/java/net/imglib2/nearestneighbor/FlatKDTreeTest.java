@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Random;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealCursor;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Compares searches on {@link FlatKDTree} to exhaustive search.
+ * 
+ * @author agent
+ */
+public class FlatKDTreeTest
+{
+	private static ArrayList< RealPoint > randomPoints( final int numDimensions, final int numPoints, final Random rnd )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextInt( 1000 ) * 0.1;
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	private static double[] sortedSquDistances( final ArrayList< RealPoint > points, final RealPoint t )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < points.size(); ++i )
+		{
+			double sum = 0;
+			for ( int d = 0; d < t.numDimensions(); ++d )
+			{
+				final double diff = points.get( i ).getDoublePosition( d ) - t.getDoublePosition( d );
+				sum += diff * diff;
+			}
+			distances[ i ] = sum;
+		}
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@Test
+	public void testTreeInvariant()
+	{
+		for ( final int numPoints : new int[] { 1, 2, 3, 7, 8, 100, 50000 } )
+		{
+			final ArrayList< RealPoint > points = randomPoints( 3, numPoints, new Random( numPoints ) );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+			assertEquals( numPoints, tree.size() );
+			checkSubtree( tree, 0, 0 );
+
+			// every point occurs exactly once
+			final HashSet< RealPoint > values = new HashSet< RealPoint >();
+			for ( final RealPoint p : tree )
+				values.add( p );
+			assertEquals( numPoints, values.size() );
+		}
+	}
+
+	/**
+	 * Check that all nodes in the left (right) subtree of node are smaller
+	 * (larger) or equal in its split dimension.
+	 */
+	private static void checkSubtree( final FlatKDTree< ? > tree, final int node, final int d )
+	{
+		final int dChild = ( d + 1 ) % tree.numDimensions();
+		final double split = tree.getDoublePosition( node, d );
+		final int left = FlatKDTree.left( node );
+		final int right = FlatKDTree.right( node );
+		if ( left < tree.size() )
+		{
+			assertTrue( maxInSubtree( tree, left, d ) <= split );
+			checkSubtree( tree, left, dChild );
+		}
+		if ( right < tree.size() )
+		{
+			assertTrue( minInSubtree( tree, right, d ) >= split );
+			checkSubtree( tree, right, dChild );
+		}
+	}
+
+	private static double maxInSubtree( final FlatKDTree< ? > tree, final int node, final int d )
+	{
+		if ( node >= tree.size() )
+			return Double.NEGATIVE_INFINITY;
+		return Math.max( tree.getDoublePosition( node, d ), Math.max( maxInSubtree( tree, FlatKDTree.left( node ), d ), maxInSubtree( tree, FlatKDTree.right( node ), d ) ) );
+	}
+
+	private static double minInSubtree( final FlatKDTree< ? > tree, final int node, final int d )
+	{
+		if ( node >= tree.size() )
+			return Double.POSITIVE_INFINITY;
+		return Math.min( tree.getDoublePosition( node, d ), Math.min( minInSubtree( tree, FlatKDTree.left( node ), d ), minInSubtree( tree, FlatKDTree.right( node ), d ) ) );
+	}
+
+	@Test
+	public void testSearches()
+	{
+		final Random rnd = new Random( 435435435 );
+		final int k = 5;
+		for ( final int numDimensions : new int[] { 1, 2, 3 } )
+		{
+			final ArrayList< RealPoint > points = randomPoints( numDimensions, 40000, rnd );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+			final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+			final RadiusNeighborSearchOnFlatKDTree< RealPoint > radius = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+
+			for ( final RealPoint t : randomPoints( numDimensions, 50, rnd ) )
+			{
+				final double[] expected = sortedSquDistances( points, t );
+
+				nn.search( t );
+				assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+				assertEquals( expected[ 0 ], squDistance( nn.getSampler().get(), t ), 0 );
+
+				knn.search( t );
+				for ( int i = 0; i < k; ++i )
+				{
+					assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+					assertEquals( expected[ i ], squDistance( knn.getSampler( i ).get(), t ), 0 );
+				}
+
+				final double r = 3.0;
+				radius.search( t, r, true );
+				int expectedNumNeighbors = 0;
+				while ( expectedNumNeighbors < expected.length && expected[ expectedNumNeighbors ] <= r * r )
+					++expectedNumNeighbors;
+				assertEquals( expectedNumNeighbors, radius.numNeighbors() );
+				for ( int i = 0; i < radius.numNeighbors(); ++i )
+				{
+					assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+					assertSame( radius.getSampler( i ).get(), points.get( tree.getValueIndex( ( ( FlatKDTree.Node< ? > ) radius.getSampler( i ) ).getNode() ) ) );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFlatPositions()
+	{
+		final Random rnd = new Random( 1 );
+		final ArrayList< RealPoint > points = randomPoints( 2, 1000, rnd );
+		final double[] coordinates = new double[ 2 * points.size() ];
+		final LinkedList< Integer > values = new LinkedList< Integer >();
+		for ( int i = 0; i < points.size(); ++i )
+		{
+			coordinates[ 2 * i ] = points.get( i ).getDoublePosition( 0 );
+			coordinates[ 2 * i + 1 ] = points.get( i ).getDoublePosition( 1 );
+			values.add( i );
+		}
+		final double[] copy = coordinates.clone();
+		final FlatKDTree< Integer > tree = new FlatKDTree< Integer >( values, coordinates, 2 );
+		assertTrue( Arrays.equals( copy, coordinates ) );
+
+		final NearestNeighborSearchOnFlatKDTree< Integer > nn = new NearestNeighborSearchOnFlatKDTree< Integer >( tree );
+		for ( final RealPoint t : randomPoints( 2, 100, rnd ) )
+		{
+			nn.search( t );
+			assertEquals( sortedSquDistances( points, t )[ 0 ], squDistance( points.get( nn.getSampler().get() ), t ), 0 );
+		}
+	}
+
+	@Test
+	public void testIterableRealInterval()
+	{
+		final Random rnd = new Random( 2 );
+		final ArrayList< RealPoint > points = randomPoints( 3, 1000, rnd );
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( 3 );
+		for ( int i = 0; i < points.size(); ++i )
+			list.add( points.get( i ), new IntType( i ) );
+		final FlatKDTree< IntType > tree = new FlatKDTree< IntType >( list );
+		assertEquals( list.size(), tree.size() );
+
+		final RealCursor< IntType > c = tree.localizingCursor();
+		while ( c.hasNext() )
+		{
+			final int i = c.next().get();
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( points.get( i ).getDoublePosition( d ), c.getDoublePosition( d ), 0 );
+		}
+
+		final KNearestNeighborSearchOnFlatKDTree< IntType > knn = new KNearestNeighborSearchOnFlatKDTree< IntType >( tree, 3 );
+		for ( final RealPoint t : randomPoints( 3, 100, rnd ) )
+		{
+			knn.search( t );
+			final double[] expected = sortedSquDistances( points, t );
+			for ( int i = 0; i < 3; ++i )
+				assertEquals( expected[ i ], squDistance( points.get( knn.getSampler( i ).get().get() ), t ), 0 );
+		}
+	}
+}
@@ -34,6 +34,8 @@
 
 package net.imglib2.nearestneighbor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -436,6 +438,50 @@ public class KDTreeTest
 		assertTrue( testRadiusNeighbor( 3, 1000, 100, -5, 5 ) );
 	}
 
+	@Test
+	public void testKDTreeRadiusNeighborSearchMaxHits()
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final Random rnd = new Random( 435435435 );
+		for ( int i = 0; i < 1000; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) );
+		final KDTree< RealPoint > kdTree = new KDTree< RealPoint >( points, points );
+		final RadiusNeighborSearchOnKDTree< RealPoint > kd = new RadiusNeighborSearchOnKDTree< RealPoint >( kdTree );
+		final RealPoint reference = new RealPoint( 0.5, 0.5 );
+
+		kd.search( reference, 0.3, true );
+		final int numNeighbors = kd.numNeighbors();
+		assertTrue( numNeighbors > 20 );
+		assertFalse( kd.isTruncated() );
+		for ( int i = 1; i < numNeighbors; ++i )
+			assertTrue( kd.getSquareDistance( i - 1 ) <= kd.getSquareDistance( i ) );
+		for ( int i = 0; i < numNeighbors; ++i )
+		{
+			final RealPoint p = kd.getSampler( i ).get();
+			final double dx = p.getDoublePosition( 0 ) - 0.5;
+			final double dy = p.getDoublePosition( 1 ) - 0.5;
+			assertEquals( dx * dx + dy * dy, kd.getSquareDistance( i ), 1e-12 );
+		}
+
+		kd.search( reference, 0.3, false, 20 );
+		assertEquals( 20, kd.numNeighbors() );
+		assertTrue( kd.isTruncated() );
+		for ( int i = 0; i < 20; ++i )
+			assertTrue( kd.getSquareDistance( i ) <= 0.3 * 0.3 );
+
+		kd.search( reference, 0.3, false, numNeighbors );
+		assertEquals( numNeighbors, kd.numNeighbors() );
+		assertFalse( kd.isTruncated() );
+
+		kd.search( reference, 0.3, false, numNeighbors - 1 );
+		assertEquals( numNeighbors - 1, kd.numNeighbors() );
+		assertTrue( kd.isTruncated() );
+
+		kd.search( reference, 0.3, false, 0 );
+		assertEquals( 0, kd.numNeighbors() );
+		assertTrue( kd.isTruncated() );
+	}
+
 	public static void main( final String[] args )
 	{
 		for ( int i = 0; i < 5; ++i )
@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.UniformGrid;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnUniformGrid;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnUniformGrid;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Compares searches on {@link UniformGrid} to exhaustive search.
+ * 
+ * @author agent
+ */
+public class UniformGridTest
+{
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static RealPoint randomPoint( final Random rnd, final int n, final double from, final double to )
+	{
+		final RealPoint p = new RealPoint( n );
+		for ( int d = 0; d < n; ++d )
+			p.setPosition( from + rnd.nextDouble() * ( to - from ), d );
+		return p;
+	}
+
+	private static void verify( final ArrayList< RealPoint > points, final UniformGrid< IntType > grid, final Random rnd )
+	{
+		final int n = grid.numDimensions();
+		final NearestNeighborSearchOnUniformGrid< IntType > nn = new NearestNeighborSearchOnUniformGrid< IntType >( grid );
+		final RadiusNeighborSearchOnUniformGrid< IntType > radius = new RadiusNeighborSearchOnUniformGrid< IntType >( grid );
+		final double[] squDistances = new double[ points.size() ];
+		for ( int q = 0; q < 200; ++q )
+		{
+			final RealPoint query = randomPoint( rnd, n, -20, 120 );
+			for ( int i = 0; i < points.size(); ++i )
+				squDistances[ i ] = squDistance( points.get( i ), query );
+			Arrays.sort( squDistances );
+
+			nn.search( query );
+			assertEquals( squDistances[ 0 ], nn.getSquareDistance(), 0 );
+			assertEquals( squDistances[ 0 ], squDistance( points.get( nn.getSampler().get().get() ), query ), 0 );
+
+			final double r = rnd.nextDouble() * 20;
+			radius.search( query, r, true );
+			int expected = 0;
+			while ( expected < squDistances.length && squDistances[ expected ] <= r * r )
+				++expected;
+			assertEquals( expected, radius.numNeighbors() );
+			for ( int i = 0; i < expected; ++i )
+			{
+				assertEquals( squDistances[ i ], radius.getSquareDistance( i ), 0 );
+				assertEquals( squDistances[ i ], squDistance( points.get( radius.getSampler( i ).get().get() ), query ), 0 );
+			}
+		}
+	}
+
+	private static UniformGrid< IntType > grid( final List< RealPoint > points, final double cellSize )
+	{
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( points.get( 0 ).numDimensions() );
+		for ( int i = 0; i < points.size(); ++i )
+			list.add( points.get( i ), new IntType( i ) );
+		return Double.isNaN( cellSize ) ? new UniformGrid< IntType >( list ) : new UniformGrid< IntType >( list, cellSize );
+	}
+
+	@Test
+	public void testUniformPoints()
+	{
+		final Random rnd = new Random( 1 );
+		for ( int n = 1; n <= 3; ++n )
+		{
+			final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+			for ( int i = 0; i < 40000; ++i )
+				points.add( randomPoint( rnd, n, 0, 100 ) );
+			verify( points, grid( points, Double.NaN ), rnd );
+			verify( points, grid( points, 7 ), rnd );
+		}
+	}
+
+	@Test
+	public void testClusteredPoints()
+	{
+		final Random rnd = new Random( 2 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 2000; ++i )
+		{
+			final RealPoint p = new RealPoint( 20 + rnd.nextGaussian(), 80 + rnd.nextGaussian() );
+			points.add( p );
+		}
+		points.add( new RealPoint( 100, 0 ) );
+		points.add( new RealPoint( 100, 0 ) );
+		verify( points, grid( points, Double.NaN ), rnd );
+		verify( points, grid( points, 0.5 ), rnd );
+	}
+
+	@Test
+	public void testListConstructor()
+	{
+		final Random rnd = new Random( 3 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final ArrayList< IntType > values = new ArrayList< IntType >();
+		for ( int i = 0; i < 1000; ++i )
+		{
+			points.add( randomPoint( rnd, 2, 0, 100 ) );
+			values.add( new IntType( i ) );
+		}
+		final UniformGrid< IntType > grid = new UniformGrid< IntType >( values, points, 10 );
+		assertEquals( 1000, grid.size() );
+		for ( int d = 0; d < 2; ++d )
+			assertTrue( grid.getGridDimension( d ) == 10 || grid.getGridDimension( d ) == 11 );
+		verify( points, grid, rnd );
+	}
+
+	@Test
+	public void testSparse()
+	{
+		final Random rnd = new Random( 4 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 3000; ++i )
+			points.add( randomPoint( rnd, 2, 0, 100 ) );
+		// one outlier would make a dense grid of 10^9 cells
+		points.add( new RealPoint( 1e7, 50 ) );
+		final UniformGrid< IntType > grid = grid( points, 1 );
+		assertTrue( grid.isSparse() );
+		verify( points, grid, rnd );
+
+		final UniformGrid< IntType > dense = grid( points.subList( 0, 3000 ), Double.NaN );
+		assertFalse( dense.isSparse() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testEmptyList()
+	{
+		new UniformGrid< IntType >( new ArrayList< IntType >(), new ArrayList< RealPoint >(), 1 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testListSizeMismatch()
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		points.add( new RealPoint( 1, 2 ) );
+		points.add( new RealPoint( 3, 4 ) );
+		final ArrayList< IntType > values = new ArrayList< IntType >();
+		values.add( new IntType( 1 ) );
+		new UniformGrid< IntType >( values, points, 1 );
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		final UniformGrid< IntType > grid = new UniformGrid< IntType >( new RealPointSampleList< IntType >( 2 ) );
+		final NearestNeighborSearchOnUniformGrid< IntType > nn = new NearestNeighborSearchOnUniformGrid< IntType >( grid );
+		nn.search( new RealPoint( 1, 1 ) );
+		assertEquals( Double.MAX_VALUE, nn.getSquareDistance(), 0 );
+		final RadiusNeighborSearchOnUniformGrid< IntType > radius = new RadiusNeighborSearchOnUniformGrid< IntType >( grid );
+		radius.search( new RealPoint( 1, 1 ), 10, true );
+		assertEquals( 0, radius.numNeighbors() );
+	}
+}
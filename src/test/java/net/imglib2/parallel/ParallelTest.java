@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.parallel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link Parallel}, {@link Chunk} and {@link ChunkBoundaries}.
+ * 
+ * @author agent
+ */
+public class ParallelTest
+{
+	private static final long[] dimensions = new long[] { 37, 23, 11 };
+
+	private static final ForkJoinPool pool = new ForkJoinPool( 4 );
+
+	private static ArrayList< ImgFactory< IntType > > factories()
+	{
+		final ArrayList< ImgFactory< IntType > > factories = new ArrayList< ImgFactory< IntType > >();
+		factories.add( new ArrayImgFactory< IntType >() );
+		factories.add( new PlanarImgFactory< IntType >() );
+		factories.add( new CellImgFactory< IntType >( new int[] { 8, 5, 3 } ) );
+		factories.add( new ListImgFactory< IntType >() );
+		return factories;
+	}
+
+	private static Img< IntType > createImg( final ImgFactory< IntType > factory )
+	{
+		final Img< IntType > img = factory.create( dimensions, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+		return img;
+	}
+
+	@Test
+	public void testReduce()
+	{
+		for ( final ImgFactory< IntType > factory : factories() )
+		{
+			final Img< IntType > img = createImg( factory );
+			final long n = img.size();
+			final long sum = Parallel.reduce( img, new SumReducer(), pool, 16 );
+			assertEquals( factory.getClass().getSimpleName(), n * ( n - 1 ) / 2, sum );
+		}
+	}
+
+	@Test
+	public void testReduceKeepsOrder()
+	{
+		for ( final ImgFactory< IntType > factory : factories() )
+		{
+			final Img< IntType > img = createImg( factory );
+			final long[] range = Parallel.reduce( img, new ChunkReducer< IntType, long[] >()
+			{
+				@Override
+				public long[] reduce( final Cursor< IntType > cursor )
+				{
+					final long first = cursor.next().get();
+					long last = first;
+					while ( cursor.hasNext() )
+					{
+						final long v = cursor.next().get();
+						assertEquals( last + 1, v );
+						last = v;
+					}
+					return new long[] { first, last };
+				}
+
+				@Override
+				public long[] combine( final long[] a, final long[] b )
+				{
+					assertEquals( a[ 1 ] + 1, b[ 0 ] );
+					return new long[] { a[ 0 ], b[ 1 ] };
+				}
+			}, pool, 16 );
+			assertArrayEquals( new long[] { 0, img.size() - 1 }, range );
+		}
+	}
+
+	@Test
+	public void testForEach()
+	{
+		for ( final ImgFactory< IntType > factory : factories() )
+		{
+			final Img< IntType > img = createImg( factory );
+			Parallel.forEach( img, new ChunkTask< IntType >()
+			{
+				@Override
+				public void run( final Cursor< IntType > cursor )
+				{
+					while ( cursor.hasNext() )
+						cursor.next().inc();
+				}
+			}, pool, 16 );
+			int i = 1;
+			for ( final IntType t : img )
+				assertEquals( i++, t.get() );
+		}
+	}
+
+	@Test
+	public void testForEachView()
+	{
+		final Img< IntType > img = createImg( new ArrayImgFactory< IntType >() );
+		final IterableInterval< IntType > view = Views.iterable( Views.hyperSlice( img, 1, 5 ) );
+		final long expected = new SumReducer().reduce( view.cursor() );
+		assertEquals( expected, ( long ) Parallel.reduce( view, new SumReducer(), pool, 1 ) );
+	}
+
+	@Test
+	public void testChunkCursorLocalizes()
+	{
+		final Img< IntType > img = createImg( new CellImgFactory< IntType >( 4 ) );
+		final Chunk< IntType > chunk = Parallel.chunk( img );
+		final Chunk< IntType > prefix = chunk.trySplit();
+		assertNotNull( prefix );
+		assertEquals( img.size(), prefix.size() + chunk.size() );
+
+		final Cursor< IntType > expected = img.localizingCursor();
+		expected.jumpFwd( chunk.offset() );
+		final Cursor< IntType > actual = chunk.localizingCursor();
+		final long[] e = new long[ 3 ];
+		final long[] a = new long[ 3 ];
+		long count = 0;
+		while ( actual.hasNext() )
+		{
+			actual.fwd();
+			expected.fwd();
+			actual.localize( a );
+			expected.localize( e );
+			assertArrayEquals( e, a );
+			assertEquals( expected.get().get(), actual.get().get() );
+			++count;
+		}
+		assertEquals( chunk.size(), count );
+	}
+
+	@Test
+	public void testTrySplitAlignsToBoundaries()
+	{
+		final ChunkBoundaries planes = new StridedChunkBoundaries( 37 * 23 );
+		final Chunk< IntType > chunk = new Chunk< IntType >( createImg( new PlanarImgFactory< IntType >() ), planes );
+		final Chunk< IntType > prefix = chunk.trySplit();
+		assertEquals( 0, prefix.offset() % ( 37 * 23 ) );
+		assertEquals( 0, chunk.offset() % ( 37 * 23 ) );
+		assertEquals( prefix.offset() + prefix.size(), chunk.offset() );
+
+		// a chunk that lies within a single plane can not be split
+		assertNull( new Chunk< IntType >( chunk.getSource(), planes, 10, 100 ).trySplit() );
+	}
+
+	@Test
+	public void testCellChunkBoundaries()
+	{
+		final CellChunkBoundaries boundaries = new CellChunkBoundaries( new long[] { 5, 3 }, new int[] { 2, 2 } );
+		// cells have sizes 4, 4, 2, 2, 2, 1
+		final long[] expected = new long[] { 0, 4, 8, 10, 12, 14, 15 };
+		for ( final long b : expected )
+		{
+			assertEquals( b, boundaries.floor( b ) );
+			assertEquals( b, boundaries.ceil( b ) );
+		}
+		assertEquals( 4, boundaries.floor( 7 ) );
+		assertEquals( 8, boundaries.ceil( 7 ) );
+		assertTrue( boundaries.ceil( 14 ) == 14 );
+	}
+
+	private static class SumReducer implements ChunkReducer< IntType, Long >
+	{
+		@Override
+		public Long reduce( final Cursor< IntType > cursor )
+		{
+			long sum = 0;
+			while ( cursor.hasNext() )
+				sum += cursor.next().get();
+			return sum;
+		}
+
+		@Override
+		public Long combine( final Long a, final Long b )
+		{
+			return a + b;
+		}
+	}
+}
@@ -36,13 +36,31 @@ package net.imglib2.util;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.array.BufferArrayImgFactory;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.paged.PagedArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -333,4 +351,88 @@ public class ImgUtilTest
 		}
 	}
 
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testCopyRandomAccessibleInterval()
+	{
+		final ImgFactory< IntType >[] factories = new ImgFactory[] {
+				new ArrayImgFactory< IntType >(),
+				new BufferArrayImgFactory< IntType >(),
+				new PlanarImgFactory< IntType >(),
+				new PagedArrayImgFactory< IntType >( 6 ),
+				new CellImgFactory< IntType >( 4 ),
+				new ListImgFactory< IntType >() };
+		final long[] dim = { 11, 9, 3 };
+		final FinalInterval crop = new FinalInterval( new long[] { 2, 1, 1 }, new long[] { 9, 7, 2 } );
+
+		for ( final ImgFactory< IntType > sf : factories )
+		{
+			final Img< IntType > source = sf.create( dim, new IntType() );
+			int i = 0;
+			for ( final IntType t : Views.flatIterable( source ) )
+				t.set( i++ );
+
+			for ( final ImgFactory< IntType > tf : factories )
+			{
+				final Img< IntType > target = tf.create( dim, new IntType() );
+				ImgUtil.copy( source, target );
+				assertSame( source, target );
+
+				final Img< IntType > cropped = tf.create( Intervals.dimensionsAsLongArray( crop ), new IntType() );
+				ImgUtil.copy( Views.interval( source, crop ), cropped );
+				assertSame( Views.offsetInterval( source, crop ), cropped );
+
+				final Img< IntType > pasted = tf.create( dim, new IntType() );
+				ImgUtil.copy( cropped, Views.interval( pasted, crop ) );
+				assertSame( Views.interval( source, crop ), Views.interval( pasted, crop ) );
+			}
+		}
+	}
+
+	@Test
+	public void testCopyMixedByteOrder()
+	{
+		final long[] dim = { 7, 5 };
+		final ArrayImg< FloatType, FloatBufferAccess > big = ArrayImgs.floats( ByteBuffer.allocate( 7 * 5 * 4 ).order( ByteOrder.BIG_ENDIAN ), dim );
+		final ArrayImg< FloatType, FloatBufferAccess > little = ArrayImgs.floats( ByteBuffer.allocate( 7 * 5 * 4 ).order( ByteOrder.LITTLE_ENDIAN ), dim );
+		final ArrayImg< FloatType, FloatBufferAccess > copy = ArrayImgs.floats( ByteBuffer.allocate( 7 * 5 * 4 ).order( ByteOrder.BIG_ENDIAN ), dim );
+		int i = 0;
+		for ( final FloatType t : big )
+			t.set( 1.5f * i++ - 3 );
+
+		ImgUtil.copy( big, little );
+		ImgUtil.copy( little, copy );
+		final Cursor< FloatType > b = big.cursor();
+		final Cursor< FloatType > l = little.cursor();
+		final Cursor< FloatType > c = copy.cursor();
+		while ( b.hasNext() )
+		{
+			final float expected = b.next().get();
+			assertEquals( expected, l.next().get(), 0 );
+			assertEquals( expected, c.next().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testCopyBitType()
+	{
+		final long[] dim = { 70, 3 };
+		final Img< BitType > source = new ArrayImgFactory< BitType >().create( dim, new BitType() );
+		int i = 0;
+		for ( final BitType t : source )
+			t.set( i++ % 3 == 0 );
+		final Img< BitType > target = new PlanarImgFactory< BitType >().create( dim, new BitType() );
+		ImgUtil.copy( source, target );
+		i = 0;
+		for ( final BitType t : target )
+			assertEquals( i++ % 3 == 0, t.get() );
+	}
+
+	private static void assertSame( final RandomAccessibleInterval< IntType > expected, final RandomAccessibleInterval< IntType > actual )
+	{
+		final Cursor< IntType > e = Views.flatIterable( expected ).cursor();
+		final Cursor< IntType > a = Views.flatIterable( actual ).cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get() );
+	}
 }